@@ -16,8 +16,24 @@
 
 package com.google.zetasql.toolkit.antipattern;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface AntiPatternVisitor {
 
+  /** Messages of the findings, rendered as text. */
   public String getResult();
   public abstract String getName();
+
+  /**
+   * Findings of the visitor. Visitors that do not report structured findings get a single finding
+   * holding their whole result.
+   */
+  default List<Finding> getFindings() {
+    String result = getResult();
+    if (result == null || result.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(Finding.ofMessage(getName(), result));
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern;
+
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A single occurrence of an anti pattern in a query.
+ *
+ * <p>Holds the rule, the location and the parameters of the message instead of the message itself.
+ * The message and the column are only computed when a writer asks for them, once per finding.
+ */
+public class Finding {
+
+  public static final int UNKNOWN = -1;
+
+  private final String ruleId;
+  private final int byteOffset;
+  private final int line;
+  // null once the column is known
+  private LineIndex lineIndex;
+  private int column = UNKNOWN;
+  private final String messageFormat;
+  private final Object[] parameters;
+  // set once the statements of the script are known, see AntiPatternHelper
+  private int statementIndex = UNKNOWN;
+  private String message;
+
+  /**
+   * Finding at a location of the query.
+   *
+   * @param byteOffset UTF-8 byte offset of the location, as in parse location ranges
+   * @param messageFormat {@link String#format} pattern of the message
+   */
+  public Finding(
+      String ruleId,
+      LineIndex lineIndex,
+      int byteOffset,
+      String messageFormat,
+      Object... parameters) {
+    this.ruleId = ruleId;
+    this.byteOffset = byteOffset;
+    this.line = lineIndex.lineAt(byteOffset);
+    this.lineIndex = lineIndex;
+    this.messageFormat = messageFormat;
+    this.parameters = parameters;
+  }
+
+  private Finding(String ruleId, String message) {
+    this.ruleId = ruleId;
+    this.byteOffset = UNKNOWN;
+    this.line = UNKNOWN;
+    this.messageFormat = null;
+    this.parameters = new Object[0];
+    this.message = message;
+  }
+
+  /** Finding without location whose message is already formatted. */
+  public static Finding ofMessage(String ruleId, String message) {
+    return new Finding(ruleId, message);
+  }
+
+  /**
+   * The same finding at another location, e.g. in a query that only differs in the length of its
+   * literals. Findings without location are returned as is.
+   */
+  public Finding relocate(LineIndex lineIndex, int byteOffset) {
+    if (messageFormat == null || this.byteOffset == UNKNOWN) {
+      return this;
+    }
+    Finding finding = new Finding(ruleId, lineIndex, byteOffset, messageFormat, parameters);
+    finding.statementIndex = statementIndex;
+    return finding;
+  }
+
+  /** Messages of the findings, one per line, skipping repeated messages. */
+  public static String joinMessages(List<Finding> findings) {
+    return findings.stream().map(Finding::getMessage).distinct().collect(Collectors.joining("\n"));
+  }
+
+  public String getRuleId() {
+    return ruleId;
+  }
+
+  public int getByteOffset() {
+    return byteOffset;
+  }
+
+  /** 1-based line, {@link #UNKNOWN} for findings without location. */
+  public int getLine() {
+    return line;
+  }
+
+  /** 1-based column, {@link #UNKNOWN} for findings without location. */
+  public synchronized int getColumn() {
+    if (lineIndex != null) {
+      column = lineIndex.columnAt(byteOffset);
+      lineIndex = null;
+    }
+    return column;
+  }
+
+  /** 0-based index of the statement of the script, {@link #UNKNOWN} if not known. */
+  public int getStatementIndex() {
+    return statementIndex;
+  }
+
+  public void setStatementIndex(int statementIndex) {
+    this.statementIndex = statementIndex;
+  }
+
+  /** {@link String#format} pattern of the message, null for findings without location. */
+  public String getMessageFormat() {
+    return messageFormat;
+  }
+
+  public List<Object> getParameters() {
+    return Collections.unmodifiableList(Arrays.asList(parameters));
+  }
+
+  public String getMessage() {
+    if (message == null) {
+      message = String.format(messageFormat, parameters);
+    }
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return ruleId + ": " + getMessage();
+  }
+}
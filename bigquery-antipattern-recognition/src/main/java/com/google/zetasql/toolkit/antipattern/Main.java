@@ -16,17 +16,43 @@
 
 package com.google.zetasql.toolkit.antipattern;
 
+import com.google.zetasql.parser.ASTNodes;
+import com.google.zetasql.toolkit.antipattern.cache.FingerprintStats;
+import com.google.zetasql.toolkit.antipattern.cache.PersistentResultStore;
+import com.google.zetasql.toolkit.antipattern.cache.QueryFingerprinter;
+import com.google.zetasql.toolkit.antipattern.cache.QueryResultCache;
+import com.google.zetasql.toolkit.antipattern.cache.RecordedAntiPattern;
+import com.google.zetasql.toolkit.antipattern.cache.RuleSetVersion;
+import com.google.zetasql.toolkit.antipattern.checkpoint.CheckpointManager;
 import com.google.zetasql.toolkit.antipattern.cmd.AntiPatternCommandParser;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.metadata.CatalogSnapshot;
+import com.google.zetasql.toolkit.antipattern.metadata.CatalogSnapshotExporter;
+import com.google.zetasql.toolkit.antipattern.metadata.InformationSchemaCatalogLoader;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataCache;
 import com.google.zetasql.toolkit.antipattern.output.OutputWriter;
 import com.google.zetasql.toolkit.antipattern.output.OutputWriterFactory;
 import com.google.zetasql.toolkit.antipattern.rewriter.gemini.GeminiRewriter;
+import com.google.zetasql.toolkit.antipattern.rules.RuleRegistry;
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy;
 import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
 import com.google.zetasql.toolkit.antipattern.util.BigQueryHelper;
+import com.google.zetasql.toolkit.antipattern.util.QueryWatchdog;
+import com.google.zetasql.toolkit.antipattern.worker.WorkerPool;
+import com.google.zetasql.toolkit.antipattern.worker.WorkerProtocol;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,30 +60,228 @@ import org.slf4j.LoggerFactory;
 public class Main {
 
   private static final Logger logger = LoggerFactory.getLogger(Main.class);
+  // bounds the queries held in memory per worker thread when running in parallel
+  private static final int MAX_IN_FLIGHT_QUERIES_PER_THREAD = 4;
+  private static final int TOP_FINGERPRINTS_LOGGED = 10;
   private static AntiPatternCommandParser cmdParser;
-  private static int countQueriesRead = 0;
-  private static int countQueriesWithAntipattern = 0;
+  private static CatalogSnapshot catalogSnapshot;
+  // null when disabled
+  private static QueryResultCache resultCache;
+  // null unless --result_store_dir is set
+  private static PersistentResultStore resultStore;
+  // settings of the run that change the results, part of their cache keys
+  private static String resultKeyOptions;
+  // null unless --fingerprint_queries is set
+  private static QueryFingerprinter queryFingerprinter;
+  private static FingerprintStats fingerprintStats;
+  // null unless --checkpoint_file is set
+  private static CheckpointManager checkpointManager;
+  private static final AtomicLong countQueriesRead = new AtomicLong();
+  private static final AtomicLong countQueriesWithAntipattern = new AtomicLong();
+  private static final AtomicLong countQueriesAnalyzed = new AtomicLong();
+  private static final ConcurrentMap<String, Integer> visitorMetricsMap = new ConcurrentHashMap<>();
+  private static RuleRegistry ruleRegistry;
+  private static QueryWatchdog queryWatchdog;
+  private static AnalysisTierPolicy analysisTierPolicy;
+  // null unless --worker_processes is set
+  private static WorkerPool workerPool;
 
-  public static void main(String[] args) throws ParseException, IOException {
+  public static void main(String[] args) throws ParseException, IOException, InterruptedException {
     cmdParser = new AntiPatternCommandParser(args);
-
-    AntiPatternHelper antiPatternHelper =
-        new AntiPatternHelper(cmdParser.getProcessingProject(), cmdParser.useAnalyzer());
+    ruleRegistry = RuleRegistry.load(cmdParser.getRules(), cmdParser.getExcludedRules());
+    logger.info("Looking for anti patterns: " + String.join(", ", ruleRegistry.getRuleNames()));
+    queryWatchdog =
+        new QueryWatchdog(
+            cmdParser.getMaxQueryBytes(),
+            TimeUnit.SECONDS.toMillis(cmdParser.getParseTimeoutSecs()),
+            TimeUnit.SECONDS.toMillis(cmdParser.getAnalysisTimeoutSecs()));
+    analysisTierPolicy = cmdParser.getAnalysisTierPolicy();
 
     Iterator<InputQuery> inputQueriesIterator = cmdParser.getInputQueries();
+    catalogSnapshot = loadCatalogSnapshot();
+    if (cmdParser.getExportCatalogSnapshotPath() != null) {
+      exportCatalogSnapshot(inputQueriesIterator, cmdParser.getExportCatalogSnapshotPath());
+      return;
+    }
+
+    if (cmdParser.getResultCacheSize() > 0) {
+      resultCache = new QueryResultCache(cmdParser.getResultCacheSize());
+    }
+    if (cmdParser.fingerprintQueries()) {
+      queryFingerprinter = new QueryFingerprinter();
+      fingerprintStats = new FingerprintStats();
+    }
+    if (cmdParser.getResultStoreDir() != null) {
+      resultStore =
+          new PersistentResultStore(
+              Paths.get(cmdParser.getResultStoreDir()),
+              RuleSetVersion.compute(),
+              TimeUnit.HOURS.toMillis(cmdParser.getResultStoreTtlHours()));
+    }
+    resultKeyOptions =
+        "useAnalyzer="
+            + cmdParser.useAnalyzer()
+            + ",rewriteSQL="
+            + cmdParser.rewriteSQL()
+            + ",fingerprintQueries="
+            + cmdParser.fingerprintQueries()
+            + ",rules="
+            + String.join(",", ruleRegistry.getRuleNames())
+            + ",analysisRequireParserFindings="
+            + analysisTierPolicy.requiresParserFindings();
+
+    if (cmdParser.getWorkerProcesses() > 0) {
+      workerPool = newWorkerPool(cmdParser.getWorkerProcesses());
+    }
+
     OutputWriter outputWriter = OutputWriterFactory.getOutputWriter(cmdParser);
     Boolean rewriteSQL = cmdParser.rewriteSQL();
     outputWriter.setRewriteSQL(rewriteSQL);
+    if (cmdParser.getCheckpointFile() != null) {
+      checkpointManager =
+          new CheckpointManager(
+              cmdParser.getCheckpointFile(), cmdParser.getCheckpointIntervalSecs(), outputWriter);
+      inputQueriesIterator =
+          checkpointManager.track(
+              inputQueriesIterator,
+              cmdParser.resume() ? CheckpointManager.read(cmdParser.getCheckpointFile()) : null);
+    }
 
-    InputQuery inputQuery;
-    while (inputQueriesIterator.hasNext()) {
-      inputQuery = inputQueriesIterator.next();
-      logger.info("Parsing query: " + inputQuery.getQueryId());
-      executeAntiPatternsInQuery(inputQuery, outputWriter, cmdParser, antiPatternHelper);
-      countQueriesRead += 1;
+    int parallelism = cmdParser.getParallelism();
+    if (parallelism > 1) {
+      logger.info("Processing queries with " + parallelism + " threads");
+      ParallelQueryRunner runner =
+          new ParallelQueryRunner(
+              parallelism,
+              parallelism * MAX_IN_FLIGHT_QUERIES_PER_THREAD,
+              cmdParser.preserveOrder());
+      long queriesRead =
+          runner.run(
+              inputQueriesIterator,
+              () -> {
+                // helpers keep per-query analyzer state, one per worker thread
+                AntiPatternHelper antiPatternHelper = newAntiPatternHelper();
+                return inputQuery -> findAntiPatternsInQuery(inputQuery, cmdParser, antiPatternHelper);
+              },
+              (inputQuery, visitorsThatFoundAntiPatterns) -> {
+                try {
+                  writeResults(inputQuery, visitorsThatFoundAntiPatterns, outputWriter, cmdParser);
+                } finally {
+                  onQueryDone(inputQuery);
+                }
+              });
+      countQueriesRead.set(queriesRead);
+    } else {
+      AntiPatternHelper antiPatternHelper = newAntiPatternHelper();
+      InputQuery inputQuery;
+      while (inputQueriesIterator.hasNext()) {
+        inputQuery = inputQueriesIterator.next();
+        logger.info("Parsing query: " + inputQuery.getQueryId());
+        executeAntiPatternsInQuery(inputQuery, outputWriter, cmdParser, antiPatternHelper);
+        onQueryDone(inputQuery);
+        countQueriesRead.incrementAndGet();
+      }
+    }
+    if (workerPool != null) {
+      workerPool.close();
     }
     logResultStats();
+    if (fingerprintStats != null && cmdParser.getFingerprintSummaryFile() != null) {
+      fingerprintStats.writeCsv(cmdParser.getFingerprintSummaryFile());
+    }
+    if (resultStore != null) {
+      resultStore.close();
+    }
     outputWriter.close();
+    if (checkpointManager != null) {
+      checkpointManager.complete();
+    }
+    // only advanced once every query read was processed and written
+    if (cmdParser.getInfoSchemaWatermark() != null) {
+      cmdParser.getInfoSchemaWatermark().write(cmdParser.getInfoSchemaWatermarkFile());
+    }
+  }
+
+  private static void onQueryDone(InputQuery inputQuery) {
+    if (inputQuery.getAnalysisTier() == AnalysisTierPolicy.Tier.ANALYZER) {
+      countQueriesAnalyzed.incrementAndGet();
+    }
+    if (checkpointManager != null) {
+      checkpointManager.onQueryDone(inputQuery);
+    }
+  }
+
+  private static AntiPatternHelper newAntiPatternHelper() {
+    return new AntiPatternHelper(
+        cmdParser.getProcessingProject(),
+        cmdParser.useAnalyzer(),
+        visitorMetricsMap,
+        catalogSnapshot,
+        ruleRegistry,
+        queryWatchdog);
+  }
+
+  private static WorkerPool newWorkerPool(int size) throws IOException {
+    WorkerProtocol.Config config = new WorkerProtocol.Config();
+    config.setProcessingProject(cmdParser.getProcessingProject());
+    config.setUseAnalyzer(cmdParser.useAnalyzer());
+    config.setRules(cmdParser.getRules());
+    config.setExcludedRules(cmdParser.getExcludedRules());
+    config.setParseTimeoutMillis(queryWatchdog.getParseTimeoutMillis());
+    config.setAnalysisTimeoutMillis(queryWatchdog.getAnalysisTimeoutMillis());
+    config.setRequireParserFindings(analysisTierPolicy.requiresParserFindings());
+    if (catalogSnapshot != null && cmdParser.getInfoSchemaCatalogScopes() == null) {
+      config.setCatalogSnapshotPath(cmdParser.getCatalogSnapshotPath());
+    } else if (catalogSnapshot != null) {
+      // workers read the table metadata loaded by this process instead of querying it again
+      Path snapshotPath = Files.createTempFile("catalog_snapshot", ".json.gz");
+      snapshotPath.toFile().deleteOnExit();
+      catalogSnapshot.write(snapshotPath.toString());
+      config.setCatalogSnapshotPath(snapshotPath.toString());
+    }
+    if (cmdParser.getParallelism() < size) {
+      logger.warn(
+          "Only "
+              + cmdParser.getParallelism()
+              + " of "
+              + size
+              + " worker processes are used at a time, set --parallelism to use them all");
+    }
+    logger.info("Checking queries in " + size + " worker processes");
+    return new WorkerPool(
+        size, cmdParser.getWorkerMaxHeapMb(), config, queryWatchdog, visitorMetricsMap);
+  }
+
+  // Table metadata read ahead of the analysis from a snapshot file and/or INFORMATION_SCHEMA,
+  // null when the analyzer fetches it from the BigQuery API as needed
+  private static CatalogSnapshot loadCatalogSnapshot() throws IOException, InterruptedException {
+    CatalogSnapshot snapshot = null;
+    if (cmdParser.getCatalogSnapshotPath() != null) {
+      snapshot = CatalogSnapshot.read(cmdParser.getCatalogSnapshotPath());
+    }
+    if (cmdParser.getInfoSchemaCatalogScopes() != null) {
+      if (snapshot == null) {
+        snapshot = new CatalogSnapshot();
+      }
+      BigQueryHelper bigQueryHelper =
+          new BigQueryHelper(
+              cmdParser.getProcessingProject(), cmdParser.getServiceAccountKeyfilePath());
+      new InformationSchemaCatalogLoader(bigQueryHelper, cmdParser.getInfoSchemaRegion())
+          .load(snapshot, cmdParser.getInfoSchemaCatalogScopes());
+    }
+    return snapshot;
+  }
+
+  private static void exportCatalogSnapshot(Iterator<InputQuery> inputQueriesIterator, String path)
+      throws IOException {
+    if (catalogSnapshot != null) {
+      logger.info("Exporting loaded table metadata to: " + path);
+      catalogSnapshot.write(path);
+      return;
+    }
+    logger.info("Exporting metadata of the tables used by the input queries to: " + path);
+    CatalogSnapshotExporter exporter = new CatalogSnapshotExporter(BigQueryService.buildDefault());
+    exporter.export(inputQueriesIterator, cmdParser.getProcessingProject()).write(path);
   }
 
   private static void executeAntiPatternsInQuery(
@@ -67,43 +291,243 @@ public class Main {
       AntiPatternHelper antiPatternHelper) {
 
     try {
-      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns = new ArrayList<>();
-      // parser visitors
-      antiPatternHelper.checkForAntiPatternsInQueryWithParserVisitors(
-          inputQuery, visitorsThatFoundAntiPatterns);
-
-      // analyzer visitor
-      if (antiPatternHelper.getUseAnalizer()) {
-        antiPatternHelper.checkForAntiPatternsInQueryWithAnalyzerVisitors(
-            inputQuery, visitorsThatFoundAntiPatterns);
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns =
+          findAntiPatternsInQuery(inputQuery, cmdParser, antiPatternHelper);
+      writeResults(inputQuery, visitorsThatFoundAntiPatterns, outputWriter, cmdParser);
+    } catch (Exception e) {
+      logger.error("Error processing query with id: " + inputQuery.getQueryId());
+      logger.error(e.getMessage(), e);
+    }
+  }
+
+  private static List<AntiPatternVisitor> findAntiPatternsInQuery(
+      InputQuery inputQuery,
+      AntiPatternCommandParser cmdParser,
+      AntiPatternHelper antiPatternHelper)
+      throws IOException {
+    // checked before fingerprinting, which parses the query as well
+    try {
+      queryWatchdog.checkQuerySize(inputQuery);
+    } catch (QuerySkippedException e) {
+      return skippedQuery(inputQuery, new ArrayList<>(), e);
+    }
+    // queries below the thresholds of the tier policy are only checked by the parser rules
+    boolean analyze = cmdParser.useAnalyzer() && analysisTierPolicy.isEligible(inputQuery);
+    // parsed once for the fingerprint and the parser rules
+    ASTNodes.ASTScript parsedQuery;
+    try {
+      parsedQuery = parseForFingerprint(inputQuery, antiPatternHelper);
+    } catch (QuerySkippedException e) {
+      return skippedQuery(inputQuery, new ArrayList<>(), e);
+    }
+    QueryFingerprinter.Fingerprint fingerprint = fingerprintQuery(inputQuery, parsedQuery);
+    // duplicates of a query analyzed before, in this run or a previous one, get its results with
+    // their own job id
+    String cacheKey = null;
+    if (resultCache != null || resultStore != null) {
+      cacheKey =
+          QueryResultCache.keyFor(
+              fingerprint == null ? inputQuery.getQuery() : fingerprint.getValue(),
+              inputQuery.getProjectId(),
+              analyze,
+              resultKeyOptions);
+      QueryResultCache.CachedResult cachedResult = getCachedResult(cacheKey);
+      if (cachedResult != null) {
+        logger.info("Reusing results of a duplicate query for query: " + inputQuery.getQueryId());
+        // when parser findings are required, the analyzed queries are those with findings
+        inputQuery.setAnalysisTier(
+            analysisTierPolicy.tierFor(analyze, !cachedResult.getFindings().isEmpty()));
+        cachedResult
+            .getFindings()
+            .forEach(finding -> visitorMetricsMap.merge(finding.getName(), 1, Integer::sum));
+        // the findings of a query with the same fingerprint are moved to the literals of this one
+        List<AntiPatternVisitor> visitorsThatFoundAntiPatterns =
+            new ArrayList<>(cachedResult.getFindings(inputQuery, fingerprint));
+        if (fingerprint == null) {
+          inputQuery.setOptimizedQuery(cachedResult.getOptimizedQuery());
+        } else if (cmdParser.rewriteSQL()) {
+          // the optimized SQL has the literals of the query it was generated for
+          rewriteQuery(inputQuery, visitorsThatFoundAntiPatterns, cmdParser, antiPatternHelper);
+        }
+        return visitorsThatFoundAntiPatterns;
       }
+    }
 
-      // rewrite
-      if (cmdParser.rewriteSQL()) {
-        GeminiRewriter.rewriteSQL(
-            inputQuery,
-            visitorsThatFoundAntiPatterns,
-            antiPatternHelper,
-            cmdParser.getLlmRetriesSQL(),
-            cmdParser.getLlmStrictValidation());
+    List<AntiPatternVisitor> visitorsThatFoundAntiPatterns = new ArrayList<>();
+    try {
+      if (workerPool != null) {
+        // parser and analyzer visitors, in a worker process which parses the query again
+        workerPool.check(inputQuery, analyze, visitorsThatFoundAntiPatterns);
+      } else {
+        // parser visitors
+        antiPatternHelper.checkForAntiPatternsInQueryWithParserVisitors(
+            inputQuery, parsedQuery, visitorsThatFoundAntiPatterns);
+
+        // analyzer visitor
+        inputQuery.setAnalysisTier(
+            analysisTierPolicy.tierFor(analyze, !visitorsThatFoundAntiPatterns.isEmpty()));
+        if (inputQuery.getAnalysisTier() == AnalysisTierPolicy.Tier.ANALYZER) {
+          antiPatternHelper.checkForAntiPatternsInQueryWithAnalyzerVisitors(
+              inputQuery, visitorsThatFoundAntiPatterns);
+        }
       }
+    } catch (QuerySkippedException e) {
+      // neither rewritten nor cached, a later run with other limits checks it again
+      return skippedQuery(inputQuery, visitorsThatFoundAntiPatterns, e);
+    }
+
+    // rewrite
+    if (cmdParser.rewriteSQL()) {
+      rewriteQuery(inputQuery, visitorsThatFoundAntiPatterns, cmdParser, antiPatternHelper);
+    }
+
+    if (cacheKey != null) {
+      List<AntiPatternVisitor> recordedAntiPatterns =
+          RecordedAntiPattern.recordAll(visitorsThatFoundAntiPatterns);
+      putCachedResult(
+          cacheKey,
+          new QueryResultCache.CachedResult(
+              recordedAntiPatterns, inputQuery.getOptimizedQuery(), fingerprint),
+          analyze);
+      return new ArrayList<>(recordedAntiPatterns);
+    }
+    return visitorsThatFoundAntiPatterns;
+  }
 
-      // write output
-      if (!visitorsThatFoundAntiPatterns.isEmpty()) {
-        countQueriesWithAntipattern += 1;
-        outputWriter.writeRecForQuery(inputQuery, visitorsThatFoundAntiPatterns, cmdParser);
+  // Anti patterns found before the query was skipped are kept, followed by the reason
+  private static List<AntiPatternVisitor> skippedQuery(
+      InputQuery inputQuery,
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns,
+      QuerySkippedException e) {
+    logger.warn("Skipped query with id: " + inputQuery.getQueryId() + ". " + e.getMessage());
+    visitorsThatFoundAntiPatterns.add(
+        new RecordedAntiPattern(QueryWatchdog.SKIPPED_QUERY_NAME, e.getMessage()));
+    return visitorsThatFoundAntiPatterns;
+  }
+
+  private static QueryResultCache.CachedResult getCachedResult(String cacheKey)
+      throws IOException {
+    QueryResultCache.CachedResult cachedResult =
+        resultCache == null ? null : resultCache.get(cacheKey);
+    if (cachedResult == null && resultStore != null) {
+      cachedResult = resultStore.get(cacheKey);
+      if (cachedResult != null && resultCache != null) {
+        resultCache.put(cacheKey, cachedResult);
       }
+    }
+    return cachedResult;
+  }
+
+  // results of the analyzer rules depend on the table metadata and expire in the result store
+  private static void putCachedResult(
+      String cacheKey, QueryResultCache.CachedResult result, boolean analyzed)
+      throws IOException {
+    if (resultCache != null) {
+      resultCache.put(cacheKey, result);
+    }
+    if (resultStore != null) {
+      resultStore.put(cacheKey, result, analyzed);
+    }
+  }
+
+  private static void rewriteQuery(
+      InputQuery inputQuery,
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns,
+      AntiPatternCommandParser cmdParser,
+      AntiPatternHelper antiPatternHelper)
+      throws IOException {
+    GeminiRewriter.rewriteSQL(
+        inputQuery,
+        visitorsThatFoundAntiPatterns,
+        antiPatternHelper,
+        cmdParser.getLlmRetriesSQL(),
+        cmdParser.getLlmStrictValidation());
+  }
 
+  // AST of the query when fingerprinting is on, null otherwise or when the query does not parse
+  // (the parser rules then report the syntax error). Parsed within the parse time limit.
+  private static ASTNodes.ASTScript parseForFingerprint(
+      InputQuery inputQuery, AntiPatternHelper antiPatternHelper) {
+    if (queryFingerprinter == null) {
+      return null;
+    }
+    try {
+      return queryWatchdog.parse(inputQuery, () -> antiPatternHelper.parseQuery(inputQuery));
+    } catch (QuerySkippedException e) {
+      throw e;
     } catch (Exception e) {
-      logger.error("Error processing query with id: " + inputQuery.getQueryId());
-      logger.error(e.getMessage(), e);
+      logger.info("Could not fingerprint query with id: " + inputQuery.getQueryId());
+      return null;
+    }
+  }
+
+  // Fingerprint ignoring literal values, null when fingerprinting is off or the query does not
+  // parse (such queries are only matched with exact duplicates)
+  private static QueryFingerprinter.Fingerprint fingerprintQuery(
+      InputQuery inputQuery, ASTNodes.ASTScript parsedQuery) {
+    if (parsedQuery == null) {
+      return null;
+    }
+    QueryFingerprinter.Fingerprint fingerprint =
+        queryFingerprinter.fingerprint(inputQuery.getQuery(), parsedQuery);
+    fingerprintStats.record(fingerprint.getValue(), inputQuery);
+    return fingerprint;
+  }
+
+  private static void writeResults(
+      InputQuery inputQuery,
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns,
+      OutputWriter outputWriter,
+      AntiPatternCommandParser cmdParser)
+      throws IOException {
+    if (visitorsThatFoundAntiPatterns.stream()
+        .anyMatch(visitor -> !visitor.getName().equals(QueryWatchdog.SKIPPED_QUERY_NAME))) {
+      countQueriesWithAntipattern.incrementAndGet();
+    }
+    // with tiered analysis every query is written, so the output shows which ones were analyzed
+    if (!visitorsThatFoundAntiPatterns.isEmpty() || cmdParser.recordAnalysisTier()) {
+      outputWriter.writeRecForQuery(inputQuery, visitorsThatFoundAntiPatterns, cmdParser);
     }
   }
 
   private static void logResultStats() {
     StringBuilder statsString = new StringBuilder();
-    statsString.append("\n\n* Queries read: " + countQueriesRead);
-    statsString.append("\n* Queries with anti patterns: " + countQueriesWithAntipattern);
+    statsString.append("\n\n* Queries read: " + countQueriesRead.get());
+    statsString.append("\n* Queries with anti patterns: " + countQueriesWithAntipattern.get());
+    if (cmdParser.recordAnalysisTier()) {
+      statsString.append("\n* Queries through advanced analysis: " + countQueriesAnalyzed.get());
+    }
+    visitorMetricsMap.forEach(
+        (name, count) -> statsString.append("\n  * " + name + ": " + count));
+    if (queryWatchdog.isEnabled() || workerPool != null) {
+      statsString.append("\n* " + queryWatchdog.getStats());
+    }
+    if (workerPool != null) {
+      statsString.append("\n* " + workerPool.getStats());
+    }
+    if (cmdParser.useAnalyzer() && catalogSnapshot == null) {
+      statsString.append("\n* " + TableMetadataCache.getSharedInstance().getStats());
+    }
+    if (resultCache != null) {
+      statsString.append("\n* " + resultCache.getStats());
+    }
+    if (resultStore != null) {
+      statsString.append("\n* " + resultStore.getStats());
+    }
+    if (fingerprintStats != null) {
+      statsString.append("\n* Distinct query fingerprints: " + fingerprintStats.size());
+      fingerprintStats.getGroups().stream()
+          .limit(TOP_FINGERPRINTS_LOGGED)
+          .forEach(
+              group ->
+                  statsString.append(
+                      String.format(
+                          "\n  * %s (e.g. %s): %d queries, %.2f slot hours",
+                          group.getFingerprint(),
+                          group.getFirstQueryId(),
+                          group.getOccurrences(),
+                          group.getTotalSlotHours())));
+    }
     logger.info(statsString.toString());
   }
 }
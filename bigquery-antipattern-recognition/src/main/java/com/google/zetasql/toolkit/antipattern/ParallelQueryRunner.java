@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded producer/consumer pipeline used by {@link Main} when running with more than one thread.
+ *
+ * <p>A producer thread reads the input iterator, {@code parallelism} worker threads look for
+ * anti-patterns and the calling thread is the only one handing results to the {@link
+ * ResultWriter}, so output writers do not need to be thread safe. At most {@code maxInFlight}
+ * queries are held in memory at any time (queued, being processed or waiting to be written).
+ */
+public class ParallelQueryRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(ParallelQueryRunner.class);
+
+  /** Finds the anti-patterns of a query. Every worker thread gets its own instance. */
+  public interface QueryProcessor {
+    List<AntiPatternVisitor> process(InputQuery inputQuery) throws Exception;
+  }
+
+  /** Consumes the results, always called from the thread running {@link #run}. */
+  public interface ResultWriter {
+    void write(InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns)
+        throws Exception;
+  }
+
+  private static final class Task {
+    private static final Task END = new Task(-1, null);
+    private final long seq;
+    private final InputQuery inputQuery;
+
+    private Task(long seq, InputQuery inputQuery) {
+      this.seq = seq;
+      this.inputQuery = inputQuery;
+    }
+  }
+
+  private static final class Result {
+    private static final Result WORKER_DONE = new Result(-1, null, null);
+    private final long seq;
+    private final InputQuery inputQuery;
+    private final List<AntiPatternVisitor> visitorsThatFoundAntiPatterns;
+
+    private Result(
+        long seq, InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
+      this.seq = seq;
+      this.inputQuery = inputQuery;
+      this.visitorsThatFoundAntiPatterns = visitorsThatFoundAntiPatterns;
+    }
+  }
+
+  private final int parallelism;
+  private final int maxInFlight;
+  private final boolean preserveOrder;
+
+  public ParallelQueryRunner(int parallelism, int maxInFlight, boolean preserveOrder) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+    this.maxInFlight = Math.max(maxInFlight, parallelism);
+    this.preserveOrder = preserveOrder;
+  }
+
+  /**
+   * Processes every query of the iterator and returns the number of queries read. Queries whose
+   * processing fails, with an exception or an error, are logged and written with no anti-patterns
+   * so ordering is not blocked. When reading the input fails, the queries read before are written
+   * and the failure is rethrown, so the run is not taken for complete.
+   */
+  public long run(
+      Iterator<InputQuery> inputQueries,
+      Supplier<QueryProcessor> processorFactory,
+      ResultWriter resultWriter)
+      throws InterruptedException {
+    BlockingQueue<Task> taskQueue = new LinkedBlockingQueue<>();
+    BlockingQueue<Result> resultQueue = new LinkedBlockingQueue<>();
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    AtomicReference<RuntimeException> readFailure = new AtomicReference<>();
+
+    Thread producer =
+        new Thread(
+            () -> produce(inputQueries, taskQueue, inFlight, readFailure), "antipattern-reader");
+    producer.setDaemon(true);
+
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < parallelism; i++) {
+      Thread worker =
+          new Thread(
+              () -> consume(processorFactory, taskQueue, resultQueue), "antipattern-worker-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+    }
+
+    producer.start();
+    workers.forEach(Thread::start);
+
+    long written = drain(resultQueue, inFlight, resultWriter);
+    producer.join();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    if (readFailure.get() != null) {
+      throw readFailure.get();
+    }
+    return written;
+  }
+
+  private void produce(
+      Iterator<InputQuery> inputQueries,
+      BlockingQueue<Task> taskQueue,
+      Semaphore inFlight,
+      AtomicReference<RuntimeException> readFailure) {
+    long seq = 0;
+    try {
+      while (inputQueries.hasNext()) {
+        inFlight.acquire();
+        taskQueue.put(new Task(seq++, inputQueries.next()));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      logger.error("Error reading input queries, stopping after " + seq + " queries");
+      readFailure.set(e);
+    } finally {
+      for (int i = 0; i < parallelism; i++) {
+        taskQueue.add(Task.END);
+      }
+    }
+  }
+
+  private void consume(
+      Supplier<QueryProcessor> processorFactory,
+      BlockingQueue<Task> taskQueue,
+      BlockingQueue<Result> resultQueue) {
+    QueryProcessor processor = null;
+    try {
+      processor = processorFactory.get();
+    } catch (Throwable e) {
+      // keep draining the queue so the other threads do not wait on this worker
+      logger.error("Error creating query processor for " + Thread.currentThread().getName());
+      logger.error(e.getMessage(), e);
+    }
+    try {
+      while (true) {
+        Task task = taskQueue.take();
+        if (task == Task.END) {
+          break;
+        }
+        List<AntiPatternVisitor> visitorsThatFoundAntiPatterns;
+        try {
+          if (processor == null) {
+            throw new IllegalStateException("No query processor available");
+          }
+          visitorsThatFoundAntiPatterns = processor.process(task.inputQuery);
+        } catch (Throwable e) {
+          // errors too (e.g. StackOverflowError on deeply nested queries): every task must get a
+          // result, or its in flight permit is never released and the reader blocks
+          logger.error("Error processing query with id: " + task.inputQuery.getQueryId());
+          logger.error(e.getMessage(), e);
+          visitorsThatFoundAntiPatterns = new ArrayList<>();
+        }
+        resultQueue.add(new Result(task.seq, task.inputQuery, visitorsThatFoundAntiPatterns));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      resultQueue.add(Result.WORKER_DONE);
+    }
+  }
+
+  private long drain(BlockingQueue<Result> resultQueue, Semaphore inFlight, ResultWriter writer)
+      throws InterruptedException {
+    Map<Long, Result> pending = new HashMap<>();
+    long nextSeq = 0;
+    long written = 0;
+    int workersDone = 0;
+    while (workersDone < parallelism) {
+      Result result = resultQueue.take();
+      if (result == Result.WORKER_DONE) {
+        workersDone++;
+        continue;
+      }
+      if (!preserveOrder) {
+        write(writer, result, inFlight);
+        written++;
+        continue;
+      }
+      pending.put(result.seq, result);
+      while (pending.containsKey(nextSeq)) {
+        write(writer, pending.remove(nextSeq++), inFlight);
+        written++;
+      }
+    }
+    if (!pending.isEmpty()) {
+      // only reached when a worker died without reporting some of its queries
+      logger.error(pending.size() + " queries could not be written in input order");
+      for (Result result : pending.values()) {
+        write(writer, result, inFlight);
+        written++;
+      }
+    }
+    return written;
+  }
+
+  private void write(ResultWriter writer, Result result, Semaphore inFlight) {
+    try {
+      writer.write(result.inputQuery, result.visitorsThatFoundAntiPatterns);
+    } catch (Exception e) {
+      logger.error("Error writing results for query with id: " + result.inputQuery.getQueryId());
+      logger.error(e.getMessage(), e);
+    } finally {
+      inFlight.release();
+    }
+  }
+}
@@ -1,11 +1,11 @@
 package com.google.zetasql.toolkit.antipattern.analyzer.visitors; // Adjust package if needed
 
-import com.google.cloud.bigquery.StandardTableDefinition;
-import com.google.cloud.bigquery.Table; // Using google-cloud-bigquery Table
-import com.google.cloud.bigquery.TableDefinition;
 import com.google.zetasql.resolvedast.ResolvedNodes;
 import com.google.zetasql.resolvedast.ResolvedNodes.ResolvedTableScan;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.metadata.BigQueryTableMetadataProvider;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadata;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataProvider;
 import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
 
 import java.util.HashSet;
@@ -22,12 +22,16 @@ public class PartitionCheckVisitor extends ResolvedNodes.Visitor implements Anti
     private static final String RECOMMENDATION_MESSAGE_FORMAT =
             "Table: %s is not partitioned. Consider partitioning large tables for performance and cost optimization.";
 
-    private final BigQueryService service;
+    private final TableMetadataProvider metadataProvider;
     // Use a Set to store names of tables found to be unpartitioned (avoids duplicates)
     private final Set<String> unpartitionedTablesFound = new HashSet<>();
 
     public PartitionCheckVisitor(BigQueryService service) {
-        this.service = service;
+        this(new BigQueryTableMetadataProvider(service));
+    }
+
+    public PartitionCheckVisitor(TableMetadataProvider metadataProvider) {
+        this.metadataProvider = metadataProvider;
     }
 
     @Override
@@ -61,30 +65,16 @@ public class PartitionCheckVisitor extends ResolvedNodes.Visitor implements Anti
         String tableFullNameFromAST = node.getTable().getFullName();
 
         try {
-            // Fetch table metadata using the service. Assumes service handles null projectId.
-            // Assumes service returns Result<com.google.cloud.bigquery.Table>
-
-            Table bigQueryTable = service.fetchTable(null, tableFullNameFromAST).get(); // Uses .get() like reference visitor
-
-            if (bigQueryTable != null) {
-              TableDefinition definition = bigQueryTable.getDefinition();
-              // Use the fully qualified name returned by the API for reporting
-              String actualTableName = String.format("%s.%s.%s",
-                                                  bigQueryTable.getTableId().getProject(),
-                                                  bigQueryTable.getTableId().getDataset(),
-                                                  bigQueryTable.getTableId().getTable());
+            // Fetch table metadata, "not found" and API errors are thrown and ignored below
+            TableMetadata table = metadataProvider.fetchTable(null, tableFullNameFromAST);
 
-              // Check partitioning only for Standard Tables
-              if (definition instanceof StandardTableDefinition) {
-                  StandardTableDefinition stdDef = (StandardTableDefinition) definition;
-                  boolean isPartitioned = stdDef.getTimePartitioning() != null ||
-                                          stdDef.getRangePartitioning() != null;
+            // Use the fully qualified name returned by the API for reporting
+            String actualTableName = table.getFullName();
 
-                  if (!isPartitioned) {
-                      // Store the fully qualified name if table is not partitioned
-                      unpartitionedTablesFound.add(actualTableName);
-                  }
-              }
+            // Check partitioning only for Standard Tables
+            if (table.isStandardTable() && !table.isPartitioned()) {
+                // Store the fully qualified name if table is not partitioned
+                unpartitionedTablesFound.add(actualTableName);
             }
 
             // Ignore failures (table not found, API errors) silently for conciseness
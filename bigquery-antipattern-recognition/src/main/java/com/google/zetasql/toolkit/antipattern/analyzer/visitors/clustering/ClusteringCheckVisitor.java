@@ -1,13 +1,11 @@
 package com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering; // Adjust package if needed
 
-import com.google.cloud.bigquery.Clustering;
-import com.google.cloud.bigquery.Field;
-import com.google.cloud.bigquery.StandardTableDefinition;
-import com.google.cloud.bigquery.Table; // Using google-cloud-bigquery Table
-import com.google.cloud.bigquery.TableDefinition;
 import com.google.zetasql.resolvedast.ResolvedNodes;
 import com.google.zetasql.resolvedast.ResolvedNodes.ResolvedTableScan;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.metadata.BigQueryTableMetadataProvider;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadata;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataProvider;
 import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
 
 import java.util.ArrayList;
@@ -28,14 +26,18 @@ public class ClusteringCheckVisitor extends ResolvedNodes.Visitor implements Ant
     private static final String RECOMMENDATION_MESSAGE_FORMAT =
             "Table: %s is not clustered. Consider clustering large tables for performance and cost optimization.";
 
-    private final BigQueryService service;
+    private final TableMetadataProvider metadataProvider;
     // Use a Set to store names of tables found to be unclustered (avoids duplicates)
     private boolean containsUnclusteredTables = false;
     private final Set<String> unclusteredTablesFound = new HashSet<>();
     private HashMap<String, List<String>> clusteringFields = new HashMap<>();
 
     public ClusteringCheckVisitor(BigQueryService service) {
-        this.service = service;
+        this(new BigQueryTableMetadataProvider(service));
+    }
+
+    public ClusteringCheckVisitor(TableMetadataProvider metadataProvider) {
+        this.metadataProvider = metadataProvider;
     }
 
     public HashMap<String, List<String>> getClustering() {
@@ -77,38 +79,23 @@ public class ClusteringCheckVisitor extends ResolvedNodes.Visitor implements Ant
         String tableFullNameFromAST = node.getTable().getFullName();
 
         try {
-            // Fetch table metadata using the service. Assumes service handles null projectId.
-            // Assumes service returns Result<com.google.cloud.bigquery.Table>
-
-            Table bigQueryTable = service.fetchTable(null, tableFullNameFromAST).get(); // Uses .get() like reference visitor
-
-            if (bigQueryTable != null) {
-              TableDefinition definition = bigQueryTable.getDefinition();
-              // Use the fully qualified name returned by the API for reporting
-              String actualTableName = String.format("%s.%s.%s",
-                                                  bigQueryTable.getTableId().getProject(),
-                                                  bigQueryTable.getTableId().getDataset(),
-                                                  bigQueryTable.getTableId().getTable());
-
-              // Check clustering only for Standard Tables
-              if (definition instanceof StandardTableDefinition) {
-                StandardTableDefinition stdDef = (StandardTableDefinition) definition;
-                // Check if clustering is defined by seeing if the Clustering object exists
-                boolean isClustered = stdDef.getClustering() != null;
-
-                if (!isClustered) {
+            // Fetch table metadata, "not found" and API errors are thrown and ignored below
+            TableMetadata table = metadataProvider.fetchTable(null, tableFullNameFromAST);
+
+            // Use the fully qualified name returned by the API for reporting
+            String actualTableName = table.getFullName();
+
+            // Check clustering only for Standard Tables
+            if (table.isStandardTable()) {
+                if (!table.isClustered()) {
                     // Store the fully qualified name if table is not clustered
-                    // Assumes you rename unclusteredTablesFound -> unclusteredTablesFound
                     unclusteredTablesFound.add(actualTableName);
                     containsUnclusteredTables = true;
                 }
                 else {
-                    Clustering clustering = stdDef.getClustering();
-                    //System.out.println(clustering.getFields());
-                    clusteringFields.put(actualTableName, clustering.getFields());
+                    clusteringFields.put(actualTableName, table.getClusteringFields());
                 }
             }
-            }
 
             // Ignore failures (table not found, API errors) silently for conciseness
         } catch (Exception e) {
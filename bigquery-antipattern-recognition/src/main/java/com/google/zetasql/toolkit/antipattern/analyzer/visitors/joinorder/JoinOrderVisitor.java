@@ -21,23 +21,31 @@ import com.google.zetasql.resolvedast.ResolvedNodes;
 import com.google.zetasql.resolvedast.ResolvedNodes.ResolvedJoinScan;
 import com.google.zetasql.resolvedast.ResolvedNodes.ResolvedProjectScan;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.metadata.BigQueryTableMetadataProvider;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataProvider;
 import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class JoinOrderVisitor extends ResolvedNodes.Visitor implements AntiPatternVisitor {
 
   public final static String NAME = "JoinOrder";
   private final String RECOMMENDATION_MESSAGE = "JOIN on tables: [%s] might perform better if tables where joined in the following order: [%s]";
-  private BigQueryService service;
+  private TableMetadataProvider metadataProvider;
   private String result = "";
 
   public JoinOrderVisitor(BigQueryService service) {
-    this.service = service;
+    this(new BigQueryTableMetadataProvider(service));
+  }
+
+  public JoinOrderVisitor(TableMetadataProvider metadataProvider) {
+    this.metadataProvider = metadataProvider;
   }
 
   public String getResult() {
@@ -76,13 +84,16 @@ public class JoinOrderVisitor extends ResolvedNodes.Visitor implements AntiPatte
 
 
   private void sortTablesByNumRows(List<TableReference> tablesInJoin) {
-    Comparator<TableReference> comparator = (table1, table2) -> {
-      BigInteger value1 = this.service.fetchTable(table1.getProjectId(),
-          table1.getDatasetId() + "." + table1.getTableId()).get().getNumRows();
-      BigInteger value2 = this.service.fetchTable(table2.getProjectId(),
-          table2.getDatasetId() + "." + table2.getTableId()).get().getNumRows();
-      return value1.compareTo(value2);
-    };
+    // fetch every table once up front, the comparator is called O(n log n) times
+    Map<TableReference, BigInteger> numRows = new HashMap<>();
+    for (TableReference table : tablesInJoin) {
+      numRows.computeIfAbsent(table, t -> {
+        BigInteger value = this.metadataProvider.fetchTable(t.getProjectId(),
+            t.getDatasetId() + "." + t.getTableId()).getNumRows();
+        return value == null ? BigInteger.ZERO : value;
+      });
+    }
+    Comparator<TableReference> comparator = Comparator.comparing(numRows::get);
     Collections.sort(tablesInJoin, comparator);
     Collections.reverse(tablesInJoin);
   }
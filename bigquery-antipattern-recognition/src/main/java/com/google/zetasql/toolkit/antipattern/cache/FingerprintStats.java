@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.opencsv.CSVWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/** Occurrences and total slot hours of each query fingerprint seen in a run. */
+public class FingerprintStats {
+
+  private static final String[] CSV_HEADER =
+      {"fingerprint", "occurrences", "total_slot_hours", "first_query_id"};
+
+  /** Queries sharing a fingerprint. */
+  public static class FingerprintGroup {
+    private final String fingerprint;
+    private final String firstQueryId;
+    private final AtomicLong occurrences = new AtomicLong();
+    private final DoubleAdder totalSlotHours = new DoubleAdder();
+
+    private FingerprintGroup(String fingerprint, String firstQueryId) {
+      this.fingerprint = fingerprint;
+      this.firstQueryId = firstQueryId;
+    }
+
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    public String getFirstQueryId() {
+      return firstQueryId;
+    }
+
+    public long getOccurrences() {
+      return occurrences.get();
+    }
+
+    public double getTotalSlotHours() {
+      return totalSlotHours.sum();
+    }
+  }
+
+  private final ConcurrentMap<String, FingerprintGroup> groups = new ConcurrentHashMap<>();
+
+  public void record(String fingerprint, InputQuery inputQuery) {
+    FingerprintGroup group =
+        groups.computeIfAbsent(
+            fingerprint, key -> new FingerprintGroup(key, inputQuery.getQueryId()));
+    group.occurrences.incrementAndGet();
+    // slot hours are negative when unknown, e.g. queries read from files
+    if (inputQuery.getSlotHours() > 0) {
+      group.totalSlotHours.add(inputQuery.getSlotHours());
+    }
+  }
+
+  public int size() {
+    return groups.size();
+  }
+
+  /** Groups sorted by total slot hours, then by occurrences, largest first. */
+  public List<FingerprintGroup> getGroups() {
+    List<FingerprintGroup> sortedGroups = new ArrayList<>(groups.values());
+    sortedGroups.sort(
+        Comparator.comparingDouble(FingerprintGroup::getTotalSlotHours)
+            .thenComparingLong(FingerprintGroup::getOccurrences)
+            .reversed());
+    return sortedGroups;
+  }
+
+  public void writeCsv(String path) throws IOException {
+    try (CSVWriter csvWriter = new CSVWriter(new FileWriter(path))) {
+      csvWriter.writeNext(CSV_HEADER);
+      for (FingerprintGroup group : getGroups()) {
+        csvWriter.writeNext(
+            new String[] {
+              group.getFingerprint(),
+              String.valueOf(group.getOccurrences()),
+              String.valueOf(group.getTotalSlotHours()),
+              group.getFirstQueryId()
+            });
+      }
+    }
+  }
+}
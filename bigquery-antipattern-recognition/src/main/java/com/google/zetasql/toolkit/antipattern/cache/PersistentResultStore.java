@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Results of previous runs stored on disk, so queries that did not change since the last run are
+ * not analyzed again.
+ *
+ * <p>The store is a directory with:
+ *
+ * <ul>
+ *   <li>an append-only log of results, each record holds its key, findings and optimized SQL
+ *   <li>a memory-mapped hash index from key to the offset of its latest record in the log. The
+ *       index is rebuilt from the log when it is missing or unreadable.
+ *   <li>the rule set version the results were computed with. Results of another version are
+ *       deleted when the store is opened.
+ * </ul>
+ *
+ * <p>Results of the parser rules only depend on the query and the rules. Results of the analyzer
+ * rules also depend on the table metadata, which the key does not cover: they expire {@code
+ * analyzedResultTtlMillis} after they were stored, and are not stored at all with a TTL of 0.
+ *
+ * <p>Each anti pattern is stored as its name and rendered result only. The line, column,
+ * statement index and message parameters of its findings are not kept: a result read back holds a
+ * single finding without location per anti pattern, which is all the output writers use.
+ *
+ * Records are verified against their full key when read, a record that does not match is
+ * treated as a miss.
+ */
+public class PersistentResultStore implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(PersistentResultStore.class);
+
+  public static final long DEFAULT_ANALYZED_RESULT_TTL_HOURS = 24;
+
+  static final String LOG_FILE_NAME = "results.log";
+  static final String INDEX_FILE_NAME = "results.idx";
+  static final String VERSION_FILE_NAME = "ruleset.version";
+  // 2: records hold their expiry time
+  private static final int FORMAT_VERSION = 2;
+  private static final long NO_EXPIRY = Long.MAX_VALUE;
+
+  private static final int INDEX_MAGIC = 0x41505249; // APRI
+  private static final int INDEX_HEADER_BYTES = 16;
+  private static final int SLOT_BYTES = 16;
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final int KEY_BYTES = 32;
+  private static final int RECORD_LENGTH_BYTES = Integer.BYTES;
+
+  private final Path directory;
+  private final long analyzedResultTtlMillis;
+  private final LongSupplier clock;
+  private final FileChannel log;
+  private long logSize;
+  private MappedByteBuffer index;
+  private int capacity;
+  private int size;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public PersistentResultStore(
+      Path directory, String ruleSetVersion, long analyzedResultTtlMillis) throws IOException {
+    this(directory, ruleSetVersion, analyzedResultTtlMillis, System::currentTimeMillis);
+  }
+
+  PersistentResultStore(
+      Path directory, String ruleSetVersion, long analyzedResultTtlMillis, LongSupplier clock)
+      throws IOException {
+    this.directory = directory;
+    this.analyzedResultTtlMillis = analyzedResultTtlMillis;
+    this.clock = clock;
+    Files.createDirectories(directory);
+
+    Path versionFile = directory.resolve(VERSION_FILE_NAME);
+    String version = FORMAT_VERSION + ":" + ruleSetVersion;
+    if (!Files.exists(versionFile)
+        || !new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8).equals(version)) {
+      if (Files.exists(directory.resolve(LOG_FILE_NAME))) {
+        logger.info("Anti pattern rules changed, invalidating stored results in: " + directory);
+      }
+      Files.deleteIfExists(directory.resolve(LOG_FILE_NAME));
+      Files.deleteIfExists(directory.resolve(INDEX_FILE_NAME));
+      Files.write(versionFile, version.getBytes(StandardCharsets.UTF_8));
+    }
+
+    log =
+        FileChannel.open(
+            directory.resolve(LOG_FILE_NAME),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    logSize = log.size();
+    if (!openIndex()) {
+      rebuildIndex();
+    }
+    logger.info("Opened result store with " + size + " results in: " + directory);
+  }
+
+  /** Returns the stored result or null. */
+  public synchronized QueryResultCache.CachedResult get(String key) throws IOException {
+    byte[] keyBytes = hashKey(key);
+    long offset = findOffset(keyBytes);
+    QueryResultCache.CachedResult result = offset < 0 ? null : readRecord(offset, keyBytes);
+    if (result == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return result;
+  }
+
+  /** Stores a result, which expires when it includes the results of the analyzer rules. */
+  public synchronized void put(String key, QueryResultCache.CachedResult result, boolean analyzed)
+      throws IOException {
+    long expiresAtMillis = NO_EXPIRY;
+    if (analyzed) {
+      if (analyzedResultTtlMillis <= 0) {
+        return;
+      }
+      expiresAtMillis = clock.getAsLong() + analyzedResultTtlMillis;
+    }
+    byte[] keyBytes = hashKey(key);
+    byte[] record = serialize(keyBytes, expiresAtMillis, result);
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_LENGTH_BYTES + record.length);
+    buffer.putInt(record.length).put(record).flip();
+    long offset = logSize;
+    while (buffer.hasRemaining()) {
+      log.write(buffer, offset + buffer.position());
+    }
+    logSize += RECORD_LENGTH_BYTES + record.length;
+    insert(keyBytes, offset);
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public String getStats() {
+    long lookups = getHitCount() + getMissCount();
+    return String.format(
+        "result store: %d hits, %d misses (%.1f%% hit rate), %d stored results",
+        getHitCount(),
+        getMissCount(),
+        lookups == 0 ? 0.0 : 100.0 * getHitCount() / lookups,
+        size());
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    log.force(false);
+    log.close();
+    index.force();
+    unmap(index);
+    index = null;
+  }
+
+  // Index: header (magic, unused, capacity, size) followed by open addressing slots holding the
+  // first 8 bytes of a key and the log offset of its record plus one (0 is an empty slot).
+
+  private boolean openIndex() throws IOException {
+    Path indexFile = directory.resolve(INDEX_FILE_NAME);
+    if (!Files.exists(indexFile)) {
+      return false;
+    }
+    MappedByteBuffer mappedIndex = mapIndex(indexFile, -1);
+    int fileCapacity = mappedIndex.getInt(8);
+    if (mappedIndex.getInt(0) != INDEX_MAGIC
+        || fileCapacity <= 0
+        || Integer.bitCount(fileCapacity) != 1
+        || mappedIndex.capacity() != INDEX_HEADER_BYTES + (long) fileCapacity * SLOT_BYTES) {
+      logger.warn("Result store index is not valid, rebuilding it from the log");
+      unmap(mappedIndex);
+      return false;
+    }
+    index = mappedIndex;
+    capacity = fileCapacity;
+    size = mappedIndex.getInt(12);
+    return true;
+  }
+
+  private void rebuildIndex() throws IOException {
+    createIndex(directory.resolve(INDEX_FILE_NAME), INITIAL_CAPACITY);
+    long offset = 0;
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(RECORD_LENGTH_BYTES);
+    while (offset + RECORD_LENGTH_BYTES <= logSize) {
+      lengthBuffer.clear();
+      readFully(lengthBuffer, offset);
+      int length = lengthBuffer.getInt(0);
+      if (length < KEY_BYTES || offset + RECORD_LENGTH_BYTES + length > logSize) {
+        break;
+      }
+      ByteBuffer keyBuffer = ByteBuffer.allocate(KEY_BYTES);
+      readFully(keyBuffer, offset + RECORD_LENGTH_BYTES);
+      insert(keyBuffer.array(), offset);
+      offset += RECORD_LENGTH_BYTES + length;
+    }
+    if (offset < logSize) {
+      // the last record was not completely written, e.g. the previous run was killed
+      logger.warn("Dropping incomplete record at the end of the result store log");
+      log.truncate(offset);
+      logSize = offset;
+    }
+  }
+
+  private void createIndex(Path indexFile, int newCapacity) throws IOException {
+    Files.deleteIfExists(indexFile);
+    index = mapIndex(indexFile, INDEX_HEADER_BYTES + (long) newCapacity * SLOT_BYTES);
+    index.putInt(0, INDEX_MAGIC);
+    index.putInt(8, newCapacity);
+    index.putInt(12, 0);
+    capacity = newCapacity;
+    size = 0;
+  }
+
+  private static MappedByteBuffer mapIndex(Path indexFile, long length) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            indexFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      long mappedLength = length < 0 ? channel.size() : length;
+      if (mappedLength < INDEX_HEADER_BYTES) {
+        mappedLength = INDEX_HEADER_BYTES;
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedLength);
+    }
+  }
+
+  private long findOffset(byte[] keyBytes) {
+    long keyPrefix = ByteBuffer.wrap(keyBytes).getLong();
+    for (int slot = slotOf(keyPrefix); ; slot = (slot + 1) & (capacity - 1)) {
+      int position = INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+      long storedOffset = index.getLong(position + 8);
+      if (storedOffset == 0) {
+        return -1;
+      }
+      if (index.getLong(position) == keyPrefix) {
+        return storedOffset - 1;
+      }
+    }
+  }
+
+  private void insert(byte[] keyBytes, long offset) throws IOException {
+    long keyPrefix = ByteBuffer.wrap(keyBytes).getLong();
+    for (int slot = slotOf(keyPrefix); ; slot = (slot + 1) & (capacity - 1)) {
+      int position = INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+      long storedOffset = index.getLong(position + 8);
+      if (storedOffset == 0) {
+        break;
+      }
+      if (index.getLong(position) == keyPrefix) {
+        // a newer record of the same key
+        index.putLong(position + 8, offset + 1);
+        return;
+      }
+    }
+    // a new key
+    if ((size + 1) * 2L > capacity) {
+      grow();
+    }
+    insertSlot(keyPrefix, offset + 1);
+  }
+
+  private void grow() throws IOException {
+    MappedByteBuffer oldIndex = index;
+    int oldCapacity = capacity;
+    Path indexFile = directory.resolve(INDEX_FILE_NAME);
+    Path newIndexFile = directory.resolve(INDEX_FILE_NAME + ".tmp");
+    createIndex(newIndexFile, oldCapacity * 2);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      int position = INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+      long storedOffset = oldIndex.getLong(position + 8);
+      if (storedOffset != 0) {
+        insertSlot(oldIndex.getLong(position), storedOffset);
+      }
+    }
+    index.force();
+    unmap(oldIndex);
+    Files.move(newIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private void insertSlot(long keyPrefix, long storedOffset) {
+    for (int slot = slotOf(keyPrefix); ; slot = (slot + 1) & (capacity - 1)) {
+      int position = INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+      if (index.getLong(position + 8) == 0) {
+        index.putLong(position, keyPrefix);
+        index.putLong(position + 8, storedOffset);
+        size++;
+        index.putInt(12, size);
+        return;
+      }
+    }
+  }
+
+  private int slotOf(long keyPrefix) {
+    return (int) (keyPrefix & (capacity - 1));
+  }
+
+  // A mapping is otherwise released when it is garbage collected, keeping the replaced index file
+  // on disk (and on Windows preventing it from being replaced) until then.
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+      unsafeField.setAccessible(true);
+      unsafeClass
+          .getMethod("invokeCleaner", ByteBuffer.class)
+          .invoke(unsafeField.get(null), buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.debug("Could not unmap the result store index, it is released when collected", e);
+    }
+  }
+
+  // Log records: length of the record, key, expiry time in epoch millis, number of findings,
+  // (name, result) of each finding and the optimized SQL, strings are written as UTF-8 with their
+  // length (-1 for null).
+
+  private QueryResultCache.CachedResult readRecord(long offset, byte[] keyBytes)
+      throws IOException {
+    if (offset + RECORD_LENGTH_BYTES > logSize) {
+      return null;
+    }
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(RECORD_LENGTH_BYTES);
+    readFully(lengthBuffer, offset);
+    int length = lengthBuffer.getInt(0);
+    if (length < KEY_BYTES || offset + RECORD_LENGTH_BYTES + length > logSize) {
+      return null;
+    }
+    ByteBuffer record = ByteBuffer.allocate(length);
+    readFully(record, offset + RECORD_LENGTH_BYTES);
+    record.flip();
+
+    byte[] storedKey = new byte[KEY_BYTES];
+    record.get(storedKey);
+    if (!Arrays.equals(storedKey, keyBytes)) {
+      return null;
+    }
+    long expiresAtMillis = record.getLong();
+    if (expiresAtMillis != NO_EXPIRY && clock.getAsLong() >= expiresAtMillis) {
+      return null;
+    }
+    int findingCount = record.getInt();
+    List<AntiPatternVisitor> findings = new ArrayList<>(findingCount);
+    for (int i = 0; i < findingCount; i++) {
+      findings.add(new RecordedAntiPattern(readString(record), readString(record)));
+    }
+    return new QueryResultCache.CachedResult(findings, readString(record));
+  }
+
+  private static byte[] serialize(
+      byte[] keyBytes, long expiresAtMillis, QueryResultCache.CachedResult result)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(keyBytes);
+    out.writeLong(expiresAtMillis);
+    out.writeInt(result.getFindings().size());
+    for (AntiPatternVisitor finding : result.getFindings()) {
+      writeString(out, finding.getName());
+      writeString(out, finding.getResult());
+    }
+    writeString(out, result.getOptimizedQuery());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(valueBytes.length);
+    out.write(valueBytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] valueBytes = new byte[length];
+    buffer.get(valueBytes);
+    return new String(valueBytes, StandardCharsets.UTF_8);
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (log.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of result store log");
+      }
+    }
+  }
+
+  private static byte[] hashKey(String key) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
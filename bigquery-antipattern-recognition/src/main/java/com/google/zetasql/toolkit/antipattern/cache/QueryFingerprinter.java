@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.Parser;
+import com.google.zetasql.parser.ASTNodes;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.parser.ParseTreeVisitor;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes a fingerprint of a query that ignores the values of its literals, so queries built
+ * from the same template (e.g. differing only in dates or ids) are analyzed once.
+ *
+ * <p>The query is parsed and every literal is replaced by a placeholder of its kind (e.g. {@code
+ * ?int}, {@code ?str}), so queries only match when their literals have the same types. The number
+ * of line breaks inside each literal is part of the fingerprint, so all the queries of a
+ * fingerprint have the same line layout and the line numbers of the findings apply to each of
+ * them. Byte offsets and columns still differ with the length of the literals, see {@link
+ * Fingerprint#relocate}.
+ *
+ * <p>Literals whose value is read by a rule are kept as is: the patterns of REGEXP_CONTAINS
+ * (StringComparison) and the integer 1 (latest record filters, e.g. rn = 1).
+ */
+public class QueryFingerprinter {
+
+  private static final String REGEXP_CONTAINS_FUN_ID_STR = "regexp_contains";
+  private static final String KEPT_INT_LITERAL = "1";
+
+  private final LanguageOptions languageOptions;
+
+  public QueryFingerprinter() {
+    this.languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+    languageOptions.enableReservableKeyword("QUALIFY");
+  }
+
+  /** Fingerprint of a query and the locations of the literals it ignores. */
+  public static class Fingerprint {
+    private final String value;
+    // byte ranges of the replaced literals, in query order
+    private final int[] literalStarts;
+    private final int[] literalEnds;
+
+    Fingerprint(String value, int[] literalStarts, int[] literalEnds) {
+      this.value = value;
+      this.literalStarts = literalStarts;
+      this.literalEnds = literalEnds;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    /**
+     * Byte offset in this query of a location found in another query with the same fingerprint.
+     * Locations inside a literal are moved to the start of the same literal in this query.
+     */
+    public int relocate(int byteOffset, Fingerprint source) {
+      if (literalStarts.length != source.literalStarts.length) {
+        return byteOffset;
+      }
+      int shift = 0;
+      for (int i = 0; i < literalStarts.length && source.literalStarts[i] <= byteOffset; i++) {
+        if (byteOffset < source.literalEnds[i]) {
+          return literalStarts[i];
+        }
+        shift +=
+            (literalEnds[i] - literalStarts[i]) - (source.literalEnds[i] - source.literalStarts[i]);
+      }
+      return byteOffset + shift;
+    }
+  }
+
+  /**
+   * Fingerprint of the query.
+   *
+   * @throws RuntimeException if the query cannot be parsed
+   */
+  public String fingerprint(String query) {
+    return fingerprint(query, Parser.parseScript(query, languageOptions)).getValue();
+  }
+
+  /** Fingerprint of a query already parsed, e.g. for the parser rules. */
+  public Fingerprint fingerprint(String query, ASTNodes.ASTScript parsedQuery) {
+    List<ASTNode> literals = collectLiterals(parsedQuery);
+    int[] literalStarts = new int[literals.size()];
+    int[] literalEnds = new int[literals.size()];
+    for (int i = 0; i < literals.size(); i++) {
+      literalStarts[i] = literals.get(i).getParseLocationRange().start();
+      literalEnds[i] = literals.get(i).getParseLocationRange().end();
+    }
+    return new Fingerprint(
+        QueryResultCache.sha256Hex(normalize(query, literals)), literalStarts, literalEnds);
+  }
+
+  String normalize(String query) {
+    return normalize(query, collectLiterals(Parser.parseScript(query, languageOptions)));
+  }
+
+  // Literals to replace, in query order, skipping literals nested in another one
+  private static List<ASTNode> collectLiterals(ASTNodes.ASTScript parsedQuery) {
+    LiteralCollector literalCollector = new LiteralCollector();
+    parsedQuery.accept(literalCollector);
+    List<ASTNode> collected = literalCollector.literals;
+    collected.sort(Comparator.comparingInt(literal -> literal.getParseLocationRange().start()));
+
+    List<ASTNode> literals = new ArrayList<>();
+    int lastEnd = 0;
+    for (ASTNode literal : collected) {
+      if (literal.getParseLocationRange().start() >= lastEnd) {
+        literals.add(literal);
+        lastEnd = literal.getParseLocationRange().end();
+      }
+    }
+    return literals;
+  }
+
+  /** Query text with placeholders instead of literals, followed by the line layout of literals. */
+  private static String normalize(String query, List<ASTNode> literals) {
+    byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream normalizedQuery = new ByteArrayOutputStream(queryBytes.length);
+    StringBuilder lineLayout = new StringBuilder();
+    int copiedUpTo = 0;
+    for (ASTNode literal : literals) {
+      // parse locations are byte offsets
+      int start = literal.getParseLocationRange().start();
+      int end = literal.getParseLocationRange().end();
+      normalizedQuery.write(queryBytes, copiedUpTo, start - copiedUpTo);
+      byte[] placeholder = placeholderFor(literal).getBytes(StandardCharsets.UTF_8);
+      normalizedQuery.write(placeholder, 0, placeholder.length);
+      lineLayout.append(countLineBreaks(queryBytes, start, end)).append(',');
+      copiedUpTo = end;
+    }
+    normalizedQuery.write(queryBytes, copiedUpTo, queryBytes.length - copiedUpTo);
+
+    return new String(normalizedQuery.toByteArray(), StandardCharsets.UTF_8)
+        + "\u0000"
+        + lineLayout;
+  }
+
+  static String placeholderFor(ASTNode literal) {
+    if (literal instanceof ASTNodes.ASTIntLiteral) {
+      return "?int";
+    } else if (literal instanceof ASTNodes.ASTFloatLiteral) {
+      return "?float";
+    } else if (literal instanceof ASTNodes.ASTNumericLiteral) {
+      return "?numeric";
+    } else if (literal instanceof ASTNodes.ASTBigNumericLiteral) {
+      return "?bignumeric";
+    } else if (literal instanceof ASTNodes.ASTStringLiteral) {
+      return "?str";
+    } else if (literal instanceof ASTNodes.ASTBytesLiteral) {
+      return "?bytes";
+    }
+    return "?";
+  }
+
+  private static int countLineBreaks(byte[] bytes, int start, int end) {
+    int lineBreaks = 0;
+    for (int i = start; i < end; i++) {
+      if (bytes[i] == '\n') {
+        lineBreaks++;
+      }
+    }
+    return lineBreaks;
+  }
+
+  private static class LiteralCollector extends ParseTreeVisitor {
+
+    private final List<ASTNode> literals = new ArrayList<>();
+
+    @Override
+    public void visit(ASTNodes.ASTIntLiteral node) {
+      if (!KEPT_INT_LITERAL.equals(node.getImage())) {
+        literals.add(node);
+      }
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTFloatLiteral node) {
+      literals.add(node);
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTNumericLiteral node) {
+      literals.add(node);
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTBigNumericLiteral node) {
+      literals.add(node);
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTStringLiteral node) {
+      literals.add(node);
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTBytesLiteral node) {
+      literals.add(node);
+    }
+
+    @Override
+    public void visit(ASTNodes.ASTFunctionCall node) {
+      for (ASTNodes.ASTIdentifier identifier : node.getFunction().getNames()) {
+        if (identifier.getIdString().toLowerCase().equals(REGEXP_CONTAINS_FUN_ID_STR)) {
+          return;
+        }
+      }
+      super.visit(node);
+    }
+  }
+}
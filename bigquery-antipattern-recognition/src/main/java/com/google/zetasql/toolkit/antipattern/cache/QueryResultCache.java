@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of the queries analyzed in this run, keyed by a SHA-256 hash of the query text.
+ *
+ * <p>Duplicate queries (e.g. scheduled jobs read from INFORMATION_SCHEMA) get the findings and
+ * optimized SQL of the first copy instead of being parsed and analyzed again. Only the results are
+ * shared, each duplicate keeps its own job id, user email and slot hours. At most {@code
+ * maxEntries} results are kept, evicting the least recently used one.
+ */
+public class QueryResultCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  /** Findings and optimized SQL of a query. */
+  public static class CachedResult {
+    private final List<AntiPatternVisitor> findings;
+    private final String optimizedQuery;
+    // of the query the findings were found in, null unless fingerprinting is on
+    private final QueryFingerprinter.Fingerprint fingerprint;
+
+    public CachedResult(List<AntiPatternVisitor> findings, String optimizedQuery) {
+      this(findings, optimizedQuery, null);
+    }
+
+    public CachedResult(
+        List<AntiPatternVisitor> findings,
+        String optimizedQuery,
+        QueryFingerprinter.Fingerprint fingerprint) {
+      this.findings = Collections.unmodifiableList(findings);
+      this.optimizedQuery = optimizedQuery;
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Findings moved to the locations of another query with the same fingerprint. Findings read
+     * back from the result store have no location and are returned as is.
+     */
+    public List<AntiPatternVisitor> getFindings(
+        InputQuery inputQuery, QueryFingerprinter.Fingerprint queryFingerprint) {
+      if (fingerprint == null || queryFingerprint == null) {
+        return findings;
+      }
+      LineIndex lineIndex = new LineIndex(inputQuery.getQuery());
+      List<AntiPatternVisitor> relocated = new ArrayList<>();
+      for (AntiPatternVisitor visitor : findings) {
+        List<Finding> relocatedFindings = new ArrayList<>();
+        for (Finding finding : visitor.getFindings()) {
+          int byteOffset = queryFingerprint.relocate(finding.getByteOffset(), fingerprint);
+          relocatedFindings.add(finding.relocate(lineIndex, byteOffset));
+        }
+        relocated.add(new RecordedAntiPattern(visitor.getName(), relocatedFindings));
+      }
+      return relocated;
+    }
+
+    public List<AntiPatternVisitor> getFindings() {
+      return findings;
+    }
+
+    public String getOptimizedQuery() {
+      return optimizedQuery;
+    }
+  }
+
+  private final int maxEntries;
+  private final LinkedHashMap<String, CachedResult> entries;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  public QueryResultCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    // access ordered, i.e. iteration starts at the least recently used entry
+    this.entries =
+        new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > QueryResultCache.this.maxEntries;
+          }
+        };
+  }
+
+  /**
+   * Cache key of a query.
+   *
+   * @param includeProject whether the project of the query is part of the key, needed when the
+   *     results depend on the tables the query resolves to (i.e. advanced analysis)
+   */
+  public static String keyFor(InputQuery inputQuery, boolean includeProject) {
+    return keyFor(inputQuery.getQuery(), inputQuery.getProjectId(), includeProject, "");
+  }
+
+  /**
+   * Cache key of a query given its text, or any other identity of the query such as its
+   * fingerprint.
+   *
+   * @param runOptions settings of the run that change its results (e.g. the rules checked), so
+   *     results stored by runs with other settings are not reused
+   */
+  public static String keyFor(
+      String queryIdentity, String projectId, boolean includeProject, String runOptions) {
+    String text = queryIdentity;
+    if (includeProject) {
+      text = projectId + "\u0000" + text;
+    }
+    if (!runOptions.isEmpty()) {
+      text = runOptions + "\u0000" + text;
+    }
+    return sha256Hex(text);
+  }
+
+  public static String sha256Hex(String text) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every JVM is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+    return toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /** Returns the cached result or null. */
+  public CachedResult get(String key) {
+    CachedResult result;
+    synchronized (entries) {
+      result = entries.get(key);
+    }
+    if (result == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return result;
+  }
+
+  public void put(String key, CachedResult result) {
+    synchronized (entries) {
+      entries.put(key, result);
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public String getStats() {
+    return String.format(
+        "query result cache: %d hits, %d misses, %d entries", getHitCount(), getMissCount(), size());
+  }
+}
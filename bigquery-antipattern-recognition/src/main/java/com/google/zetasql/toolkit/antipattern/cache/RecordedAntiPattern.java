@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Immutable copy of an anti pattern found by a visitor, which can be replayed to the writers. */
+public class RecordedAntiPattern implements AntiPatternVisitor {
+
+  private final String name;
+  private final List<Finding> findings;
+  // formatted from the findings when first asked for
+  private String result;
+
+  public RecordedAntiPattern(String name, String result) {
+    this.name = name;
+    this.result = result;
+    this.findings = null;
+  }
+
+  public RecordedAntiPattern(String name, List<Finding> findings) {
+    this.name = name;
+    this.findings = Collections.unmodifiableList(new ArrayList<>(findings));
+  }
+
+  public static List<AntiPatternVisitor> recordAll(List<AntiPatternVisitor> visitors) {
+    List<AntiPatternVisitor> recorded = new ArrayList<>();
+    for (AntiPatternVisitor visitor : visitors) {
+      recorded.add(new RecordedAntiPattern(visitor.getName(), visitor.getFindings()));
+    }
+    return recorded;
+  }
+
+  @Override
+  public synchronized String getResult() {
+    if (result == null) {
+      result = Finding.joinMessages(findings);
+    }
+    return result;
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    // results read back from the result store only kept the rendered text
+    return findings == null ? AntiPatternVisitor.super.getFindings() : findings;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+}
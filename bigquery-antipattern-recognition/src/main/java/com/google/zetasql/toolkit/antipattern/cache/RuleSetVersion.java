@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Version of the anti pattern rules, derived from the bytecode of the classes that implement them.
+ * Any change to a visitor changes the version, which invalidates results stored by previous runs.
+ * Settings of a run that change its results are part of the keys of the results instead, so runs
+ * with other settings do not invalidate each other.
+ */
+public class RuleSetVersion {
+
+  private static final Logger logger = LoggerFactory.getLogger(RuleSetVersion.class);
+
+  private static final String BASE_PATH = "com/google/zetasql/toolkit/antipattern/";
+  // classes whose code determines the findings of a query
+  private static final List<String> RULE_CLASS_PREFIXES =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              BASE_PATH + "parser/",
+              BASE_PATH + "rules/",
+              BASE_PATH + "analyzer/",
+              BASE_PATH + "Finding",
+              BASE_PATH + "util/AntiPatternHelper",
+              BASE_PATH + "util/KeywordMatcher",
+              BASE_PATH + "util/LineIndex",
+              BASE_PATH + "util/ZetaSQLStringParsingHelper"));
+  private static final String CLASS_SUFFIX = ".class";
+
+  private RuleSetVersion() {}
+
+  public static String compute() {
+    MessageDigest digest = newDigest();
+    try {
+      for (String className : listRuleClasses()) {
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        try (InputStream classBytes =
+            RuleSetVersion.class.getClassLoader().getResourceAsStream(className)) {
+          if (classBytes != null) {
+            digest.update(classBytes.readAllBytes());
+          }
+        }
+      }
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      // results are still keyed by the version of the tool
+      logger.warn("Could not read the rule classes, using the tool version: " + e.getMessage());
+      digest.update(String.valueOf(AntiPatternHelper.class.getPackage().getImplementationVersion())
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    return QueryResultCache.toHex(digest.digest());
+  }
+
+  private static List<String> listRuleClasses() throws IOException, URISyntaxException {
+    Path codeSource =
+        Paths.get(
+            AntiPatternHelper.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    List<String> classNames = new ArrayList<>();
+    if (Files.isDirectory(codeSource)) {
+      try (Stream<Path> paths = Files.walk(codeSource)) {
+        for (Path path : paths.collect(Collectors.toList())) {
+          String className = codeSource.relativize(path).toString().replace('\\', '/');
+          if (isRuleClass(className)) {
+            classNames.add(className);
+          }
+        }
+      }
+    } else {
+      try (JarFile jarFile = new JarFile(codeSource.toFile())) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+          String className = entries.nextElement().getName();
+          if (isRuleClass(className)) {
+            classNames.add(className);
+          }
+        }
+      }
+    }
+    Collections.sort(classNames);
+    return classNames;
+  }
+
+  private static boolean isRuleClass(String className) {
+    if (!className.endsWith(CLASS_SUFFIX)) {
+      return false;
+    }
+    return RULE_CLASS_PREFIXES.stream().anyMatch(className::startsWith);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.checkpoint;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputCursor;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Layout of the checkpoint file. */
+public class Checkpoint {
+
+  // 2: queries written after the cursor are listed
+  public static final int FORMAT_VERSION = 2;
+
+  private int version = FORMAT_VERSION;
+  // every query before the cursor was processed and its output committed
+  private InputCursor inputCursor;
+  // positions of the queries after the cursor whose output was committed too, skipped on resume
+  private List<Long> writtenPositions = new ArrayList<>();
+  // returned by the output writer when committing, see OutputWriter.commit
+  private String outputState;
+  private long createdAtMillis;
+
+  public int getVersion() {
+    return version;
+  }
+
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  public InputCursor getInputCursor() {
+    return inputCursor;
+  }
+
+  public void setInputCursor(InputCursor inputCursor) {
+    this.inputCursor = inputCursor;
+  }
+
+  public List<Long> getWrittenPositions() {
+    return writtenPositions;
+  }
+
+  public void setWrittenPositions(List<Long> writtenPositions) {
+    this.writtenPositions = writtenPositions;
+  }
+
+  public String getOutputState() {
+    return outputState;
+  }
+
+  public void setOutputState(String outputState) {
+    this.outputState = outputState;
+  }
+
+  public long getCreatedAtMillis() {
+    return createdAtMillis;
+  }
+
+  public void setCreatedAtMillis(long createdAtMillis) {
+    this.createdAtMillis = createdAtMillis;
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.checkpoint;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zetasql.toolkit.antipattern.cmd.InputCursor;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.cmd.ResumableInput;
+import com.google.zetasql.toolkit.antipattern.output.OutputWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically saves how far a run got, so an interrupted run can be resumed instead of started
+ * again.
+ *
+ * <p>A checkpoint holds the input cursor after the last query of the longest prefix of the input
+ * whose results were all written, and the state of the output writer once it committed those
+ * results. Results written after the checkpoint are discarded by the output writer when resuming,
+ * so resumed queries are not written twice. When queries finish out of order (i.e. parallel runs
+ * without --preserve_order) the output also holds queries after the cursor: their positions are
+ * saved with the checkpoint and they are skipped when resuming.
+ */
+public class CheckpointManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(CheckpointManager.class);
+  private static final ObjectMapper objectMapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  public static final long DEFAULT_INTERVAL_SECS = 300;
+
+  private final Path path;
+  private final long intervalMillis;
+  private final OutputWriter outputWriter;
+  private final LongSupplier clock;
+
+  // cursors of the queries written after the first query not written yet
+  private final Map<Long, InputCursor> pendingCursors = new HashMap<>();
+  // queries written before resuming, after the cursor of the checkpoint
+  private final Set<Long> skippedPositions = new HashSet<>();
+  private long nextPosition = 0;
+  private InputCursor committableCursor;
+  private long lastCheckpointMillis;
+  private long checkpointCount = 0;
+
+  public CheckpointManager(String path, long intervalSecs, OutputWriter outputWriter) {
+    this(path, intervalSecs, outputWriter, System::currentTimeMillis);
+  }
+
+  CheckpointManager(
+      String path, long intervalSecs, OutputWriter outputWriter, LongSupplier clock) {
+    this.path = Paths.get(path);
+    this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSecs);
+    this.outputWriter = outputWriter;
+    this.clock = clock;
+    this.lastCheckpointMillis = clock.getAsLong();
+  }
+
+  /** Reads the checkpoint file, returns null if there is none. */
+  public static Checkpoint read(String path) throws IOException {
+    if (!Files.exists(Paths.get(path))) {
+      logger.info("No checkpoint in " + path + ", starting from the beginning");
+      return null;
+    }
+    Checkpoint checkpoint = objectMapper.readValue(Paths.get(path).toFile(), Checkpoint.class);
+    if (checkpoint.getVersion() > Checkpoint.FORMAT_VERSION) {
+      throw new IOException(
+          "Checkpoint " + path + " has unsupported version " + checkpoint.getVersion());
+    }
+    return checkpoint;
+  }
+
+  /**
+   * Returns an iterator over the input queries that records their position, resuming the input
+   * and the output from the checkpoint if one is given. Only a {@link ResumableInput} can be
+   * resumed, other inputs (e.g. INFORMATION_SCHEMA, whose days back window moves between runs)
+   * may not return the same queries in the same order again.
+   */
+  public Iterator<InputQuery> track(Iterator<InputQuery> inputQueries, Checkpoint checkpoint)
+      throws IOException {
+    if (checkpoint != null) {
+      if (!(inputQueries instanceof ResumableInput)) {
+        throw new IllegalArgumentException(
+            "This input cannot be resumed from a checkpoint, run again without --resume");
+      }
+      InputCursor cursor = checkpoint.getInputCursor();
+      logger.info("Resuming from checkpoint after " + cursor.getPosition() + " queries");
+      if (checkpoint.getOutputState() != null) {
+        outputWriter.resume(checkpoint.getOutputState());
+      }
+      ((ResumableInput) inputQueries).resume(cursor);
+      nextPosition = cursor.getPosition();
+      committableCursor = cursor;
+      skippedPositions.addAll(checkpoint.getWrittenPositions());
+    }
+    return new TrackingIterator(inputQueries, nextPosition);
+  }
+
+  /**
+   * Records that the results of a query read through {@link #track} were written, or that the
+   * query failed. Takes a checkpoint when the interval elapsed.
+   */
+  public synchronized void onQueryDone(InputQuery inputQuery) {
+    markDone(inputQuery);
+    if (clock.getAsLong() - lastCheckpointMillis >= intervalMillis) {
+      try {
+        save();
+      } catch (IOException e) {
+        // the run goes on, a later checkpoint may succeed
+        logger.error("Error saving checkpoint to: " + path);
+        logger.error(e.getMessage(), e);
+      }
+    }
+  }
+
+  private synchronized void markDone(InputQuery inputQuery) {
+    pendingCursors.put(inputQuery.getInputPosition(), inputQuery.getInputCursor());
+    while (pendingCursors.containsKey(nextPosition)) {
+      committableCursor = pendingCursors.remove(nextPosition++);
+    }
+  }
+
+  synchronized void save() throws IOException {
+    lastCheckpointMillis = clock.getAsLong();
+    if (committableCursor == null) {
+      return;
+    }
+    Checkpoint checkpoint = new Checkpoint();
+    checkpoint.setInputCursor(committableCursor);
+    List<Long> writtenPositions = new ArrayList<>(pendingCursors.keySet());
+    Collections.sort(writtenPositions);
+    checkpoint.setWrittenPositions(writtenPositions);
+    checkpoint.setOutputState(outputWriter.commit());
+    checkpoint.setCreatedAtMillis(lastCheckpointMillis);
+    // replace the previous checkpoint only once the new one is completely written
+    Path temp = Paths.get(path + ".tmp");
+    objectMapper.writeValue(temp.toFile(), checkpoint);
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    checkpointCount++;
+    logger.info(
+        "Saved checkpoint after " + committableCursor.getPosition() + " queries to: " + path);
+  }
+
+  /** Removes the checkpoint once the run completed. */
+  public void complete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  public synchronized long getCheckpointCount() {
+    return checkpointCount;
+  }
+
+  private final class TrackingIterator implements Iterator<InputQuery> {
+    private final Iterator<InputQuery> delegate;
+    private long position;
+    private InputQuery nextQuery;
+
+    private TrackingIterator(Iterator<InputQuery> delegate, long position) {
+      this.delegate = delegate;
+      this.position = position;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (nextQuery == null && delegate.hasNext()) {
+        InputQuery inputQuery = delegate.next();
+        position++;
+        InputCursor cursor =
+            delegate instanceof ResumableInput
+                ? ((ResumableInput) delegate).getCursor()
+                : new InputCursor(position);
+        inputQuery.setInputCursor(position - 1, cursor);
+        if (isSkipped(position - 1)) {
+          // its output was committed before the run was interrupted. Not saved from here: this
+          // runs on the reading thread and the output writer is committed only where it writes
+          markDone(inputQuery);
+        } else {
+          nextQuery = inputQuery;
+        }
+      }
+      return nextQuery != null;
+    }
+
+    @Override
+    public InputQuery next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      InputQuery inputQuery = nextQuery;
+      nextQuery = null;
+      return inputQuery;
+    }
+  }
+
+  private synchronized boolean isSkipped(long position) {
+    return skippedPositions.remove(position);
+  }
+}
@@ -16,13 +16,14 @@
 
 package com.google.zetasql.toolkit.antipattern.cmd;
 
+import com.google.zetasql.toolkit.antipattern.cache.PersistentResultStore;
+import com.google.zetasql.toolkit.antipattern.checkpoint.CheckpointManager;
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy;
 import com.google.zetasql.toolkit.antipattern.util.BigQueryHelper;
 import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
-import java.io.File;
+import com.google.zetasql.toolkit.antipattern.worker.WorkerPool;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,8 +35,14 @@ public class AntiPatternCommandParser {
   public static final String QUERY_OPTION_NAME = "query";
   public static final String FILE_PATH_OPTION_NAME = "input_file_path";
   public static final String FOLDER_PATH_OPTION_NAME = "input_folder_path";
+  public static final String INPUT_READ_THREADS_OPTION_NAME = "input_read_threads";
+  public static final String INPUT_INCLUDE_GLOB_OPTION_NAME = "input_include_glob";
+  public static final String INPUT_EXCLUDE_GLOB_OPTION_NAME = "input_exclude_glob";
   public static final String INPUT_CSV_FILE_OPTION_NAME = "input_csv_file_path";
+  public static final String INPUT_CSV_PARALLEL_READ_FLAG_NAME = "input_csv_parallel_read";
   public static final String INPUT_BQ_TABLE_OPTION_NAME = "input_bq_table";
+  public static final String INPUT_JSONL_PATH_OPTION_NAME = "input_jsonl_path";
+  public static final String INPUT_AUDIT_LOG_PATH_OPTION_NAME = "input_audit_log_path";
   public static final String OUTPUT_FILE_OPTION_NAME = "output_file_path";
   public static final String READ_FROM_INFO_SCHEMA_FLAG_NAME = "read_from_info_schema";
   public static final String READ_FROM_INFO_SCHEMA_DAYS_OPTION_NAME = "read_from_info_schema_days";
@@ -61,8 +68,39 @@ public class AntiPatternCommandParser {
   public static final String LLM_RETRIES_NAME = "llm_retries";
   public static final String LLM_STRICT_VALIDATION_FLAG_NAME = "llm_strict_validation";
   public static final String SERVICE_ACCOUNT_KEYFILE_PATH = "service_account_keyfile_path";
+  public static final String PARALLELISM_OPTION_NAME = "parallelism";
+  public static final String PRESERVE_ORDER_FLAG_NAME = "preserve_order";
+  public static final String EXPORT_CATALOG_SNAPSHOT_OPTION_NAME = "export_catalog_snapshot";
+  public static final String CATALOG_SNAPSHOT_OPTION_NAME = "catalog_snapshot";
+  public static final String INFO_SCHEMA_CATALOG_OPTION_NAME = "info_schema_catalog";
+  private static final String DEFAULT_INFO_SCHEMA_REGION = "us";
+  public static final String RESULT_CACHE_SIZE_OPTION_NAME = "result_cache_size";
+  private static final String DEFAULT_RESULT_CACHE_SIZE = "10000";
+  public static final String FINGERPRINT_QUERIES_FLAG_NAME = "fingerprint_queries";
+  public static final String FINGERPRINT_SUMMARY_FILE_OPTION_NAME = "fingerprint_summary_file";
+  public static final String RESULT_STORE_DIR_OPTION_NAME = "result_store_dir";
+  public static final String RESULT_STORE_TTL_HOURS_OPTION_NAME = "result_store_ttl_hours";
+  public static final String INFO_SCHEMA_WATERMARK_FILE_OPTION_NAME = "info_schema_watermark_file";
+  public static final String INFO_SCHEMA_WATERMARK_OVERLAP_MINUTES_OPTION_NAME =
+      "info_schema_watermark_overlap_minutes";
+  public static final String CHECKPOINT_FILE_OPTION_NAME = "checkpoint_file";
+  public static final String CHECKPOINT_INTERVAL_SECS_OPTION_NAME = "checkpoint_interval_secs";
+  public static final String RESUME_FLAG_NAME = "resume";
+  public static final String RULES_OPTION_NAME = "rules";
+  public static final String EXCLUDE_RULES_OPTION_NAME = "exclude_rules";
+  public static final String MAX_QUERY_BYTES_OPTION_NAME = "max_query_bytes";
+  public static final String PARSE_TIMEOUT_SECS_OPTION_NAME = "parse_timeout_secs";
+  public static final String ANALYSIS_TIMEOUT_SECS_OPTION_NAME = "analysis_timeout_secs";
+  public static final String WORKER_PROCESSES_OPTION_NAME = "worker_processes";
+  public static final String WORKER_MAX_HEAP_MB_OPTION_NAME = "worker_max_heap_mb";
+  public static final String ANALYSIS_MIN_SLOT_HOURS_OPTION_NAME = "analysis_min_slot_hours";
+  public static final String ANALYSIS_MIN_QUERY_BYTES_OPTION_NAME = "analysis_min_query_bytes";
+  public static final String ANALYSIS_REQUIRE_PARSER_FINDINGS_FLAG_NAME =
+      "analysis_require_parser_findings";
   private Options options;
   private CommandLine cmd;
+  // null unless reading INFORMATION_SCHEMA incrementally
+  private InformationSchemaWatermark infoSchemaWatermark;
 
   public AntiPatternCommandParser(String[] args) throws ParseException, IOException {
     options = getOptions();
@@ -114,6 +152,165 @@ public class AntiPatternCommandParser {
     return Integer.parseInt(llmRetriesArg);
   }
 
+  public int getInputReadThreads() {
+    String readThreads = cmd.getOptionValue(INPUT_READ_THREADS_OPTION_NAME);
+    return readThreads == null
+        ? InputFolderQueryIterable.DEFAULT_READ_THREADS
+        : Integer.parseInt(readThreads);
+  }
+
+  /** Globs selecting the files of --input_folder_path, can be repeated. */
+  public InputPathFilter getInputPathFilter() {
+    return getInputPathFilter(InputPathFilter.DEFAULT_INCLUDE_GLOB);
+  }
+
+  public InputPathFilter getInputPathFilter(String defaultIncludeGlob) {
+    return new InputPathFilter(
+        getOptionValueList(INPUT_INCLUDE_GLOB_OPTION_NAME),
+        getOptionValueList(INPUT_EXCLUDE_GLOB_OPTION_NAME),
+        defaultIncludeGlob);
+  }
+
+  private List<String> getOptionValueList(String optionName) {
+    String[] values = cmd.getOptionValues(optionName);
+    return values == null ? null : Arrays.asList(values);
+  }
+
+  public boolean inputCsvParallelRead() {
+    return cmd.hasOption(INPUT_CSV_PARALLEL_READ_FLAG_NAME);
+  }
+
+  public int getParallelism() {
+    String parallelismArg = cmd.getOptionValue(PARALLELISM_OPTION_NAME, "1");
+    return Integer.parseInt(parallelismArg);
+  }
+
+  public boolean preserveOrder() {
+    return cmd.hasOption(PRESERVE_ORDER_FLAG_NAME);
+  }
+
+  public String getExportCatalogSnapshotPath() {
+    return cmd.getOptionValue(EXPORT_CATALOG_SNAPSHOT_OPTION_NAME);
+  }
+
+  public String getCatalogSnapshotPath() {
+    return cmd.getOptionValue(CATALOG_SNAPSHOT_OPTION_NAME);
+  }
+
+  public List<String> getInfoSchemaCatalogScopes() {
+    String scopes = cmd.getOptionValue(INFO_SCHEMA_CATALOG_OPTION_NAME);
+    return scopes == null ? null : Arrays.asList(scopes.split(","));
+  }
+
+  public String getInfoSchemaRegion() {
+    return cmd.getOptionValue(INFO_SCHEMA_REGION, DEFAULT_INFO_SCHEMA_REGION);
+  }
+
+  public int getResultCacheSize() {
+    String resultCacheSizeArg =
+        cmd.getOptionValue(RESULT_CACHE_SIZE_OPTION_NAME, DEFAULT_RESULT_CACHE_SIZE);
+    return Integer.parseInt(resultCacheSizeArg);
+  }
+
+  public boolean fingerprintQueries() {
+    return cmd.hasOption(FINGERPRINT_QUERIES_FLAG_NAME);
+  }
+
+  public String getFingerprintSummaryFile() {
+    return cmd.getOptionValue(FINGERPRINT_SUMMARY_FILE_OPTION_NAME);
+  }
+
+  public String getInfoSchemaWatermarkFile() {
+    return cmd.getOptionValue(INFO_SCHEMA_WATERMARK_FILE_OPTION_NAME);
+  }
+
+  public long getInfoSchemaWatermarkOverlapMinutes() {
+    String overlapArg = cmd.getOptionValue(INFO_SCHEMA_WATERMARK_OVERLAP_MINUTES_OPTION_NAME);
+    return overlapArg == null
+        ? InformationSchemaWatermark.DEFAULT_OVERLAP_MINUTES
+        : Long.parseLong(overlapArg);
+  }
+
+  /** Watermark advanced by the INFORMATION_SCHEMA input, null unless reading incrementally. */
+  public InformationSchemaWatermark getInfoSchemaWatermark() {
+    return infoSchemaWatermark;
+  }
+
+  public String getCheckpointFile() {
+    return cmd.getOptionValue(CHECKPOINT_FILE_OPTION_NAME);
+  }
+
+  public long getCheckpointIntervalSecs() {
+    String intervalArg = cmd.getOptionValue(CHECKPOINT_INTERVAL_SECS_OPTION_NAME);
+    return intervalArg == null
+        ? CheckpointManager.DEFAULT_INTERVAL_SECS
+        : Long.parseLong(intervalArg);
+  }
+
+  public boolean resume() {
+    return cmd.hasOption(RESUME_FLAG_NAME);
+  }
+
+  /** Names of the rules to run, null to run every rule. */
+  public List<String> getRules() {
+    String rules = cmd.getOptionValue(RULES_OPTION_NAME);
+    return rules == null ? null : Arrays.asList(rules.split(","));
+  }
+
+  public List<String> getExcludedRules() {
+    String rules = cmd.getOptionValue(EXCLUDE_RULES_OPTION_NAME);
+    return rules == null ? null : Arrays.asList(rules.split(","));
+  }
+
+  /** 0 when query size is not limited. */
+  public long getMaxQueryBytes() {
+    return Long.parseLong(cmd.getOptionValue(MAX_QUERY_BYTES_OPTION_NAME, "0"));
+  }
+
+  /** 0 when parse time is not limited. */
+  public long getParseTimeoutSecs() {
+    return Long.parseLong(cmd.getOptionValue(PARSE_TIMEOUT_SECS_OPTION_NAME, "0"));
+  }
+
+  /** 0 when analysis time is not limited. */
+  public long getAnalysisTimeoutSecs() {
+    return Long.parseLong(cmd.getOptionValue(ANALYSIS_TIMEOUT_SECS_OPTION_NAME, "0"));
+  }
+
+  /** 0 when queries are checked in this process. */
+  public int getWorkerProcesses() {
+    return Integer.parseInt(cmd.getOptionValue(WORKER_PROCESSES_OPTION_NAME, "0"));
+  }
+
+  public int getWorkerMaxHeapMb() {
+    String maxHeapMb = cmd.getOptionValue(WORKER_MAX_HEAP_MB_OPTION_NAME);
+    return maxHeapMb == null ? WorkerPool.DEFAULT_MAX_HEAP_MB : Integer.parseInt(maxHeapMb);
+  }
+
+  /** Which queries of an advanced analysis run go through the analyzer. */
+  public AnalysisTierPolicy getAnalysisTierPolicy() {
+    return new AnalysisTierPolicy(
+        Double.parseDouble(cmd.getOptionValue(ANALYSIS_MIN_SLOT_HOURS_OPTION_NAME, "0")),
+        Long.parseLong(cmd.getOptionValue(ANALYSIS_MIN_QUERY_BYTES_OPTION_NAME, "0")),
+        cmd.hasOption(ANALYSIS_REQUIRE_PARSER_FINDINGS_FLAG_NAME));
+  }
+
+  /** Whether the output records the tier of each query, i.e. only some queries are analyzed. */
+  public boolean recordAnalysisTier() {
+    return useAnalyzer() && getAnalysisTierPolicy().isEnabled();
+  }
+
+  public String getResultStoreDir() {
+    return cmd.getOptionValue(RESULT_STORE_DIR_OPTION_NAME);
+  }
+
+  public long getResultStoreTtlHours() {
+    String ttlArg = cmd.getOptionValue(RESULT_STORE_TTL_HOURS_OPTION_NAME);
+    return ttlArg == null
+        ? PersistentResultStore.DEFAULT_ANALYZED_RESULT_TTL_HOURS
+        : Long.parseLong(ttlArg);
+  }
+
   public boolean hasOutputTable() {
     return cmd.hasOption(OUTPUT_TABLE_OPTION_NAME);
   }
@@ -151,6 +348,39 @@ public class AntiPatternCommandParser {
             .build();
     options.addOption(folderPath);
 
+    Option inputReadThreads =
+        Option.builder(INPUT_READ_THREADS_OPTION_NAME)
+            .argName(INPUT_READ_THREADS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "number of files of --input_folder_path, or splits of --input_csv_parallel_read, "
+                    + "read at once, ahead of the analysis. Defaults to 8")
+            .build();
+    options.addOption(inputReadThreads);
+
+    Option inputIncludeGlob =
+        Option.builder(INPUT_INCLUDE_GLOB_OPTION_NAME)
+            .argName(INPUT_INCLUDE_GLOB_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "glob of the files of --input_folder_path to read, relative to the folder. "
+                    + "Can be repeated. Defaults to **.sql")
+            .build();
+    options.addOption(inputIncludeGlob);
+
+    Option inputExcludeGlob =
+        Option.builder(INPUT_EXCLUDE_GLOB_OPTION_NAME)
+            .argName(INPUT_EXCLUDE_GLOB_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "glob of the files or directories of --input_folder_path to skip, relative to "
+                    + "the folder. Can be repeated")
+            .build();
+    options.addOption(inputExcludeGlob);
+
     Option groupQueries =
         Option.builder(GROUP_QUERIES_OPTION_NAME)
         .argName(GROUP_QUERIES_OPTION_NAME)
@@ -232,6 +462,16 @@ public class AntiPatternCommandParser {
             .build();
     options.addOption(inputCsvFileOption);
 
+    Option inputCsvParallelRead =
+        Option.builder(INPUT_CSV_PARALLEL_READ_FLAG_NAME)
+            .argName(INPUT_CSV_PARALLEL_READ_FLAG_NAME)
+            .required(false)
+            .desc(
+                "flag specifying that the local --input_csv_file_path is memory-mapped and parsed "
+                    + "by --input_read_threads threads, for large files")
+            .build();
+    options.addOption(inputCsvParallelRead);
+
     Option inputBqOption =
         Option.builder(INPUT_BQ_TABLE_OPTION_NAME)
             .argName(INPUT_BQ_TABLE_OPTION_NAME)
@@ -241,6 +481,29 @@ public class AntiPatternCommandParser {
             .build();
     options.addOption(inputBqOption);
 
+    Option inputJsonlPath =
+        Option.builder(INPUT_JSONL_PATH_OPTION_NAME)
+            .argName(INPUT_JSONL_PATH_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "path to a JSON lines file with input queries, local or GCS, can be gzip or zstd "
+                    + "compressed")
+            .build();
+    options.addOption(inputJsonlPath);
+
+    Option inputAuditLogPath =
+        Option.builder(INPUT_AUDIT_LOG_PATH_OPTION_NAME)
+            .argName(INPUT_AUDIT_LOG_PATH_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "path to an export of BigQuery data access audit logs, a file or folder, local or "
+                    + "GCS. Jobs are filtered with --info_schema_min_slotms and "
+                    + "--info_schema_top_n_percentage_of_jobs")
+            .build();
+    options.addOption(inputAuditLogPath);
+
     Option infoSchemaDays =
         Option.builder(READ_FROM_INFO_SCHEMA_DAYS_OPTION_NAME)
             .argName(READ_FROM_INFO_SCHEMA_DAYS_OPTION_NAME)
@@ -323,6 +586,28 @@ public class AntiPatternCommandParser {
             .build();
     options.addOption(ISTopNPercentageJobs);
 
+    Option infoSchemaWatermarkFile =
+        Option.builder(INFO_SCHEMA_WATERMARK_FILE_OPTION_NAME)
+            .argName(INFO_SCHEMA_WATERMARK_FILE_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "local state file with the newest job read from INFORMATION_SCHEMA. When set, "
+                    + "only jobs that ended since the previous run are read")
+            .build();
+    options.addOption(infoSchemaWatermarkFile);
+
+    Option infoSchemaWatermarkOverlap =
+        Option.builder(INFO_SCHEMA_WATERMARK_OVERLAP_MINUTES_OPTION_NAME)
+            .argName(INFO_SCHEMA_WATERMARK_OVERLAP_MINUTES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "minutes before the watermark that are read again to catch late jobs. "
+                    + "Defaults to 15")
+            .build();
+    options.addOption(infoSchemaWatermarkOverlap);
+
     Option region =
         Option.builder(INFO_SCHEMA_REGION)
             .argName(INFO_SCHEMA_REGION)
@@ -351,6 +636,239 @@ public class AntiPatternCommandParser {
             .desc("path to service account keyfile")
             .build();
     options.addOption(service_account_keyfile_path);
+
+    Option parallelism =
+        Option.builder(PARALLELISM_OPTION_NAME)
+            .argName(PARALLELISM_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("number of threads processing queries. Defaults to 1")
+            .build();
+    options.addOption(parallelism);
+
+    Option preserveOrder =
+        Option.builder(PRESERVE_ORDER_FLAG_NAME)
+            .argName(PRESERVE_ORDER_FLAG_NAME)
+            .required(false)
+            .desc(
+                "flag specifying that results are written in input order when running with "
+                    + "parallelism greater than 1")
+            .build();
+    options.addOption(preserveOrder);
+
+    Option exportCatalogSnapshot =
+        Option.builder(EXPORT_CATALOG_SNAPSHOT_OPTION_NAME)
+            .argName(EXPORT_CATALOG_SNAPSHOT_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "path of a file to which the metadata of the tables used by the input queries is "
+                    + "written. No anti patterns are checked when set")
+            .build();
+    options.addOption(exportCatalogSnapshot);
+
+    Option catalogSnapshot =
+        Option.builder(CATALOG_SNAPSHOT_OPTION_NAME)
+            .argName(CATALOG_SNAPSHOT_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "path of a catalog snapshot file used by the advanced analysis instead of the "
+                    + "BigQuery API")
+            .build();
+    options.addOption(catalogSnapshot);
+
+    Option infoSchemaCatalog =
+        Option.builder(INFO_SCHEMA_CATALOG_OPTION_NAME)
+            .argName(INFO_SCHEMA_CATALOG_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "comma separated list of datasets (project.dataset) or projects whose table "
+                    + "metadata is loaded in bulk from INFORMATION_SCHEMA for the advanced analysis")
+            .build();
+    options.addOption(infoSchemaCatalog);
+
+    Option resultCacheSize =
+        Option.builder(RESULT_CACHE_SIZE_OPTION_NAME)
+            .argName(RESULT_CACHE_SIZE_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "number of distinct queries whose results are reused for duplicate queries. "
+                    + "Defaults to 10000, 0 disables the cache")
+            .build();
+    options.addOption(resultCacheSize);
+
+    Option fingerprintQueries =
+        Option.builder(FINGERPRINT_QUERIES_FLAG_NAME)
+            .argName(FINGERPRINT_QUERIES_FLAG_NAME)
+            .required(false)
+            .desc(
+                "flag specifying that queries differing only in literal values are analyzed once")
+            .build();
+    options.addOption(fingerprintQueries);
+
+    Option fingerprintSummaryFile =
+        Option.builder(FINGERPRINT_SUMMARY_FILE_OPTION_NAME)
+            .argName(FINGERPRINT_SUMMARY_FILE_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "path to csv file with the occurrences and total slot hours of each query "
+                    + "fingerprint. Requires --fingerprint_queries")
+            .build();
+    options.addOption(fingerprintSummaryFile);
+
+    Option resultStoreDir =
+        Option.builder(RESULT_STORE_DIR_OPTION_NAME)
+            .argName(RESULT_STORE_DIR_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "directory where the results of analyzed queries are stored and reused by later "
+                    + "runs. Stored results are discarded when the anti pattern rules change")
+            .build();
+    options.addOption(resultStoreDir);
+
+    Option resultStoreTtl =
+        Option.builder(RESULT_STORE_TTL_HOURS_OPTION_NAME)
+            .argName(RESULT_STORE_TTL_HOURS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "hours after which stored results of the analyzer rules expire, as the table "
+                    + "metadata may have changed. 0 stores only results of the parser rules. "
+                    + "Defaults to 24")
+            .build();
+    options.addOption(resultStoreTtl);
+
+    Option checkpointFile =
+        Option.builder(CHECKPOINT_FILE_OPTION_NAME)
+            .argName(CHECKPOINT_FILE_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "local file where the progress of the run is saved periodically. Removed when "
+                    + "the run completes")
+            .build();
+    options.addOption(checkpointFile);
+
+    Option checkpointInterval =
+        Option.builder(CHECKPOINT_INTERVAL_SECS_OPTION_NAME)
+            .argName(CHECKPOINT_INTERVAL_SECS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("seconds between checkpoints. Defaults to 300")
+            .build();
+    options.addOption(checkpointInterval);
+
+    Option resume =
+        Option.builder(RESUME_FLAG_NAME)
+            .argName(RESUME_FLAG_NAME)
+            .required(false)
+            .desc("resume an interrupted run from its --checkpoint_file")
+            .build();
+    options.addOption(resume);
+
+    Option rules =
+        Option.builder(RULES_OPTION_NAME)
+            .argName(RULES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("comma separated names of the anti patterns to look for. Defaults to all")
+            .build();
+    options.addOption(rules);
+
+    Option excludeRules =
+        Option.builder(EXCLUDE_RULES_OPTION_NAME)
+            .argName(EXCLUDE_RULES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("comma separated names of the anti patterns not to look for")
+            .build();
+    options.addOption(excludeRules);
+
+    Option maxQueryBytes =
+        Option.builder(MAX_QUERY_BYTES_OPTION_NAME)
+            .argName(MAX_QUERY_BYTES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("queries larger than this many bytes are skipped. Defaults to no limit")
+            .build();
+    options.addOption(maxQueryBytes);
+
+    Option parseTimeout =
+        Option.builder(PARSE_TIMEOUT_SECS_OPTION_NAME)
+            .argName(PARSE_TIMEOUT_SECS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("queries taking longer to parse and check are skipped. Defaults to no limit")
+            .build();
+    options.addOption(parseTimeout);
+
+    Option analysisTimeout =
+        Option.builder(ANALYSIS_TIMEOUT_SECS_OPTION_NAME)
+            .argName(ANALYSIS_TIMEOUT_SECS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "queries taking longer to analyze with --advanced_analysis are skipped. Defaults "
+                    + "to no limit")
+            .build();
+    options.addOption(analysisTimeout);
+
+    Option workerProcesses =
+        Option.builder(WORKER_PROCESSES_OPTION_NAME)
+            .argName(WORKER_PROCESSES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "number of separate JVMs parsing and analyzing the queries, so a crash only "
+                    + "costs one worker. Defaults to 0, checking queries in this process")
+            .build();
+    options.addOption(workerProcesses);
+
+    Option workerMaxHeapMb =
+        Option.builder(WORKER_MAX_HEAP_MB_OPTION_NAME)
+            .argName(WORKER_MAX_HEAP_MB_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc("maximum heap of each worker JVM in MB. Defaults to 1024")
+            .build();
+    options.addOption(workerMaxHeapMb);
+
+    Option analysisMinSlotHours =
+        Option.builder(ANALYSIS_MIN_SLOT_HOURS_OPTION_NAME)
+            .argName(ANALYSIS_MIN_SLOT_HOURS_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "only queries with at least this many slot hours go through --advanced_analysis, "
+                    + "the others are only checked by the parser rules. Defaults to 0")
+            .build();
+    options.addOption(analysisMinSlotHours);
+
+    Option analysisMinQueryBytes =
+        Option.builder(ANALYSIS_MIN_QUERY_BYTES_OPTION_NAME)
+            .argName(ANALYSIS_MIN_QUERY_BYTES_OPTION_NAME)
+            .hasArg()
+            .required(false)
+            .desc(
+                "only queries of at least this many bytes go through --advanced_analysis. "
+                    + "Defaults to 0")
+            .build();
+    options.addOption(analysisMinQueryBytes);
+
+    Option analysisRequireParserFindings =
+        Option.builder(ANALYSIS_REQUIRE_PARSER_FINDINGS_FLAG_NAME)
+            .argName(ANALYSIS_REQUIRE_PARSER_FINDINGS_FLAG_NAME)
+            .required(false)
+            .desc(
+                "only queries in which the parser rules found an anti pattern go through "
+                    + "--advanced_analysis")
+            .build();
+    options.addOption(analysisRequireParserFindings);
     return options;
   }
 
@@ -368,6 +886,10 @@ public class AntiPatternCommandParser {
         return buildIteratorFromCSV(cmd.getOptionValue(INPUT_CSV_FILE_OPTION_NAME));
       } else if (cmd.hasOption(INPUT_BQ_TABLE_OPTION_NAME)) {
         return buildIteratorFromBQTable(cmd.getOptionValue(INPUT_BQ_TABLE_OPTION_NAME));
+      } else if (cmd.hasOption(INPUT_JSONL_PATH_OPTION_NAME)) {
+        return buildIteratorFromJsonl(cmd.getOptionValue(INPUT_JSONL_PATH_OPTION_NAME));
+      } else if (cmd.hasOption(INPUT_AUDIT_LOG_PATH_OPTION_NAME)) {
+        return buildIteratorFromAuditLogs(cmd.getOptionValue(INPUT_AUDIT_LOG_PATH_OPTION_NAME));
       }
     } catch (IOException | InterruptedException e) {
       System.out.println(e.getMessage());
@@ -389,6 +911,11 @@ public class AntiPatternCommandParser {
     String region = cmd.getOptionValue(INFO_SCHEMA_REGION);
     String infoSchemaProject = cmd.getOptionValue(INFO_SCHEMA_PROJECT);
     Boolean groupQueries = cmd.hasOption(GROUP_QUERIES_OPTION_NAME);
+    if (getInfoSchemaWatermarkFile() != null) {
+      infoSchemaWatermark =
+          InformationSchemaWatermark.read(
+              getInfoSchemaWatermarkFile(), getInfoSchemaWatermarkOverlapMinutes());
+    }
 
     return new InformationSchemaQueryIterable(
         processingProjectId,
@@ -402,7 +929,8 @@ public class AntiPatternCommandParser {
         region,
         infoSchemaProject,
         groupQueries,
-        getServiceAccountKeyfilePath());
+        getServiceAccountKeyfilePath(),
+        infoSchemaWatermark);
   }
 
   public static Iterator<InputQuery> buildIteratorFromQueryStr(String queryStr) {
@@ -417,8 +945,11 @@ public class AntiPatternCommandParser {
     return new InputFolderQueryIterable(new ArrayList<>(Arrays.asList(filePath)));
   }
 
-  private static Iterator<InputQuery> buildIteratorFromCSV(String inputCSVPath) throws IOException {
+  private Iterator<InputQuery> buildIteratorFromCSV(String inputCSVPath) throws IOException {
     logger.info("Using csv file as input source");
+    if (inputCsvParallelRead()) {
+      return new InputMappedCsvQueryIterator(inputCSVPath, getInputReadThreads());
+    }
     return new InputCsvQueryIterator(inputCSVPath);
   }
 
@@ -429,21 +960,45 @@ public class AntiPatternCommandParser {
         getServiceAccountKeyfilePath());
   }
 
-  private static Iterator<InputQuery> buildIteratorFromFolderPath(String folderPath) {
+  private static Iterator<InputQuery> buildIteratorFromJsonl(String jsonlPath)
+      throws IOException {
+    logger.info("Using JSON lines file as input source");
+    return new InputJsonlQueryIterator(jsonlPath);
+  }
+
+  private Iterator<InputQuery> buildIteratorFromAuditLogs(String auditLogPath) {
+    logger.info("Using audit logs export as input source");
+    if (cmd.hasOption(GROUP_QUERIES_OPTION_NAME)) {
+      throw new IllegalArgumentException(
+          "--"
+              + GROUP_QUERIES_OPTION_NAME
+              + " is only supported when reading from INFORMATION_SCHEMA, not with --"
+              + INPUT_AUDIT_LOG_PATH_OPTION_NAME);
+    }
+    String slotMsMin = cmd.getOptionValue(INFO_SCHEMA_MIN_SLOTMS);
+    String topNPercent = cmd.getOptionValue(IS_TOP_N_PERC_JOBS_OPTION_NAME);
+    return new InputAuditLogQueryIterator(
+        auditLogPath,
+        getInputPathFilter(InputAuditLogQueryIterator.DEFAULT_INCLUDE_GLOB),
+        slotMsMin == null ? 0 : Long.parseLong(slotMsMin),
+        topNPercent == null
+            ? InformationSchemaQueryIterable.TOP_N_PERC_DEFAULT
+            : Float.parseFloat(topNPercent),
+        new GCSHelper());
+  }
+
+  private Iterator<InputQuery> buildIteratorFromFolderPath(String folderPath) {
     logger.info("Using folder as input source");
     if (GCSHelper.isGCSPath(folderPath)) {
       logger.info("Reading input folder from GCS");
-      GCSHelper gcsHelper = new GCSHelper();
-      return new InputFolderQueryIterable(gcsHelper.getListOfFilesInGCSPath(folderPath));
     } else {
       logger.info("Reading input folder from local");
-      List<String> fileList =
-          Stream.of(new File(folderPath).listFiles())
-              .filter(file -> file.isFile())
-              .map(File::getAbsolutePath)
-              .collect(Collectors.toList());
-      return new InputFolderQueryIterable(fileList);
     }
+    GCSHelper gcsHelper = new GCSHelper();
+    return new InputFolderQueryIterable(
+        FolderWalker.walk(folderPath, getInputPathFilter(), gcsHelper),
+        gcsHelper,
+        getInputReadThreads());
   }
 
   private void checkBQConnectiviy() throws IOException {
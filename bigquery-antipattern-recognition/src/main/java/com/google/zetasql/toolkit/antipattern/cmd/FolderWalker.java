@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lists the files of a local folder or GCS folder lazily, recursing into subdirectories, so the
+ * first files are returned before the whole folder is listed.
+ *
+ * <p>Files come in a fixed order, so a checkpoint can refer to a position in the listing: local
+ * directory entries are sorted by name and walked depth first, GCS objects come in name order. To
+ * sort them, each local directory is listed in full before its first file is returned, so memory
+ * grows with the entries of the largest directory rather than with the whole tree. Symbolic links
+ * to directories are not followed.
+ */
+public abstract class FolderWalker implements Iterator<String> {
+
+  final InputPathFilter filter;
+  private String nextFile;
+
+  FolderWalker(InputPathFilter filter) {
+    this.filter = filter;
+  }
+
+  public static FolderWalker walk(String folderPath, InputPathFilter filter, GCSHelper gcsHelper) {
+    if (GCSHelper.isGCSPath(folderPath)) {
+      return new GCSFolderWalker(folderPath, filter, gcsHelper);
+    }
+    return new LocalFolderWalker(Paths.get(folderPath), filter);
+  }
+
+  /** Path of the next file to read, null once the folder is walked. */
+  abstract String findNextFile();
+
+  @Override
+  public boolean hasNext() {
+    if (nextFile == null) {
+      nextFile = findNextFile();
+    }
+    return nextFile != null;
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String file = nextFile;
+    nextFile = null;
+    return file;
+  }
+
+  static class LocalFolderWalker extends FolderWalker {
+
+    private final Path root;
+    // entries left to walk in each directory from the root down to the current one
+    private final Deque<Iterator<Path>> directories = new ArrayDeque<>();
+
+    LocalFolderWalker(Path root, InputPathFilter filter) {
+      super(filter);
+      this.root = root;
+      directories.push(list(root));
+    }
+
+    @Override
+    String findNextFile() {
+      while (!directories.isEmpty()) {
+        Iterator<Path> entries = directories.peek();
+        if (!entries.hasNext()) {
+          directories.pop();
+          continue;
+        }
+        Path entry = entries.next();
+        String relativePath = root.relativize(entry).toString();
+        if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+          if (!filter.excludesDirectory(relativePath)) {
+            directories.push(list(entry));
+          }
+        } else if (filter.includesFile(relativePath)) {
+          return entry.toAbsolutePath().toString();
+        }
+      }
+      return null;
+    }
+
+    // only the directories being walked are held in memory
+    private static Iterator<Path> list(Path directory) {
+      List<Path> entries = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        stream.forEach(entries::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not list " + directory, e);
+      }
+      entries.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+      return entries.iterator();
+    }
+  }
+
+  static class GCSFolderWalker extends FolderWalker {
+
+    private final String folderPrefix;
+    private final Iterator<String> filePaths;
+
+    GCSFolderWalker(String folderPath, InputPathFilter filter, GCSHelper gcsHelper) {
+      super(filter);
+      this.folderPrefix =
+          folderPath.endsWith(GCSHelper.GCS_DELIMITER)
+              ? folderPath
+              : folderPath + GCSHelper.GCS_DELIMITER;
+      this.filePaths = gcsHelper.iterateFilesInGCSPath(folderPath);
+    }
+
+    @Override
+    String findNextFile() {
+      while (filePaths.hasNext()) {
+        String filePath = filePaths.next();
+        String relativePath = filePath.substring(folderPrefix.length());
+        // objects ending with a delimiter are placeholders of directories
+        if (!relativePath.isEmpty()
+            && !relativePath.endsWith(GCSHelper.GCS_DELIMITER)
+            && filter.includesFile(relativePath)
+            && !inExcludedDirectory(relativePath)) {
+          return filePath;
+        }
+      }
+      return null;
+    }
+
+    // GCS has no directories to skip, the objects under them are skipped one by one
+    private boolean inExcludedDirectory(String relativePath) {
+      int delimiterIndex = relativePath.indexOf(GCSHelper.GCS_DELIMITER);
+      while (delimiterIndex > 0) {
+        if (filter.excludesDirectory(relativePath.substring(0, delimiterIndex))) {
+          return true;
+        }
+        delimiterIndex = relativePath.indexOf(GCSHelper.GCS_DELIMITER, delimiterIndex + 1);
+      }
+      return false;
+    }
+  }
+}
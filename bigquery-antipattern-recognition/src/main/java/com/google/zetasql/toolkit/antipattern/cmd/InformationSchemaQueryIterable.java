@@ -23,15 +23,19 @@ import java.io.IOException;
 import org.apache.commons.lang3.math.NumberUtils;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public class InformationSchemaQueryIterable implements Iterator<InputQuery> {
 
   Iterator<FieldValueList> fieldValueListIterator;
+  // null unless reading incrementally
+  InformationSchemaWatermark watermark;
+  FieldValueList nextRow;
   String IS_TABLE_DEFAULT = "`%s.region-%s`.INFORMATION_SCHEMA.JOBS";
   String DAYS_BACK_DEFAULT = "30";
   Integer SLOTMS_MIN_DEFAULT = 0;
   Long TIMEOUT_SECS_DEFAULT = 60L;
-  Float TOP_N_PERC_DEFAULT = 0.1F;
+  public static final Float TOP_N_PERC_DEFAULT = 0.1F;
   String DEFAULT_REGION = "us";
 
 
@@ -41,6 +45,22 @@ public class InformationSchemaQueryIterable implements Iterator<InputQuery> {
       String customTopNPercent, String customRegion, String customInfoSchemaProject, Boolean groupQueries,
       String serviceAccountKeyfilePath)
       throws InterruptedException, IOException {
+    this(processingProjectId, customDaysBack, startTime, endTime, customISTable,
+        infoSchemaSlotmsMin, customTimeoutInSecs, customTopNPercent, customRegion,
+        customInfoSchemaProject, groupQueries, serviceAccountKeyfilePath, null);
+  }
+
+  /**
+   * @param watermark progress of previous runs, when it holds a watermark only the jobs of the
+   *     days back or start/end window that ended since then are read. Null to always read the
+   *     whole window.
+   */
+  public InformationSchemaQueryIterable(String processingProjectId, String customDaysBack,
+      String startTime,
+      String endTime, String customISTable, String infoSchemaSlotmsMin, String customTimeoutInSecs,
+      String customTopNPercent, String customRegion, String customInfoSchemaProject, Boolean groupQueries,
+      String serviceAccountKeyfilePath, InformationSchemaWatermark watermark)
+      throws InterruptedException, IOException {
 
     String daysBack = customDaysBack == null ? DAYS_BACK_DEFAULT : customDaysBack;
     String region = customRegion == null ? DEFAULT_REGION : customRegion;
@@ -59,22 +79,45 @@ public class InformationSchemaQueryIterable implements Iterator<InputQuery> {
     BigQueryHelper bigQueryHelper = new BigQueryHelper(processingProjectId,
         serviceAccountKeyfilePath);
 
-    TableResult tableResult =
-        bigQueryHelper.getQueriesFromIS(daysBack, startTime, endTime, ISTable, slotsMsMin,
-            timeoutInSecs, topNPercent, region, groupQueries);
+    TableResult tableResult;
+    if (watermark != null && watermark.hasWatermark()) {
+      tableResult =
+          bigQueryHelper.getQueriesFromISSince(watermark.getReadFromMicros(), daysBack, startTime,
+              endTime, ISTable, slotsMsMin, timeoutInSecs, topNPercent, region, groupQueries);
+    } else {
+      tableResult =
+          bigQueryHelper.getQueriesFromIS(daysBack, startTime, endTime, ISTable, slotsMsMin,
+              timeoutInSecs, topNPercent, region, groupQueries);
+    }
 
+    this.watermark = watermark;
     fieldValueListIterator = tableResult.iterateAll().iterator();
   }
 
   @Override
   public boolean hasNext() {
-    return fieldValueListIterator.hasNext();
+    while (nextRow == null && fieldValueListIterator.hasNext()) {
+      FieldValueList row = fieldValueListIterator.next();
+      // jobs in the overlap with the previous run were already processed
+      if (watermark == null || !watermark.isRead(row.get("job_id").getStringValue())) {
+        nextRow = row;
+      }
+    }
+    return nextRow != null;
   }
 
   @Override
   public InputQuery next() {
-    FieldValueList row = fieldValueListIterator.next();
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    FieldValueList row = nextRow;
+    nextRow = null;
     String job_id = row.get("job_id").getStringValue();
+    // jobs still running have no end time yet, they are read again once they end
+    if (watermark != null && !row.get("end_time_micros").isNull()) {
+      watermark.record(job_id, row.get("end_time_micros").getLongValue());
+    }
     String query = row.get("query").getStringValue();
     String projectId = row.get("project_id").getStringValue();
     String userEmail = row.get("user_email").getStringValue();
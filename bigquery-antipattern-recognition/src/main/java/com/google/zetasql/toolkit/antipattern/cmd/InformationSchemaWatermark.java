@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of incremental reads of INFORMATION_SCHEMA.JOBS, kept in a local state file between
+ * runs.
+ *
+ * <p>Holds the highest end time read so far. The next run reads the jobs that ended after the
+ * watermark minus an overlap, so jobs that show up late in INFORMATION_SCHEMA are not missed. Jobs
+ * read within the overlap are remembered and skipped when they are read again. End times are used
+ * rather than creation times, a long running job created before the watermark but still running at
+ * the end of a run is read by the next run.
+ */
+public class InformationSchemaWatermark {
+
+  private static final Logger logger = LoggerFactory.getLogger(InformationSchemaWatermark.class);
+  private static final ObjectMapper objectMapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  public static final long NO_WATERMARK = -1;
+  public static final long DEFAULT_OVERLAP_MINUTES = 15;
+
+  private long endTimeMicros = NO_WATERMARK;
+  private String jobId;
+  private long overlapMinutes = DEFAULT_OVERLAP_MINUTES;
+  // end time of the jobs read within the overlap of the watermark
+  private Map<String, Long> recentJobs = new HashMap<>();
+
+  public InformationSchemaWatermark() {}
+
+  /** Reads the state file, a missing file means nothing was read yet. */
+  public static InformationSchemaWatermark read(String path, long overlapMinutes)
+      throws IOException {
+    InformationSchemaWatermark watermark;
+    if (Files.exists(Paths.get(path))) {
+      watermark = objectMapper.readValue(Paths.get(path).toFile(), InformationSchemaWatermark.class);
+      logger.info(
+          "Read INFORMATION_SCHEMA watermark: job "
+              + watermark.getJobId()
+              + " ended at "
+              + watermark.getEndTimeMicros()
+              + " micros");
+    } else {
+      watermark = new InformationSchemaWatermark();
+      logger.info("No INFORMATION_SCHEMA watermark in " + path + ", doing a full read");
+    }
+    watermark.setOverlapMinutes(overlapMinutes);
+    return watermark;
+  }
+
+  /** Writes the state file, replacing the previous one only once it is completely written. */
+  public synchronized void write(String path) throws IOException {
+    pruneRecentJobs();
+    Path target = Paths.get(path);
+    Path temp = Paths.get(path + ".tmp");
+    objectMapper.writeValue(temp.toFile(), this);
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    logger.info(
+        "Wrote INFORMATION_SCHEMA watermark: job "
+            + jobId
+            + " ended at "
+            + endTimeMicros
+            + " micros");
+  }
+
+  @JsonIgnore
+  public boolean hasWatermark() {
+    return endTimeMicros != NO_WATERMARK;
+  }
+
+  /** Jobs ended after this time are read by the next run. */
+  @JsonIgnore
+  public long getReadFromMicros() {
+    return endTimeMicros - TimeUnit.MINUTES.toMicros(overlapMinutes);
+  }
+
+  /** Whether the job was read by a previous run, i.e. it is in the overlap. */
+  public synchronized boolean isRead(String jobId) {
+    return recentJobs.containsKey(jobId);
+  }
+
+  public synchronized void record(String jobId, long jobEndTimeMicros) {
+    recentJobs.put(jobId, jobEndTimeMicros);
+    if (jobEndTimeMicros > endTimeMicros) {
+      endTimeMicros = jobEndTimeMicros;
+      this.jobId = jobId;
+    }
+  }
+
+  // jobs ended before the overlap of the watermark will not be read again
+  private void pruneRecentJobs() {
+    long readFromMicros = getReadFromMicros();
+    recentJobs.values().removeIf(jobEndTime -> jobEndTime < readFromMicros);
+  }
+
+  public long getEndTimeMicros() {
+    return endTimeMicros;
+  }
+
+  // state files of earlier versions hold the creation time, a lower bound of the end time
+  @JsonAlias("creationTimeMicros")
+  public void setEndTimeMicros(long endTimeMicros) {
+    this.endTimeMicros = endTimeMicros;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  @JsonIgnore
+  public long getOverlapMinutes() {
+    return overlapMinutes;
+  }
+
+  @JsonIgnore
+  public void setOverlapMinutes(long overlapMinutes) {
+    this.overlapMinutes = overlapMinutes;
+  }
+
+  public Map<String, Long> getRecentJobs() {
+    return recentJobs;
+  }
+
+  public void setRecentJobs(Map<String, Long> recentJobs) {
+    this.recentJobs = recentJobs;
+  }
+}
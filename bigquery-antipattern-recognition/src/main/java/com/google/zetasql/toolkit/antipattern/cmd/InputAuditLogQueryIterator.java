@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import com.google.zetasql.toolkit.antipattern.util.InputStreamHelper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the queries of BigQuery jobs from an export of Cloud Audit Logs (BigQueryAuditMetadata
+ * data access logs), for projects where INFORMATION_SCHEMA cannot be read.
+ *
+ * <p>The export is a JSON lines file or a folder of them, local or on GCS, optionally gzip or zstd
+ * compressed. Only completed query jobs are read, with the filters of {@link
+ * com.google.zetasql.toolkit.antipattern.util.BigQueryHelper#getQueriesFromIS}: more than {@code
+ * slotMsMin} slot ms, no scripts, no default-pipeline reservation and no INFORMATION_SCHEMA
+ * queries. Of these, the jobs whose {@code PERCENT_RANK()} by slot ms is below {@code topNPercent}
+ * are returned.
+ *
+ * <p>The export is streamed three times, so memory does not grow with it: the first pass counts
+ * the jobs, the second keeps the slot ms of the top jobs in a heap to find the smallest slot ms
+ * returned, the third returns the jobs at or above it, in the order of the export.
+ */
+public class InputAuditLogQueryIterator implements Iterator<InputQuery>, ResumableInput {
+
+  private static final Logger logger = LoggerFactory.getLogger(InputAuditLogQueryIterator.class);
+
+  public static final String DEFAULT_INCLUDE_GLOB = "**.json*";
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+  private static final String JOB_CHANGE = "protoPayload.metadata.jobChange.";
+  private static final String JOB = JOB_CHANGE + "job.";
+  private static final String STATE_AFTER = JOB_CHANGE + "after";
+  private static final String JOB_NAME = JOB + "jobName";
+  private static final String JOB_TYPE = JOB + "jobConfig.type";
+  private static final String QUERY = JOB + "jobConfig.queryConfig.query";
+  private static final String STATEMENT_TYPE = JOB + "jobConfig.queryConfig.statementType";
+  private static final String TOTAL_SLOT_MS = JOB + "jobStats.totalSlotMs";
+  private static final String RESERVATION = JOB + "jobStats.reservation";
+  private static final String USER_EMAIL = "protoPayload.authenticationInfo.principalEmail";
+  private static final String LOCATION = "resource.labels.location";
+
+  // fields read from each log entry, and the objects holding them
+  private static final Set<String> FIELD_PATHS =
+      new HashSet<>(
+          Arrays.asList(
+              STATE_AFTER,
+              JOB_NAME,
+              JOB_TYPE,
+              QUERY,
+              STATEMENT_TYPE,
+              TOTAL_SLOT_MS,
+              RESERVATION,
+              USER_EMAIL,
+              LOCATION));
+  private static final Set<String> OBJECT_PATHS = new HashSet<>();
+
+  static {
+    for (String fieldPath : FIELD_PATHS) {
+      for (int i = fieldPath.indexOf('.'); i > 0; i = fieldPath.indexOf('.', i + 1)) {
+        OBJECT_PATHS.add(fieldPath.substring(0, i));
+      }
+    }
+  }
+
+  private final String path;
+  private final GCSHelper gcsHelper;
+  private final InputPathFilter filter;
+  private final long slotMsMin;
+  // jobs with less slot ms are not returned, Long.MAX_VALUE when no job is
+  private final long minSelectedSlotMs;
+  private final JobReader selectedJobs;
+  private InputQuery nextQuery;
+  // queries returned
+  private long queryOffset = 0;
+
+  public InputAuditLogQueryIterator(
+      String path,
+      InputPathFilter filter,
+      long slotMsMin,
+      float topNPercent,
+      GCSHelper gcsHelper) {
+    this.path = path;
+    this.gcsHelper = gcsHelper;
+    this.filter = filter;
+    this.slotMsMin = slotMsMin;
+    this.minSelectedSlotMs = findMinSelectedSlotMs(topNPercent);
+    this.selectedJobs = new JobReader();
+  }
+
+  private long findMinSelectedSlotMs(float topNPercent) {
+    long jobCount = 0;
+    JobReader jobs = new JobReader();
+    while (jobs.hasNext()) {
+      jobs.next();
+      jobCount++;
+    }
+    long selectedCount = selectedCount(jobCount, topNPercent);
+    logger.info(
+        "Read {} completed query jobs from audit logs {}, selecting the top {}% ({} jobs)",
+        jobCount,
+        path,
+        topNPercent * 100,
+        selectedCount);
+    if (selectedCount == 0) {
+      return Long.MAX_VALUE;
+    }
+    if (selectedCount == jobCount) {
+      return Long.MIN_VALUE;
+    }
+    LongMinHeap topSlotMs = new LongMinHeap((int) selectedCount);
+    jobs = new JobReader();
+    while (jobs.hasNext()) {
+      topSlotMs.offer(jobs.next().totalSlotMs);
+    }
+    return topSlotMs.min();
+  }
+
+  /**
+   * Number of jobs with {@code PERCENT_RANK() OVER(ORDER BY total_slot_ms DESC) < topNPercent},
+   * counting ties at the lowest slot ms as one.
+   */
+  static long selectedCount(long jobCount, float topNPercent) {
+    // the threshold is a literal of the INFORMATION_SCHEMA query, compared as a FLOAT64
+    double threshold = Double.parseDouble(Float.toString(topNPercent));
+    if (jobCount <= 1) {
+      // PERCENT_RANK() is 0 for a single row
+      return threshold > 0 ? jobCount : 0;
+    }
+    // PERCENT_RANK() of the job at position p, from 1, is (p - 1) / (jobCount - 1)
+    long count = (long) Math.ceil(threshold * (jobCount - 1));
+    count = Math.max(0, Math.min(jobCount, count));
+    while (count > 0 && (count - 1) / (double) (jobCount - 1) >= threshold) {
+      count--;
+    }
+    while (count < jobCount && count / (double) (jobCount - 1) < threshold) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (nextQuery == null && selectedJobs.hasNext()) {
+      AuditLogJob job = selectedJobs.next();
+      if (job.totalSlotMs >= minSelectedSlotMs) {
+        nextQuery =
+            new InputQuery(
+                job.query,
+                job.jobId,
+                job.projectId,
+                job.userEmail,
+                (float) (job.totalSlotMs / MILLIS_PER_HOUR));
+      }
+    }
+    return nextQuery != null;
+  }
+
+  @Override
+  public InputQuery next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    InputQuery inputQuery = nextQuery;
+    nextQuery = null;
+    queryOffset++;
+    return inputQuery;
+  }
+
+  @Override
+  public InputCursor getCursor() {
+    return new InputCursor(queryOffset);
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    while (queryOffset < cursor.getPosition() && hasNext()) {
+      next();
+    }
+  }
+
+  private Iterator<String> listFiles() {
+    boolean isFile =
+        GCSHelper.isGCSPath(path) ? gcsHelper.isGCSFile(path) : !Files.isDirectory(Path.of(path));
+    return isFile
+        ? Collections.singletonList(path).iterator()
+        : FolderWalker.walk(path, filter, gcsHelper);
+  }
+
+  /** A completed query job passing the filters, with the fields needed to return it. */
+  static class AuditLogJob {
+    String projectId;
+    String jobId;
+    String query;
+    String userEmail;
+    long totalSlotMs;
+  }
+
+  /**
+   * Parses a log entry, null unless it is a completed query job passing the filters. Only the
+   * objects on the path of a read field are parsed, the others are skipped.
+   */
+  AuditLogJob readJob(JsonParser parser) throws IOException {
+    Map<String, String> fields = new HashMap<>();
+    readObject(parser, "", fields);
+    String query = fields.get(QUERY);
+    String totalSlotMs = fields.get(TOTAL_SLOT_MS);
+    if (!"DONE".equals(fields.get(STATE_AFTER))
+        || !"QUERY".equals(fields.get(JOB_TYPE))
+        || query == null
+        || totalSlotMs == null
+        || "SCRIPT".equals(fields.get(STATEMENT_TYPE))
+        || (fields.get(RESERVATION) != null && fields.get(RESERVATION).endsWith("default-pipeline"))
+        || query.contains("INFORMATION_SCHEMA")) {
+      return null;
+    }
+    AuditLogJob job = new AuditLogJob();
+    try {
+      job.totalSlotMs = Long.parseLong(totalSlotMs);
+    } catch (NumberFormatException e) {
+      logger.warn(
+          "Skipping log entry of job "
+              + fields.get(JOB_NAME)
+              + " with invalid total slot ms: "
+              + totalSlotMs);
+      return null;
+    }
+    if (job.totalSlotMs <= slotMsMin) {
+      return null;
+    }
+    job.query = query;
+    job.userEmail = fields.get(USER_EMAIL);
+    // projects/<project>/jobs/<job id>, with /locations/<location> in newer entries
+    String[] jobName = fields.getOrDefault(JOB_NAME, "").split("/");
+    String location = fields.get(LOCATION);
+    String jobId = null;
+    for (int i = 0; i + 1 < jobName.length; i += 2) {
+      if (jobName[i].equals("projects")) {
+        job.projectId = jobName[i + 1];
+      } else if (jobName[i].equals("locations")) {
+        location = jobName[i + 1];
+      } else if (jobName[i].equals("jobs")) {
+        jobId = jobName[i + 1];
+      }
+    }
+    // same format as the job ids read from INFORMATION_SCHEMA
+    job.jobId =
+        job.projectId + ":" + (location == null ? "" : location.toUpperCase() + ".") + jobId;
+    return job;
+  }
+
+  private static void readObject(JsonParser parser, String objectPath, Map<String, String> fields)
+      throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      String fieldPath = objectPath.isEmpty() ? fieldName : objectPath + "." + fieldName;
+      JsonToken value = parser.nextToken();
+      if (value == JsonToken.START_OBJECT && OBJECT_PATHS.contains(fieldPath)) {
+        readObject(parser, fieldPath, fields);
+      } else if (value.isScalarValue() && FIELD_PATHS.contains(fieldPath)) {
+        fields.put(fieldPath, parser.getValueAsString());
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /** Streams the completed query jobs of every file of the export. */
+  private class JobReader implements Iterator<AuditLogJob> {
+
+    private final Iterator<String> files = listFiles();
+    private String file;
+    private JsonParser parser;
+    private AuditLogJob nextJob;
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (nextJob == null) {
+          if (parser == null) {
+            if (!files.hasNext()) {
+              return false;
+            }
+            file = files.next();
+            parser = jsonFactory.createParser(InputStreamHelper.open(file, gcsHelper));
+          }
+          JsonToken token = parser.nextToken();
+          if (token == null) {
+            parser.close();
+            parser = null;
+          } else if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON log entry per line, found " + token);
+          } else {
+            nextJob = readJob(parser);
+          }
+        }
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read audit logs " + file, e);
+      }
+    }
+
+    @Override
+    public AuditLogJob next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      AuditLogJob job = nextJob;
+      nextJob = null;
+      return job;
+    }
+  }
+
+  /** Keeps the largest values offered, 8 bytes each. */
+  static class LongMinHeap {
+    private final long[] values;
+    private int size = 0;
+
+    LongMinHeap(int capacity) {
+      values = new long[capacity];
+    }
+
+    void offer(long value) {
+      if (size < values.length) {
+        int i = size++;
+        while (i > 0 && values[(i - 1) / 2] > value) {
+          values[i] = values[(i - 1) / 2];
+          i = (i - 1) / 2;
+        }
+        values[i] = value;
+      } else if (value > values[0]) {
+        // replaces the smallest value and sifts it down
+        int i = 0;
+        while (2 * i + 1 < size) {
+          int child = 2 * i + 1;
+          if (child + 1 < size && values[child + 1] < values[child]) {
+            child++;
+          }
+          if (values[child] >= value) {
+            break;
+          }
+          values[i] = values[child];
+          i = child;
+        }
+        values[i] = value;
+      }
+    }
+
+    long min() {
+      return values[0];
+    }
+  }
+}
@@ -16,37 +16,137 @@
 
 package com.google.zetasql.toolkit.antipattern.cmd;
 
+import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.Job;
 import com.google.cloud.bigquery.TableResult;
 import com.google.zetasql.toolkit.antipattern.util.BigQueryHelper;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class InputBigQueryTableIterator implements Iterator<InputQuery> {
+public class InputBigQueryTableIterator implements Iterator<InputQuery>, ResumableInput {
 
-  Iterator<FieldValueList> fieldValueListIterator;
+  private static final Logger logger = LoggerFactory.getLogger(InputBigQueryTableIterator.class);
+
+  private final BigQueryHelper bigQueryHelper;
+  private final String inputTable;
+  // started on first use, unless resumed from the job of a previous run
+  private Job job;
+  private TableResult page;
+  private Iterator<FieldValueList> fieldValueListIterator;
+  // token of the current page, null for the first page
+  private String pageToken;
+  private long pageOffset = 0;
+  private long position = 0;
 
   public InputBigQueryTableIterator(String inputTable, String processingProject, String serviceAccountKeyfilePath)
       throws InterruptedException, IOException {
 
-    BigQueryHelper bigQueryHelper = new BigQueryHelper(processingProject,
+    this.bigQueryHelper = new BigQueryHelper(processingProject,
         serviceAccountKeyfilePath);
-    TableResult tableResult = bigQueryHelper.getQueriesFromBQTable(inputTable);
-
-    fieldValueListIterator = tableResult.iterateAll().iterator();
+    this.inputTable = inputTable;
   }
 
   @Override
   public boolean hasNext() {
+    start();
+    while (!fieldValueListIterator.hasNext() && page.hasNextPage()) {
+      pageToken = page.getNextPageToken();
+      page = page.getNextPage();
+      fieldValueListIterator = page.getValues().iterator();
+      pageOffset = 0;
+    }
     return fieldValueListIterator.hasNext();
   }
 
   @Override
   public InputQuery next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
     FieldValueList row = fieldValueListIterator.next();
+    pageOffset++;
+    position++;
     String job_id = row.get("id").getStringValue();
     String query = row.get("query").getStringValue();
     return new InputQuery(query, job_id);
   }
+
+  @Override
+  public InputCursor getCursor() {
+    InputCursor cursor = new InputCursor(position);
+    if (job != null) {
+      cursor.setJobProject(job.getJobId().getProject());
+      cursor.setJobId(job.getJobId().getJob());
+      cursor.setJobLocation(job.getJobId().getLocation());
+      cursor.setPageToken(pageToken);
+      cursor.setPageOffset(pageOffset);
+    }
+    return cursor;
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    if (cursor.getJobId() != null && resumeFromJob(cursor)) {
+      return;
+    }
+    // the results of the previous job expired, read the table again and skip the rows read
+    logger.info("Skipping " + cursor.getPosition() + " rows of table: " + inputTable);
+    while (position < cursor.getPosition() && hasNext()) {
+      fieldValueListIterator.next();
+      pageOffset++;
+      position++;
+    }
+  }
+
+  private boolean resumeFromJob(InputCursor cursor) {
+    try {
+      Job previousJob =
+          bigQueryHelper.getJob(
+              cursor.getJobProject(), cursor.getJobId(), cursor.getJobLocation());
+      if (previousJob == null) {
+        return false;
+      }
+      page =
+          cursor.getPageToken() == null
+              ? previousJob.getQueryResults()
+              : previousJob.getQueryResults(
+                  BigQuery.QueryResultsOption.pageToken(cursor.getPageToken()));
+      job = previousJob;
+      pageToken = cursor.getPageToken();
+      fieldValueListIterator = page.getValues().iterator();
+      for (pageOffset = 0;
+          pageOffset < cursor.getPageOffset() && fieldValueListIterator.hasNext();
+          pageOffset++) {
+        fieldValueListIterator.next();
+      }
+      position = cursor.getPosition();
+      logger.info("Resuming from results of job: " + cursor.getJobId());
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while resuming job " + cursor.getJobId(), e);
+    } catch (RuntimeException e) {
+      logger.info("Could not resume from results of job: " + cursor.getJobId());
+      return false;
+    }
+  }
+
+  private void start() {
+    if (page != null) {
+      return;
+    }
+    try {
+      job = bigQueryHelper.startReadFromBQTable(inputTable);
+      page = job.getQueryResults();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading table " + inputTable, e);
+    }
+    fieldValueListIterator = page.getValues().iterator();
+  }
 }
@@ -21,9 +21,11 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.Iterator;
 
-public class InputCsvQueryIterator implements Iterator<InputQuery> {
+public class InputCsvQueryIterator implements Iterator<InputQuery>, ResumableInput {
 
   private Iterator<String[]> reader;
+  // csv records read, not counting the header
+  private long rowOffset = 0;
 
   public InputCsvQueryIterator(String csvPath) throws IOException {
     reader = (new CSVReader(new FileReader(csvPath))).iterator();
@@ -36,9 +38,24 @@ public class InputCsvQueryIterator implements Iterator<InputQuery> {
     return reader.hasNext();
   }
 
+  @Override
+  public InputCursor getCursor() {
+    return new InputCursor(rowOffset);
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    // records are skipped without building queries, quoted queries may span several lines
+    while (rowOffset < cursor.getPosition() && reader.hasNext()) {
+      reader.next();
+      rowOffset++;
+    }
+  }
+
   @Override
   public InputQuery next() {
     String[] next = reader.next();
+    rowOffset++;
     return new InputQuery(next[1].replace("\"\"", "\""), next[0]);
   }
 }
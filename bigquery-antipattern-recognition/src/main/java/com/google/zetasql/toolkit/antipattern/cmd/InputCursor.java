@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+/**
+ * Position in the input queries, saved in checkpoints so an interrupted run can resume reading
+ * where it stopped.
+ *
+ * <p>{@code position} is the number of queries read, which every input can skip. Inputs read
+ * from a BigQuery query job also record the job and the page being read, so they resume from that
+ * page instead of reading the rows again. The memory mapped CSV input records the byte offset of
+ * the records being read, with the number of records read from there in {@code pageOffset}.
+ */
+public class InputCursor {
+
+  private long position;
+  private String jobProject;
+  private String jobId;
+  private String jobLocation;
+  // token of the page being read, null for the first page
+  private String pageToken;
+  private long pageOffset;
+  // start of the CSV records being read, -1 when unknown
+  private long byteOffset = -1;
+
+  public InputCursor() {}
+
+  public InputCursor(long position) {
+    this.position = position;
+  }
+
+  public long getPosition() {
+    return position;
+  }
+
+  public void setPosition(long position) {
+    this.position = position;
+  }
+
+  public String getJobProject() {
+    return jobProject;
+  }
+
+  public void setJobProject(String jobProject) {
+    this.jobProject = jobProject;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  public String getJobLocation() {
+    return jobLocation;
+  }
+
+  public void setJobLocation(String jobLocation) {
+    this.jobLocation = jobLocation;
+  }
+
+  public String getPageToken() {
+    return pageToken;
+  }
+
+  public void setPageToken(String pageToken) {
+    this.pageToken = pageToken;
+  }
+
+  public long getPageOffset() {
+    return pageOffset;
+  }
+
+  public void setPageOffset(long pageOffset) {
+    this.pageOffset = pageOffset;
+  }
+
+  public long getByteOffset() {
+    return byteOffset;
+  }
+
+  public void setByteOffset(long byteOffset) {
+    this.byteOffset = byteOffset;
+  }
+}
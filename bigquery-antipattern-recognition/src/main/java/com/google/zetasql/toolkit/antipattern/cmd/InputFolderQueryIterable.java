@@ -16,42 +16,178 @@
 
 package com.google.zetasql.toolkit.antipattern.cmd;
 
-import com.google.cloud.storage.*;
+import com.google.cloud.storage.StorageException;
 import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
 import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class InputFolderQueryIterable implements Iterator<InputQuery> {
+/**
+ * Reads the query files of a local or GCS folder.
+ *
+ * <p>File paths are consumed lazily, e.g. from a {@link FolderWalker}, so reading starts before the
+ * whole folder is listed. Files are read ahead of the consumer by {@code readThreads} threads, so reading a large GCS
+ * folder is not bound by the latency of each object. At most {@code readThreads} * {@link
+ * #READ_AHEAD_PER_THREAD} files are held in memory. Queries are returned in the order of the file
+ * paths. Reads failing with a transient error are retried with exponential backoff.
+ */
+public class InputFolderQueryIterable implements Iterator<InputQuery>, ResumableInput {
+
+  private static final Logger logger = LoggerFactory.getLogger(InputFolderQueryIterable.class);
 
-  Iterator<String> filePathIterator;
-  GCSHelper gcsHelper = new GCSHelper();
+  public static final int DEFAULT_READ_THREADS = 8;
+  static final int READ_AHEAD_PER_THREAD = 4;
+  static final int MAX_READ_ATTEMPTS = 4;
+  static final long INITIAL_BACKOFF_MILLIS = 200;
+
+  // paths of the files not read ahead yet
+  private final Iterator<String> filePaths;
+  // number of queries returned so far
+  long fileIndex = 0;
+  GCSHelper gcsHelper;
+  private final int readThreads;
+  private final long initialBackoffMillis;
+  // reads of the files from fileIndex on, in order
+  private final ArrayDeque<Future<InputQuery>> readAhead = new ArrayDeque<>();
+  // created on first use
+  private ExecutorService executor;
 
   public InputFolderQueryIterable(List<String> filePathList) {
-    this.filePathIterator = filePathList.iterator();
+    this(filePathList.iterator(), new GCSHelper(), DEFAULT_READ_THREADS);
+  }
+
+  public InputFolderQueryIterable(
+      Iterator<String> filePaths, GCSHelper gcsHelper, int readThreads) {
+    this(filePaths, gcsHelper, readThreads, INITIAL_BACKOFF_MILLIS);
+  }
+
+  InputFolderQueryIterable(
+      Iterator<String> filePaths, GCSHelper gcsHelper, int readThreads, long initialBackoffMillis) {
+    this.filePaths = filePaths;
+    this.gcsHelper = gcsHelper;
+    this.readThreads = Math.max(1, readThreads);
+    this.initialBackoffMillis = initialBackoffMillis;
   }
 
   @Override
   public boolean hasNext() {
-    return filePathIterator.hasNext();
+    return !readAhead.isEmpty() || filePaths.hasNext();
+  }
+
+  @Override
+  public InputCursor getCursor() {
+    return new InputCursor(fileIndex);
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    // the listing is in a fixed order, the files before the cursor are listed but not read
+    for (; fileIndex < cursor.getPosition() && filePaths.hasNext(); fileIndex++) {
+      filePaths.next();
+    }
   }
 
   @Override
   public InputQuery next() {
-    String filePathStr = filePathIterator.next();
-    Path fileName = Path.of(filePathStr);
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    fillReadAhead();
+    Future<InputQuery> read = readAhead.poll();
+    fileIndex++;
+    if (!hasNext()) {
+      executor.shutdown();
+    }
     try {
-      if (GCSHelper.isGCSPath(filePathStr)) {
-        return gcsHelper.getInputQueryFromGCSPath(filePathStr);
-      } else {
-        return new InputQuery(Files.readString(fileName), filePathStr);
+      return read.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading input files", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private void fillReadAhead() {
+    if (executor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      executor =
+          Executors.newFixedThreadPool(
+              readThreads,
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "input-read-ahead-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    while (readAhead.size() < readThreads * READ_AHEAD_PER_THREAD && filePaths.hasNext()) {
+      String filePathStr = filePaths.next();
+      readAhead.add(executor.submit(() -> readWithRetry(filePathStr)));
+    }
+  }
+
+  private InputQuery readWithRetry(String filePathStr) throws IOException, InterruptedException {
+    long backoffMillis = initialBackoffMillis;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return read(filePathStr);
+      } catch (IOException | StorageException e) {
+        if (attempt == MAX_READ_ATTEMPTS || !isTransient(e)) {
+          throw e;
+        }
+        logger.warn(
+            "Could not read "
+                + filePathStr
+                + " (attempt "
+                + attempt
+                + " of "
+                + MAX_READ_ATTEMPTS
+                + "), retrying in "
+                + backoffMillis
+                + " ms: "
+                + e.getMessage());
+        Thread.sleep(backoffMillis);
+        backoffMillis *= 2;
+      }
+    }
+  }
+
+  private InputQuery read(String filePathStr) throws IOException {
+    if (GCSHelper.isGCSPath(filePathStr)) {
+      return gcsHelper.getInputQueryFromGCSPath(filePathStr);
+    } else {
+      return new InputQuery(Files.readString(Path.of(filePathStr)), filePathStr);
+    }
+  }
+
+  // Errors a later attempt may not hit: those GCS reports as retryable and network timeouts or
+  // resets, e.g. of a network file system. Missing, unreadable or undecodable files are not.
+  private static boolean isTransient(Exception e) {
+    if (e instanceof StorageException) {
+      return ((StorageException) e).isRetryable();
+    }
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SocketTimeoutException || cause instanceof SocketException) {
+        return true;
       }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
     }
+    return false;
   }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import com.google.zetasql.toolkit.antipattern.util.InputStreamHelper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams queries from a JSON lines file, local or on GCS, optionally gzip or zstd compressed.
+ *
+ * <p>Each line is an object such as an export of INFORMATION_SCHEMA.JOBS: {@code job_id}, {@code
+ * project_id}, {@code query}, {@code user_email} and {@code total_slot_ms} (or {@code slot_hours})
+ * are read, other fields are skipped. Records are read token by token, without building a tree of
+ * the record. Records without a query are skipped.
+ */
+public class InputJsonlQueryIterator implements Iterator<InputQuery>, ResumableInput {
+
+  private static final Logger logger = LoggerFactory.getLogger(InputJsonlQueryIterator.class);
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+  private final String path;
+  private final JsonParser parser;
+  // records read, including the ones skipped
+  private long recordOffset = 0;
+  // records up to the last query returned, hasNext() may read further
+  private long cursorOffset = 0;
+  private InputQuery nextQuery;
+  private long nextQueryOffset;
+  private boolean endOfInput = false;
+
+  public InputJsonlQueryIterator(String path) throws IOException {
+    this(path, new GCSHelper());
+  }
+
+  public InputJsonlQueryIterator(String path, GCSHelper gcsHelper) throws IOException {
+    this.path = path;
+    this.parser = jsonFactory.createParser(InputStreamHelper.open(path, gcsHelper));
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (nextQuery == null && !endOfInput) {
+      try {
+        if (!nextRecord()) {
+          endOfInput = true;
+          parser.close();
+          break;
+        }
+        nextQuery = readRecord();
+        nextQueryOffset = recordOffset;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read record " + recordOffset + " of " + path, e);
+      }
+    }
+    return nextQuery != null;
+  }
+
+  @Override
+  public InputQuery next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    InputQuery inputQuery = nextQuery;
+    nextQuery = null;
+    cursorOffset = nextQueryOffset;
+    return inputQuery;
+  }
+
+  @Override
+  public InputCursor getCursor() {
+    return new InputCursor(cursorOffset);
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    try {
+      while (recordOffset < cursor.getPosition() && nextRecord()) {
+        parser.skipChildren();
+      }
+      cursorOffset = recordOffset;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not skip records of " + path, e);
+    }
+  }
+
+  // moves to the start of the next record, counting it
+  private boolean nextRecord() throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      return false;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new IOException("Expected a JSON object per line, found " + token);
+    }
+    recordOffset++;
+    return true;
+  }
+
+  private InputQuery readRecord() throws IOException {
+    String jobId = null;
+    String projectId = null;
+    String query = null;
+    String userEmail = null;
+    float slotHours = -1;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (value == JsonToken.VALUE_NULL) {
+        continue;
+      }
+      switch (fieldName) {
+        case "job_id":
+          jobId = parser.getValueAsString();
+          break;
+        case "project_id":
+          projectId = parser.getValueAsString();
+          break;
+        case "query":
+          query = parser.getValueAsString();
+          break;
+        case "user_email":
+          userEmail = parser.getValueAsString();
+          break;
+        case "total_slot_ms":
+          // exported as a string by BigQuery for INT64 columns
+          slotHours = (float) (parser.getValueAsDouble() / MILLIS_PER_HOUR);
+          break;
+        case "slot_hours":
+          slotHours = (float) parser.getValueAsDouble();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    if (query == null) {
+      logger.warn("Skipping record " + recordOffset + " of " + path + " without a query");
+      return null;
+    }
+    if (jobId == null) {
+      jobId = path + ":" + recordOffset;
+    }
+    return new InputQuery(query, jobId, projectId, userEmail, slotHours);
+  }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a local "id,query" CSV file with several threads, for multi-gigabyte query dumps.
+ *
+ * <p>The file is memory-mapped and cut into splits of {@link #DEFAULT_SPLIT_BYTES} bytes that are
+ * parsed in parallel. A split only knows where its first record starts once it knows whether it
+ * starts inside a quoted field, i.e. the parity of the quotes before it: the quotes of each split
+ * are counted in parallel first, then each split starts right after the first line break outside
+ * quotes. Quoted fields escape quotes by doubling them (RFC 4180) and may span several lines.
+ *
+ * <p>Splits are parsed ahead of the consumer, at most {@code 2 * readThreads} at once, and their
+ * queries are returned in file order. The cursor holds the number of records read, as for {@link
+ * InputCsvQueryIterator}, and the byte offset where the records of the current split start with
+ * the number of records read from there. A resumed run starts parsing at that offset instead of
+ * reading the file from its start.
+ */
+public class InputMappedCsvQueryIterator implements Iterator<InputQuery>, ResumableInput {
+
+  static final long DEFAULT_SPLIT_BYTES = 8L * 1024 * 1024;
+
+  private final String csvPath;
+  private final FileChannel channel;
+  private final long size;
+  private final long splitBytes;
+  private final int splitCount;
+  private final int readAheadSplits;
+  private final ExecutorService executor;
+
+  private static final class ParsedSplit {
+    // byte offset of the first record of the split
+    private final long start;
+    // records of the split skipped when resuming
+    private final long skipped;
+    private final List<InputQuery> queries;
+
+    private ParsedSplit(long start, long skipped, List<InputQuery> queries) {
+      this.start = start;
+      this.skipped = skipped;
+      this.queries = queries;
+    }
+  }
+
+  // quote counts of the splits from nextSplit on, in order
+  private final ArrayDeque<Future<Long>> quoteCounts = new ArrayDeque<>();
+  private int nextCountedSplit = 0;
+  // splits before nextSplit whose queries were not all returned yet, in order
+  private final ArrayDeque<Future<ParsedSplit>> parsedSplits = new ArrayDeque<>();
+  private int nextSplit = 0;
+  // whether nextSplit starts inside a quoted field
+  private boolean nextSplitInQuotes = false;
+  // whether nextSplit ends inside a quoted field, null until its quotes are counted
+  private Boolean nextSplitEndsInQuotes;
+  // records of nextSplit already read before a resume
+  private long recordsToSkip = 0;
+  // where the records of nextSplit start when resuming at a byte offset, -1 otherwise
+  private long nextSplitStart = -1;
+  private Iterator<InputQuery> currentSplit = Collections.emptyIterator();
+  // first record of the current split and the records read from it, for the cursor
+  private long currentSplitStart = -1;
+  private long currentSplitRecords = 0;
+  // csv records read, not counting the header
+  private long rowOffset = 0;
+
+  public InputMappedCsvQueryIterator(String csvPath, int readThreads) throws IOException {
+    this(csvPath, readThreads, DEFAULT_SPLIT_BYTES);
+  }
+
+  InputMappedCsvQueryIterator(String csvPath, int readThreads, long splitBytes)
+      throws IOException {
+    this.csvPath = csvPath;
+    this.channel = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ);
+    this.size = channel.size();
+    this.splitBytes = splitBytes;
+    this.splitCount = (int) ((size + splitBytes - 1) / splitBytes);
+    int threads = Math.max(1, readThreads);
+    this.readAheadSplits = 2 * threads;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "input-csv-split-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!currentSplit.hasNext()) {
+      if (parsedSplits.isEmpty() && nextSplit == splitCount) {
+        close();
+        return false;
+      }
+      fillReadAhead();
+      ParsedSplit parsedSplit = get(parsedSplits.poll());
+      currentSplit = parsedSplit.queries.iterator();
+      currentSplitStart = parsedSplit.start;
+      currentSplitRecords = parsedSplit.skipped;
+    }
+    return true;
+  }
+
+  @Override
+  public InputQuery next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    rowOffset++;
+    currentSplitRecords++;
+    return currentSplit.next();
+  }
+
+  @Override
+  public InputCursor getCursor() {
+    InputCursor cursor = new InputCursor(rowOffset);
+    if (currentSplitStart >= 0) {
+      cursor.setByteOffset(currentSplitStart);
+      cursor.setPageOffset(currentSplitRecords);
+    }
+    return cursor;
+  }
+
+  @Override
+  public void resume(InputCursor cursor) {
+    long toSkip = cursor.getPosition();
+    if (cursor.getByteOffset() >= 0) {
+      // the offset is the start of a record, i.e. outside quotes, so the split containing it
+      // starts inside quotes when the quotes between the two are odd
+      long byteOffset = Math.min(cursor.getByteOffset(), size);
+      nextSplit = (int) Math.min(splitCount, byteOffset / splitBytes);
+      nextCountedSplit = nextSplit;
+      if (nextSplit < splitCount) {
+        nextSplitInQuotes = countQuotes(nextSplit * splitBytes, byteOffset) % 2 == 1;
+        nextSplitStart = byteOffset;
+      }
+      toSkip = cursor.getPageOffset();
+    }
+    // records of whole splits are only counted, without building queries
+    rowOffset = cursor.getPosition();
+    while (nextSplit < splitCount) {
+      long start =
+          nextSplitStart >= 0 ? nextSplitStart : splitStart(nextSplit, nextSplitInQuotes);
+      long records = parseSplit(nextSplit, start, nextSplitEndsInQuotes(), Long.MAX_VALUE, null);
+      if (records > toSkip) {
+        recordsToSkip = toSkip;
+        return;
+      }
+      toSkip -= records;
+      advanceSplit();
+    }
+  }
+
+  private void fillReadAhead() {
+    while (parsedSplits.size() < readAheadSplits && nextSplit < splitCount) {
+      int split = nextSplit;
+      boolean startInQuotes = nextSplitInQuotes;
+      boolean endInQuotes = nextSplitEndsInQuotes();
+      long skip = recordsToSkip;
+      long resumeStart = nextSplitStart;
+      parsedSplits.add(
+          executor.submit(
+              () -> {
+                long start = resumeStart >= 0 ? resumeStart : splitStart(split, startInQuotes);
+                List<InputQuery> queries = new ArrayList<>();
+                parseSplit(split, start, endInQuotes, skip, queries);
+                return new ParsedSplit(start, skip, queries);
+              }));
+      advanceSplit();
+    }
+  }
+
+  private void advanceSplit() {
+    nextSplitInQuotes = nextSplitEndsInQuotes();
+    nextSplitEndsInQuotes = null;
+    nextSplit++;
+    recordsToSkip = 0;
+    nextSplitStart = -1;
+  }
+
+  private boolean nextSplitEndsInQuotes() {
+    if (nextSplitEndsInQuotes == null) {
+      nextSplitEndsInQuotes = nextSplitInQuotes ^ (takeQuoteCount() % 2 == 1);
+    }
+    return nextSplitEndsInQuotes;
+  }
+
+  // waits for the quote count of nextSplit, counting the following splits meanwhile
+  private long takeQuoteCount() {
+    for (; nextCountedSplit < Math.min(splitCount, nextSplit + 2 * readAheadSplits);
+        nextCountedSplit++) {
+      int split = nextCountedSplit;
+      quoteCounts.add(executor.submit(() -> countQuotes(split)));
+    }
+    return get(quoteCounts.poll());
+  }
+
+  private long countQuotes(int split) {
+    return countQuotes(split * splitBytes, Math.min(size, (split + 1) * splitBytes));
+  }
+
+  private long countQuotes(long start, long end) {
+    MappedByteBuffer buffer = map(start, end);
+    long quotes = 0;
+    while (buffer.hasRemaining()) {
+      if (buffer.get() == '"') {
+        quotes++;
+      }
+    }
+    return quotes;
+  }
+
+  /**
+   * Offset of the first record starting at or after {@code offset}, i.e. right after the first
+   * line break outside quotes.
+   */
+  private long recordStart(long offset, boolean inQuotes) {
+    for (long mapStart = offset; mapStart < size; mapStart += splitBytes) {
+      MappedByteBuffer buffer = map(mapStart, Math.min(size, mapStart + splitBytes));
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get();
+        if (b == '"') {
+          inQuotes = !inQuotes;
+        } else if (b == '\n' && !inQuotes) {
+          return mapStart + buffer.position();
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Parses the records starting in a split, the first one being the header of the file.
+   *
+   * @param queries receives the queries after the first {@code skip} records, null to only count
+   *     the records
+   * @return number of records, not counting the header and blank lines
+   */
+  long parseSplit(
+      int split, boolean startInQuotes, boolean endInQuotes, long skip, List<InputQuery> queries) {
+    return parseSplit(split, splitStart(split, startInQuotes), endInQuotes, skip, queries);
+  }
+
+  private long splitStart(int split, boolean startInQuotes) {
+    return split == 0 ? 0 : recordStart(split * splitBytes, startInQuotes);
+  }
+
+  private long parseSplit(
+      int split, long start, boolean endInQuotes, long skip, List<InputQuery> queries) {
+    long end = split == splitCount - 1 ? size : recordStart((split + 1) * splitBytes, endInQuotes);
+    if (start >= end) {
+      // a record spanning the whole split, read by an earlier split
+      return 0;
+    }
+    MappedByteBuffer buffer = map(start, end);
+    int length = buffer.limit();
+    boolean header = start == 0;
+    long records = 0;
+    FieldBuffer field = new FieldBuffer(queries != null);
+    List<String> fields = new ArrayList<>(2);
+    int pos = 0;
+    while (pos < length) {
+      int recordStart = pos;
+      fields.clear();
+      boolean endOfRecord = false;
+      while (!endOfRecord) {
+        field.reset();
+        if (pos < length && buffer.get(pos) == '"') {
+          pos++;
+          while (pos < length) {
+            byte b = buffer.get(pos++);
+            if (b != '"') {
+              field.append(b);
+            } else if (pos < length && buffer.get(pos) == '"') {
+              field.append(b);
+              pos++;
+            } else {
+              break;
+            }
+          }
+        }
+        while (pos < length && buffer.get(pos) != ',' && buffer.get(pos) != '\n') {
+          field.append(buffer.get(pos++));
+        }
+        if (pos < length && buffer.get(pos) == ',') {
+          pos++;
+        } else {
+          field.trimCarriageReturn();
+          pos++;
+          endOfRecord = true;
+        }
+        fields.add(field.toString());
+      }
+      if (header) {
+        header = false;
+      } else if (!isBlankLine(buffer, recordStart, length)) {
+        records++;
+        if (queries != null && records > skip) {
+          if (fields.size() < 2) {
+            throw new IllegalArgumentException(
+                "Expected the columns id,query in the record at byte "
+                    + (start + recordStart)
+                    + " of "
+                    + csvPath);
+          }
+          queries.add(new InputQuery(fields.get(1).replace("\"\"", "\""), fields.get(0)));
+        }
+      }
+    }
+    return records;
+  }
+
+  private static boolean isBlankLine(MappedByteBuffer buffer, int recordStart, int length) {
+    byte first = buffer.get(recordStart);
+    return first == '\n'
+        || (first == '\r' && (recordStart + 1 == length || buffer.get(recordStart + 1) == '\n'));
+  }
+
+  private MappedByteBuffer map(long start, long end) {
+    try {
+      return channel.map(MapMode.READ_ONLY, start, end - start);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not map " + csvPath, e);
+    }
+  }
+
+  private <T> T get(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading " + csvPath, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private void close() {
+    executor.shutdown();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Bytes of the field being parsed, only kept when the queries are built. */
+  private static class FieldBuffer {
+    private final boolean keep;
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    FieldBuffer(boolean keep) {
+      this.keep = keep;
+    }
+
+    void reset() {
+      length = 0;
+    }
+
+    void append(byte b) {
+      if (!keep) {
+        return;
+      }
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, 2 * length);
+      }
+      bytes[length++] = b;
+    }
+
+    void trimCarriageReturn() {
+      if (length > 0 && bytes[length - 1] == '\r') {
+        length--;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return keep ? new String(bytes, 0, length, UTF_8) : "";
+    }
+  }
+}
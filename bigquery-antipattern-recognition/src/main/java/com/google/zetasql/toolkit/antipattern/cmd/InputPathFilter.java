@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the files of an input folder with globs matched against the path relative to the folder,
+ * e.g. {@code models/staging/orders.sql}. {@code *} does not cross directories, {@code **} does.
+ *
+ * <p>A file is read when it matches an include glob and no exclude glob. A directory matching an
+ * exclude glob is not walked at all.
+ */
+public class InputPathFilter {
+
+  // every file, as before globs were supported
+  public static final String DEFAULT_INCLUDE_GLOB = "**";
+
+  private final List<PathMatcher> includeMatchers;
+  private final List<PathMatcher> excludeMatchers;
+
+  /**
+   * @param includeGlobs null or empty to include {@value #DEFAULT_INCLUDE_GLOB}
+   * @param excludeGlobs null to exclude nothing
+   */
+  public InputPathFilter(List<String> includeGlobs, List<String> excludeGlobs) {
+    this(includeGlobs, excludeGlobs, DEFAULT_INCLUDE_GLOB);
+  }
+
+  public InputPathFilter(
+      List<String> includeGlobs, List<String> excludeGlobs, String defaultIncludeGlob) {
+    this.includeMatchers =
+        toMatchers(
+            includeGlobs == null || includeGlobs.isEmpty()
+                ? Collections.singletonList(defaultIncludeGlob)
+                : includeGlobs);
+    this.excludeMatchers =
+        toMatchers(excludeGlobs == null ? Collections.emptyList() : excludeGlobs);
+  }
+
+  private static List<PathMatcher> toMatchers(List<String> globs) {
+    return globs.stream()
+        .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob))
+        .collect(Collectors.toList());
+  }
+
+  public boolean includesFile(String relativePath) {
+    return matchesAny(includeMatchers, relativePath) && !matchesAny(excludeMatchers, relativePath);
+  }
+
+  public boolean excludesDirectory(String relativePath) {
+    return matchesAny(excludeMatchers, relativePath);
+  }
+
+  private static boolean matchesAny(List<PathMatcher> matchers, String relativePath) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(Paths.get(relativePath))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -16,6 +16,8 @@
 
 package com.google.zetasql.toolkit.antipattern.cmd;
 
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy;
+
 public class InputQuery {
 
   private String query = null;
@@ -24,6 +26,11 @@ public class InputQuery {
   private String userEmail = null;
   private String optimizedQuery = null;
   private float slotHours = -1;
+  // null until the query was checked
+  private AnalysisTierPolicy.Tier analysisTier = null;
+  // set when checkpointing, position in the input and cursor right after this query
+  private long inputPosition = -1;
+  private InputCursor inputCursor = null;
 
   public InputQuery(String query, String queryIdentifier) {
     this.query = query;
@@ -78,4 +85,25 @@ public class InputQuery {
   public void setOptimizedQuery(String optimizedQuery) {
     this.optimizedQuery = optimizedQuery;
   }
+
+  public AnalysisTierPolicy.Tier getAnalysisTier() {
+    return analysisTier;
+  }
+
+  public void setAnalysisTier(AnalysisTierPolicy.Tier analysisTier) {
+    this.analysisTier = analysisTier;
+  }
+
+  public long getInputPosition() {
+    return inputPosition;
+  }
+
+  public InputCursor getInputCursor() {
+    return inputCursor;
+  }
+
+  public void setInputCursor(long inputPosition, InputCursor inputCursor) {
+    this.inputPosition = inputPosition;
+    this.inputCursor = inputCursor;
+  }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+/**
+ * Input iterator that can resume from a checkpoint without reading the queries before it. Inputs
+ * that do not implement it cannot be resumed.
+ */
+public interface ResumableInput {
+
+  /** Cursor right after the last query returned by {@code next()}. */
+  InputCursor getCursor();
+
+  /** Moves to the cursor, must be called before the first query is read. */
+  void resume(InputCursor cursor);
+}
@@ -22,17 +22,27 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
 import com.google.zetasql.toolkit.antipattern.models.BigQueryRemoteFnRequest;
 import com.google.zetasql.toolkit.antipattern.models.BigQueryRemoteFnResponse;
 import com.google.zetasql.toolkit.antipattern.models.BigQueryRemoteFnResult;
 import com.google.zetasql.toolkit.antipattern.rewriter.gemini.GeminiRewriter;
+import com.google.zetasql.toolkit.antipattern.rules.RuleRegistry;
 import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
+import com.google.zetasql.toolkit.antipattern.util.QueryWatchdog;
+import com.google.zetasql.toolkit.antipattern.worker.WorkerPool;
+import com.google.zetasql.toolkit.antipattern.worker.WorkerProtocol;
+import javax.annotation.PreDestroy;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -40,9 +50,45 @@ public class AntiPatternController {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final String projectId;
+    private final QueryWatchdog queryWatchdog;
+    // null unless WORKER_PROCESSES is set
+    private final WorkerPool workerPool;
 
     public AntiPatternController() {
         this.projectId = System.getenv("PROJECT_ID");
+        // limits per query, so a single huge query does not hold the reply of its whole batch
+        this.queryWatchdog = new QueryWatchdog(
+                getLongEnv("MAX_QUERY_BYTES"),
+                TimeUnit.SECONDS.toMillis(getLongEnv("PARSE_TIMEOUT_SECS")),
+                TimeUnit.SECONDS.toMillis(getLongEnv("ANALYSIS_TIMEOUT_SECS")));
+        // a query crashing ZetaSQL then costs one worker instead of the service instance
+        int workerProcesses = (int) getLongEnv("WORKER_PROCESSES");
+        this.workerPool = workerProcesses > 0 ? newWorkerPool(workerProcesses) : null;
+    }
+
+    private WorkerPool newWorkerPool(int size) {
+        WorkerProtocol.Config config = new WorkerProtocol.Config();
+        config.setProcessingProject(projectId);
+        config.setParseTimeoutMillis(queryWatchdog.getParseTimeoutMillis());
+        long maxHeapMb = getLongEnv("WORKER_MAX_HEAP_MB");
+        try {
+            return new WorkerPool(size, maxHeapMb > 0 ? (int) maxHeapMb : WorkerPool.DEFAULT_MAX_HEAP_MB,
+                    config, queryWatchdog, new ConcurrentHashMap<>());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (workerPool != null) {
+            workerPool.close();
+        }
+    }
+
+    private static long getLongEnv(String name) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? 0 : Long.parseLong(value);
     }
 
     @PostMapping("/")
@@ -78,7 +124,14 @@ public class AntiPatternController {
     private BigQueryRemoteFnResponse analyzeSingleQuery(JsonNode call, boolean enableRewrite) {
         try {
             InputQuery inputQuery = new InputQuery(call.get(0).asText(), "query provided by UDF:");
-            List<AntiPatternVisitor> visitors = findAntiPatterns(inputQuery);
+            List<AntiPatternVisitor> visitors;
+            try {
+                visitors = findAntiPatterns(inputQuery);
+            } catch (QuerySkippedException e) {
+                List<BigQueryRemoteFnResult> skipped = new ArrayList<>();
+                skipped.add(new BigQueryRemoteFnResult(QueryWatchdog.SKIPPED_QUERY_NAME, e.getMessage()));
+                return new BigQueryRemoteFnResponse(skipped, null, null);
+            }
             List<BigQueryRemoteFnResult> formattedAntiPatterns = new ArrayList<>();
 
             if (visitors.isEmpty()) {
@@ -122,7 +175,13 @@ public class AntiPatternController {
 
     private List<AntiPatternVisitor> findAntiPatterns(InputQuery inputQuery) {
         List<AntiPatternVisitor> visitors = new ArrayList<>();
-        AntiPatternHelper antiPatternHelper = new AntiPatternHelper(projectId, false);
+        if (workerPool != null) {
+            queryWatchdog.checkQuerySize(inputQuery);
+            workerPool.check(inputQuery, false, visitors);
+            return visitors;
+        }
+        AntiPatternHelper antiPatternHelper = new AntiPatternHelper(projectId, false, new ConcurrentHashMap<>(),
+                null, RuleRegistry.getDefault(), queryWatchdog);
         antiPatternHelper.checkForAntiPatternsInQueryWithParserVisitors(inputQuery, visitors);
         return visitors;
     }
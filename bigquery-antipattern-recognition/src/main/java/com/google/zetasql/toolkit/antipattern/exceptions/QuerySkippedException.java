@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.exceptions;
+
+/**
+ * A query was not checked for anti patterns because it exceeded a limit of the run, or because the
+ * worker process checking it died.
+ */
+public class QuerySkippedException extends RuntimeException {
+
+  public enum Reason {
+    QUERY_TOO_LARGE,
+    PARSE_TIMEOUT,
+    ANALYSIS_TIMEOUT,
+    WORKER_TIMEOUT,
+    WORKER_CRASHED
+  }
+
+  private final Reason reason;
+
+  public QuerySkippedException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.zetasql.Analyzer;
+import com.google.zetasql.AnalyzerOptions;
+import com.google.zetasql.SimpleTable;
+import com.google.zetasql.resolvedast.ResolvedCreateStatementEnums.CreateMode;
+import com.google.zetasql.resolvedast.ResolvedCreateStatementEnums.CreateScope;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryAPIResourceProvider;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryCatalog;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one {@link BigQueryCatalog} per project across queries.
+ *
+ * <p>Tables are added to the catalog of a project the first time a query references them, so
+ * schemas are fetched once per run instead of once per query. Schemas are fetched without holding
+ * the lock of the project, queries of the project that only use known tables are not blocked
+ * meanwhile. Memory is bounded by the total number of tables held by all catalogs, the size of a
+ * catalog is not known but grows with its tables: when a new table would exceed {@code maxTables},
+ * the catalogs of the least recently used projects are dropped.
+ *
+ * <p>A catalog handed out is never modified afterwards: adding tables to a project publishes an
+ * extended copy of its catalog, so queries analyzed meanwhile keep a consistent catalog without
+ * locking. The copy is only made once as many new tables are pending as the catalog holds, so each
+ * table is copied a bounded number of times however tables trickle in. Until then, queries that
+ * use a pending table get a catalog holding only their own tables. Once the tables of a workload
+ * are loaded, queries share the pooled catalog and nothing is copied per query. Only queries that
+ * may apply DDL to the catalog (e.g. CREATE TEMP TABLE) get a private copy, so their tables do not
+ * leak to other queries.
+ */
+public class BigQueryCatalogPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(BigQueryCatalogPool.class);
+
+  public static final int DEFAULT_MAX_TABLES = 20_000;
+
+  // statements the analyzer applies to the catalog
+  private static final Pattern CATALOG_STATEMENT =
+      Pattern.compile("\\b(CREATE|DROP|ALTER)\\b", Pattern.CASE_INSENSITIVE);
+
+  private static BigQueryCatalogPool sharedInstance;
+
+  /** Loads the schema of a table of a project, e.g. through its resource provider. */
+  public interface TableLoader {
+    /** Returns the table referenced as in a query, null if it is not found. */
+    SimpleTable loadTable(String projectId, String tableReference);
+  }
+
+  private static final class PooledCatalog {
+    // replaced by an extended copy once handed out, guarded by the PooledCatalog
+    private BigQueryCatalog catalog;
+    private boolean handedOut = false;
+    // every table loaded for the project, null values for the tables that were not found
+    private final Map<String, SimpleTable> tables = new HashMap<>();
+    // tables loaded after the catalog was handed out, not registered in it yet
+    private final Set<String> pendingReferences = new LinkedHashSet<>();
+
+    private PooledCatalog(BigQueryCatalog catalog) {
+      this.catalog = catalog;
+    }
+  }
+
+  private final Function<String, BigQueryCatalog> catalogFactory;
+  private final TableLoader tableLoader;
+  private final int maxTables;
+  // access ordered, iteration starts at the least recently used project
+  private final LinkedHashMap<String, PooledCatalog> catalogs =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private int tableCount = 0;
+  private long evictedProjects = 0;
+
+  /** Process wide pool of catalogs backed by the BigQuery API, built on first use. */
+  public static synchronized BigQueryCatalogPool getSharedInstance() {
+    if (sharedInstance == null) {
+      BigQueryAPIResourceProvider resourceProvider =
+          BigQueryAPIResourceProvider.build(BigQueryService.buildDefault());
+      sharedInstance =
+          new BigQueryCatalogPool(
+              projectId -> new BigQueryCatalog(projectId, resourceProvider),
+              (projectId, tableReference) -> {
+                List<SimpleTable> tables =
+                    resourceProvider.getTables(
+                        projectId, Collections.singletonList(tableReference));
+                return tables.isEmpty() ? null : tables.get(0);
+              },
+              DEFAULT_MAX_TABLES);
+    }
+    return sharedInstance;
+  }
+
+  public BigQueryCatalogPool(
+      Function<String, BigQueryCatalog> catalogFactory, TableLoader tableLoader, int maxTables) {
+    this.catalogFactory = catalogFactory;
+    this.tableLoader = tableLoader;
+    this.maxTables = maxTables;
+  }
+
+  /**
+   * Returns the catalog of the project with every table used in the query registered. Only the
+   * tables not seen before in this project are loaded. The catalog must not be modified, it may be
+   * used by other threads at the same time.
+   */
+  public BigQueryCatalog getCatalogForQuery(
+      String projectId, String query, AnalyzerOptions analyzerOptions) {
+    List<String> tableReferences = extractTableReferences(query, analyzerOptions);
+    PooledCatalog pooledCatalog;
+    synchronized (catalogs) {
+      pooledCatalog =
+          catalogs.computeIfAbsent(projectId, p -> new PooledCatalog(catalogFactory.apply(p)));
+    }
+
+    List<String> newTableReferences = new ArrayList<>();
+    synchronized (pooledCatalog) {
+      for (String tableReference : tableReferences) {
+        if (!pooledCatalog.tables.containsKey(tableReference)) {
+          newTableReferences.add(tableReference);
+        }
+      }
+    }
+    if (!newTableReferences.isEmpty()) {
+      logger.info(
+          "Adding " + newTableReferences.size() + " tables to catalog of project: " + projectId);
+      Map<String, SimpleTable> loadedTables = new LinkedHashMap<>();
+      for (String tableReference : newTableReferences) {
+        loadedTables.put(tableReference, tableLoader.loadTable(projectId, tableReference));
+      }
+      int addedTables = addTables(pooledCatalog, loadedTables);
+      synchronized (catalogs) {
+        // the catalog may have been evicted by another thread in the meantime
+        if (catalogs.get(projectId) == pooledCatalog) {
+          tableCount += addedTables;
+          evictColdProjects(projectId);
+        }
+      }
+    }
+
+    BigQueryCatalog catalog;
+    synchronized (pooledCatalog) {
+      for (String tableReference : tableReferences) {
+        if (pooledCatalog.pendingReferences.contains(tableReference)) {
+          return buildCatalog(projectId, pooledCatalog, tableReferences);
+        }
+      }
+      pooledCatalog.handedOut = true;
+      catalog = pooledCatalog.catalog;
+    }
+    return modifiesCatalog(query) ? catalog.copy() : catalog;
+  }
+
+  // returns the number of tables that were not added by another thread in the meantime
+  private static int addTables(PooledCatalog pooledCatalog, Map<String, SimpleTable> tables) {
+    synchronized (pooledCatalog) {
+      int addedTables = 0;
+      for (Map.Entry<String, SimpleTable> entry : tables.entrySet()) {
+        if (pooledCatalog.tables.containsKey(entry.getKey())) {
+          continue;
+        }
+        pooledCatalog.tables.put(entry.getKey(), entry.getValue());
+        addedTables++;
+        if (entry.getValue() == null) {
+          continue;
+        }
+        if (pooledCatalog.handedOut) {
+          pooledCatalog.pendingReferences.add(entry.getKey());
+        } else {
+          register(pooledCatalog.catalog, entry.getValue());
+        }
+      }
+      int registeredTables = pooledCatalog.tables.size() - pooledCatalog.pendingReferences.size();
+      if (!pooledCatalog.pendingReferences.isEmpty()
+          && pooledCatalog.pendingReferences.size() >= registeredTables) {
+        pooledCatalog.catalog = pooledCatalog.catalog.copy();
+        pooledCatalog.handedOut = false;
+        for (String tableReference : pooledCatalog.pendingReferences) {
+          register(pooledCatalog.catalog, pooledCatalog.tables.get(tableReference));
+        }
+        pooledCatalog.pendingReferences.clear();
+      }
+      return addedTables;
+    }
+  }
+
+  // catalog of the tables of a single query, cheaper than copying the pooled catalog
+  private BigQueryCatalog buildCatalog(
+      String projectId, PooledCatalog pooledCatalog, List<String> tableReferences) {
+    BigQueryCatalog catalog = catalogFactory.apply(projectId);
+    for (String tableReference : tableReferences) {
+      SimpleTable table = pooledCatalog.tables.get(tableReference);
+      if (table != null) {
+        register(catalog, table);
+      }
+    }
+    return catalog;
+  }
+
+  private static void register(BigQueryCatalog catalog, SimpleTable table) {
+    catalog.register(table, CreateMode.CREATE_OR_REPLACE, CreateScope.CREATE_DEFAULT_SCOPE);
+  }
+
+  static boolean modifiesCatalog(String query) {
+    return CATALOG_STATEMENT.matcher(query).find();
+  }
+
+  private void evictColdProjects(String currentProjectId) {
+    Iterator<Map.Entry<String, PooledCatalog>> iterator = catalogs.entrySet().iterator();
+    while (tableCount > maxTables && iterator.hasNext()) {
+      Map.Entry<String, PooledCatalog> eldest = iterator.next();
+      if (Objects.equals(eldest.getKey(), currentProjectId)) {
+        continue;
+      }
+      iterator.remove();
+      tableCount -= eldest.getValue().tables.size();
+      evictedProjects++;
+      logger.info("Evicted catalog of project: " + eldest.getKey());
+    }
+  }
+
+  static List<String> extractTableReferences(String query, AnalyzerOptions analyzerOptions) {
+    List<String> tableReferences = new ArrayList<>();
+    for (List<String> tableNameParts :
+        Analyzer.extractTableNamesFromScript(query, analyzerOptions)) {
+      String tableReference = String.join(".", tableNameParts);
+      if (!tableReferences.contains(tableReference)) {
+        tableReferences.add(tableReference);
+      }
+    }
+    return tableReferences;
+  }
+
+  public int getProjectCount() {
+    synchronized (catalogs) {
+      return catalogs.size();
+    }
+  }
+
+  public int getTableCount() {
+    synchronized (catalogs) {
+      return tableCount;
+    }
+  }
+
+  public long getEvictedProjectCount() {
+    synchronized (catalogs) {
+      return evictedProjects;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Table;
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
+
+/** Fetches table metadata from the BigQuery API, one call per lookup. */
+public class BigQueryTableMetadataProvider implements TableMetadataProvider {
+
+  private static final int HTTP_NOT_FOUND = 404;
+
+  private final BigQueryService service;
+
+  public BigQueryTableMetadataProvider(BigQueryService service) {
+    this.service = service;
+  }
+
+  @Override
+  public TableMetadata fetchTable(String projectId, String tableReference) {
+    Table table;
+    try {
+      table = service.fetchTable(projectId, tableReference).get();
+    } catch (RuntimeException e) {
+      if (isNotFound(e)) {
+        throw new TableNotFoundInCatalog(tableReference);
+      }
+      throw e;
+    }
+    if (table == null) {
+      throw new TableNotFoundInCatalog(tableReference);
+    }
+    return TableMetadata.fromTable(table);
+  }
+
+  private static boolean isNotFound(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof BigQueryException
+          && ((BigQueryException) cause).getCode() == HTTP_NOT_FOUND) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.zetasql.StructType;
+import com.google.zetasql.Type;
+import com.google.zetasql.TypeFactory;
+import com.google.zetasql.ZetaSQLType.TypeKind;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Converts between BigQuery column types and their SQL names, e.g. ARRAY<STRUCT<a INT64, b
+ * STRING>>, so schemas can be stored as text and registered later in a ZetaSQL catalog.
+ */
+public class BigQueryTypeNames {
+
+  private static final Pattern PLAIN_IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+  private static final Map<String, TypeKind> SIMPLE_TYPES = new HashMap<>();
+
+  static {
+    for (String name : new String[] {"INT64", "INT", "INTEGER", "SMALLINT", "BIGINT", "TINYINT",
+        "BYTEINT"}) {
+      SIMPLE_TYPES.put(name, TypeKind.TYPE_INT64);
+    }
+    SIMPLE_TYPES.put("FLOAT64", TypeKind.TYPE_DOUBLE);
+    SIMPLE_TYPES.put("FLOAT", TypeKind.TYPE_DOUBLE);
+    SIMPLE_TYPES.put("NUMERIC", TypeKind.TYPE_NUMERIC);
+    SIMPLE_TYPES.put("DECIMAL", TypeKind.TYPE_NUMERIC);
+    SIMPLE_TYPES.put("BIGNUMERIC", TypeKind.TYPE_BIGNUMERIC);
+    SIMPLE_TYPES.put("BIGDECIMAL", TypeKind.TYPE_BIGNUMERIC);
+    SIMPLE_TYPES.put("BOOL", TypeKind.TYPE_BOOL);
+    SIMPLE_TYPES.put("BOOLEAN", TypeKind.TYPE_BOOL);
+    SIMPLE_TYPES.put("STRING", TypeKind.TYPE_STRING);
+    SIMPLE_TYPES.put("BYTES", TypeKind.TYPE_BYTES);
+    SIMPLE_TYPES.put("DATE", TypeKind.TYPE_DATE);
+    SIMPLE_TYPES.put("TIME", TypeKind.TYPE_TIME);
+    SIMPLE_TYPES.put("DATETIME", TypeKind.TYPE_DATETIME);
+    SIMPLE_TYPES.put("TIMESTAMP", TypeKind.TYPE_TIMESTAMP);
+    SIMPLE_TYPES.put("GEOGRAPHY", TypeKind.TYPE_GEOGRAPHY);
+    SIMPLE_TYPES.put("JSON", TypeKind.TYPE_JSON);
+    SIMPLE_TYPES.put("INTERVAL", TypeKind.TYPE_INTERVAL);
+  }
+
+  private BigQueryTypeNames() {}
+
+  /** SQL name of the type of a field from the BigQuery API, repeated fields become ARRAYs. */
+  public static String fromField(Field field) {
+    String typeName;
+    StandardSQLTypeName standardType = field.getType().getStandardType();
+    if (standardType == StandardSQLTypeName.STRUCT) {
+      List<String> subFields = new ArrayList<>();
+      for (Field subField : field.getSubFields()) {
+        subFields.add(quoteIfNeeded(subField.getName()) + " " + fromField(subField));
+      }
+      typeName = "STRUCT<" + String.join(", ", subFields) + ">";
+    } else {
+      typeName = standardType.name();
+    }
+    if (field.getMode() == Field.Mode.REPEATED) {
+      typeName = "ARRAY<" + typeName + ">";
+    }
+    return typeName;
+  }
+
+  private static String quoteIfNeeded(String name) {
+    return PLAIN_IDENTIFIER.matcher(name).matches() ? name : "`" + name + "`";
+  }
+
+  /**
+   * Parses a SQL type name into a ZetaSQL type. Type parameters, e.g. STRING(10), are ignored.
+   *
+   * @throws IllegalArgumentException if the name is malformed or the type is not supported
+   */
+  public static Type parse(String typeName) {
+    TypeNameParser parser = new TypeNameParser(typeName);
+    Type type = parser.parseType();
+    parser.skipWhitespace();
+    if (!parser.atEnd()) {
+      throw parser.error("unexpected trailing characters");
+    }
+    return type;
+  }
+
+  private static final class TypeNameParser {
+    private final String text;
+    private int pos = 0;
+
+    private TypeNameParser(String text) {
+      this.text = text;
+    }
+
+    private Type parseType() {
+      String name = readIdentifier().toUpperCase(Locale.ROOT);
+      switch (name) {
+        case "ARRAY":
+          expect('<');
+          Type elementType = parseType();
+          expect('>');
+          return TypeFactory.createArrayType(elementType);
+        case "STRUCT":
+          return parseStructFields();
+        default:
+          TypeKind typeKind = SIMPLE_TYPES.get(name);
+          if (typeKind == null) {
+            throw error("unsupported type " + name);
+          }
+          skipTypeParameters();
+          return TypeFactory.createSimpleType(typeKind);
+      }
+    }
+
+    private Type parseStructFields() {
+      expect('<');
+      List<StructType.StructField> fields = new ArrayList<>();
+      skipWhitespace();
+      if (peek() == '>') {
+        pos++;
+        return TypeFactory.createStructType(fields);
+      }
+      while (true) {
+        String fieldName = readIdentifier();
+        fields.add(new StructType.StructField(fieldName, parseType()));
+        skipWhitespace();
+        char next = peek();
+        pos++;
+        if (next == '>') {
+          return TypeFactory.createStructType(fields);
+        } else if (next != ',') {
+          pos--;
+          throw error("expected ',' or '>'");
+        }
+      }
+    }
+
+    private void skipTypeParameters() {
+      skipWhitespace();
+      if (peek() != '(') {
+        return;
+      }
+      int end = text.indexOf(')', pos);
+      if (end < 0) {
+        throw error("unclosed type parameters");
+      }
+      pos = end + 1;
+    }
+
+    private String readIdentifier() {
+      skipWhitespace();
+      if (peek() == '`') {
+        int end = text.indexOf('`', pos + 1);
+        if (end < 0) {
+          throw error("unclosed quoted identifier");
+        }
+        String identifier = text.substring(pos + 1, end);
+        pos = end + 1;
+        return identifier;
+      }
+      int start = pos;
+      while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_')) {
+        pos++;
+      }
+      if (start == pos) {
+        throw error("expected an identifier");
+      }
+      return text.substring(start, pos);
+    }
+
+    private void expect(char expected) {
+      skipWhitespace();
+      if (peek() != expected) {
+        throw error("expected '" + expected + "'");
+      }
+      pos++;
+    }
+
+    private char peek() {
+      return atEnd() ? '\0' : text.charAt(pos);
+    }
+
+    private boolean atEnd() {
+      return pos >= text.length();
+    }
+
+    private void skipWhitespace() {
+      while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(
+          String.format("Invalid type name '%s' at position %d: %s", text, pos, message));
+    }
+  }
+}
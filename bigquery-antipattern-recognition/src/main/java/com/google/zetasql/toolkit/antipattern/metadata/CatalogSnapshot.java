@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zetasql.SimpleColumn;
+import com.google.zetasql.SimpleTable;
+import com.google.zetasql.TypeFactory;
+import com.google.zetasql.ZetaSQLType.TypeKind;
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+import com.google.zetasql.toolkit.antipattern.metadata.TableSnapshot.ColumnSnapshot;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryAPIResourceProvider;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryCatalog;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table metadata captured ahead of time, so advanced analysis can run without calling the BigQuery
+ * API.
+ *
+ * <p>A snapshot serves both consumers of table metadata: it registers table schemas in the
+ * catalogs used by the analyzer (as a {@link BigQueryCatalogPool.TableLoader}) and answers the
+ * lookups of the analyzer visitors (as a {@link TableMetadataProvider}).
+ *
+ * <p>Snapshots are stored as JSON, gzip compressed when the file name ends with ".gz".
+ */
+public class CatalogSnapshot implements TableMetadataProvider, BigQueryCatalogPool.TableLoader {
+
+  private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+  public static final int FORMAT_VERSION = 1;
+
+  private static final ObjectMapper objectMapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  /** Layout of the snapshot file. */
+  public static class SnapshotFile {
+    private int version = FORMAT_VERSION;
+    private List<TableSnapshot> tables = new ArrayList<>();
+
+    public int getVersion() {
+      return version;
+    }
+
+    public void setVersion(int version) {
+      this.version = version;
+    }
+
+    public List<TableSnapshot> getTables() {
+      return tables;
+    }
+
+    public void setTables(List<TableSnapshot> tables) {
+      this.tables = tables;
+    }
+  }
+
+  // keyed by fully qualified name, i.e. project.dataset.table
+  private final Map<String, TableSnapshot> tables = new LinkedHashMap<>();
+  private BigQueryCatalogPool catalogPool;
+
+  public static CatalogSnapshot read(String path) throws IOException {
+    SnapshotFile snapshotFile;
+    try (InputStream inputStream = openInput(path)) {
+      snapshotFile = objectMapper.readValue(inputStream, SnapshotFile.class);
+    }
+    if (snapshotFile.getVersion() > FORMAT_VERSION) {
+      throw new IOException(
+          "Catalog snapshot " + path + " has unsupported version " + snapshotFile.getVersion());
+    }
+    CatalogSnapshot snapshot = new CatalogSnapshot();
+    snapshotFile.getTables().forEach(snapshot::addTable);
+    logger.info("Read " + snapshot.size() + " tables from catalog snapshot: " + path);
+    return snapshot;
+  }
+
+  public void write(String path) throws IOException {
+    SnapshotFile snapshotFile = new SnapshotFile();
+    snapshotFile.setTables(new ArrayList<>(getTables()));
+    try (OutputStream outputStream = openOutput(path)) {
+      objectMapper.writeValue(outputStream, snapshotFile);
+    }
+    logger.info("Wrote " + size() + " tables to catalog snapshot: " + path);
+  }
+
+  private static InputStream openInput(String path) throws IOException {
+    InputStream inputStream = Files.newInputStream(Paths.get(path));
+    return path.endsWith(".gz") ? new GZIPInputStream(inputStream) : inputStream;
+  }
+
+  private static OutputStream openOutput(String path) throws IOException {
+    OutputStream outputStream = Files.newOutputStream(Paths.get(path));
+    return path.endsWith(".gz") ? new GZIPOutputStream(outputStream) : outputStream;
+  }
+
+  public synchronized void addTable(TableSnapshot table) {
+    tables.put(table.getFullName(), table);
+  }
+
+  public synchronized Collection<TableSnapshot> getTables() {
+    return new ArrayList<>(tables.values());
+  }
+
+  public synchronized int size() {
+    return tables.size();
+  }
+
+  /**
+   * Looks up a table by reference as found in a query.
+   *
+   * @param projectId project used to qualify references of the form dataset.table
+   * @return the table or null if it is not in the snapshot
+   */
+  public synchronized TableSnapshot findTable(String projectId, String tableReference) {
+    String fullName = qualify(projectId, tableReference);
+    return fullName == null ? null : tables.get(fullName);
+  }
+
+  static String qualify(String projectId, String tableReference) {
+    String reference = tableReference.replace("`", "");
+    int parts = reference.split("\\.", -1).length;
+    if (parts >= 3) {
+      return reference;
+    }
+    if (parts == 2 && projectId != null) {
+      return projectId + "." + reference;
+    }
+    return null;
+  }
+
+  @Override
+  public TableMetadata fetchTable(String projectId, String tableReference) {
+    TableSnapshot table = findTable(projectId, tableReference);
+    if (table == null) {
+      throw new TableNotFoundInCatalog(tableReference);
+    }
+    return table.toTableMetadata();
+  }
+
+  /** Schema of the referenced table, null if it is not in the snapshot. */
+  @Override
+  public SimpleTable loadTable(String projectId, String tableReference) {
+    TableSnapshot table = findTable(projectId, tableReference);
+    if (table == null) {
+      logger.warn("Table not found in catalog snapshot: " + tableReference);
+      return null;
+    }
+    return toSimpleTable(table);
+  }
+
+  static SimpleTable toSimpleTable(TableSnapshot table) {
+    String fullName = table.getFullName();
+    List<SimpleColumn> columns = new ArrayList<>();
+    for (ColumnSnapshot column : table.getColumns()) {
+      try {
+        columns.add(
+            new SimpleColumn(fullName, column.getName(), BigQueryTypeNames.parse(column.getType())));
+      } catch (IllegalArgumentException e) {
+        logger.warn("Skipping column " + column.getName() + " of table " + fullName + ": "
+            + e.getMessage());
+      }
+    }
+    if (table.isIngestionTimePartitioned()) {
+      columns.add(new SimpleColumn(fullName, "_PARTITIONTIME",
+          TypeFactory.createSimpleType(TypeKind.TYPE_TIMESTAMP), true, false));
+      columns.add(new SimpleColumn(fullName, "_PARTITIONDATE",
+          TypeFactory.createSimpleType(TypeKind.TYPE_DATE), true, false));
+    }
+    SimpleTable simpleTable = new SimpleTable(fullName, columns);
+    simpleTable.setFullName(fullName);
+    return simpleTable;
+  }
+
+  /** Pool of catalogs that are populated from this snapshot only. */
+  public synchronized BigQueryCatalogPool getCatalogPool() {
+    if (catalogPool == null) {
+      // tables are registered from the snapshot, the catalogs never use a resource provider
+      catalogPool =
+          new BigQueryCatalogPool(
+              projectId -> new BigQueryCatalog(projectId, (BigQueryAPIResourceProvider) null),
+              this,
+              BigQueryCatalogPool.DEFAULT_MAX_TABLES);
+    }
+    return catalogPool;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.cloud.bigquery.Table;
+import com.google.zetasql.AnalyzerOptions;
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a {@link CatalogSnapshot} with every table referenced by a set of queries, fetching each
+ * table once from the BigQuery API.
+ */
+public class CatalogSnapshotExporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotExporter.class);
+
+  private final BigQueryService service;
+  private final AnalyzerOptions analyzerOptions;
+  // tables already fetched, or that could not be fetched, are not requested again
+  private final Set<String> fetchedTables = new HashSet<>();
+
+  public CatalogSnapshotExporter(BigQueryService service) {
+    this.service = service;
+    LanguageOptions languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+    languageOptions.enableReservableKeyword("QUALIFY");
+    this.analyzerOptions = new AnalyzerOptions();
+    this.analyzerOptions.setLanguageOptions(languageOptions);
+  }
+
+  /**
+   * @param defaultProjectId project of references of the form dataset.table, used when the query
+   *     does not have a project
+   */
+  public CatalogSnapshot export(Iterator<InputQuery> inputQueries, String defaultProjectId) {
+    CatalogSnapshot snapshot = new CatalogSnapshot();
+    while (inputQueries.hasNext()) {
+      InputQuery inputQuery = inputQueries.next();
+      String projectId =
+          inputQuery.getProjectId() == null ? defaultProjectId : inputQuery.getProjectId();
+      try {
+        for (String tableReference :
+            BigQueryCatalogPool.extractTableReferences(inputQuery.getQuery(), analyzerOptions)) {
+          addTable(snapshot, projectId, tableReference);
+        }
+      } catch (Exception e) {
+        logger.error("Error extracting tables from query with id: " + inputQuery.getQueryId());
+        logger.error(e.getMessage(), e);
+      }
+    }
+    return snapshot;
+  }
+
+  private void addTable(CatalogSnapshot snapshot, String projectId, String tableReference) {
+    String fullName = CatalogSnapshot.qualify(projectId, tableReference);
+    if (fullName == null || !fetchedTables.add(fullName)) {
+      return;
+    }
+    try {
+      Table table = service.fetchTable(projectId, tableReference).get();
+      if (table != null) {
+        snapshot.addTable(TableSnapshot.fromTable(table));
+      }
+    } catch (RuntimeException e) {
+      // e.g. temp tables or CTE names that look like table references
+      logger.warn("Could not export table " + tableReference + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.zetasql.toolkit.antipattern.metadata.TableSnapshot.ColumnSnapshot;
+import com.google.zetasql.toolkit.antipattern.util.BigQueryHelper;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads table metadata in bulk from INFORMATION_SCHEMA, one query per dataset or per project and
+ * region, instead of one BigQuery API call per table.
+ *
+ * <p>Schemas, partitioning and clustering come from the COLUMNS and TABLES views, row counts and
+ * sizes from TABLE_STORAGE. The result is a {@link CatalogSnapshot}, which fills the analyzer
+ * catalogs and answers the table lookups of the analyzer visitors.
+ */
+public class InformationSchemaCatalogLoader {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(InformationSchemaCatalogLoader.class);
+
+  private static final Pattern PROJECT_PATTERN = Pattern.compile("[A-Za-z0-9.:_-]+");
+  private static final Pattern DATASET_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+  private static final Pattern REGION_PATTERN = Pattern.compile("[A-Za-z0-9-]+");
+  private static final String STANDARD_TABLE_TYPE = "BASE TABLE";
+  private static final String CLONE_TABLE_TYPE = "CLONE";
+  private static final String PARTITION_TIME_COLUMN = "_PARTITIONTIME";
+  private static final String PARTITION_DATE_COLUMN = "_PARTITIONDATE";
+  // granularity is not exposed by COLUMNS, it does not matter to the analyzer visitors
+  private static final String DEFAULT_TIME_PARTITIONING_TYPE = "DAY";
+
+  /** Runs a metadata query, e.g. through {@link BigQueryHelper#runQuery}. */
+  public interface QueryRunner {
+    Iterable<FieldValueList> runQuery(String query) throws InterruptedException;
+  }
+
+  private final QueryRunner queryRunner;
+  private final String region;
+
+  /**
+   * @param region region of the scopes, e.g. us, TABLE_STORAGE is only available per region
+   */
+  public InformationSchemaCatalogLoader(QueryRunner queryRunner, String region) {
+    if (!REGION_PATTERN.matcher(region).matches()) {
+      throw new IllegalArgumentException("Invalid region: " + region);
+    }
+    this.queryRunner = queryRunner;
+    this.region = region;
+  }
+
+  public InformationSchemaCatalogLoader(BigQueryHelper bigQueryHelper, String region) {
+    this(query -> bigQueryHelper.runQuery(query, null).iterateAll(), region);
+  }
+
+  /**
+   * Adds every table of the scopes to the snapshot.
+   *
+   * @param scopes either project.dataset or project, the latter loads every dataset of the project
+   *     in the region
+   */
+  public void load(CatalogSnapshot snapshot, List<String> scopes) throws InterruptedException {
+    for (String scope : scopes) {
+      int tablesBefore = snapshot.size();
+      String query = buildQuery(scope.trim());
+      logger.info("Loading table metadata from INFORMATION_SCHEMA: \n" + query);
+      addRows(snapshot, queryRunner.runQuery(query));
+      logger.info("Loaded " + (snapshot.size() - tablesBefore) + " tables for scope: " + scope);
+    }
+  }
+
+  String buildQuery(String scope) {
+    String projectId = scope;
+    String datasetId = null;
+    int lastDot = scope.lastIndexOf('.');
+    // project ids may contain dots (e.g. example.com:project), dataset ids never contain ':'
+    if (lastDot > 0 && DATASET_PATTERN.matcher(scope.substring(lastDot + 1)).matches()) {
+      projectId = scope.substring(0, lastDot);
+      datasetId = scope.substring(lastDot + 1);
+    }
+    if (!PROJECT_PATTERN.matcher(projectId).matches()) {
+      throw new IllegalArgumentException("Invalid INFORMATION_SCHEMA scope: " + scope);
+    }
+
+    String regionSchema = String.format("`%s.region-%s`.INFORMATION_SCHEMA", projectId, region);
+    String schema =
+        datasetId == null
+            ? regionSchema
+            : String.format("`%s.%s`.INFORMATION_SCHEMA", projectId, datasetId);
+    String storageFilter =
+        datasetId == null ? "" : "\n    AND s.table_schema = '" + datasetId + "'";
+
+    return "SELECT\n"
+        + "  c.table_catalog,\n"
+        + "  c.table_schema,\n"
+        + "  c.table_name,\n"
+        + "  t.table_type,\n"
+        + "  c.column_name,\n"
+        + "  c.data_type,\n"
+        + "  c.is_partitioning_column,\n"
+        + "  c.clustering_ordinal_position,\n"
+        + "  s.total_rows,\n"
+        + "  s.total_logical_bytes\n"
+        + "FROM " + schema + ".COLUMNS c\n"
+        + "JOIN " + schema + ".TABLES t\n"
+        + "  ON t.table_catalog = c.table_catalog\n"
+        + "    AND t.table_schema = c.table_schema\n"
+        + "    AND t.table_name = c.table_name\n"
+        + "LEFT JOIN " + regionSchema + ".TABLE_STORAGE s\n"
+        + "  ON s.project_id = c.table_catalog\n"
+        + "    AND s.table_schema = c.table_schema\n"
+        + "    AND s.table_name = c.table_name"
+        + storageFilter + "\n"
+        + "ORDER BY c.table_catalog, c.table_schema, c.table_name, c.ordinal_position\n";
+  }
+
+  /** Maps the rows of the metadata query, one per column, to tables of the snapshot. */
+  static void addRows(CatalogSnapshot snapshot, Iterable<FieldValueList> rows) {
+    Map<String, TableSnapshot> tables = new LinkedHashMap<>();
+    Map<String, TreeMap<Long, String>> clusteringFields = new LinkedHashMap<>();
+
+    for (FieldValueList row : rows) {
+      TableSnapshot table =
+          new TableSnapshot(
+              row.get("table_catalog").getStringValue(),
+              row.get("table_schema").getStringValue(),
+              row.get("table_name").getStringValue());
+      String fullName = table.getFullName();
+      if (tables.containsKey(fullName)) {
+        table = tables.get(fullName);
+      } else {
+        String tableType = getString(row.get("table_type"));
+        table.setStandardTable(
+            STANDARD_TABLE_TYPE.equals(tableType) || CLONE_TABLE_TYPE.equals(tableType));
+        if (!row.get("total_rows").isNull()) {
+          table.setNumRows(BigInteger.valueOf(row.get("total_rows").getLongValue()));
+        }
+        if (!row.get("total_logical_bytes").isNull()) {
+          table.setNumBytes(row.get("total_logical_bytes").getLongValue());
+        }
+        tables.put(fullName, table);
+      }
+
+      String columnName = row.get("column_name").getStringValue();
+      String dataType = row.get("data_type").getStringValue();
+      boolean partitioningColumn = "YES".equals(getString(row.get("is_partitioning_column")));
+      boolean pseudoColumn =
+          PARTITION_TIME_COLUMN.equalsIgnoreCase(columnName)
+              || PARTITION_DATE_COLUMN.equalsIgnoreCase(columnName);
+
+      if (partitioningColumn) {
+        if (pseudoColumn) {
+          table.setTimePartitioningType(DEFAULT_TIME_PARTITIONING_TYPE);
+        } else if (dataType.equals("INT64")) {
+          table.setRangePartitioningField(columnName);
+        } else {
+          table.setTimePartitioningType(DEFAULT_TIME_PARTITIONING_TYPE);
+          table.setTimePartitioningField(columnName);
+        }
+      }
+      if (!row.get("clustering_ordinal_position").isNull()) {
+        clusteringFields
+            .computeIfAbsent(fullName, name -> new TreeMap<>())
+            .put(row.get("clustering_ordinal_position").getLongValue(), columnName);
+      }
+      // pseudo columns are added when the table is registered in a catalog
+      if (!pseudoColumn) {
+        table.getColumns().add(new ColumnSnapshot(columnName, dataType));
+      }
+    }
+
+    for (TableSnapshot table : tables.values()) {
+      TreeMap<Long, String> tableClusteringFields = clusteringFields.get(table.getFullName());
+      if (tableClusteringFields != null) {
+        table.setClusteringFields(new ArrayList<>(tableClusteringFields.values()));
+      }
+      snapshot.addTable(table);
+    }
+  }
+
+  private static String getString(FieldValue value) {
+    return value.isNull() ? null : value.getStringValue();
+  }
+}
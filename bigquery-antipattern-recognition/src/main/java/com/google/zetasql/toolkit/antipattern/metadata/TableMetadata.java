@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableDefinition;
+import java.math.BigInteger;
+import java.util.List;
+
+/** The subset of BigQuery table metadata used by the analyzer visitors. */
+public class TableMetadata {
+
+  private final String projectId;
+  private final String datasetId;
+  private final String tableId;
+  private final boolean standardTable;
+  private final boolean partitioned;
+  // null when the table is not clustered
+  private final List<String> clusteringFields;
+  private final BigInteger numRows;
+  private final Long numBytes;
+
+  public TableMetadata(
+      String projectId,
+      String datasetId,
+      String tableId,
+      boolean standardTable,
+      boolean partitioned,
+      List<String> clusteringFields,
+      BigInteger numRows,
+      Long numBytes) {
+    this.projectId = projectId;
+    this.datasetId = datasetId;
+    this.tableId = tableId;
+    this.standardTable = standardTable;
+    this.partitioned = partitioned;
+    this.clusteringFields = clusteringFields;
+    this.numRows = numRows;
+    this.numBytes = numBytes;
+  }
+
+  public static TableMetadata fromTable(Table table) {
+    TableDefinition definition = table.getDefinition();
+    boolean standardTable = definition instanceof StandardTableDefinition;
+    boolean partitioned = false;
+    List<String> clusteringFields = null;
+    if (standardTable) {
+      StandardTableDefinition stdDef = (StandardTableDefinition) definition;
+      partitioned = stdDef.getTimePartitioning() != null || stdDef.getRangePartitioning() != null;
+      if (stdDef.getClustering() != null) {
+        clusteringFields = stdDef.getClustering().getFields();
+      }
+    }
+    return new TableMetadata(
+        table.getTableId().getProject(),
+        table.getTableId().getDataset(),
+        table.getTableId().getTable(),
+        standardTable,
+        partitioned,
+        clusteringFields,
+        table.getNumRows(),
+        table.getNumBytes());
+  }
+
+  public String getProjectId() {
+    return projectId;
+  }
+
+  public String getDatasetId() {
+    return datasetId;
+  }
+
+  public String getTableId() {
+    return tableId;
+  }
+
+  /** Fully qualified name, i.e. project.dataset.table */
+  public String getFullName() {
+    return String.format("%s.%s.%s", projectId, datasetId, tableId);
+  }
+
+  public boolean isStandardTable() {
+    return standardTable;
+  }
+
+  public boolean isPartitioned() {
+    return partitioned;
+  }
+
+  public boolean isClustered() {
+    return clusteringFields != null;
+  }
+
+  public List<String> getClusteringFields() {
+    return clusteringFields;
+  }
+
+  public BigInteger getNumRows() {
+    return numRows;
+  }
+
+  public Long getNumBytes() {
+    return numBytes;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe cache in front of a {@link TableMetadataProvider}.
+ *
+ * <ul>
+ *   <li>holds at most {@code maxEntries} tables, evicting the least recently used one
+ *   <li>entries expire {@code ttlMillis} after they were fetched
+ *   <li>tables that do not exist are cached as well, for {@code notFoundTtlMillis}
+ *   <li>concurrent lookups of a table that is being fetched wait for that fetch instead of
+ *       calling the provider again
+ * </ul>
+ *
+ * Other errors (e.g. API quota) are not cached.
+ */
+public class TableMetadataCache implements TableMetadataProvider {
+
+  public static final int DEFAULT_MAX_ENTRIES = 10_000;
+  public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  public static final long DEFAULT_NOT_FOUND_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private static TableMetadataCache sharedInstance;
+
+  private static final class Entry {
+    private final CompletableFuture<TableMetadata> future = new CompletableFuture<>();
+    // set once the fetch completes, an entry being fetched never expires
+    private volatile long expiresAtNanos;
+    private volatile boolean loaded = false;
+
+    private boolean isExpired(long nowNanos) {
+      // nanoTime values may be negative, only their difference is meaningful
+      return loaded && nowNanos - expiresAtNanos >= 0;
+    }
+
+    private void setLoaded(long expiresAtNanos) {
+      this.expiresAtNanos = expiresAtNanos;
+      this.loaded = true;
+    }
+  }
+
+  private final TableMetadataProvider delegate;
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final long notFoundTtlNanos;
+  private final LongSupplier nanoClock;
+  private final LinkedHashMap<String, Entry> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  public TableMetadataCache(TableMetadataProvider delegate) {
+    this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_NOT_FOUND_TTL_MILLIS);
+  }
+
+  public TableMetadataCache(
+      TableMetadataProvider delegate, int maxEntries, long ttlMillis, long notFoundTtlMillis) {
+    this(delegate, maxEntries, ttlMillis, notFoundTtlMillis, System::nanoTime);
+  }
+
+  TableMetadataCache(
+      TableMetadataProvider delegate,
+      int maxEntries,
+      long ttlMillis,
+      long notFoundTtlMillis,
+      LongSupplier nanoClock) {
+    this.delegate = delegate;
+    this.maxEntries = maxEntries;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.notFoundTtlNanos = TimeUnit.MILLISECONDS.toNanos(notFoundTtlMillis);
+    this.nanoClock = nanoClock;
+    // access ordered, i.e. iteration starts at the least recently used entry
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /** Process wide cache in front of the BigQuery API, built on first use. */
+  public static synchronized TableMetadataCache getSharedInstance() {
+    if (sharedInstance == null) {
+      sharedInstance =
+          new TableMetadataCache(
+              new BigQueryTableMetadataProvider(BigQueryService.buildDefault()));
+    }
+    return sharedInstance;
+  }
+
+  @Override
+  public TableMetadata fetchTable(String projectId, String tableReference) {
+    String key = projectId + ":" + tableReference;
+    Entry entry;
+    boolean fetch = false;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && entry.isExpired(nanoClock.getAsLong())) {
+        entries.remove(key);
+        entry = null;
+      }
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(key, entry);
+        evictLeastRecentlyUsed();
+        fetch = true;
+        missCount.incrementAndGet();
+      } else if (entry.future.isDone()) {
+        hitCount.incrementAndGet();
+      } else {
+        coalescedCount.incrementAndGet();
+      }
+    }
+
+    if (fetch) {
+      load(key, entry, projectId, tableReference);
+    }
+    return await(entry.future);
+  }
+
+  private void load(String key, Entry entry, String projectId, String tableReference) {
+    try {
+      TableMetadata table = delegate.fetchTable(projectId, tableReference);
+      entry.setLoaded(nanoClock.getAsLong() + ttlNanos);
+      entry.future.complete(table);
+    } catch (TableNotFoundInCatalog e) {
+      entry.setLoaded(nanoClock.getAsLong() + notFoundTtlNanos);
+      entry.future.completeExceptionally(e);
+    } catch (Throwable e) {
+      // transient errors are reported to every waiting lookup but not cached, errors as well so
+      // that no lookup waits forever on the entry
+      synchronized (entries) {
+        entries.remove(key, entry);
+      }
+      entry.future.completeExceptionally(e);
+    }
+  }
+
+  private static TableMetadata await(CompletableFuture<TableMetadata> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for table metadata", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new CompletionException(e.getCause());
+    }
+  }
+
+  private void evictLeastRecentlyUsed() {
+    while (entries.size() > maxEntries) {
+      Map.Entry<String, Entry> eldest = entries.entrySet().iterator().next();
+      entries.remove(eldest.getKey());
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Lookups answered from a cached table, including cached "not found" results. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Lookups that called the underlying provider. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Lookups that waited for a fetch already in progress for the same table. */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public String getStats() {
+    return String.format(
+        "table metadata cache: %d hits, %d misses, %d coalesced, %d evictions",
+        getHitCount(), getMissCount(), getCoalescedCount(), getEvictionCount());
+  }
+}
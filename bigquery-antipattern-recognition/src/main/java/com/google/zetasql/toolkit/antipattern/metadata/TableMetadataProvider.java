@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+
+/** Source of table metadata for the analyzer visitors. Implementations must be thread safe. */
+public interface TableMetadataProvider {
+
+  /**
+   * Fetches the metadata of a table.
+   *
+   * @param projectId project used to qualify the reference, may be null if the reference is
+   *     already fully qualified
+   * @param tableReference table reference as found in the query, e.g. dataset.table
+   * @throws TableNotFoundInCatalog if the table does not exist
+   */
+  TableMetadata fetchTable(String projectId, String tableReference);
+}
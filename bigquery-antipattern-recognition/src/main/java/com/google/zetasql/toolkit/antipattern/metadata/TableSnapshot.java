@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableDefinition;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metadata of a single table as stored in a {@link CatalogSnapshot}: the schema needed to register
+ * the table in a catalog plus the properties read by the analyzer visitors.
+ */
+public class TableSnapshot {
+
+  /** Column of a table, its type is a BigQuery type name, e.g. ARRAY<STRUCT<a INT64>>. */
+  public static class ColumnSnapshot {
+    private String name;
+    private String type;
+
+    public ColumnSnapshot() {}
+
+    public ColumnSnapshot(String name, String type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public void setType(String type) {
+      this.type = type;
+    }
+  }
+
+  private String projectId;
+  private String datasetId;
+  private String tableId;
+  private boolean standardTable;
+  // e.g. DAY, null when the table is not partitioned by time
+  private String timePartitioningType;
+  // null when partitioned by ingestion time
+  private String timePartitioningField;
+  private String rangePartitioningField;
+  private List<String> clusteringFields;
+  private BigInteger numRows;
+  private Long numBytes;
+  private List<ColumnSnapshot> columns = new ArrayList<>();
+
+  public TableSnapshot() {}
+
+  public TableSnapshot(String projectId, String datasetId, String tableId) {
+    this.projectId = projectId;
+    this.datasetId = datasetId;
+    this.tableId = tableId;
+  }
+
+  public static TableSnapshot fromTable(Table table) {
+    TableSnapshot snapshot =
+        new TableSnapshot(
+            table.getTableId().getProject(),
+            table.getTableId().getDataset(),
+            table.getTableId().getTable());
+    TableDefinition definition = table.getDefinition();
+    snapshot.setStandardTable(definition instanceof StandardTableDefinition);
+    if (definition instanceof StandardTableDefinition) {
+      StandardTableDefinition stdDef = (StandardTableDefinition) definition;
+      if (stdDef.getTimePartitioning() != null) {
+        snapshot.setTimePartitioningType(stdDef.getTimePartitioning().getType().name());
+        snapshot.setTimePartitioningField(stdDef.getTimePartitioning().getField());
+      }
+      if (stdDef.getRangePartitioning() != null) {
+        snapshot.setRangePartitioningField(stdDef.getRangePartitioning().getField());
+      }
+      if (stdDef.getClustering() != null) {
+        snapshot.setClusteringFields(stdDef.getClustering().getFields());
+      }
+    }
+    Schema schema = definition.getSchema();
+    if (schema != null) {
+      for (Field field : schema.getFields()) {
+        snapshot.getColumns().add(
+            new ColumnSnapshot(field.getName(), BigQueryTypeNames.fromField(field)));
+      }
+    }
+    snapshot.setNumRows(table.getNumRows());
+    snapshot.setNumBytes(table.getNumBytes());
+    return snapshot;
+  }
+
+  public TableMetadata toTableMetadata() {
+    return new TableMetadata(
+        projectId,
+        datasetId,
+        tableId,
+        standardTable,
+        isPartitioned(),
+        clusteringFields,
+        numRows,
+        numBytes);
+  }
+
+  /** Fully qualified name, i.e. project.dataset.table */
+  @JsonIgnore
+  public String getFullName() {
+    return String.format("%s.%s.%s", projectId, datasetId, tableId);
+  }
+
+  @JsonIgnore
+  public boolean isPartitioned() {
+    return timePartitioningType != null || rangePartitioningField != null;
+  }
+
+  /** Tables partitioned by ingestion time expose the _PARTITIONTIME pseudo column. */
+  @JsonIgnore
+  public boolean isIngestionTimePartitioned() {
+    return timePartitioningType != null && timePartitioningField == null;
+  }
+
+  public String getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(String projectId) {
+    this.projectId = projectId;
+  }
+
+  public String getDatasetId() {
+    return datasetId;
+  }
+
+  public void setDatasetId(String datasetId) {
+    this.datasetId = datasetId;
+  }
+
+  public String getTableId() {
+    return tableId;
+  }
+
+  public void setTableId(String tableId) {
+    this.tableId = tableId;
+  }
+
+  public boolean isStandardTable() {
+    return standardTable;
+  }
+
+  public void setStandardTable(boolean standardTable) {
+    this.standardTable = standardTable;
+  }
+
+  public String getTimePartitioningType() {
+    return timePartitioningType;
+  }
+
+  public void setTimePartitioningType(String timePartitioningType) {
+    this.timePartitioningType = timePartitioningType;
+  }
+
+  public String getTimePartitioningField() {
+    return timePartitioningField;
+  }
+
+  public void setTimePartitioningField(String timePartitioningField) {
+    this.timePartitioningField = timePartitioningField;
+  }
+
+  public String getRangePartitioningField() {
+    return rangePartitioningField;
+  }
+
+  public void setRangePartitioningField(String rangePartitioningField) {
+    this.rangePartitioningField = rangePartitioningField;
+  }
+
+  public List<String> getClusteringFields() {
+    return clusteringFields;
+  }
+
+  public void setClusteringFields(List<String> clusteringFields) {
+    this.clusteringFields = clusteringFields;
+  }
+
+  public BigInteger getNumRows() {
+    return numRows;
+  }
+
+  public void setNumRows(BigInteger numRows) {
+    this.numRows = numRows;
+  }
+
+  public Long getNumBytes() {
+    return numBytes;
+  }
+
+  public void setNumBytes(Long numBytes) {
+    this.numBytes = numBytes;
+  }
+
+  public List<ColumnSnapshot> getColumns() {
+    return columns;
+  }
+
+  public void setColumns(List<ColumnSnapshot> columns) {
+    this.columns = columns;
+  }
+}
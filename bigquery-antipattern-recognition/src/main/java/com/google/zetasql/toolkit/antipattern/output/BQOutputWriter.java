@@ -17,6 +17,7 @@
 package com.google.zetasql.toolkit.antipattern.output;
 
 import com.google.api.client.util.DateTime;
+import com.google.cloud.bigquery.FieldValueList;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
 import com.google.zetasql.toolkit.antipattern.cmd.AntiPatternCommandParser;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
@@ -25,8 +26,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,10 +45,13 @@ public class BQOutputWriter extends OutputWriter {
   public static final String REC_NAME_COL_NAME = "name";
   public static final String DESCRIPTION_COL_NAME = "description";
   public static final String OPTIMIZED_SQL_COL_NAME = "optimized_sql";
+  public static final String ANALYSIS_TIER_COL_NAME = "analysis_tier";
   private BigQueryHelper bigQueryHelper;
   private String tableName;
   private String processingProjectName;
   private DateTime date;
+  // queries of the interrupted run already in the output table, only set when resuming
+  private Set<String> writtenQueryIds = new HashSet<>();
 
   public BQOutputWriter(String outputDir, String processingProject,
       String serviceAccountKeyfilePath)
@@ -64,6 +70,10 @@ public class BQOutputWriter extends OutputWriter {
       InputQuery inputQuery,
       List<AntiPatternVisitor> visitorsThatFoundPatterns,
       AntiPatternCommandParser cmdParser) throws IOException {
+    if (writtenQueryIds.contains(inputQuery.getQueryId())) {
+      logger.info("Skipping query already written before resuming: " + inputQuery.getQueryId());
+      return;
+    }
 
     List<Map<String, String>> rec_list = new ArrayList<>();
     for (AntiPatternVisitor visitor : visitorsThatFoundPatterns) {
@@ -81,7 +91,45 @@ public class BQOutputWriter extends OutputWriter {
     rowContent.put(USER_EMAIL_COL_NAME, inputQuery.getUserEmail());
     rowContent.put(RECOMMENDATION_COL_NAME, rec_list);
     rowContent.put(OPTIMIZED_SQL_COL_NAME, inputQuery.getOptimizedQuery());
+    // only with tiered analysis, so existing output tables keep working
+    if (cmdParser.recordAnalysisTier() && inputQuery.getAnalysisTier() != null) {
+      rowContent.put(ANALYSIS_TIER_COL_NAME, inputQuery.getAnalysisTier().name());
+    }
     rowContent.put(PROCESS_TIMESTAMP_COL_NAME, date);
     bigQueryHelper.writeResults(processingProjectName, tableName, rowContent);
   }
+
+  // rows are streamed as they are written, the state is the process timestamp of the run
+  @Override
+  public String commit() {
+    return String.valueOf(date.getValue());
+  }
+
+  /**
+   * Continues the interrupted run with its process timestamp and reads the queries it wrote after
+   * the checkpoint, streamed rows cannot be deleted so those queries are not written again.
+   */
+  @Override
+  public void resume(String committedState) throws IOException {
+    date = new DateTime(Long.parseLong(committedState));
+    String query =
+        "SELECT DISTINCT "
+            + JOB_IDENTIFIER_COL_NAME
+            + " FROM `"
+            + tableName
+            + "` WHERE "
+            + PROCESS_TIMESTAMP_COL_NAME
+            + " = TIMESTAMP_MILLIS("
+            + date.getValue()
+            + ")";
+    try {
+      for (FieldValueList row : bigQueryHelper.runQuery(query, null).iterateAll()) {
+        writtenQueryIds.add(row.get(JOB_IDENTIFIER_COL_NAME).getStringValue());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading rows written before resuming", e);
+    }
+    logger.info(writtenQueryIds.size() + " queries were written before resuming to: " + tableName);
+  }
 }
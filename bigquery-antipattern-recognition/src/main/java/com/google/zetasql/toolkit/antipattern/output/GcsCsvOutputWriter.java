@@ -20,10 +20,21 @@ import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
 import com.google.zetasql.toolkit.antipattern.cmd.AntiPatternCommandParser;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
 import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes the output to GCS in files of at most ~400 MB, named after the output path with a number
+ * from the second file on.
+ *
+ * <p>GCS files cannot be appended to, so the rows buffered at each checkpoint are written as a
+ * part file ({@code <file>.part<n>}) and the parts written so far are composed into the output
+ * file. A file is finished after {@value #MAX_PARTS} parts, the most GCS composes at once, or when
+ * it reaches the size limit. Its parts are deleted once a later checkpoint no longer needs them
+ * to resume.
+ */
 public class GcsCsvOutputWriter extends OutputWriter {
 
   private static final Logger logger = LoggerFactory.getLogger(GcsCsvOutputWriter.class);
@@ -31,7 +42,14 @@ public class GcsCsvOutputWriter extends OutputWriter {
   public String csvFileExtension = ".csv";
   private StringBuilder outputStrBuilder = new StringBuilder();
   private final static int NUM_CHARACTERS_TO_WRITE = 200000000;
-  private int file_num = -1;
+  private final static int MAX_PARTS = 32;
+  // file being written and its parts written so far
+  private int file_num = 0;
+  private int part_num = 0;
+  private long file_characters = 0;
+  // finished files whose parts are deleted at the next commit, and at the one after
+  private List<Integer> finishedFiles = new ArrayList<>();
+  private List<Integer> committedFinishedFiles = new ArrayList<>();
 
   public GcsCsvOutputWriter(String outputDir)  {
     gcsFilePath = outputDir;
@@ -39,42 +57,134 @@ public class GcsCsvOutputWriter extends OutputWriter {
 
   public void writeRecForQuery(InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundPatterns,
                                AntiPatternCommandParser cmdParser) {
-      if(outputStrBuilder.length()==0) {
+      if(outputStrBuilder.length()==0 && part_num==0) {
         outputStrBuilder.append(OutputCSVWriterHelper.getHeader(cmdParser));
       }
       outputStrBuilder.append(OutputCSVWriterHelper.getOutputStringForRecord(inputQuery, visitorsThatFoundPatterns, cmdParser));
 
       // every ~400 MB
-      if(outputStrBuilder.length()>=NUM_CHARACTERS_TO_WRITE) {
+      if(file_characters + outputStrBuilder.length()>=NUM_CHARACTERS_TO_WRITE) {
         writeOutput();
+        finishFile();
       }
   }
 
-  public void close() {
+  // the state is the file being written and its number of parts
+  @Override
+  public String commit() {
     if(outputStrBuilder.length()>0){
       writeOutput();
+      if(part_num==MAX_PARTS) {
+        finishFile();
+      }
     }
+    // the previous checkpoint is saved, its files are complete without parts
+    deleteParts(committedFinishedFiles);
+    committedFinishedFiles = finishedFiles;
+    finishedFiles = new ArrayList<>();
+    return file_num + ":" + part_num;
+  }
 
+  // parts and files written after the checkpoint hold rows of queries that are processed again
+  @Override
+  public void resume(String committedState) {
+    String[] state = committedState.split(":");
+    if (state.length == 1) {
+      // last file written by a version without parts
+      file_num = Integer.parseInt(state[0]) + 1;
+      part_num = 0;
+    } else {
+      file_num = Integer.parseInt(state[0]);
+      part_num = Integer.parseInt(state[1]);
+    }
+    GCSHelper gcsHelper = new GCSHelper();
+    for (int n = part_num; gcsHelper.deleteFromGCS(getGCSPartFileName(file_num, n)); n++) {
+      logger.info("Deleted output written after the checkpoint: " + getGCSPartFileName(file_num, n));
+    }
+    if (part_num > 0) {
+      gcsHelper.composeInGCS(getGCSPartFileNames(part_num), getGCSOutputFileName(file_num));
+    } else {
+      gcsHelper.deleteFromGCS(getGCSOutputFileName(file_num));
+    }
+    for (int n = file_num + 1; deleteFile(gcsHelper, n); n++) {
+      logger.info("Deleted output written after the checkpoint: " + getGCSOutputFileName(n));
+    }
+    // files finished shortly before the checkpoint may still have their parts
+    for (int n = file_num - 1; n >= 0 && deleteParts(gcsHelper, n); n--) {}
+  }
+
+  public void close() {
+    if(outputStrBuilder.length()>0){
+      writeOutput();
+    }
+    if(part_num>0) {
+      finishFile();
+    }
+    deleteParts(committedFinishedFiles);
+    deleteParts(finishedFiles);
   }
 
   private void writeOutput() {
     logger.info("Writing recommendations to GCS: " + gcsFilePath);
-    String gcsOutputFileName = getGCSOutputFileName();
     GCSHelper gcsHelper = new GCSHelper();
-    gcsHelper.writeToGCS(gcsOutputFileName, outputStrBuilder.toString());
+    gcsHelper.writeToGCS(getGCSPartFileName(file_num, part_num), outputStrBuilder.toString());
+    part_num += 1;
+    gcsHelper.composeInGCS(getGCSPartFileNames(part_num), getGCSOutputFileName(file_num));
+    file_characters += outputStrBuilder.length();
     outputStrBuilder = new StringBuilder();
   }
 
-  private String getGCSOutputFileName() {
+  private void finishFile() {
+    finishedFiles.add(file_num);
     file_num += 1;
+    part_num = 0;
+    file_characters = 0;
+  }
+
+  private void deleteParts(List<Integer> fileNums) {
+    GCSHelper gcsHelper = new GCSHelper();
+    for (int fileNum : fileNums) {
+      deleteParts(gcsHelper, fileNum);
+    }
+    fileNums.clear();
+  }
+
+  // deletes a file and its parts, returns false if neither existed
+  private boolean deleteFile(GCSHelper gcsHelper, int fileNum) {
+    boolean deleted = gcsHelper.deleteFromGCS(getGCSOutputFileName(fileNum));
+    return deleteParts(gcsHelper, fileNum) || deleted;
+  }
+
+  // returns false if the file had no parts
+  private boolean deleteParts(GCSHelper gcsHelper, int fileNum) {
+    int n = 0;
+    while (gcsHelper.deleteFromGCS(getGCSPartFileName(fileNum, n))) {
+      n++;
+    }
+    return n > 0;
+  }
+
+  private List<String> getGCSPartFileNames(int parts) {
+    List<String> partFileNames = new ArrayList<>();
+    for (int n = 0; n < parts; n++) {
+      partFileNames.add(getGCSPartFileName(file_num, n));
+    }
+    return partFileNames;
+  }
+
+  private String getGCSPartFileName(int fileNum, int partNum) {
+    return getGCSOutputFileName(fileNum) + ".part" + partNum;
+  }
+
+  private String getGCSOutputFileName(int fileNum) {
     if(!gcsFilePath.endsWith(csvFileExtension)) {
       gcsFilePath += csvFileExtension;
     }
 
-    if(file_num == 0 ){
+    if(fileNum == 0 ){
       return gcsFilePath;
     } else {
-      return gcsFilePath.replace(csvFileExtension, "_" + file_num + csvFileExtension);
+      return gcsFilePath.replace(csvFileExtension, "_" + fileNum + csvFileExtension);
     }
   }
 
@@ -23,6 +23,11 @@ import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +52,30 @@ public class LocalCsvOutputWriter extends OutputWriter {
     csvWriter.flush();
   }
 
+  @Override
+  public String commit() throws IOException {
+    if (csvWriter != null) {
+      csvWriter.flush();
+    }
+    File file = new File(filePath);
+    return String.valueOf(file.exists() ? file.length() : 0);
+  }
+
+  @Override
+  public void resume(String committedState) throws IOException {
+    long committedLength = Long.parseLong(committedState);
+    Path path = Paths.get(filePath);
+    if (committedLength == 0) {
+      // nothing was committed, start again with the header
+      Files.deleteIfExists(path);
+    } else if (Files.exists(path) && Files.size(path) > committedLength) {
+      logger.info("Dropping rows written after the checkpoint from: " + filePath);
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        channel.truncate(committedLength);
+      }
+    }
+  }
+
   public void close() throws IOException {
     if(csvWriter != null){
       csvWriter.close();
@@ -36,6 +36,9 @@ public class LogOutputWriter extends OutputWriter {
     for(AntiPatternVisitor visitor: visitorsThatFoundPatterns) {
       outputStrBuilder.append("\n* "+ visitor.getName() + ": " + visitor.getResult());
     }
+    if(cmdParser.recordAnalysisTier() && inputQuery.getAnalysisTier() != null) {
+      outputStrBuilder.append("\n* Analysis tier: " + inputQuery.getAnalysisTier());
+    }
     if(cmdParser.rewriteSQL() && inputQuery.getOptimizedQuery() != null) {
       outputStrBuilder.append("\n* Optimized query:\n");
       outputStrBuilder.append(inputQuery.getOptimizedQuery());
@@ -20,6 +20,7 @@ import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
 import com.google.zetasql.toolkit.antipattern.cmd.AntiPatternCommandParser;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,6 +28,7 @@ public class OutputCSVWriterHelper {
 
   private static final String CSV_HEADER = "id,recommendation";
   private static final String CSV_HEADER_OPTIMIZED_SQL_COL_NAME = "optimized_sql";
+  private static final String CSV_HEADER_ANALYSIS_TIER_COL_NAME = "analysis_tier";
   private static final String REC_FORMAT = "%s: %s";
   private static final String BASE_OUTPUT_RECORD_FORMAT = "%s,\"%s\"";
 
@@ -43,29 +45,39 @@ public class OutputCSVWriterHelper {
   }
 
   public static String getHeader(AntiPatternCommandParser cmdParser) {
+    String header = CSV_HEADER;
     if (cmdParser.rewriteSQL()) {
-      return CSV_HEADER + "," + CSV_HEADER_OPTIMIZED_SQL_COL_NAME + "\n";
-    } else {
-      return CSV_HEADER + "\n";
+      header += "," + CSV_HEADER_OPTIMIZED_SQL_COL_NAME;
     }
+    if (cmdParser.recordAnalysisTier()) {
+      header += "," + CSV_HEADER_ANALYSIS_TIER_COL_NAME;
+    }
+    return header + "\n";
   }
 
   public static String getOutputRecFormat(AntiPatternCommandParser cmdParser) {
+    String format = BASE_OUTPUT_RECORD_FORMAT;
     if (cmdParser.rewriteSQL()) {
-      return BASE_OUTPUT_RECORD_FORMAT + ",\"%s\"\n";
-    } else {
-      return BASE_OUTPUT_RECORD_FORMAT + "\n";
+      format += ",\"%s\"";
+    }
+    if (cmdParser.recordAnalysisTier()) {
+      format += ",%s";
     }
+    return format + "\n";
   }
 
   public static String buildRecord(
       InputQuery inputQuery, AntiPatternCommandParser cmdParser, String rec) {
     String output_record_format = getOutputRecFormat(cmdParser);
+    List<Object> values = new ArrayList<>();
+    values.add(inputQuery.getQueryId());
+    values.add(rec);
     if (cmdParser.rewriteSQL()) {
-      return String.format(
-          output_record_format, inputQuery.getQueryId(), rec, inputQuery.getOptimizedQuery());
-    } else {
-      return String.format(output_record_format, inputQuery.getQueryId(), rec);
+      values.add(inputQuery.getOptimizedQuery());
+    }
+    if (cmdParser.recordAnalysisTier()) {
+      values.add(inputQuery.getAnalysisTier() == null ? "" : inputQuery.getAnalysisTier());
     }
+    return String.format(output_record_format, values.toArray());
   }
 }
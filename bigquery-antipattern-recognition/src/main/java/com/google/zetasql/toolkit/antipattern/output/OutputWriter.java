@@ -32,6 +32,20 @@ public abstract class OutputWriter {
 
   public void close() throws IOException {};
 
+  /**
+   * Makes the output written so far durable, e.g. by flushing buffered rows, and returns the state
+   * needed to resume after it. Called when a checkpoint is taken.
+   */
+  public String commit() throws IOException {
+    return null;
+  }
+
+  /**
+   * Prepares to continue the output of an interrupted run, dropping anything written after the
+   * commit that returned the state so resumed queries are not written twice.
+   */
+  public void resume(String committedState) throws IOException {};
+
   public void setRewriteSQL(boolean rewriteSQL) {
     this.rewriteSQL = rewriteSQL;
   }
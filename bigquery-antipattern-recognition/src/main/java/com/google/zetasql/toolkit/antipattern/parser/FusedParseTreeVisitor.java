@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.parser;
+
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.parser.ParseTreeVisitor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a parse tree once and routes every node only to the {@link ParserRuleVisitor}s subscribed
+ * to its type.
+ *
+ * <p>When a rule returns false from {@link ParserRuleVisitor#enter(ASTNode)} the subtree is still
+ * walked for the other rules, but that rule is not notified again until the subtree is left. A
+ * rule that throws is disabled for the rest of the walk and reported by {@link
+ * #hasFailed(ParserRuleVisitor)}, the other rules are unaffected.
+ */
+public class FusedParseTreeVisitor extends ParseTreeVisitor {
+
+  private static final Logger logger = LoggerFactory.getLogger(FusedParseTreeVisitor.class);
+  private static final int[] NO_SUBSCRIBERS = new int[0];
+
+  private final List<ParserRuleVisitor> rules;
+  // node on which the rule returned false from enter(), null when the rule is active
+  private final ASTNode[] skippedSubtreeRoots;
+  private final boolean[] failed;
+  private final Map<Class<?>, int[]> subscribersByNodeType = new HashMap<>();
+
+  public FusedParseTreeVisitor(List<ParserRuleVisitor> rules) {
+    this.rules = new ArrayList<>(rules);
+    this.skippedSubtreeRoots = new ASTNode[rules.size()];
+    this.failed = new boolean[rules.size()];
+  }
+
+  public boolean hasFailed(ParserRuleVisitor rule) {
+    int index = rules.indexOf(rule);
+    return index >= 0 && failed[index];
+  }
+
+  @Override
+  protected void defaultVisit(ASTNode node) {
+    int[] subscribers = getSubscribers(node.getClass());
+
+    for (int i : subscribers) {
+      if (failed[i] || skippedSubtreeRoots[i] != null) {
+        continue;
+      }
+      try {
+        if (!rules.get(i).enter(node)) {
+          skippedSubtreeRoots[i] = node;
+        }
+      } catch (Exception e) {
+        markFailed(i, e);
+      }
+    }
+
+    super.defaultVisit(node);
+
+    for (int j = subscribers.length - 1; j >= 0; j--) {
+      int i = subscribers[j];
+      if (failed[i]) {
+        continue;
+      }
+      if (skippedSubtreeRoots[i] == node) {
+        skippedSubtreeRoots[i] = null;
+      } else if (skippedSubtreeRoots[i] != null) {
+        // skipped by an ancestor, enter() was not called for this node
+        continue;
+      }
+      try {
+        rules.get(i).exit(node);
+      } catch (Exception e) {
+        markFailed(i, e);
+      }
+    }
+  }
+
+  private int[] getSubscribers(Class<? extends ASTNode> nodeType) {
+    int[] subscribers = subscribersByNodeType.get(nodeType);
+    if (subscribers == null) {
+      List<Integer> indexes = new ArrayList<>();
+      for (int i = 0; i < rules.size(); i++) {
+        if (rules.get(i).isSubscribedTo(nodeType)) {
+          indexes.add(i);
+        }
+      }
+      subscribers =
+          indexes.isEmpty() ? NO_SUBSCRIBERS : indexes.stream().mapToInt(i -> i).toArray();
+      subscribersByNodeType.put(nodeType, subscribers);
+    }
+    return subscribers;
+  }
+
+  private void markFailed(int ruleIndex, Exception e) {
+    failed[ruleIndex] = true;
+    skippedSubtreeRoots[ruleIndex] = null;
+    logger.error("Error in anti-pattern: " + rules.get(ruleIndex).getName());
+    logger.error(e.getMessage(), e);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.parser;
+
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.parser.ParseTreeVisitor;
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import java.util.Set;
+
+/**
+ * Base class for parser anti-pattern rules.
+ *
+ * <p>Rules declare the node types they subscribe to and react to them through {@link
+ * #enter(ASTNode)} and {@link #exit(ASTNode)} instead of overriding {@code visit} methods. This
+ * lets a rule run on its own ({@code parsedQuery.accept(rule)}) or together with every other rule
+ * in a single traversal through {@link FusedParseTreeVisitor}, with the same behaviour in both
+ * cases.
+ */
+public abstract class ParserRuleVisitor extends ParseTreeVisitor implements AntiPatternVisitor {
+
+  /** Node types (including super types) this rule wants to be notified about. */
+  public abstract Set<Class<? extends ASTNode>> getSubscribedNodeTypes();
+
+  /**
+   * Called before the children of a subscribed node are visited.
+   *
+   * @return false to skip the subtree of this node for this rule only
+   */
+  public abstract boolean enter(ASTNode node);
+
+  /** Called after the subtree of a subscribed node, whether or not it was descended into. */
+  public void exit(ASTNode node) {}
+
+  public boolean isSubscribedTo(Class<? extends ASTNode> nodeType) {
+    for (Class<? extends ASTNode> subscribedNodeType : getSubscribedNodeTypes()) {
+      if (subscribedNodeType.isAssignableFrom(nodeType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected void defaultVisit(ASTNode node) {
+    if (!isSubscribedTo(node.getClass())) {
+      super.defaultVisit(node);
+      return;
+    }
+    if (enter(node)) {
+      super.defaultVisit(node);
+    }
+    exit(node);
+  }
+}
@@ -17,26 +17,27 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.zetasql.parser.ASTNodes;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
 import com.google.zetasql.parser.ASTNodes.ASTSelect;
 import com.google.zetasql.parser.ASTNodes.ASTTablePathExpression;
 import com.google.zetasql.parser.ASTNodes.ASTWithClause;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
-public class IdentifyCTEsEvalMultipleTimesVisitor extends ParseTreeVisitor
-    implements AntiPatternVisitor {
+public class IdentifyCTEsEvalMultipleTimesVisitor extends ParserRuleVisitor {
 
   public static final String NAME = "CTEsEvalMultipleTimes";
   private final String MULTIPLE_CTE_SUGGESTION_MESSAGE =
       "CTE with multiple references: alias %s defined at line %d is referenced %d times.";
 
-  // An array list to store the suggestions.
-  private final ArrayList<String> result = new ArrayList<>();
+  // The suggestions, built once all the statements were visited.
+  private List<Finding> findings;
 
   // A map to keep track of the number of times each CTE is evaluated.
   private final Map<String, Integer> cteCountMap = new HashMap<>();
@@ -45,13 +46,37 @@ public class IdentifyCTEsEvalMultipleTimesVisitor extends ParseTreeVisitor
   private final Map<String, Integer> cteStartPositionMap = new HashMap<>();
 
   private String query;
+  private final LineIndex lineIndex;
 
   public IdentifyCTEsEvalMultipleTimesVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyCTEsEvalMultipleTimesVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
   }
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTWithClause.class, ASTTablePathExpression.class);
+
   @Override
-  public void visit(ASTWithClause withClause) {
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
+  // neither WITH clauses nor table paths are descended into
+  @Override
+  public boolean enter(ASTNode node) {
+    if (node instanceof ASTWithClause) {
+      visitWithClause((ASTWithClause) node);
+    } else {
+      countTableReferences((ASTTablePathExpression) node);
+    }
+    return false;
+  }
+
+  private void visitWithClause(ASTWithClause withClause) {
 
     // Loop through all the CTE entries in the WITH clause.
     withClause
@@ -70,31 +95,31 @@ public class IdentifyCTEsEvalMultipleTimesVisitor extends ParseTreeVisitor
                     ((ASTSelect) alias.getQuery().getQueryExpr())
                         .getFromClause()
                         .getTableExpression();
-                visit(tableExpression);
+                countTableReferences(tableExpression);
               }
             });
   }
 
   // fetch table names from, FROM clause
-  public void visit(ASTNodes.ASTTableExpression tableExpression) {
+  private void countTableReferences(ASTNodes.ASTTableExpression tableExpression) {
     if (tableExpression instanceof ASTNodes.ASTTablePathExpression) {
-      visit((ASTTablePathExpression) tableExpression);
+      countTableReferences((ASTTablePathExpression) tableExpression);
     } else if (tableExpression instanceof ASTNodes.ASTJoin) {
-      visit(((ASTNodes.ASTJoin) tableExpression).getLhs());
-      visit(((ASTNodes.ASTJoin) tableExpression).getRhs());
+      countTableReferences(((ASTNodes.ASTJoin) tableExpression).getLhs());
+      countTableReferences(((ASTNodes.ASTJoin) tableExpression).getRhs());
     } else if (tableExpression instanceof ASTNodes.ASTTableSubquery) {
       ASTNodes.ASTQueryExpression queryExpression =
           ((ASTNodes.ASTTableSubquery) tableExpression).getSubquery().getQueryExpr();
       if (queryExpression instanceof ASTNodes.ASTSelect && ((ASTSelect) queryExpression).getFromClause() != null) {
         ASTNodes.ASTTableExpression tableExpression1 =
             ((ASTSelect) queryExpression).getFromClause().getTableExpression();
-        visit(tableExpression1);
+        countTableReferences(tableExpression1);
       }
     }
   }
 
   // Fetch table names and count occurrence of it
-  public void visit(ASTTablePathExpression tablePathExpression) {
+  private void countTableReferences(ASTTablePathExpression tablePathExpression) {
     // Loop through all the identifiers in the table path expression.
     if(tablePathExpression.getPathExpr() != null) {
       tablePathExpression
@@ -114,6 +139,15 @@ public class IdentifyCTEsEvalMultipleTimesVisitor extends ParseTreeVisitor
 
   // Getter method to retrieve the list of suggestion messages.
   public String getResult() {
+    return Finding.joinMessages(getFindings());
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    if (findings != null) {
+      return findings;
+    }
+    findings = new ArrayList<>();
     // Loop through all the entries in the count map.
     for (Map.Entry<String, Integer> entry : cteCountMap.entrySet()) {
       // Get the CTE name and its count.
@@ -121,11 +155,14 @@ public class IdentifyCTEsEvalMultipleTimesVisitor extends ParseTreeVisitor
       int count = entry.getValue();
       // If the CTE count is greater than 1, add the suggestion message to the list.
       if (count > 1) {
-        int lineNum = ZetaSQLStringParsingHelper.countLine(query, cteStartPositionMap.get(cteName));
-        result.add(String.format(MULTIPLE_CTE_SUGGESTION_MESSAGE, cteName, lineNum, count));
+        int start = cteStartPositionMap.get(cteName);
+        int lineNum = lineIndex.lineAt(start);
+        findings.add(
+            new Finding(
+                NAME, lineIndex, start, MULTIPLE_CTE_SUGGESTION_MESSAGE, cteName, lineNum, count));
       }
     }
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return findings;
   }
 
   @Override
@@ -18,24 +18,25 @@
 
 import com.google.zetasql.parser.ASTNodes.ASTCreateTableStatement;
 import com.google.zetasql.parser.ASTNodes.ASTDropStatement;
-import com.google.zetasql.parser.ParseTreeVisitor;
- import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
- import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+ import com.google.zetasql.toolkit.antipattern.Finding;
+ import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+ import com.google.zetasql.toolkit.antipattern.util.LineIndex;
  import com.google.zetasql.parser.ASTCreateStatementEnums;
  import java.util.ArrayList;
  import java.util.HashMap;
+ import java.util.List;
  import java.util.Map;
- import java.util.stream.Collectors;
+ import java.util.Set;
 
- public class IdentifyDroppedPersistentTableVisitor extends ParseTreeVisitor
-     implements AntiPatternVisitor {
+ public class IdentifyDroppedPersistentTableVisitor extends ParserRuleVisitor {
 
    public static final String NAME = "ConvertTableToTemp";
    private final String CONVERT_TO_TEMP_SUGGESTION_MESSAGE =
        "Persistent table dropped: Table %s defined at line %d is dropped. Consider converting to temporary.";
 
-   // An array list to store the suggestions.
-   private final ArrayList<String> result = new ArrayList<>();
+   // The suggestions, built once all the statements were visited.
+   private List<Finding> findings;
 
    // A map to keep track of the created tables.
    private final Map<String, Integer> createTableMap = new HashMap<>();
@@ -44,13 +45,36 @@ import com.google.zetasql.parser.ParseTreeVisitor;
    private final ArrayList<String> droppedTables = new ArrayList<>();
 
    private String query;
+   private final LineIndex lineIndex;
 
    public IdentifyDroppedPersistentTableVisitor(String query) {
+     this(query, new LineIndex(query));
+   }
+
+   public IdentifyDroppedPersistentTableVisitor(String query, LineIndex lineIndex) {
      this.query = query;
+     this.lineIndex = lineIndex;
    }
 
+   private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+       Set.of(ASTCreateTableStatement.class, ASTDropStatement.class);
+
    @Override
-   public void visit(ASTCreateTableStatement createTableStatement) {
+   public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+     return SUBSCRIBED_NODE_TYPES;
+   }
+
+   @Override
+   public boolean enter(ASTNode node) {
+     if (node instanceof ASTCreateTableStatement) {
+       visitCreateTableStatement((ASTCreateTableStatement) node);
+     } else {
+       visitDropStatement((ASTDropStatement) node);
+     }
+     return false;
+   }
+
+   private void visitCreateTableStatement(ASTCreateTableStatement createTableStatement) {
         // check if the table is temporary
         if(createTableStatement.getScope() ==  ASTCreateStatementEnums.Scope.DEFAULT_SCOPE){
             ArrayList<String> fqdm = new ArrayList<>();
@@ -67,8 +91,7 @@ import com.google.zetasql.parser.ParseTreeVisitor;
     }
    }
 
-   @Override
-   public void visit(ASTDropStatement dropStatement) {
+   private void visitDropStatement(ASTDropStatement dropStatement) {
         ArrayList<String> fqdm = new ArrayList<>();
         dropStatement.getName()
         .getNames()
@@ -84,15 +107,24 @@ import com.google.zetasql.parser.ParseTreeVisitor;
 
    // Getter method to retrieve the list of suggestion messages.
    public String getResult() {
-     System.out.println(createTableMap);
+     return Finding.joinMessages(getFindings());
+   }
+
+   @Override
+   public List<Finding> getFindings() {
+     if (findings != null) {
+       return findings;
+     }
+     findings = new ArrayList<>();
      for (Map.Entry<String, Integer> entry : createTableMap.entrySet()) {
        String tableName = entry.getKey();
        if (droppedTables.contains(tableName)){
-        int lineNum = ZetaSQLStringParsingHelper.countLine(query, createTableMap.get(tableName));
-        result.add(String.format(CONVERT_TO_TEMP_SUGGESTION_MESSAGE, tableName, lineNum));
+        int start = createTableMap.get(tableName);
+        int lineNum = lineIndex.lineAt(start);
+        findings.add(new Finding(NAME, lineIndex, start, CONVERT_TO_TEMP_SUGGESTION_MESSAGE, tableName, lineNum));
        }
      }
-     return result.stream().distinct().collect(Collectors.joining("\n"));
+     return findings;
    }
 
    @Override
@@ -17,43 +17,68 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.zetasql.parser.ASTNodes;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Set;
 
-public class IdentifyDynamicPredicateVisitor extends ParseTreeVisitor implements
-    AntiPatternVisitor {
+public class IdentifyDynamicPredicateVisitor extends ParserRuleVisitor {
 
   public final static String NAME = "DynamicPredicate";
   private String query;
+  private final LineIndex lineIndex;
   private Boolean insideWhere = false;
   private final String DYNAMIC_PREDICATE_SUGGESTION_MESSAGE = "Using subquery in filter at line %d. Converting this dynamic predicate to static might provide better performance.";
-  private ArrayList<String> result = new ArrayList<String>();
+  private final List<Finding> findings = new ArrayList<>();
 
   public IdentifyDynamicPredicateVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyDynamicPredicateVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
+  }
+
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTNodes.ASTSelect.class, ASTNodes.ASTWhereClause.class);
+
+  @Override
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
   }
 
   @Override
-  public void visit(ASTNodes.ASTSelect selectNode) {
-    if(insideWhere) {
-      int location = ZetaSQLStringParsingHelper.countLine(query, selectNode.getParseLocationRange().start());
-      result.add(String.format(DYNAMIC_PREDICATE_SUGGESTION_MESSAGE, location));
+  public boolean enter(ASTNode node) {
+    if (node instanceof ASTNodes.ASTSelect) {
+      if(insideWhere) {
+        int start = node.getParseLocationRange().start();
+        int location = lineIndex.lineAt(start);
+        findings.add(new Finding(NAME, lineIndex, start, DYNAMIC_PREDICATE_SUGGESTION_MESSAGE, location));
+      }
+    } else if (node instanceof ASTNodes.ASTWhereClause) {
+      this.insideWhere = true;
     }
-    super.visit(selectNode);
+    return true;
   }
 
   @Override
-  public void visit(ASTNodes.ASTWhereClause whereNode) {
-    this.insideWhere = true;
-    super.visit(whereNode);
-    this.insideWhere = false;
+  public void exit(ASTNode node) {
+    if (node instanceof ASTNodes.ASTWhereClause) {
+      this.insideWhere = false;
+    }
   }
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   @Override
@@ -17,43 +17,65 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.zetasql.parser.ASTNodes.ASTInExpression;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
 import com.google.zetasql.parser.ASTNodes.ASTSelect;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Set;
 
-public class IdentifyInSubqueryWithoutAggVisitor extends ParseTreeVisitor implements
-    AntiPatternVisitor {
+public class IdentifyInSubqueryWithoutAggVisitor extends ParserRuleVisitor {
 
   public final static String NAME = "SemiJoinWithoutAgg";
 
   private final String SUBQUERY_IN_WHERE_SUGGESTION_MESSAGE = "Subquery in filter without aggregation at line %d.";
 
   private String query;
-  private ArrayList<String> result = new ArrayList<String>();
+  private final LineIndex lineIndex;
+  private final List<Finding> findings = new ArrayList<>();
 
   public IdentifyInSubqueryWithoutAggVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyInSubqueryWithoutAggVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
   }
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTInExpression.class);
+
   @Override
-  public void visit(ASTInExpression node) {
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
+  @Override
+  public boolean enter(ASTNode astNode) {
+    ASTInExpression node = (ASTInExpression) astNode;
     if (!(node.getQuery() == null)) {
       if (node.getQuery().getQueryExpr() instanceof ASTSelect) {
         ASTSelect select = (ASTSelect) node.getQuery().getQueryExpr();
         if ((!select.getDistinct()) && select.getGroupBy() == null) {
-          int lineNum = ZetaSQLStringParsingHelper.countLine(query, select.getParseLocationRange().start());
-          result.add(String.format(SUBQUERY_IN_WHERE_SUGGESTION_MESSAGE, lineNum));
+          int start = select.getParseLocationRange().start();
+          int lineNum = lineIndex.lineAt(start);
+          findings.add(new Finding(NAME, lineIndex, start, SUBQUERY_IN_WHERE_SUGGESTION_MESSAGE, lineNum));
         }
       }
     }
-    super.visit(node);
+    return true;
   }
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   @Override
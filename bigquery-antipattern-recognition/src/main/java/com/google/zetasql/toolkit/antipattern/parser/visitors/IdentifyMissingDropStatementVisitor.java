@@ -18,25 +18,26 @@
 
 import com.google.zetasql.parser.ASTNodes.ASTCreateTableStatement;
 import com.google.zetasql.parser.ASTNodes.ASTDropStatement;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
 
- import com.google.zetasql.parser.ParseTreeVisitor;
- import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
- import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+ import com.google.zetasql.toolkit.antipattern.Finding;
+ import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+ import com.google.zetasql.toolkit.antipattern.util.LineIndex;
  import com.google.zetasql.parser.ASTCreateStatementEnums;
  import java.util.ArrayList;
  import java.util.HashMap;
+ import java.util.List;
  import java.util.Map;
- import java.util.stream.Collectors;
+ import java.util.Set;
 
- public class IdentifyMissingDropStatementVisitor extends ParseTreeVisitor
-     implements AntiPatternVisitor {
+ public class IdentifyMissingDropStatementVisitor extends ParserRuleVisitor {
 
    public static final String NAME = "MissingDropStatement";
    private final String MISSING_DROP_SUGGESTION_MESSAGE =
        "TEMP table created without DROP statement: TEMP table %s defined at line %d is created and not dropped.";
 
-   // An array list to store the suggestions.
-   private final ArrayList<String> result = new ArrayList<>();
+   // The suggestions, built once all the statements were visited.
+   private List<Finding> findings;
 
    // A map to keep track of the number of temp table names.
    private final Map<String, Integer> createTempTableMap = new HashMap<>();
@@ -45,13 +46,36 @@ import com.google.zetasql.parser.ASTNodes.ASTDropStatement;
    private final ArrayList<String> droppedTables = new ArrayList<>();
 
    private String query;
+   private final LineIndex lineIndex;
 
    public IdentifyMissingDropStatementVisitor(String query) {
+     this(query, new LineIndex(query));
+   }
+
+   public IdentifyMissingDropStatementVisitor(String query, LineIndex lineIndex) {
      this.query = query;
+     this.lineIndex = lineIndex;
    }
 
+   private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+       Set.of(ASTCreateTableStatement.class, ASTDropStatement.class);
+
    @Override
-   public void visit(ASTCreateTableStatement createTableStatement) {
+   public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+     return SUBSCRIBED_NODE_TYPES;
+   }
+
+   @Override
+   public boolean enter(ASTNode node) {
+     if (node instanceof ASTCreateTableStatement) {
+       visitCreateTableStatement((ASTCreateTableStatement) node);
+     } else {
+       visitDropStatement((ASTDropStatement) node);
+     }
+     return false;
+   }
+
+   private void visitCreateTableStatement(ASTCreateTableStatement createTableStatement) {
         // check if the table is temporary
         if(createTableStatement.getScope() == ASTCreateStatementEnums.Scope.TEMPORARY){
             ArrayList<String> fqdm = new ArrayList<>();
@@ -68,8 +92,7 @@ import com.google.zetasql.parser.ASTNodes.ASTDropStatement;
     }
    }
 
-   @Override
-   public void visit(ASTDropStatement dropStatement) {
+   private void visitDropStatement(ASTDropStatement dropStatement) {
         ArrayList<String> fqdm = new ArrayList<>();
         dropStatement.getName()
         .getNames()
@@ -85,14 +108,24 @@ import com.google.zetasql.parser.ASTNodes.ASTDropStatement;
 
    // Getter method to retrieve the list of suggestion messages.
    public String getResult() {
+     return Finding.joinMessages(getFindings());
+   }
+
+   @Override
+   public List<Finding> getFindings() {
+     if (findings != null) {
+       return findings;
+     }
+     findings = new ArrayList<>();
      for (Map.Entry<String, Integer> entry : createTempTableMap.entrySet()) {
        String tempTableName = entry.getKey();
        if (!droppedTables.contains(tempTableName)){
-        int lineNum = ZetaSQLStringParsingHelper.countLine(query, createTempTableMap.get(tempTableName));
-        result.add(String.format(MISSING_DROP_SUGGESTION_MESSAGE, tempTableName, lineNum));
+        int start = createTempTableMap.get(tempTableName);
+        int lineNum = lineIndex.lineAt(start);
+        findings.add(new Finding(NAME, lineIndex, start, MISSING_DROP_SUGGESTION_MESSAGE, tempTableName, lineNum));
        }
      }
-     return result.stream().distinct().collect(Collectors.joining("\n"));
+     return findings;
    }
 
    @Override
@@ -17,38 +17,59 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.zetasql.parser.ASTNodes;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Set;
 
-public class IdentifyOrderByWithoutLimitVisitor extends ParseTreeVisitor implements
-    AntiPatternVisitor {
+public class IdentifyOrderByWithoutLimitVisitor extends ParserRuleVisitor {
 
   public static final String NAME = "OrderByWithoutLimit";
 
   private final String ORDER_BY_SUGGESTION_MESSAGE = "ORDER BY clause without LIMIT at line %d.";
-  private ArrayList<String> result = new ArrayList<String>();
-  private ArrayList<String> resultToReturn = new ArrayList<String>();
+  private final List<Finding> findings = new ArrayList<>();
   private Boolean LimitExist = Boolean.FALSE;
   private String query;
+  private final LineIndex lineIndex;
 
   public IdentifyOrderByWithoutLimitVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyOrderByWithoutLimitVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
   }
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTNodes.ASTQuery.class);
+
   @Override
-  public void visit(ASTNodes.ASTQuery node) {
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
+  @Override
+  public boolean enter(ASTNode astNode) {
+    ASTNodes.ASTQuery node = (ASTNodes.ASTQuery) astNode;
     if (!(node.getOrderBy() == null) && (node.getLimitOffset() == null)) {
-      int lineNum = ZetaSQLStringParsingHelper.countLine(query, node.getOrderBy().getParseLocationRange().start());
-      result.add(String.format(ORDER_BY_SUGGESTION_MESSAGE, lineNum));
+      int start = node.getOrderBy().getParseLocationRange().start();
+      int lineNum = lineIndex.lineAt(start);
+      findings.add(new Finding(NAME, lineIndex, start, ORDER_BY_SUGGESTION_MESSAGE, lineNum));
     }
-    super.visit(node);
+    return true;
   }
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   @Override
@@ -18,33 +18,56 @@ package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.common.collect.ImmutableList;
 import com.google.zetasql.parser.ASTNodes;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
-public class IdentifyRegexpContainsVisitor extends ParseTreeVisitor implements AntiPatternVisitor {
+public class IdentifyRegexpContainsVisitor extends ParserRuleVisitor {
 
   public static final String NAME = "StringComparison";
   private static final String REGEXP_CONTAINS_ANTI_PATTERN_MESSAGE = "REGEXP_CONTAINS at line %d. Prefer LIKE when the full power of regex is not needed (e.g. wildcard matching).";
   private static final String REGEXP_CONTAINS_FUN_ID_STR = "regexp_contains";
   private static final String REGEX_STRING = "['\"]\\.\\*.*\\.\\*['\"]";
-  private ArrayList<String> result = new ArrayList<String>();
+  private final List<Finding> findings = new ArrayList<>();
   private String query;
+  private final LineIndex lineIndex;
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   public IdentifyRegexpContainsVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyRegexpContainsVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
+  }
+
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTNodes.ASTFunctionCall.class);
+
+  @Override
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
   }
 
+  // arguments of a function call are not searched for nested calls
   @Override
-  public void visit(ASTNodes.ASTFunctionCall node) {
+  public boolean enter(ASTNode astNode) {
+    ASTNodes.ASTFunctionCall node = (ASTNodes.ASTFunctionCall) astNode;
     ImmutableList<ASTNodes.ASTIdentifier> identifiers = node.getFunction().getNames();
     for (ASTNodes.ASTIdentifier identifier : identifiers) {
       // search for regexp_contains
@@ -57,14 +80,15 @@ public class IdentifyRegexpContainsVisitor extends ParseTreeVisitor implements A
             Pattern pattern = Pattern.compile(REGEX_STRING);
             Matcher matcher = pattern.matcher(stringLiteralArg);
             if (matcher.find()) {
-              int lineNum = ZetaSQLStringParsingHelper.countLine(
-                  query, identifier.getParseLocationRange().start());
-              result.add(String.format(REGEXP_CONTAINS_ANTI_PATTERN_MESSAGE, lineNum));
+              int start = identifier.getParseLocationRange().start();
+              int lineNum = lineIndex.lineAt(start);
+              findings.add(new Finding(NAME, lineIndex, start, REGEXP_CONTAINS_ANTI_PATTERN_MESSAGE, lineNum));
             }
           }
         }
       }
     }
+    return false;
   }
 
   @Override
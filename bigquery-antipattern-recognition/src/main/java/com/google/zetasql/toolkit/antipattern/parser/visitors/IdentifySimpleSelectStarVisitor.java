@@ -17,14 +17,14 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors;
 
 import com.google.zetasql.parser.ASTNodes;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
 import com.google.zetasql.parser.ASTNodes.ASTTablePathExpression;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-public class IdentifySimpleSelectStarVisitor extends ParseTreeVisitor
-    implements AntiPatternVisitor {
+public class IdentifySimpleSelectStarVisitor extends ParserRuleVisitor {
 
   public static final String NAME = "SimpleSelectStar";
   private final String SUGGESTION_MESSAGE =
@@ -36,8 +36,34 @@ public class IdentifySimpleSelectStarVisitor extends ParseTreeVisitor
   private boolean isSimpleSelect = true;
   private ArrayList<String> result = new ArrayList<String>();
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(
+          ASTNodes.ASTSelect.class,
+          ASTNodes.ASTFromClause.class,
+          ASTNodes.ASTGroupBy.class,
+          ASTNodes.ASTJoin.class);
+
+  @Override
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
   @Override
-  public void visit(ASTNodes.ASTSelect selectNode) {
+  public boolean enter(ASTNode node) {
+    if (node instanceof ASTNodes.ASTSelect) {
+      return visitSelect((ASTNodes.ASTSelect) node);
+    } else if (node instanceof ASTNodes.ASTFromClause) {
+      return visitFromClause();
+    } else if (node instanceof ASTNodes.ASTGroupBy) {
+      isSimpleSelect = false;
+      return false;
+    } else if (node instanceof ASTNodes.ASTJoin) {
+      return visitJoin();
+    }
+    return true;
+  }
+
+  private boolean visitSelect(ASTNodes.ASTSelect selectNode) {
     selectNode
         .getSelectList()
         .getColumns()
@@ -59,31 +85,26 @@ public class IdentifySimpleSelectStarVisitor extends ParseTreeVisitor
                 }
               }
             });
-    super.visit(selectNode);
+    return true;
   }
 
-  @Override
-  public void visit(ASTNodes.ASTFromClause node) {
+  private boolean visitFromClause() {
     if ((!foundFrom) && isSimpleSelect) {
       foundFrom = true;
-      super.visit(node);
+      return true;
     } else {
       isSimpleSelect = false;
+      return false;
     }
   }
 
-  @Override
-  public void visit(ASTNodes.ASTGroupBy node) {
-    isSimpleSelect = false;
-  }
-
-  @Override
-  public void visit(ASTNodes.ASTJoin node) {
+  private boolean visitJoin() {
     if ((!foundJoin) && isSimpleSelect) {
       foundJoin = true;
-      super.visit(node);
+      return true;
     } else {
       isSimpleSelect = false;
+      return false;
     }
   }
 
@@ -17,42 +17,59 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors.rownum;
 
 import com.google.zetasql.parser.ASTNodes;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
 import com.google.zetasql.parser.ASTNodes.ASTSelect;
 import com.google.zetasql.parser.ASTNodes.ASTSelectColumn;
 import com.google.zetasql.parser.ASTNodes.ASTTableExpression;
 import com.google.zetasql.parser.ASTNodes.ASTWhereClause;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Set;
 
-public class IdentifyLatestRecordVisitor extends ParseTreeVisitor implements AntiPatternVisitor {
+public class IdentifyLatestRecordVisitor extends ParserRuleVisitor {
 
   public final static String NAME = "LatestRecordWithAnalyticFun";
 
   private String query;
+  private final LineIndex lineIndex;
   private ASTNodes.ASTSelectColumn selectColWithRowNumNode = null;
   private ASTNodes.ASTBinaryExpression filterWithRowNumNode = null;
   private String stringIdAnalyticalFunBeingUsed = null;
-  private ArrayList<String> result = new ArrayList<String>();
+  private final List<Finding> findings = new ArrayList<>();
 
   private static final String[] STRING_IDS_ANALYTIC_FUN = {"row_number", "rank"};
   private final String LATEST_RECORD_SUGGESTION_MESSAGE = "Seems like you might be using analytical function %s in line %d to filter the latest record in line %d.";
 
   public IdentifyLatestRecordVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyLatestRecordVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
   }
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTSelect.class);
+
   @Override
-  public void visit(ASTNodes.ASTSelect selectNode) {
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
+  @Override
+  public boolean enter(ASTNode node) {
+    ASTSelect selectNode = (ASTSelect) node;
     ASTWhereClause whereNode = selectNode.getWhereClause();
     if(whereNode != null && selectNode.getFromClause() != null) {
       searchForRowNumInFrom(selectNode.getFromClause().getTableExpression(), whereNode);
     }
-    super.visit(selectNode);
+    return true;
   }
 
   public void searchForRowNumInFrom(ASTTableExpression tableExpression, ASTWhereClause whereNode) {
@@ -85,9 +102,11 @@ public class IdentifyLatestRecordVisitor extends ParseTreeVisitor implements Ant
             stringIdAnalyticalFunBeingUsed = windowFunIdString;
             String rowNumColAlias = col.getAlias().getIdentifier().getIdString();
             if(searchRowNumFilterInWhere(whereNode, rowNumColAlias)){
-              int rowNumColLineNum = ZetaSQLStringParsingHelper.countLine(query, selectColWithRowNumNode.getParseLocationRange().start());
-              int rowNumFilterLineNum = ZetaSQLStringParsingHelper.countLine(query, filterWithRowNumNode.getParseLocationRange().start());
-              result.add(String.format(LATEST_RECORD_SUGGESTION_MESSAGE, stringIdAnalyticalFunBeingUsed, rowNumColLineNum, rowNumFilterLineNum));
+              int start = selectColWithRowNumNode.getParseLocationRange().start();
+              int rowNumColLineNum = lineIndex.lineAt(start);
+              int rowNumFilterLineNum = lineIndex.lineAt(filterWithRowNumNode.getParseLocationRange().start());
+              findings.add(new Finding(NAME, lineIndex, start, LATEST_RECORD_SUGGESTION_MESSAGE,
+                  stringIdAnalyticalFunBeingUsed, rowNumColLineNum, rowNumFilterLineNum));
             }
           }
         }
@@ -108,7 +127,12 @@ public class IdentifyLatestRecordVisitor extends ParseTreeVisitor implements Ant
   }
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   @Override
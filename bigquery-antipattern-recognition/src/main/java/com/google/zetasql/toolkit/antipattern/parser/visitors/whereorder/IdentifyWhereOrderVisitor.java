@@ -1,45 +1,68 @@
 package com.google.zetasql.toolkit.antipattern.parser.visitors.whereorder;
 
 import com.google.zetasql.parser.ASTNodes;
-import com.google.zetasql.parser.ParseTreeVisitor;
-import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.util.ZetaSQLStringParsingHelper;
+import com.google.zetasql.parser.ASTNodes.ASTNode;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.Stack;
-import java.util.stream.Collectors;
 
-public class IdentifyWhereOrderVisitor extends ParseTreeVisitor implements AntiPatternVisitor {
+public class IdentifyWhereOrderVisitor extends ParserRuleVisitor {
 
   public final static String NAME = "WhereOrder";
   private String query;
+  private final LineIndex lineIndex;
   private Boolean insideWhere = false;
   private final String WHERE_ORDER_SUGGESTION_MESSAGE = "SubOptimal order of predicates in WHERE, line %d. "
       + "Consider applying more restrictive filters first. For example a '=' or a '>' filter usually "
       + "is usually more restrictive than a like '%%' filter. The following order might provide "
       + "performance benefits is '=', '>', '<', '<>', 'like'";
 
-  private ArrayList<String> result = new ArrayList<String>();
+  private final List<Finding> findings = new ArrayList<>();
   private Stack<ASTNodes.ASTWhereClause> whereNodeStack = new Stack<>();
   public IdentifyWhereOrderVisitor(String query) {
+    this(query, new LineIndex(query));
+  }
+
+  public IdentifyWhereOrderVisitor(String query, LineIndex lineIndex) {
     this.query = query;
+    this.lineIndex = lineIndex;
   }
 
+  private static final Set<Class<? extends ASTNode>> SUBSCRIBED_NODE_TYPES =
+      Set.of(ASTNodes.ASTWhereClause.class);
+
   @Override
-  public void visit(ASTNodes.ASTWhereClause whereNode) {
+  public Set<Class<? extends ASTNode>> getSubscribedNodeTypes() {
+    return SUBSCRIBED_NODE_TYPES;
+  }
+
+  @Override
+  public boolean enter(ASTNode node) {
+    ASTNodes.ASTWhereClause whereNode = (ASTNodes.ASTWhereClause) node;
     if(whereNode.getExpression() instanceof ASTNodes.ASTAndExpr) {
       CheckAndInWhereVisitor checkAndInWhereVisitor = new CheckAndInWhereVisitor(query);
       whereNode.accept(checkAndInWhereVisitor);
 
       if(checkAndInWhereVisitor.hasSuboptimalOrder()){
-        int lineNum = ZetaSQLStringParsingHelper.countLine(query, whereNode.getParseLocationRange().start());
-        result.add(String.format(WHERE_ORDER_SUGGESTION_MESSAGE, lineNum));
+        int start = whereNode.getParseLocationRange().start();
+        int lineNum = lineIndex.lineAt(start);
+        findings.add(new Finding(NAME, lineIndex, start, WHERE_ORDER_SUGGESTION_MESSAGE, lineNum));
       }
     }
-    super.visit(whereNode);
+    return true;
   }
 
   public String getResult() {
-    return result.stream().distinct().collect(Collectors.joining("\n"));
+    return Finding.joinMessages(findings);
+  }
+
+  @Override
+  public List<Finding> getFindings() {
+    return findings;
   }
 
   @Override
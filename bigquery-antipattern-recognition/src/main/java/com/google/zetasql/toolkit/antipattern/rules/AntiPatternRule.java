@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.rules;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * An anti pattern rule, discovered through {@link java.util.ServiceLoader}.
+ *
+ * <p>Implementations are listed in {@code
+ * META-INF/services/com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule} and need a
+ * public no-arg constructor. A rule is a cheap descriptor: its visitor is only built, once per
+ * query, when the rule is selected for the run.
+ */
+public interface AntiPatternRule {
+
+  enum Stage {
+    /** Runs on the parse tree of the query. */
+    PARSER,
+    /** Runs on the resolved statements of the query, only with --advanced_analysis. */
+    ANALYZER,
+    /**
+     * Runs on the resolved statements after the clustering check, when every table read by the
+     * query is clustered.
+     */
+    CLUSTERING
+  }
+
+  /** Name of the rule, the same as the name of its visitor. */
+  String getName();
+
+  Stage getStage();
+
+  /**
+   * Tokens (keywords, function names or symbols) of which at least one must appear in the query,
+   * outside comments and string literals, for the rule to find anything. The rule is skipped for
+   * queries without any of them. Empty, the default, when the rule may fire on any query.
+   */
+  default Set<String> getTriggerTokens() {
+    return Collections.emptySet();
+  }
+
+  AntiPatternVisitor newVisitor(RuleContext context);
+}
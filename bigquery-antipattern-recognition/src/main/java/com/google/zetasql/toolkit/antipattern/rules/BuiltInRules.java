@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.rules;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.ClusteringCheckVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringkeyfunction.ClusteringKeyFunctionVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringkeyused.ClusteringKeysUsedVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringonclustering.ClusterColComparisonVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringorder.ClusteringOrderVisitor;
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.joinorder.JoinOrderVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyCTEsEvalMultipleTimesVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyDroppedPersistentTableVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyDynamicPredicateVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyInSubqueryWithoutAggVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyMissingDropStatementVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyOrderByWithoutLimitVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyRegexpContainsVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifySimpleSelectStarVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.rownum.IdentifyLatestRecordVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.whereorder.IdentifyWhereOrderVisitor;
+import java.util.Set;
+
+/**
+ * Rules shipped with the tool. They are registered in {@code
+ * META-INF/services/com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule}, in the order in
+ * which they run and in which their rewrites get applied.
+ */
+public final class BuiltInRules {
+
+  private BuiltInRules() {}
+
+  abstract static class BuiltInRule implements AntiPatternRule {
+    private final String name;
+    private final Stage stage;
+    private final Set<String> triggerTokens;
+
+    BuiltInRule(String name, Stage stage, String... triggerTokens) {
+      this.name = name;
+      this.stage = stage;
+      this.triggerTokens = Set.of(triggerTokens);
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public Stage getStage() {
+      return stage;
+    }
+
+    @Override
+    public Set<String> getTriggerTokens() {
+      return triggerTokens;
+    }
+  }
+
+  public static final class SimpleSelectStar extends BuiltInRule {
+    public SimpleSelectStar() {
+      super(IdentifySimpleSelectStarVisitor.NAME, Stage.PARSER, "*");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifySimpleSelectStarVisitor();
+    }
+  }
+
+  public static final class InSubqueryWithoutAgg extends BuiltInRule {
+    public InSubqueryWithoutAgg() {
+      super(IdentifyInSubqueryWithoutAggVisitor.NAME, Stage.PARSER, "IN");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyInSubqueryWithoutAggVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class DynamicPredicate extends BuiltInRule {
+    public DynamicPredicate() {
+      super(IdentifyDynamicPredicateVisitor.NAME, Stage.PARSER, "WHERE");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyDynamicPredicateVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class OrderByWithoutLimit extends BuiltInRule {
+    public OrderByWithoutLimit() {
+      super(IdentifyOrderByWithoutLimitVisitor.NAME, Stage.PARSER, "ORDER");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyOrderByWithoutLimitVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class RegexpContains extends BuiltInRule {
+    public RegexpContains() {
+      super(IdentifyRegexpContainsVisitor.NAME, Stage.PARSER, "REGEXP_CONTAINS");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyRegexpContainsVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class CTEsEvalMultipleTimes extends BuiltInRule {
+    public CTEsEvalMultipleTimes() {
+      super(IdentifyCTEsEvalMultipleTimesVisitor.NAME, Stage.PARSER, "WITH");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyCTEsEvalMultipleTimesVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class LatestRecord extends BuiltInRule {
+    public LatestRecord() {
+      super(IdentifyLatestRecordVisitor.NAME, Stage.PARSER, "ROW_NUMBER", "RANK");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyLatestRecordVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class WhereOrder extends BuiltInRule {
+    public WhereOrder() {
+      super(IdentifyWhereOrderVisitor.NAME, Stage.PARSER, "AND");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyWhereOrderVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class MissingDropStatement extends BuiltInRule {
+    public MissingDropStatement() {
+      super(IdentifyMissingDropStatementVisitor.NAME, Stage.PARSER, "TEMP", "TEMPORARY");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyMissingDropStatementVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class DroppedPersistentTable extends BuiltInRule {
+    public DroppedPersistentTable() {
+      super(IdentifyDroppedPersistentTableVisitor.NAME, Stage.PARSER, "DROP");
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new IdentifyDroppedPersistentTableVisitor(context.getQuery(), context.getLineIndex());
+    }
+  }
+
+  public static final class JoinOrder extends BuiltInRule {
+    public JoinOrder() {
+      super(JoinOrderVisitor.NAME, Stage.ANALYZER);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new JoinOrderVisitor(context.getTableMetadataProvider());
+    }
+  }
+
+  public static final class ClusteringCheck extends BuiltInRule {
+    public ClusteringCheck() {
+      super(ClusteringCheckVisitor.NAME, Stage.ANALYZER);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new ClusteringCheckVisitor(context.getTableMetadataProvider());
+    }
+  }
+
+  public static final class ClusteringKeysUsed extends BuiltInRule {
+    public ClusteringKeysUsed() {
+      super(ClusteringKeysUsedVisitor.NAME, Stage.CLUSTERING);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new ClusteringKeysUsedVisitor(context.getClustering());
+    }
+  }
+
+  public static final class ClusteringKeyFunction extends BuiltInRule {
+    public ClusteringKeyFunction() {
+      super(ClusteringKeyFunctionVisitor.NAME, Stage.CLUSTERING);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new ClusteringKeyFunctionVisitor(context.getClustering());
+    }
+  }
+
+  public static final class ClusteringOrder extends BuiltInRule {
+    public ClusteringOrder() {
+      super(ClusteringOrderVisitor.NAME, Stage.CLUSTERING);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new ClusteringOrderVisitor(context.getClustering());
+    }
+  }
+
+  public static final class ClusterColComparison extends BuiltInRule {
+    public ClusterColComparison() {
+      super(ClusterColComparisonVisitor.NAME, Stage.CLUSTERING);
+    }
+
+    @Override
+    public AntiPatternVisitor newVisitor(RuleContext context) {
+      return new ClusterColComparisonVisitor(context.getClustering());
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.rules;
+
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataProvider;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import java.util.List;
+import java.util.Map;
+
+/** What the visitors of the rules need to know about the query being checked. */
+public class RuleContext {
+
+  private final String query;
+  private final TableMetadataProvider tableMetadataProvider;
+  private LineIndex lineIndex;
+  private Map<String, List<String>> clustering;
+
+  public RuleContext(String query, TableMetadataProvider tableMetadataProvider) {
+    this.query = query;
+    this.tableMetadataProvider = tableMetadataProvider;
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  /** Line index of the query, built on first use and shared by the visitors of the query. */
+  public LineIndex getLineIndex() {
+    if (lineIndex == null) {
+      lineIndex = new LineIndex(query);
+    }
+    return lineIndex;
+  }
+
+  /** Null unless the query is analyzed. */
+  public TableMetadataProvider getTableMetadataProvider() {
+    return tableMetadataProvider;
+  }
+
+  /** Clustering columns of the tables read by the query, null before the clustering check. */
+  public Map<String, List<String>> getClustering() {
+    return clustering;
+  }
+
+  public void setClustering(Map<String, List<String>> clustering) {
+    this.clustering = clustering;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.rules;
+
+import com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule.Stage;
+import com.google.zetasql.toolkit.antipattern.util.KeywordMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The rules selected for a run, grouped by stage in registration order.
+ *
+ * <p>Rules are discovered with {@link ServiceLoader}, so rules packaged in other jars on the class
+ * path are picked up as well. Rules that are not selected never build a visitor, and a stage with
+ * no selected rule is skipped altogether (e.g. the query is not parsed).
+ */
+public class RuleRegistry {
+
+  private static RuleRegistry defaultInstance;
+
+  private final List<AntiPatternRule> rules;
+  private final Map<Stage, List<AntiPatternRule>> rulesByStage = new EnumMap<>(Stage.class);
+  // trigger tokens of every selected rule, matched in a single pass over the query
+  private final KeywordMatcher triggerTokenMatcher;
+
+  private RuleRegistry(List<AntiPatternRule> rules) {
+    this.rules = Collections.unmodifiableList(rules);
+    for (Stage stage : Stage.values()) {
+      rulesByStage.put(
+          stage,
+          Collections.unmodifiableList(
+              rules.stream().filter(rule -> rule.getStage() == stage).collect(Collectors.toList())));
+    }
+    Set<String> triggerTokens = new HashSet<>();
+    rules.forEach(rule -> triggerTokens.addAll(rule.getTriggerTokens()));
+    this.triggerTokenMatcher = new KeywordMatcher(triggerTokens);
+  }
+
+  /** Every rule on the class path, built on first use. */
+  public static synchronized RuleRegistry getDefault() {
+    if (defaultInstance == null) {
+      defaultInstance = load(null, null);
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Rules on the class path, selected by name (case insensitive).
+   *
+   * @param includedRules rules to run, all rules when null or empty
+   * @param excludedRules rules not to run, applied after {@code includedRules}
+   * @throws IllegalArgumentException when a name does not match any rule
+   */
+  public static RuleRegistry load(List<String> includedRules, List<String> excludedRules) {
+    List<AntiPatternRule> availableRules = new ArrayList<>();
+    ServiceLoader.load(AntiPatternRule.class).forEach(availableRules::add);
+    return select(availableRules, includedRules, excludedRules);
+  }
+
+  static RuleRegistry select(
+      List<AntiPatternRule> availableRules, List<String> includedRules, List<String> excludedRules) {
+    Map<String, AntiPatternRule> rulesByName = new LinkedHashMap<>();
+    for (AntiPatternRule rule : availableRules) {
+      if (rulesByName.putIfAbsent(normalize(rule.getName()), rule) != null) {
+        throw new IllegalArgumentException("Duplicate anti pattern rule: " + rule.getName());
+      }
+    }
+
+    List<AntiPatternRule> selectedRules = new ArrayList<>();
+    if (includedRules == null || includedRules.isEmpty()) {
+      selectedRules.addAll(rulesByName.values());
+    } else {
+      checkNames(includedRules, rulesByName);
+      List<String> included = normalize(includedRules);
+      rulesByName.forEach(
+          (name, rule) -> {
+            if (included.contains(name)) {
+              selectedRules.add(rule);
+            }
+          });
+    }
+    if (excludedRules != null && !excludedRules.isEmpty()) {
+      checkNames(excludedRules, rulesByName);
+      List<String> excluded = normalize(excludedRules);
+      selectedRules.removeIf(rule -> excluded.contains(normalize(rule.getName())));
+    }
+    return new RuleRegistry(selectedRules);
+  }
+
+  private static void checkNames(List<String> names, Map<String, AntiPatternRule> rulesByName) {
+    for (String name : names) {
+      if (!rulesByName.containsKey(normalize(name))) {
+        throw new IllegalArgumentException(
+            "Unknown anti pattern rule: "
+                + name
+                + ". Available rules: "
+                + rulesByName.values().stream()
+                    .map(AntiPatternRule::getName)
+                    .collect(Collectors.joining(", ")));
+      }
+    }
+  }
+
+  private static List<String> normalize(List<String> names) {
+    return names.stream().map(RuleRegistry::normalize).collect(Collectors.toList());
+  }
+
+  private static String normalize(String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /** Selected rules of a stage, in registration order. */
+  public List<AntiPatternRule> getRules(Stage stage) {
+    return rulesByStage.get(stage);
+  }
+
+  /**
+   * Selected rules of a stage that may find something in the query, i.e. the rules without trigger
+   * tokens and the rules with at least one of their trigger tokens in the query. The query is only
+   * scanned when a rule of the stage has trigger tokens.
+   */
+  public List<AntiPatternRule> getCandidateRules(Stage stage, String query) {
+    List<AntiPatternRule> stageRules = rulesByStage.get(stage);
+    if (stageRules.stream().allMatch(rule -> rule.getTriggerTokens().isEmpty())) {
+      return stageRules;
+    }
+    Set<String> foundTokens = triggerTokenMatcher.findKeywords(query);
+    List<AntiPatternRule> candidateRules = new ArrayList<>();
+    for (AntiPatternRule rule : stageRules) {
+      if (rule.getTriggerTokens().isEmpty()
+          || rule.getTriggerTokens().stream()
+              .anyMatch(token -> foundTokens.contains(token.toLowerCase(Locale.ROOT)))) {
+        candidateRules.add(rule);
+      }
+    }
+    return candidateRules;
+  }
+
+  public boolean hasRules(Stage stage) {
+    return !rulesByStage.get(stage).isEmpty();
+  }
+
+  public boolean isSelected(String ruleName) {
+    String name = normalize(ruleName);
+    return rules.stream().anyMatch(rule -> normalize(rule.getName()).equals(name));
+  }
+
+  public List<String> getRuleNames() {
+    return rules.stream().map(AntiPatternRule::getName).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+
+/**
+ * Decides which queries of an advanced analysis run are worth resolving with the analyzer.
+ *
+ * <p>A query goes through the analyzer only when it meets every threshold: at least {@code
+ * minSlotHours} slot hours, at least {@code minQueryBytes} UTF-8 bytes and, when {@code
+ * requireParserFindings} is set, at least one anti pattern found by the parser rules. Every other
+ * query is only checked by the parser rules. Queries without slot hours (e.g. read from files) are
+ * not filtered on slot hours.
+ */
+public class AnalysisTierPolicy {
+
+  /** The checks a query went through. */
+  public enum Tier {
+    PARSER,
+    ANALYZER
+  }
+
+  /** Sends every query to the analyzer. */
+  public static final AnalysisTierPolicy ALL = new AnalysisTierPolicy(0, 0, false);
+
+  private final double minSlotHours;
+  private final long minQueryBytes;
+  private final boolean requireParserFindings;
+
+  public AnalysisTierPolicy(
+      double minSlotHours, long minQueryBytes, boolean requireParserFindings) {
+    this.minSlotHours = minSlotHours;
+    this.minQueryBytes = minQueryBytes;
+    this.requireParserFindings = requireParserFindings;
+  }
+
+  /** Whether some queries may skip the analyzer. */
+  public boolean isEnabled() {
+    return minSlotHours > 0 || minQueryBytes > 0 || requireParserFindings;
+  }
+
+  public boolean requiresParserFindings() {
+    return requireParserFindings;
+  }
+
+  /**
+   * Whether the query meets the thresholds known before it is parsed, i.e. slot hours and size.
+   * Results of a query depend on it, so it is part of the cache key of the query.
+   */
+  public boolean isEligible(InputQuery inputQuery) {
+    if (minSlotHours > 0
+        && inputQuery.getSlotHours() >= 0
+        && inputQuery.getSlotHours() < minSlotHours) {
+      return false;
+    }
+    if (minQueryBytes > 0) {
+      return LineIndex.utf8Length(inputQuery.getQuery()) >= minQueryBytes;
+    }
+    return true;
+  }
+
+  /**
+   * Tier of a query once its parser rules ran.
+   *
+   * @param eligible whether the query is {@link #isEligible eligible} and the run uses the
+   *     analyzer at all
+   */
+  public Tier tierFor(boolean eligible, boolean parserFoundAntiPatterns) {
+    if (eligible && (parserFoundAntiPatterns || !requireParserFindings)) {
+      return Tier.ANALYZER;
+    }
+    return Tier.PARSER;
+  }
+}
@@ -25,51 +25,80 @@ import com.google.zetasql.resolvedast.ResolvedNodes;
 import com.google.zetasql.toolkit.AnalyzedStatement;
 import com.google.zetasql.toolkit.ZetaSQLToolkitAnalyzer;
 import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyCTEsEvalMultipleTimesVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyDroppedPersistentTableVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyDynamicPredicateVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyInSubqueryWithoutAggVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyMissingDropStatementVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyOrderByWithoutLimitVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyRegexpContainsVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifySimpleSelectStarVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.rownum.IdentifyLatestRecordVisitor;
-import com.google.zetasql.toolkit.antipattern.parser.visitors.whereorder.IdentifyWhereOrderVisitor;
-import com.google.zetasql.toolkit.antipattern.analyzer.visitors.joinorder.JoinOrderVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.parser.FusedParseTreeVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.ParserRuleVisitor;
 import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.ClusteringCheckVisitor;
-import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringkeyfunction.ClusteringKeyFunctionVisitor;
-import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringkeyused.ClusteringKeysUsedVisitor;
-import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringonclustering.ClusterColComparisonVisitor;
-import com.google.zetasql.toolkit.antipattern.analyzer.visitors.clustering.clusteringorder.ClusteringOrderVisitor;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
-import com.google.zetasql.toolkit.catalog.bigquery.BigQueryAPIResourceProvider;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.metadata.BigQueryCatalogPool;
+import com.google.zetasql.toolkit.antipattern.metadata.CatalogSnapshot;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataCache;
+import com.google.zetasql.toolkit.antipattern.metadata.TableMetadataProvider;
+import com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule;
+import com.google.zetasql.toolkit.antipattern.rules.RuleContext;
+import com.google.zetasql.toolkit.antipattern.rules.RuleRegistry;
 import com.google.zetasql.toolkit.catalog.bigquery.BigQueryCatalog;
-import com.google.zetasql.toolkit.catalog.bigquery.BigQueryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 public class AntiPatternHelper {
     private static final Logger logger = LoggerFactory.getLogger(AntiPatternHelper.class);
-    private String analyzerProject = null;
-    private BigQueryAPIResourceProvider resourceProvider;
+    private BigQueryCatalogPool catalogPool;
     private ZetaSQLToolkitAnalyzer analyzer;
-    private HashMap<String, Integer> visitorMetricsMap;
+    // shared between the helpers of all worker threads when running in parallel
+    private final ConcurrentMap<String, Integer> visitorMetricsMap;
     private AnalyzerOptions analyzerOptions;
-    private final BigQueryService service;
+    private final TableMetadataProvider tableMetadataProvider;
     private final String project;
     private final LanguageOptions languageOptions;
     private final Boolean useAnalizer;
+    private final RuleRegistry ruleRegistry;
+    private final QueryWatchdog watchdog;
 
     public AntiPatternHelper(String project, Boolean useAnalizer) {
+        this(project, useAnalizer, new ConcurrentHashMap<>());
+    }
+
+    public AntiPatternHelper(String project, Boolean useAnalizer, ConcurrentMap<String, Integer> visitorMetricsMap) {
+        this(project, useAnalizer, visitorMetricsMap, null);
+    }
+
+    // When a catalog snapshot is given, the advanced analysis reads table metadata from it
+    // and never calls the BigQuery API.
+    public AntiPatternHelper(String project, Boolean useAnalizer, ConcurrentMap<String, Integer> visitorMetricsMap,
+                             CatalogSnapshot catalogSnapshot) {
+        this(project, useAnalizer, visitorMetricsMap, catalogSnapshot, RuleRegistry.getDefault());
+    }
+
+    // Only the rules selected in the registry build visitors, stages without selected rules are
+    // skipped.
+    public AntiPatternHelper(String project, Boolean useAnalizer, ConcurrentMap<String, Integer> visitorMetricsMap,
+                             CatalogSnapshot catalogSnapshot, RuleRegistry ruleRegistry) {
+        this(project, useAnalizer, visitorMetricsMap, catalogSnapshot, ruleRegistry, QueryWatchdog.UNLIMITED);
+    }
+
+    // Queries over the size limit of the watchdog, or taking longer than its time limits, throw
+    // QuerySkippedException.
+    public AntiPatternHelper(String project, Boolean useAnalizer, ConcurrentMap<String, Integer> visitorMetricsMap,
+                             CatalogSnapshot catalogSnapshot, RuleRegistry ruleRegistry, QueryWatchdog watchdog) {
         this.project = project;
         this.useAnalizer = useAnalizer;
+        this.visitorMetricsMap = visitorMetricsMap;
+        this.ruleRegistry = ruleRegistry;
+        this.watchdog = watchdog;
+        // rules skipped for every query still show up in the metrics, with 0 queries
+        ruleRegistry.getRules(AntiPatternRule.Stage.PARSER)
+                .forEach(rule -> this.visitorMetricsMap.putIfAbsent(rule.getName(), 0));
 
         this.languageOptions = new LanguageOptions();
         languageOptions.enableMaximumLanguageFeatures();
@@ -79,32 +108,90 @@ public class AntiPatternHelper {
         if (useAnalizer) {
             this.analyzerOptions = new AnalyzerOptions();
             this.analyzer = getAnalyzer(this.analyzerOptions);
-            this.service = BigQueryService.buildDefault();
-            this.resourceProvider = BigQueryAPIResourceProvider.build(service);
+            if (catalogSnapshot != null) {
+                this.catalogPool = catalogSnapshot.getCatalogPool();
+                this.tableMetadataProvider = catalogSnapshot;
+            } else {
+                this.catalogPool = BigQueryCatalogPool.getSharedInstance();
+                this.tableMetadataProvider = TableMetadataCache.getSharedInstance();
+            }
         } else {
-            this.service = null;
+            this.tableMetadataProvider = null;
         }
     }
 
+    // Rules whose trigger tokens are not in the query are skipped, and so is the parse when no
+    // rule is left.
     public void checkForAntiPatternsInQueryWithParserVisitors(InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
-        List<AntiPatternVisitor> parserVisitorList = getParserVisitorList(inputQuery.getQuery());
+        checkForAntiPatternsInQueryWithParserVisitors(inputQuery, null, visitorsThatFoundAntiPatterns);
+    }
+
+    // The AST of an earlier parse of the query (e.g. for its fingerprint) is reused when given.
+    public void checkForAntiPatternsInQueryWithParserVisitors(InputQuery inputQuery, ASTNodes.ASTScript parsedQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
+        String query = inputQuery.getQuery();
+        List<AntiPatternVisitor> parserVisitorList = newVisitors(
+                ruleRegistry.getCandidateRules(AntiPatternRule.Stage.PARSER, query),
+                new RuleContext(query, this.tableMetadataProvider));
 
-        checkForAntiPatternsInQueryWithParserVisitors(inputQuery, visitorsThatFoundAntiPatterns, parserVisitorList);
+        checkForAntiPatternsInQueryWithParserVisitors(inputQuery, parsedQuery, visitorsThatFoundAntiPatterns, parserVisitorList);
     }
 
     public void checkForAntiPatternsInQueryWithParserVisitors(InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns, List<AntiPatternVisitor> parserVisitorList) {
-        if (this.visitorMetricsMap == null) {
-            setVisitorMetricsMap(parserVisitorList);
+        checkForAntiPatternsInQueryWithParserVisitors(inputQuery, null, visitorsThatFoundAntiPatterns, parserVisitorList);
+    }
+
+    private void checkForAntiPatternsInQueryWithParserVisitors(InputQuery inputQuery, ASTNodes.ASTScript parsedQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns, List<AntiPatternVisitor> parserVisitorList) {
+        if (parserVisitorList.isEmpty()) {
+            return;
+        }
+        watchdog.checkQuerySize(inputQuery);
+        // findings are only handed over when the check completes in time
+        visitorsThatFoundAntiPatterns.addAll(watchdog.parse(inputQuery, () -> {
+            List<AntiPatternVisitor> found = new ArrayList<>();
+            ASTNodes.ASTScript ast = parsedQuery == null ? parseQuery(inputQuery) : parsedQuery;
+            checkForAntiPatternsInParsedQuery(inputQuery, ast, found, parserVisitorList);
+            return found;
+        }));
+    }
+
+    // Parses the query a single time, the resulting AST is shared by every parser visitor.
+    // Syntax errors are propagated to the caller (e.g. the rewriter relies on them).
+    public ASTNodes.ASTScript parseQuery(InputQuery inputQuery) {
+        logger.info("Parsing query with id: " + inputQuery.getQueryId());
+        return Parser.parseScript(inputQuery.getQuery(), this.languageOptions);
+    }
+
+    public void checkForAntiPatternsInParsedQuery(InputQuery inputQuery, ASTNodes.ASTScript parsedQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns, List<AntiPatternVisitor> parserVisitorList) {
+        parserVisitorList.forEach(visitor -> this.visitorMetricsMap.putIfAbsent(visitor.getName(), 0));
+
+        // Rules built on ParserRuleVisitor share a single walk of the AST, any other parser
+        // visitor still gets its own traversal.
+        List<ParserRuleVisitor> fusedRules = new ArrayList<>();
+        for (AntiPatternVisitor visitor : parserVisitorList) {
+            if (visitor instanceof ParserRuleVisitor) {
+                fusedRules.add((ParserRuleVisitor) visitor);
+            }
         }
+        FusedParseTreeVisitor fusedVisitor = new FusedParseTreeVisitor(fusedRules);
+        logger.info("Checking query with id: " + inputQuery.getQueryId() +
+                " for anti-patterns: " + parserVisitorList.stream()
+                .map(AntiPatternVisitor::getName).collect(Collectors.joining(", ")));
+        parsedQuery.accept(fusedVisitor);
 
         for (AntiPatternVisitor visitorThatFoundAntiPattern : parserVisitorList) {
-            logger.info("Parsing query with id: " + inputQuery.getQueryId() +
-                    " for anti-pattern: " + visitorThatFoundAntiPattern.getName());
-            ASTNodes.ASTScript parsedQuery = Parser.parseScript(inputQuery.getQuery(), this.languageOptions);
+            if (visitorThatFoundAntiPattern instanceof ParserRuleVisitor
+                    && fusedVisitor.hasFailed((ParserRuleVisitor) visitorThatFoundAntiPattern)) {
+                logger.error("Error parsing query with id: " + inputQuery.getQueryId() +
+                        " for anti-pattern:" + visitorThatFoundAntiPattern.getName());
+                continue;
+            }
             try {
-                parsedQuery.accept((ParseTreeVisitor) visitorThatFoundAntiPattern);
-                String result = visitorThatFoundAntiPattern.getResult();
-                if (result.length() > 0) {
+                if (!(visitorThatFoundAntiPattern instanceof ParserRuleVisitor)) {
+                    parsedQuery.accept((ParseTreeVisitor) visitorThatFoundAntiPattern);
+                }
+                List<Finding> findings = visitorThatFoundAntiPattern.getFindings();
+                if (!findings.isEmpty()) {
+                    assignStatementIndexes(parsedQuery, findings);
                     visitorsThatFoundAntiPatterns.add(visitorThatFoundAntiPattern);
                     this.visitorMetricsMap.merge(visitorThatFoundAntiPattern.getName(), 1, Integer::sum);
                 }
@@ -116,112 +203,147 @@ public class AntiPatternHelper {
         }
     }
 
+    // Sets the statement of the script each finding with a location belongs to, i.e. the last
+    // statement starting at or before the finding.
+    private static void assignStatementIndexes(ASTNodes.ASTScript parsedQuery, List<Finding> findings) {
+        List<ASTNodes.ASTStatement> statements = parsedQuery.getStatementListNode().getStatementList();
+        int[] statementStarts = new int[statements.size()];
+        for (int i = 0; i < statementStarts.length; i++) {
+            statementStarts[i] = statements.get(i).getParseLocationRange().start();
+        }
+        for (Finding finding : findings) {
+            if (finding.getByteOffset() < 0 || statementStarts.length == 0) {
+                continue;
+            }
+            int index = Arrays.binarySearch(statementStarts, finding.getByteOffset());
+            finding.setStatementIndex(index >= 0 ? index : Math.max(0, -index - 2));
+        }
+    }
+
     public void checkForAntiPatternsInQueryWithAnalyzerVisitors(InputQuery inputQuery, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
         String query = inputQuery.getQuery();
-        String currentProject;
+        List<AntiPatternRule> analyzerRules = ruleRegistry.getCandidateRules(AntiPatternRule.Stage.ANALYZER, query);
+        List<AntiPatternRule> clusteringRules = ruleRegistry.getCandidateRules(AntiPatternRule.Stage.CLUSTERING, query);
+        if (analyzerRules.isEmpty() && clusteringRules.isEmpty()) {
+            return;
+        }
+        watchdog.checkQuerySize(inputQuery);
+        String currentProject = inputQuery.getProjectId() == null ? this.project : inputQuery.getProjectId();
+        // Catalogs are kept per project across queries, only tables not seen before are fetched.
+        // Resolved before the analysis time limit starts, the metadata reads are not part of it.
+        BigQueryCatalog catalog = this.catalogPool.getCatalogForQuery(currentProject, query, this.analyzerOptions);
+        try {
+            visitorsThatFoundAntiPatterns.addAll(watchdog.analyze(inputQuery, () -> {
+                List<AntiPatternVisitor> found = new ArrayList<>();
+                checkWithAnalyzerRules(inputQuery, catalog, analyzerRules, clusteringRules, found);
+                return found;
+            }));
+        } catch (QuerySkippedException e) {
+            // the abandoned analysis may still be using the analyzer
+            this.analyzerOptions = new AnalyzerOptions();
+            this.analyzer = getAnalyzer(this.analyzerOptions);
+            throw e;
+        }
+    }
 
-        if (inputQuery.getProjectId() == null) {
-            currentProject = this.project;
-        } else {
-            currentProject = inputQuery.getProjectId();
+    private void checkWithAnalyzerRules(InputQuery inputQuery, BigQueryCatalog catalog,
+                                        List<AntiPatternRule> analyzerRules,
+                                        List<AntiPatternRule> clusteringRules,
+                                        List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
+        String query = inputQuery.getQuery();
+
+        // The query is resolved a single time, every analyzer visitor runs over the same
+        // resolved statements.
+        List<ResolvedNodes.ResolvedStatement> resolvedStatements;
+        try {
+            resolvedStatements = analyzeQuery(inputQuery, catalog);
+        } catch (Exception e) {
+            logger.error("Error analyzing query with id: " + inputQuery.getQueryId());
+            logger.error(e.getMessage(), e);
+            return;
         }
 
-        BigQueryCatalog catalog = BigQueryCatalog.usingBigQueryAPI("");
-        if ((this.analyzerProject == null || !this.analyzerProject.equals(currentProject))) {
-            this.analyzerProject = inputQuery.getProjectId();
-            catalog = new BigQueryCatalog(this.analyzerProject, this.resourceProvider);
-            catalog.addAllTablesUsedInQuery(query, this.analyzerOptions);
+        RuleContext context = new RuleContext(query, this.tableMetadataProvider);
+
+        // Independent visitors, run one by one
+        ClusteringCheckVisitor clusteringCheckVisitor = null;
+        boolean clusteringCheckSucceeded = false;
+        for (AntiPatternRule rule : analyzerRules) {
+            AntiPatternVisitor visitor = rule.newVisitor(context);
+            boolean succeeded = acceptAnalyzerVisitor(inputQuery, resolvedStatements, visitor, visitorsThatFoundAntiPatterns);
+            if (visitor instanceof ClusteringCheckVisitor) {
+                clusteringCheckVisitor = (ClusteringCheckVisitor) visitor;
+                clusteringCheckSucceeded = succeeded;
+            }
         }
 
-        // Independent visitors, run one by one:
-        // join order visitor
-        JoinOrderVisitor joinOrderVisitor = new JoinOrderVisitor(this.service);
-        try {
-            logger.info("Analyzing query with id: " + inputQuery.getQueryId() +
-                    " For anti-pattern:" + joinOrderVisitor.getName());
-            Iterator<AnalyzedStatement> statementIterator = this.analyzer.analyzeStatements(query, catalog);
-            statementIterator.forEachRemaining(statement -> statement.getResolvedStatement().get().accept(joinOrderVisitor));
+        if (clusteringRules.isEmpty()) {
+            return;
+        }
+        // the clustering rules need the clustering check even when it is not reported
+        if (clusteringCheckVisitor == null) {
+            clusteringCheckVisitor = new ClusteringCheckVisitor(this.tableMetadataProvider);
+            clusteringCheckSucceeded = acceptAnalyzerVisitor(
+                    inputQuery, resolvedStatements, clusteringCheckVisitor, new ArrayList<>());
+        }
 
-            String result = joinOrderVisitor.getResult();
-            if (result.length() > 0) {
-                visitorsThatFoundAntiPatterns.add(joinOrderVisitor);
+        if (clusteringCheckSucceeded && !clusteringCheckVisitor.getContainsUnclusteredTables()) {
+            context.setClustering(clusteringCheckVisitor.getClustering());
+            for (AntiPatternRule rule : clusteringRules) {
+                AntiPatternVisitor visitor = rule.newVisitor(context);
+                this.visitorMetricsMap.merge(visitor.getName(), 1, Integer::sum);
+
+                acceptAnalyzerVisitor(inputQuery, resolvedStatements, visitor, visitorsThatFoundAntiPatterns);
             }
-        } catch (Exception e) {
-            logger.error("Error analyzing query with id: " + inputQuery.getQueryId() +
-                    " For anti-pattern:" + joinOrderVisitor.getName());
-            logger.error(e.getMessage(), e);
         }
+    }
+
+    // Resolves every statement of the query once. Statements are materialized because the
+    // analyzer iterator is lazy and applies DDL (e.g. CREATE TEMP TABLE) to the catalog as it
+    // advances, so it cannot be replayed for each visitor.
+    public List<ResolvedNodes.ResolvedStatement> analyzeQuery(InputQuery inputQuery, BigQueryCatalog catalog) {
+        logger.info("Analyzing query with id: " + inputQuery.getQueryId());
+        List<ResolvedNodes.ResolvedStatement> resolvedStatements = new ArrayList<>();
+        Iterator<AnalyzedStatement> statementIterator = this.analyzer.analyzeStatements(inputQuery.getQuery(), catalog);
+        statementIterator.forEachRemaining(statement -> resolvedStatements.add(statement.getResolvedStatement().get()));
+        return resolvedStatements;
+    }
 
-        // clustering check visitor
-        ClusteringCheckVisitor clusteringCheckVisitor = new ClusteringCheckVisitor(this.service);
+    private boolean acceptAnalyzerVisitor(InputQuery inputQuery, List<ResolvedNodes.ResolvedStatement> resolvedStatements,
+                                          AntiPatternVisitor visitor, List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
         try {
             logger.info("Analyzing query with id: " + inputQuery.getQueryId() +
-                    " For anti-pattern:" + clusteringCheckVisitor.getName());
-            Iterator<AnalyzedStatement> statementIterator = this.analyzer.analyzeStatements(query, catalog);
-            statementIterator.forEachRemaining(statement -> statement.getResolvedStatement().get().accept(clusteringCheckVisitor));
+                    " For anti-pattern:" + visitor.getName());
+            resolvedStatements.forEach(statement -> statement.accept((ResolvedNodes.Visitor) visitor));
 
-            String result = clusteringCheckVisitor.getResult();
-            if (result.length() > 0) {
-                visitorsThatFoundAntiPatterns.add(clusteringCheckVisitor);
-            }
-
-            if (!clusteringCheckVisitor.getContainsUnclusteredTables()) {
-                Map<String, List<String>> clusteringInfo = clusteringCheckVisitor.getClustering();
-                List<AntiPatternVisitor> dependentAnalyzers = Arrays.asList(
-                    new ClusteringKeysUsedVisitor(clusteringInfo),
-                    new ClusteringKeyFunctionVisitor(clusteringInfo),
-                    new ClusteringOrderVisitor(clusteringInfo),
-                    new ClusterColComparisonVisitor(clusteringInfo)
-                );
-
-                for (AntiPatternVisitor visitor : dependentAnalyzers) {
-                    if (this.visitorMetricsMap == null) {
-                        this.visitorMetricsMap = new HashMap<>();
-                    }
-                    if (this.visitorMetricsMap.get(visitor.getName()) == null) {
-                        this.visitorMetricsMap.put(visitor.getName(), 0);
-                    }
-                    this.visitorMetricsMap.merge(visitor.getName(), 1, Integer::sum);
-
-                    try {
-                        logger.info("Analyzing query with id: " + inputQuery.getQueryId() +
-                                " For anti-pattern:" + visitor.getName());
-                        Iterator<AnalyzedStatement> depStatementIterator = this.analyzer.analyzeStatements(query, catalog);
-                        depStatementIterator.forEachRemaining(statement -> statement.getResolvedStatement().get().accept((ResolvedNodes.Visitor) visitor));
-
-                        String depResult = visitor.getResult();
-                        if (depResult.length() > 0) {
-                            visitorsThatFoundAntiPatterns.add(visitor);
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error analyzing query with id: " + inputQuery.getQueryId() +
-                                " For anti-pattern:" + visitor.getName());
-                        logger.error(e.getMessage(), e);
-                    }
-                }
+            if (!visitor.getFindings().isEmpty()) {
+                visitorsThatFoundAntiPatterns.add(visitor);
             }
+            return true;
         } catch (Exception e) {
             logger.error("Error analyzing query with id: " + inputQuery.getQueryId() +
-                    " For anti-pattern:" + clusteringCheckVisitor.getName());
+                    " For anti-pattern:" + visitor.getName());
             logger.error(e.getMessage(), e);
+            return false;
         }
     }
 
     // THE ORDER HERE MATTERS
-    // this is also the order in which the rewrites get applied
+    // this is also the order in which the rewrites get applied, i.e. the order of the rules in
+    // META-INF/services/com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule
     public List<AntiPatternVisitor> getParserVisitorList(String query) {
-        return new ArrayList<>(Arrays.asList(
-                new IdentifySimpleSelectStarVisitor(),
-                new IdentifyInSubqueryWithoutAggVisitor(query),
-                new IdentifyDynamicPredicateVisitor(query),
-                new IdentifyOrderByWithoutLimitVisitor(query),
-                new IdentifyRegexpContainsVisitor(query),
-                new IdentifyCTEsEvalMultipleTimesVisitor(query),
-                new IdentifyLatestRecordVisitor(query),
-                new IdentifyWhereOrderVisitor(query),
-                new IdentifyMissingDropStatementVisitor(query),
-                new IdentifyDroppedPersistentTableVisitor(query)
-        ));
+        return newVisitors(
+                ruleRegistry.getRules(AntiPatternRule.Stage.PARSER),
+                new RuleContext(query, this.tableMetadataProvider));
+    }
+
+    // line numbers of findings are looked up in one index shared by all visitors of the context
+    private static List<AntiPatternVisitor> newVisitors(List<AntiPatternRule> rules, RuleContext context) {
+        List<AntiPatternVisitor> visitors = new ArrayList<>();
+        for (AntiPatternRule rule : rules) {
+            visitors.add(rule.newVisitor(context));
+        }
+        return visitors;
     }
 
     public String getProject() {
@@ -232,9 +354,12 @@ public class AntiPatternHelper {
         return useAnalizer;
     }
 
-    private void setVisitorMetricsMap(List<AntiPatternVisitor> parserVisitorList) {
-        this.visitorMetricsMap = new HashMap<>();
-        parserVisitorList.forEach(visitor -> this.visitorMetricsMap.put(visitor.getName(), 0));
+    public RuleRegistry getRuleRegistry() {
+        return ruleRegistry;
+    }
+
+    public Map<String, Integer> getVisitorMetricsMap() {
+        return visitorMetricsMap;
     }
 
     private ZetaSQLToolkitAnalyzer getAnalyzer(AnalyzerOptions options) {
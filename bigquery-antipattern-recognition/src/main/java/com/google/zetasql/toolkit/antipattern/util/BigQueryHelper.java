@@ -24,6 +24,7 @@ import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.InsertAllRequest;
 import com.google.cloud.bigquery.InsertAllResponse;
 import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.bigquery.TableId;
@@ -46,6 +47,7 @@ public class BigQueryHelper {
   private static final HeaderProvider headerProvider =
       FixedHeaderProvider.create(ImmutableMap.of(USER_AGENT_HEADER, USER_AGENT_VALUE));
   private static final Logger logger = LoggerFactory.getLogger(BigQueryHelper.class);
+  private static final int MAX_JOB_RUNTIME_HOURS = 6;
 
   private BigQuery bigquery;
 
@@ -80,35 +82,80 @@ public class BigQueryHelper {
       String region,
       Boolean groupQueries)
       throws InterruptedException {
-    String timeCriteria;
+    String timeCriteria =
+        getTimeCriteria(daysBack, startTime, endTime, ISTable, slotsMsMin, topNPercent);
+    return getQueriesFromIS(
+        timeoutInSecs, timeCriteria, ISTable, slotsMsMin, topNPercent, region, groupQueries);
+  }
+
+  /**
+   * Reads the jobs of the days back or start/end window that ended at or after the given time,
+   * used by incremental reads that resume from the watermark of the previous run. Only that slice
+   * of JOBS is scanned, its creation time bound prunes the partitions created before, and the top
+   * n percent are ranked within it.
+   */
+  public TableResult getQueriesFromISSince(
+      long readFromMicros,
+      String daysBack,
+      String startTime,
+      String endTime,
+      String ISTable,
+      Integer slotsMsMin,
+      Long timeoutInSecs,
+      Float topNPercent,
+      String region,
+      Boolean groupQueries)
+      throws InterruptedException {
+    String timeCriteria =
+        getTimeCriteria(daysBack, startTime, endTime, ISTable, slotsMsMin, topNPercent);
+    logger.info("Selecting the jobs that ended since {} micros", readFromMicros);
+    // a query job runs at most 6 hours, so it was created at most 6 hours before it ended
+    timeCriteria +=
+        "  AND creation_time >= TIMESTAMP_MICROS("
+            + readFromMicros
+            + ") - INTERVAL "
+            + MAX_JOB_RUNTIME_HOURS
+            + " HOUR\n"
+            + "  AND end_time >= TIMESTAMP_MICROS("
+            + readFromMicros
+            + ")\n";
+    return getQueriesFromIS(
+        timeoutInSecs, timeCriteria, ISTable, slotsMsMin, topNPercent, region, groupQueries);
+  }
+
+  private String getTimeCriteria(
+      String daysBack,
+      String startTime,
+      String endTime,
+      String ISTable,
+      Integer slotsMsMin,
+      Float topNPercent) {
     if (StringUtils.isBlank(startTime) || StringUtils.isBlank(endTime)) {
       logger.info(
           "Running job on project {}, reading from: {}, scanning last {} days."
               + "and selecting queries with minimum {} slotms. "
               + " Considering only top {}% slot consuming jobs",
           bigquery.getOptions().getProjectId(), ISTable, daysBack, slotsMsMin, topNPercent * 100);
-      timeCriteria = "  creation_time >= CURRENT_TIMESTAMP - INTERVAL " + daysBack + " DAY\n";
-    } else {
-      logger.info(
-          "Running job on project {}, reading from: {}, scanning between {} and {}."
-              + "and selecting queries with minimum {} slotms",
-          bigquery.getOptions().getProjectId(),
-          ISTable,
-          startTime,
-          endTime,
-          slotsMsMin);
-
-      startTime = startTime.trim();
-      endTime = endTime.trim();
-      if (!(startTime.startsWith("'") || startTime.startsWith("\""))) {
-        startTime = "'" + startTime + "'";
-      }
-      if (!(endTime.startsWith("'") || endTime.startsWith("\""))) {
-        endTime = "'" + endTime + "'";
-      }
-      timeCriteria = "  creation_time BETWEEN " + startTime + " AND " + endTime + "\n";
+      return "  creation_time >= CURRENT_TIMESTAMP - INTERVAL " + daysBack + " DAY\n";
+    }
+    logger.info(
+        "Running job on project {}, reading from: {}, scanning between {} and {}."
+            + "and selecting queries with minimum {} slotms",
+        bigquery.getOptions().getProjectId(),
+        ISTable,
+        startTime,
+        endTime,
+        slotsMsMin);
+
+    startTime = startTime.trim();
+    endTime = endTime.trim();
+    if (!(startTime.startsWith("'") || startTime.startsWith("\""))) {
+      startTime = "'" + startTime + "'";
     }
-    return getQueriesFromIS(timeoutInSecs, timeCriteria, ISTable, slotsMsMin, topNPercent, region, groupQueries);
+    if (!(endTime.startsWith("'") || endTime.startsWith("\""))) {
+      endTime = "'" + endTime + "'";
+    }
+    return "  creation_time BETWEEN " + startTime + " AND " + endTime + "\n";
   }
 
   private TableResult getQueriesFromIS(
@@ -133,6 +180,7 @@ public class BigQueryHelper {
               + "  query, \n"
               + "  total_slot_ms / (1000 * 60 * 60 ) AS slot_hours, \n"
               + "  user_email, \n"
+              + "  UNIX_MICROS(end_time) AS end_time_micros, \n"
               + "  PERCENT_RANK() OVER(ORDER BY total_slot_ms desc) perc_rnk \n"
               + "FROM\n"
               + ISTable
@@ -153,7 +201,7 @@ public class BigQueryHelper {
     }
     else {
       query =
-          "SELECT project_id, job_id, query, slot_hours, user_email,"
+          "SELECT project_id, job_id, query, slot_hours, user_email, end_time_micros,"
           + "PERCENT_RANK() OVER(ORDER BY slot_hours desc) perc_rnk \n"
           + "FROM (\n"
           + "SELECT\n"
@@ -162,7 +210,8 @@ public class BigQueryHelper {
           + region.toUpperCase()
           + ".\",  array_agg(job_id)[0]) as job_id, \n"
           + "query, sum(total_slot_ms / (1000 * 60 * 60 )) AS slot_hours, \n"
-          + "array_agg(user_email)[0] AS user_email\n"
+          + "array_agg(user_email)[0] AS user_email,\n"
+          + "MAX(UNIX_MICROS(end_time)) AS end_time_micros\n"
           + "FROM"
           + ISTable + "\n"
           + "WHERE \n"
@@ -181,27 +230,51 @@ public class BigQueryHelper {
     }
 
     logger.info("Reading from INFORMATION_SCHEMA: \n" + query);
-    QueryJobConfiguration queryConfig =
-        QueryJobConfiguration.newBuilder(query)
-            .setUseLegacySql(false)
-            .setJobTimeoutMs(TimeUnit.SECONDS.toMillis(timeoutInSecs))
-            .build();
-
-    logger.debug("Running query:\n" + queryConfig.getQuery());
-    Job queryJob = bigquery.create(JobInfo.newBuilder(queryConfig).build());
-    return queryJob.getQueryResults();
+    return runQuery(query, timeoutInSecs);
   }
 
   public TableResult getQueriesFromBQTable(String inputTable) throws InterruptedException {
+    return startReadFromBQTable(inputTable).getQueryResults();
+  }
+
+  /** Starts the job reading the queries of a table, its results are read page by page. */
+  public Job startReadFromBQTable(String inputTable) {
     String query = "SELECT\n" + "  id,\n" + "  query" + " FROM \n`" + inputTable + "`;";
 
     logger.info("Reading from BigQuery table: \n" + query);
-    QueryJobConfiguration queryConfig =
-        QueryJobConfiguration.newBuilder(query).setUseLegacySql(false).build();
+    return startQuery(query, null);
+  }
+
+  /** Returns the job or null if it does not exist anymore. */
+  public Job getJob(String project, String jobId, String location) {
+    return bigquery.getJob(
+        JobId.newBuilder().setProject(project).setJob(jobId).setLocation(location).build());
+  }
+
+  /**
+   * Runs a standard SQL query in the processing project and waits for its results.
+   *
+   * @param timeoutInSecs job timeout, no timeout is set when null
+   */
+  public TableResult runQuery(String query, Long timeoutInSecs) throws InterruptedException {
+    return startQuery(query, timeoutInSecs).getQueryResults();
+  }
+
+  /**
+   * Starts a standard SQL query in the processing project without waiting for it.
+   *
+   * @param timeoutInSecs job timeout, no timeout is set when null
+   */
+  public Job startQuery(String query, Long timeoutInSecs) {
+    QueryJobConfiguration.Builder queryConfigBuilder =
+        QueryJobConfiguration.newBuilder(query).setUseLegacySql(false);
+    if (timeoutInSecs != null) {
+      queryConfigBuilder.setJobTimeoutMs(TimeUnit.SECONDS.toMillis(timeoutInSecs));
+    }
+    QueryJobConfiguration queryConfig = queryConfigBuilder.build();
 
     logger.debug("Running query:\n" + queryConfig.getQuery());
-    Job queryJob = bigquery.create(JobInfo.newBuilder(queryConfig).build());
-    return queryJob.getQueryResults();
+    return bigquery.create(JobInfo.newBuilder(queryConfig).build());
   }
 
   public void writeResults(
@@ -1,7 +1,6 @@
 package com.google.zetasql.toolkit.antipattern.util;
 
 
-import com.google.api.gax.paging.Page;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
@@ -10,8 +9,11 @@ import com.google.cloud.storage.StorageOptions;
 import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,45 +26,95 @@ public class GCSHelper {
 
   private String bucketName;
 
-  private final static Storage storage = StorageOptions.newBuilder().build().getService();
+  private static Storage defaultStorage;
 
-  public static Boolean isGCSPath(String filePath) {
-    return filePath.startsWith(GCS_PATH_PREFIX);
+  private final Storage storage;
+
+  public GCSHelper() {
+    this(getDefaultStorage());
   }
 
-  public ArrayList<String> getListOfFilesInGCSPath(String folderPath) {
-    setBucketName(folderPath);
-    String prefix = folderPath.replace(GCS_PATH_PREFIX+this.bucketName+GCS_DELIMITER, "") + GCS_DELIMITER;
-    return getListOfFilesInGCSPrefix(bucketName, prefix);
+  // e.g. an in-memory storage in tests
+  public GCSHelper(Storage storage) {
+    this.storage = storage;
   }
 
-  private static ArrayList<String> getListOfFilesInGCSPrefix(String bucketName, String prefix) {
-    ArrayList gcsFileList = new ArrayList();
+  private static synchronized Storage getDefaultStorage() {
+    if (defaultStorage == null) {
+      defaultStorage = StorageOptions.newBuilder().build().getService();
+    }
+    return defaultStorage;
+  }
 
-    Page<Blob> blobs =
-        storage.list(
-            bucketName,
-            Storage.BlobListOption.prefix(prefix));
+  public static Boolean isGCSPath(String filePath) {
+    return filePath.startsWith(GCS_PATH_PREFIX);
+  }
 
-    for (Blob blob : blobs.iterateAll()) {
-      String blobName = blob.getName();
-      if (!blobName.equals(prefix) && blobName.matches(".*\\.sql$")) {
-        gcsFileList.add(GCS_PATH_PREFIX + bucketName + GCS_DELIMITER + blobName);
-      }
+  /**
+   * Lists the files under a GCS folder, in name order and lazily: a page of blob names is fetched
+   * when the previous one has been consumed, so a large folder is not listed up front.
+   */
+  public Iterator<String> iterateFilesInGCSPath(String folderPath) {
+    String trimmedPath = folderPath.substring(GCS_PATH_PREFIX.length());
+    int delimiterIndex = trimmedPath.indexOf(GCS_DELIMITER);
+    String bucketName = delimiterIndex < 0 ? trimmedPath : trimmedPath.substring(0, delimiterIndex);
+    String prefix = delimiterIndex < 0 ? "" : trimmedPath.substring(delimiterIndex + 1);
+    if (!prefix.isEmpty() && !prefix.endsWith(GCS_DELIMITER)) {
+      prefix += GCS_DELIMITER;
     }
-    return gcsFileList;
+    Iterator<Blob> blobs =
+        storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll().iterator();
+    return new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return blobs.hasNext();
+      }
+
+      @Override
+      public String next() {
+        return GCS_PATH_PREFIX + bucketName + GCS_DELIMITER + blobs.next().getName();
+      }
+    };
   }
 
+  /** Reads a query file, thread safe so several files can be read at once. */
   public InputQuery getInputQueryFromGCSPath(String gcsPath) {
-    if (bucketName == null) {
-      setBucketName(gcsPath);
+    String trimmedPath = gcsPath.substring(GCS_PATH_PREFIX.length());
+    int delimiterIndex = trimmedPath.indexOf(GCS_DELIMITER);
+    Blob blob =
+        storage.get(
+            trimmedPath.substring(0, delimiterIndex), trimmedPath.substring(delimiterIndex + 1));
+    if (blob == null) {
+      throw new IllegalArgumentException("File not found: " + gcsPath);
     }
-    String filename = gcsPath.replace(GCS_PATH_PREFIX+this.bucketName+GCS_DELIMITER, "");
-    Blob blob = storage.get(bucketName, filename);
-    String fileContent = new String(blob.getContent());
+    String fileContent = new String(blob.getContent(), UTF_8);
     return new InputQuery(fileContent, gcsPath);
   }
 
+  /** Opens a file for reading as a stream, without downloading it first. */
+  public InputStream openGCSFile(String gcsPath) {
+    return Channels.newInputStream(storage.reader(toBlobId(gcsPath)));
+  }
+
+  /** Whether the path is a file rather than a folder, paths ending with "/" are folders. */
+  public boolean isGCSFile(String gcsPath) {
+    if (gcsPath.endsWith(GCS_DELIMITER)) {
+      return false;
+    }
+    BlobId blobId = toBlobId(gcsPath);
+    return !blobId.getName().isEmpty() && storage.get(blobId) != null;
+  }
+
+  private static BlobId toBlobId(String gcsPath) {
+    String trimmedPath = gcsPath.substring(GCS_PATH_PREFIX.length());
+    int delimiterIndex = trimmedPath.indexOf(GCS_DELIMITER);
+    if (delimiterIndex < 0) {
+      return BlobId.of(trimmedPath, "");
+    }
+    return BlobId.of(
+        trimmedPath.substring(0, delimiterIndex), trimmedPath.substring(delimiterIndex + 1));
+  }
+
   public void writeToGCS(String filePath, String fileContent) {
     try {
       setBucketName(filePath);
@@ -77,6 +129,28 @@ public class GCSHelper {
 
   }
 
+  /**
+   * Concatenates files, at most 32, into a file of the same bucket. The target may be one of the
+   * sources and is replaced.
+   */
+  public void composeInGCS(List<String> sourcePaths, String targetPath) {
+    BlobId target = toBlobId(targetPath);
+    Storage.ComposeRequest.Builder request =
+        Storage.ComposeRequest.newBuilder()
+            .setTarget(BlobInfo.newBuilder(target).setContentType("text/plain").build());
+    for (String sourcePath : sourcePaths) {
+      request.addSource(toBlobId(sourcePath).getName());
+    }
+    storage.compose(request.build());
+  }
+
+  /** Deletes a file, returns false if it did not exist. */
+  public boolean deleteFromGCS(String filePath) {
+    setBucketName(filePath);
+    String filename = filePath.replace(GCS_PATH_PREFIX+this.bucketName+GCS_DELIMITER, "");
+    return storage.delete(BlobId.of(bucketName, filename));
+  }
+
   private void setBucketName(String gcsPath) {
     String trimFolderPathStr = gcsPath.replace(GCS_PATH_PREFIX, "");
     List<String> list = new ArrayList(Arrays.asList(trimFolderPathStr.split(GCS_DELIMITER)));
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens local or GCS input files as streams, decompressing gzip and zstd files on the fly. The
+ * compression is recognized by the first bytes of the file, not by its extension.
+ */
+public class InputStreamHelper {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+  private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+  private InputStreamHelper() {}
+
+  public static InputStream open(String path, GCSHelper gcsHelper) throws IOException {
+    InputStream rawStream =
+        GCSHelper.isGCSPath(path)
+            ? gcsHelper.openGCSFile(path)
+            : Files.newInputStream(Path.of(path));
+    return decompress(new BufferedInputStream(rawStream, BUFFER_SIZE));
+  }
+
+  static InputStream decompress(BufferedInputStream stream) throws IOException {
+    byte[] magic = new byte[ZSTD_MAGIC.length];
+    stream.mark(magic.length);
+    int read = stream.readNBytes(magic, 0, magic.length);
+    stream.reset();
+    if (startsWith(magic, read, GZIP_MAGIC)) {
+      return new BufferedInputStream(new GZIPInputStream(stream, BUFFER_SIZE), BUFFER_SIZE);
+    }
+    if (startsWith(magic, read, ZSTD_MAGIC)) {
+      return new BufferedInputStream(new ZstdInputStream(stream), BUFFER_SIZE);
+    }
+    return stream;
+  }
+
+  private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+    if (length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Finds which of a set of keywords appear in a SQL string, in a single pass.
+ *
+ * <p>Keywords are matched case insensitively with an Aho-Corasick automaton. Comments and string
+ * literals are skipped, and a keyword that starts or ends with a letter, digit or underscore only
+ * matches a whole word (e.g. {@code TEMP} does not match {@code TEMPORARY} nor {@code temp_table}).
+ * Keywords must be ASCII.
+ */
+public final class KeywordMatcher {
+
+  private static final int ALPHABET_SIZE = 128;
+  private static final int ROOT = 0;
+
+  private final List<String> keywords;
+  // transitions[state][c], completed with the failure links so the scan never backtracks
+  private final int[][] transitions;
+  // keywords ending at a state, including the ones reached through failure links
+  private final int[][] outputs;
+
+  public KeywordMatcher(Collection<String> keywords) {
+    Set<String> distinctKeywords = new LinkedHashSet<>();
+    for (String keyword : keywords) {
+      if (keyword.isEmpty()) {
+        throw new IllegalArgumentException("Empty keyword");
+      }
+      for (int i = 0; i < keyword.length(); i++) {
+        if (keyword.charAt(i) >= ALPHABET_SIZE) {
+          throw new IllegalArgumentException("Keyword is not ASCII: " + keyword);
+        }
+      }
+      distinctKeywords.add(keyword.toLowerCase(Locale.ROOT));
+    }
+    this.keywords = Collections.unmodifiableList(new ArrayList<>(distinctKeywords));
+
+    List<int[]> gotoTable = new ArrayList<>();
+    List<List<Integer>> outputLists = new ArrayList<>();
+    gotoTable.add(newState());
+    outputLists.add(new ArrayList<>());
+    for (int k = 0; k < this.keywords.size(); k++) {
+      String keyword = this.keywords.get(k);
+      int state = ROOT;
+      for (int i = 0; i < keyword.length(); i++) {
+        char c = keyword.charAt(i);
+        if (gotoTable.get(state)[c] < 0) {
+          gotoTable.get(state)[c] = gotoTable.size();
+          gotoTable.add(newState());
+          outputLists.add(new ArrayList<>());
+        }
+        state = gotoTable.get(state)[c];
+      }
+      outputLists.get(state).add(k);
+    }
+
+    // breadth first, the failure state of a state is always computed before the state itself
+    int[] failure = new int[gotoTable.size()];
+    Queue<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET_SIZE; c++) {
+      int next = gotoTable.get(ROOT)[c];
+      if (next < 0) {
+        gotoTable.get(ROOT)[c] = ROOT;
+      } else {
+        failure[next] = ROOT;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      outputLists.get(state).addAll(outputLists.get(failure[state]));
+      for (int c = 0; c < ALPHABET_SIZE; c++) {
+        int next = gotoTable.get(state)[c];
+        if (next < 0) {
+          gotoTable.get(state)[c] = gotoTable.get(failure[state])[c];
+        } else {
+          failure[next] = gotoTable.get(failure[state])[c];
+          queue.add(next);
+        }
+      }
+    }
+
+    this.transitions = gotoTable.toArray(new int[0][]);
+    this.outputs = new int[outputLists.size()][];
+    for (int state = 0; state < outputLists.size(); state++) {
+      outputs[state] = outputLists.get(state).stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  private static int[] newState() {
+    int[] state = new int[ALPHABET_SIZE];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+  public List<String> getKeywords() {
+    return keywords;
+  }
+
+  /** Keywords (lower case) found in the SQL outside comments and string literals. */
+  public Set<String> findKeywords(String sql) {
+    Set<String> found = new HashSet<>();
+    int state = ROOT;
+    int length = sql.length();
+    int i = 0;
+    while (i < length && found.size() < keywords.size()) {
+      char c = sql.charAt(i);
+      int skipTo = skipCommentOrString(sql, i);
+      if (skipTo > i) {
+        state = ROOT;
+        i = skipTo;
+        continue;
+      }
+      char lower = c < ALPHABET_SIZE ? Character.toLowerCase(c) : c;
+      state = lower < ALPHABET_SIZE ? transitions[state][lower] : ROOT;
+      for (int k : outputs[state]) {
+        String keyword = keywords.get(k);
+        if (isWholeWord(sql, i - keyword.length() + 1, i, keyword)) {
+          found.add(keyword);
+        }
+      }
+      i++;
+    }
+    return found;
+  }
+
+  private static boolean isWholeWord(String sql, int start, int end, String keyword) {
+    if (isWordChar(keyword.charAt(0)) && start > 0 && isWordChar(sql.charAt(start - 1))) {
+      return false;
+    }
+    return !(isWordChar(keyword.charAt(keyword.length() - 1))
+        && end + 1 < sql.length()
+        && isWordChar(sql.charAt(end + 1)));
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  // Index right after the comment or string literal starting at i, i when there is none
+  private static int skipCommentOrString(String sql, int i) {
+    char c = sql.charAt(i);
+    if (c == '#' || (c == '-' && sql.startsWith("--", i))) {
+      int end = sql.indexOf('\n', i);
+      return end < 0 ? sql.length() : end + 1;
+    }
+    if (c == '/' && sql.startsWith("/*", i)) {
+      int end = sql.indexOf("*/", i + 2);
+      return end < 0 ? sql.length() : end + 2;
+    }
+    if (c == '\'' || c == '"') {
+      String quote = String.valueOf(c);
+      if (sql.startsWith(quote.repeat(3), i)) {
+        quote = quote.repeat(3);
+      }
+      int j = i + quote.length();
+      while (j < sql.length()) {
+        if (sql.charAt(j) == '\\') {
+          j += 2;
+        } else if (sql.startsWith(quote, j)) {
+          return j + quote.length();
+        } else {
+          j++;
+        }
+      }
+      return sql.length();
+    }
+    return i;
+  }
+}
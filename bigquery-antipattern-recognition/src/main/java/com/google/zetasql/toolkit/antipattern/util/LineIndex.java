@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps the UTF-8 byte offsets of parse locations to line and column numbers of a query.
+ *
+ * <p>Built once per query with a single pass over its characters, then shared by every visitor.
+ * Lookups binary search the line starts and do not allocate. Columns are counted from the closest
+ * offset sampled every {@value #SAMPLE_INTERVAL_CHARS} characters, so long lines (e.g. minified
+ * scripts) are not walked from their start.
+ */
+public final class LineIndex {
+
+  static final int SAMPLE_INTERVAL_CHARS = 1024;
+
+  private final String query;
+  // byte, char and code point offsets where each line starts, line i + 1 starts at index i
+  private final int[] lineStartBytes;
+  private final int[] lineStartChars;
+  private final int[] lineStartCodePoints;
+  private final int lineCount;
+  // byte, char and code point offsets sampled along the query, in increasing order
+  private final int[] sampleBytes;
+  private final int[] sampleChars;
+  private final int[] sampleCodePoints;
+  private final int sampleCount;
+  private final int byteLength;
+
+  public LineIndex(String query) {
+    this.query = query;
+    int[] startBytes = new int[16];
+    int[] startChars = new int[16];
+    int[] startCodePoints = new int[16];
+    int lines = 1;
+    int sampleCapacity = query.length() / SAMPLE_INTERVAL_CHARS + 1;
+    int[] samplesBytes = new int[sampleCapacity];
+    int[] samplesChars = new int[sampleCapacity];
+    int[] samplesCodePoints = new int[sampleCapacity];
+    int samples = 0;
+    int nextSample = SAMPLE_INTERVAL_CHARS;
+    int bytes = 0;
+    int codePoints = 0;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < query.length()
+          && Character.isLowSurrogate(query.charAt(i + 1))) {
+        // a supplementary character takes 4 bytes for its 2 chars
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+      codePoints++;
+      if (c == '\n') {
+        if (lines == startBytes.length) {
+          startBytes = Arrays.copyOf(startBytes, lines * 2);
+          startChars = Arrays.copyOf(startChars, lines * 2);
+          startCodePoints = Arrays.copyOf(startCodePoints, lines * 2);
+        }
+        startBytes[lines] = bytes;
+        startChars[lines] = i + 1;
+        startCodePoints[lines] = codePoints;
+        lines++;
+      }
+      if (i + 1 >= nextSample) {
+        samplesBytes[samples] = bytes;
+        samplesChars[samples] = i + 1;
+        samplesCodePoints[samples] = codePoints;
+        samples++;
+        nextSample += SAMPLE_INTERVAL_CHARS;
+      }
+    }
+    this.lineStartBytes = startBytes;
+    this.lineStartChars = startChars;
+    this.lineStartCodePoints = startCodePoints;
+    this.lineCount = lines;
+    this.sampleBytes = samplesBytes;
+    this.sampleChars = samplesChars;
+    this.sampleCodePoints = samplesCodePoints;
+    this.sampleCount = samples;
+    this.byteLength = bytes;
+  }
+
+  /** Number of UTF-8 bytes of the query, counted without encoding it. */
+  public static long utf8Length(String query) {
+    long bytes = 0;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < query.length()
+          && Character.isLowSurrogate(query.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /** 1-based line of the byte offset, offsets past the end are on the last line. */
+  public int lineAt(int byteOffset) {
+    int low = 0;
+    int high = lineCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (lineStartBytes[mid] <= byteOffset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low + 1;
+  }
+
+  /** 1-based column of the byte offset, counted in characters from the start of its line. */
+  public int columnAt(int byteOffset) {
+    int line = lineAt(byteOffset) - 1;
+    int target = Math.min(Math.max(byteOffset, 0), byteLength);
+    int bytes = lineStartBytes[line];
+    int start = lineStartChars[line];
+    int column = 1;
+    // start from the last sample before the offset when it is on the same line
+    int sample = sampleAt(target);
+    if (sample >= 0 && sampleBytes[sample] > bytes) {
+      bytes = sampleBytes[sample];
+      start = sampleChars[sample];
+      column += sampleCodePoints[sample] - lineStartCodePoints[line];
+    }
+    for (int i = start; bytes < target && i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+      column++;
+    }
+    return column;
+  }
+
+  // index of the last sample at or before the byte offset, -1 if there is none
+  private int sampleAt(int byteOffset) {
+    int low = -1;
+    int high = sampleCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (sampleBytes[mid] <= byteOffset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+}
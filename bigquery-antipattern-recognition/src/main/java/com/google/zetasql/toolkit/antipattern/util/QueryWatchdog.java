@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException.Reason;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per query limits on the size of the query and on the time spent parsing and analyzing it.
+ *
+ * <p>With a time limit, the work runs on a separate thread and the caller waits at most that long.
+ * A query that takes longer is interrupted and abandoned: ZetaSQL calls cannot be cancelled, so
+ * the thread keeps running until the call returns, but the caller moves on to the next query. A
+ * limit of 0 means no limit, in which case the work runs on the calling thread.
+ *
+ * <p>At most {@code maxAbandonedThreads} abandoned threads may still be running: past that, no
+ * more work is started and the queries fail until one of them returns. Worker processes (see
+ * {@code --worker_processes}) are restarted after a time limit is hit and do not pile up threads.
+ */
+public class QueryWatchdog {
+
+  /** Name under which skipped queries are reported. */
+  public static final String SKIPPED_QUERY_NAME = "SkippedQuery";
+
+  public static final QueryWatchdog UNLIMITED = new QueryWatchdog(0, 0, 0);
+
+  public static final int DEFAULT_MAX_ABANDONED_THREADS = 16;
+
+  // states of a task run with a time limit
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int DONE = 2;
+  private static final int ABANDONED = 3;
+
+  private static ExecutorService executor;
+
+  private final long maxQueryBytes;
+  private final long parseTimeoutMillis;
+  private final long analysisTimeoutMillis;
+  private final int maxAbandonedThreads;
+  // threads still running a query that took longer than its time limit
+  private final AtomicInteger abandonedThreads = new AtomicInteger();
+  private final Map<Reason, AtomicLong> skippedCounts = new EnumMap<>(Reason.class);
+
+  public QueryWatchdog(long maxQueryBytes, long parseTimeoutMillis, long analysisTimeoutMillis) {
+    this(maxQueryBytes, parseTimeoutMillis, analysisTimeoutMillis, DEFAULT_MAX_ABANDONED_THREADS);
+  }
+
+  public QueryWatchdog(
+      long maxQueryBytes,
+      long parseTimeoutMillis,
+      long analysisTimeoutMillis,
+      int maxAbandonedThreads) {
+    this.maxQueryBytes = maxQueryBytes;
+    this.parseTimeoutMillis = parseTimeoutMillis;
+    this.analysisTimeoutMillis = analysisTimeoutMillis;
+    this.maxAbandonedThreads = maxAbandonedThreads;
+    for (Reason reason : Reason.values()) {
+      skippedCounts.put(reason, new AtomicLong());
+    }
+  }
+
+  // Threads are created as needed, so an abandoned query never delays the following ones. Their
+  // number is bounded by maxAbandonedThreads.
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      executor =
+          Executors.newCachedThreadPool(
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "query-watchdog-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return executor;
+  }
+
+  public boolean isEnabled() {
+    return maxQueryBytes > 0 || parseTimeoutMillis > 0 || analysisTimeoutMillis > 0;
+  }
+
+  /** @throws QuerySkippedException when the query is larger than the limit, in UTF-8 bytes */
+  public void checkQuerySize(InputQuery inputQuery) {
+    if (maxQueryBytes <= 0) {
+      return;
+    }
+    long queryBytes = LineIndex.utf8Length(inputQuery.getQuery());
+    if (queryBytes > maxQueryBytes) {
+      throw skip(
+          Reason.QUERY_TOO_LARGE,
+          String.format(
+              "Query of %d bytes is larger than the limit of %d bytes",
+              queryBytes, maxQueryBytes));
+    }
+  }
+
+  /** Parses (and checks) the query within the parse time limit. */
+  public <T> T parse(InputQuery inputQuery, Callable<T> task) {
+    return runWithin(parseTimeoutMillis, Reason.PARSE_TIMEOUT, "Parsing", inputQuery, task);
+  }
+
+  /** Analyzes (and checks) the query within the analysis time limit. */
+  public <T> T analyze(InputQuery inputQuery, Callable<T> task) {
+    return runWithin(
+        analysisTimeoutMillis, Reason.ANALYSIS_TIMEOUT, "Analysis", inputQuery, task);
+  }
+
+  private <T> T runWithin(
+      long timeoutMillis, Reason reason, String step, InputQuery inputQuery, Callable<T> task) {
+    if (timeoutMillis <= 0) {
+      return call(task);
+    }
+    if (abandonedThreads.get() >= maxAbandonedThreads) {
+      throw new IllegalStateException(
+          String.format(
+              "Not checking query %s: %d queries over the time limits are still running. Use "
+                  + "--worker_processes to stop such queries with their worker.",
+              inputQuery.getQueryId(), abandonedThreads.get()));
+    }
+    AtomicInteger state = new AtomicInteger(QUEUED);
+    Future<T> future =
+        getExecutor()
+            .submit(
+                () -> {
+                  if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    // abandoned before it started
+                    return null;
+                  }
+                  try {
+                    return task.call();
+                  } finally {
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                      abandonedThreads.decrementAndGet();
+                    }
+                  }
+                });
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      if (!state.compareAndSet(QUEUED, ABANDONED)) {
+        abandonedThreads.incrementAndGet();
+        if (!state.compareAndSet(RUNNING, ABANDONED)) {
+          // returned in the meantime
+          abandonedThreads.decrementAndGet();
+        }
+      }
+      future.cancel(true);
+      throw skip(
+          reason,
+          String.format(
+              "%s of query %s took longer than the limit of %d ms",
+              step, inputQuery.getQueryId(), timeoutMillis));
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted while checking query " + inputQuery.getQueryId(), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new CompletionException(e.getCause());
+    }
+  }
+
+  private static <T> T call(Callable<T> task) {
+    try {
+      return task.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /** Counts a skipped query, e.g. one reported by a worker process, and returns its exception. */
+  public QuerySkippedException skip(Reason reason, String message) {
+    skippedCounts.get(reason).incrementAndGet();
+    return new QuerySkippedException(reason, message);
+  }
+
+  public long getParseTimeoutMillis() {
+    return parseTimeoutMillis;
+  }
+
+  public long getAnalysisTimeoutMillis() {
+    return analysisTimeoutMillis;
+  }
+
+  public int getAbandonedThreadCount() {
+    return abandonedThreads.get();
+  }
+
+  public long getSkippedCount(Reason reason) {
+    return skippedCounts.get(reason).get();
+  }
+
+  public String getStats() {
+    return String.format(
+        "skipped queries: %d too large, %d parse timeouts, %d analysis timeouts, %d worker "
+            + "timeouts, %d worker crashes",
+        getSkippedCount(Reason.QUERY_TOO_LARGE),
+        getSkippedCount(Reason.PARSE_TIMEOUT),
+        getSkippedCount(Reason.ANALYSIS_TIMEOUT),
+        getSkippedCount(Reason.WORKER_TIMEOUT),
+        getSkippedCount(Reason.WORKER_CRASHED));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.worker;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.metadata.CatalogSnapshot;
+import com.google.zetasql.toolkit.antipattern.rules.RuleRegistry;
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy;
+import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
+import com.google.zetasql.toolkit.antipattern.util.QueryWatchdog;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of a worker process started by {@link WorkerPool}.
+ *
+ * <p>Reads its configuration and then one query at a time from the standard input, and answers
+ * each query on the standard output. Exits when the standard input is closed, i.e. when the pool is
+ * closed or the parent process dies.
+ */
+public class WorkerMain {
+
+  private static final Logger logger = LoggerFactory.getLogger(WorkerMain.class);
+
+  public static void main(String[] args) throws IOException {
+    // the standard output carries the responses, anything else printed goes to the log
+    PrintStream responseStream = System.out;
+    System.setOut(System.err);
+    BufferedReader requests =
+        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    BufferedWriter responses =
+        new BufferedWriter(new OutputStreamWriter(responseStream, StandardCharsets.UTF_8));
+
+    String line = requests.readLine();
+    if (line == null) {
+      return;
+    }
+    WorkerProtocol.Config config = WorkerProtocol.read(line, WorkerProtocol.Config.class);
+    AntiPatternHelper antiPatternHelper = newAntiPatternHelper(config);
+    // the thresholds known before parsing were applied by the parent
+    AnalysisTierPolicy analysisTierPolicy =
+        new AnalysisTierPolicy(0, 0, config.isRequireParserFindings());
+    respond(responses, new WorkerProtocol.Response());
+
+    while ((line = requests.readLine()) != null) {
+      WorkerProtocol.Request request = WorkerProtocol.read(line, WorkerProtocol.Request.class);
+      respond(responses, check(request, antiPatternHelper, analysisTierPolicy));
+    }
+  }
+
+  private static void respond(BufferedWriter responses, WorkerProtocol.Response response)
+      throws IOException {
+    responses.write(WorkerProtocol.write(response));
+    responses.newLine();
+    responses.flush();
+  }
+
+  private static AntiPatternHelper newAntiPatternHelper(WorkerProtocol.Config config)
+      throws IOException {
+    CatalogSnapshot catalogSnapshot =
+        config.getCatalogSnapshotPath() == null
+            ? null
+            : CatalogSnapshot.read(config.getCatalogSnapshotPath());
+    // the parent checks the query size before sending it
+    QueryWatchdog watchdog =
+        new QueryWatchdog(0, config.getParseTimeoutMillis(), config.getAnalysisTimeoutMillis());
+    return new AntiPatternHelper(
+        config.getProcessingProject(),
+        config.isUseAnalyzer(),
+        new ConcurrentHashMap<>(),
+        catalogSnapshot,
+        RuleRegistry.load(config.getRules(), config.getExcludedRules()),
+        watchdog);
+  }
+
+  static WorkerProtocol.Response check(
+      WorkerProtocol.Request request,
+      AntiPatternHelper antiPatternHelper,
+      AnalysisTierPolicy analysisTierPolicy) {
+    InputQuery inputQuery =
+        new InputQuery(request.getQuery(), request.getQueryId(), request.getProjectId(), 0);
+    List<AntiPatternVisitor> visitorsThatFoundAntiPatterns = new ArrayList<>();
+    WorkerProtocol.Response response = new WorkerProtocol.Response();
+    try {
+      antiPatternHelper.checkForAntiPatternsInQueryWithParserVisitors(
+          inputQuery, visitorsThatFoundAntiPatterns);
+      response.setAnalysisTier(
+          analysisTierPolicy.tierFor(
+              request.isAnalyze() && antiPatternHelper.getUseAnalizer(),
+              !visitorsThatFoundAntiPatterns.isEmpty()));
+      if (response.getAnalysisTier() == AnalysisTierPolicy.Tier.ANALYZER) {
+        antiPatternHelper.checkForAntiPatternsInQueryWithAnalyzerVisitors(
+            inputQuery, visitorsThatFoundAntiPatterns);
+      }
+    } catch (QuerySkippedException e) {
+      response.setSkippedReason(e.getReason());
+      response.setSkippedMessage(e.getMessage());
+    } catch (Exception e) {
+      logger.error(e.getMessage(), e);
+      response.setError(e.getMessage() == null ? e.toString() : e.getMessage());
+    }
+    for (AntiPatternVisitor visitor : visitorsThatFoundAntiPatterns) {
+      response.getAntiPatterns().add(WorkerProtocol.AntiPattern.of(visitor));
+    }
+    return response;
+  }
+}
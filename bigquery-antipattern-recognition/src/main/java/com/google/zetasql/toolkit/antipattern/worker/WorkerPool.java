@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.worker;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.cache.RecordedAntiPattern;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException.Reason;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import com.google.zetasql.toolkit.antipattern.util.QueryWatchdog;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks queries in separate worker JVMs instead of the calling process.
+ *
+ * <p>ZetaSQL parses and analyzes queries in native code, where a crash or a runaway allocation
+ * takes the whole process down. Each worker runs {@link WorkerMain} with its own heap limit and
+ * receives one query at a time over its standard input. Queries are handed to the workers in
+ * round-robin order; a caller waits while its worker is busy with another query.
+ *
+ * <ul>
+ *   <li>a worker that dies while checking a query is restarted for the next query, the query is
+ *       reported as skipped ({@link Reason#WORKER_CRASHED})
+ *   <li>a worker that does not answer within the time limits of the query plus a grace period is
+ *       killed and restarted, the query is reported as skipped ({@link Reason#WORKER_TIMEOUT})
+ *   <li>a worker that skipped a query on a time limit is restarted as well, because the abandoned
+ *       ZetaSQL call keeps running in it
+ * </ul>
+ */
+public class WorkerPool implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+  public static final int DEFAULT_MAX_HEAP_MB = 1024;
+  // time a worker gets beyond the time limits of a query before it is killed
+  static final long DEFAULT_DEADLINE_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long STOP_TIMEOUT_SECS = 5;
+
+  private static final class Worker {
+    private final int index;
+    // null until started and after the worker stopped
+    private Process process;
+    private BufferedWriter requests;
+    private BufferedReader responses;
+    // set once the worker answered its configuration
+    private boolean ready;
+
+    private Worker(int index) {
+      this.index = index;
+    }
+  }
+
+  private final List<String> command;
+  private final String configLine;
+  private final long deadlineMillis;
+  private final QueryWatchdog watchdog;
+  // shared with the helpers of the run, which only count anti patterns found in this process
+  private final ConcurrentMap<String, Integer> visitorMetricsMap;
+  private final Worker[] workers;
+  private final AtomicLong nextWorker = new AtomicLong();
+  private final AtomicLong startedCount = new AtomicLong();
+  private final ScheduledExecutorService deadlines;
+
+  public WorkerPool(
+      int size,
+      int maxHeapMb,
+      WorkerProtocol.Config config,
+      QueryWatchdog watchdog,
+      ConcurrentMap<String, Integer> visitorMetricsMap)
+      throws IOException {
+    this(
+        javaCommand(maxHeapMb, WorkerMain.class.getName()),
+        size,
+        config,
+        DEFAULT_DEADLINE_GRACE_MILLIS,
+        watchdog,
+        visitorMetricsMap);
+  }
+
+  WorkerPool(
+      List<String> command,
+      int size,
+      WorkerProtocol.Config config,
+      long deadlineGraceMillis,
+      QueryWatchdog watchdog,
+      ConcurrentMap<String, Integer> visitorMetricsMap)
+      throws IOException {
+    this.command = command;
+    this.configLine = WorkerProtocol.write(config);
+    this.deadlineMillis = deadlineMillis(config, deadlineGraceMillis);
+    this.watchdog = watchdog;
+    this.visitorMetricsMap = visitorMetricsMap;
+    this.deadlines =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "worker-pool-deadlines");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.workers = new Worker[size];
+    for (int i = 0; i < size; i++) {
+      workers[i] = new Worker(i);
+      // workers boot in the background while the first queries are read
+      start(workers[i]);
+    }
+  }
+
+  /** Command running a class of this classpath in a new JVM with the given heap limit. */
+  static List<String> javaCommand(int maxHeapMb, String mainClass) {
+    return new ArrayList<>(
+        Arrays.asList(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Xmx" + maxHeapMb + "m",
+            "-XX:+ExitOnOutOfMemoryError",
+            "-cp",
+            System.getProperty("java.class.path"),
+            mainClass));
+  }
+
+  // Only bounded when every step of the check is, 0 otherwise
+  private static long deadlineMillis(WorkerProtocol.Config config, long deadlineGraceMillis) {
+    if (config.getParseTimeoutMillis() <= 0
+        || (config.isUseAnalyzer() && config.getAnalysisTimeoutMillis() <= 0)) {
+      return 0;
+    }
+    return config.getParseTimeoutMillis()
+        + (config.isUseAnalyzer() ? config.getAnalysisTimeoutMillis() : 0)
+        + deadlineGraceMillis;
+  }
+
+  /**
+   * Checks the query in the next worker, adding the anti patterns it found to the list and setting
+   * the tier it went through.
+   *
+   * @param analyze whether the query meets the thresholds of the tier policy known before it is
+   *     parsed
+   * @throws com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException when the
+   *     worker skipped the query or died while checking it. Anti patterns found before are added
+   *     to the list all the same.
+   */
+  public void check(
+      InputQuery inputQuery,
+      boolean analyze,
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns) {
+    String requestLine;
+    try {
+      requestLine =
+          WorkerProtocol.write(
+              new WorkerProtocol.Request(
+                  inputQuery.getQueryId(),
+                  inputQuery.getProjectId(),
+                  inputQuery.getQuery(),
+                  analyze));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Worker worker = workers[(int) (nextWorker.getAndIncrement() % workers.length)];
+    WorkerProtocol.Response response = send(worker, requestLine, inputQuery);
+    inputQuery.setAnalysisTier(response.getAnalysisTier());
+
+    // locations are sent as byte offsets, lines and columns are found again in the query
+    LineIndex lineIndex = null;
+    for (WorkerProtocol.AntiPattern antiPattern : response.getAntiPatterns()) {
+      visitorMetricsMap.merge(antiPattern.getName(), 1, Integer::sum);
+      List<Finding> findings = new ArrayList<>();
+      for (WorkerProtocol.FindingMessage findingMessage : antiPattern.getFindings()) {
+        if (lineIndex == null && findingMessage.getMessageFormat() != null) {
+          lineIndex = new LineIndex(inputQuery.getQuery());
+        }
+        findings.add(findingMessage.toFinding(lineIndex));
+      }
+      visitorsThatFoundAntiPatterns.add(new RecordedAntiPattern(antiPattern.getName(), findings));
+    }
+    if (response.getSkippedReason() != null) {
+      throw watchdog.skip(response.getSkippedReason(), response.getSkippedMessage());
+    }
+    if (response.getError() != null) {
+      throw new IllegalStateException(response.getError());
+    }
+  }
+
+  private WorkerProtocol.Response send(Worker worker, String requestLine, InputQuery inputQuery) {
+    synchronized (worker) {
+      if (worker.process == null || !worker.process.isAlive()) {
+        stop(worker);
+        start(worker);
+      }
+      // the time the worker takes to boot does not count for the deadline of the query
+      awaitReady(worker);
+      Process process = worker.process;
+      AtomicBoolean killed = new AtomicBoolean();
+      ScheduledFuture<?> deadline = null;
+      if (deadlineMillis > 0) {
+        deadline =
+            deadlines.schedule(
+                () -> {
+                  killed.set(true);
+                  process.destroyForcibly();
+                },
+                deadlineMillis,
+                TimeUnit.MILLISECONDS);
+      }
+
+      WorkerProtocol.Response response = null;
+      try {
+        worker.requests.write(requestLine);
+        worker.requests.newLine();
+        worker.requests.flush();
+        String responseLine = worker.responses.readLine();
+        if (responseLine != null) {
+          response = WorkerProtocol.read(responseLine, WorkerProtocol.Response.class);
+        }
+      } catch (IOException e) {
+        // the worker died while writing or reading, a partial line does not parse either
+        logger.debug(e.getMessage(), e);
+      } finally {
+        if (deadline != null) {
+          deadline.cancel(false);
+        }
+      }
+
+      if (response == null) {
+        int exitCode = stop(worker);
+        if (killed.get()) {
+          throw watchdog.skip(
+              Reason.WORKER_TIMEOUT,
+              String.format(
+                  "Worker %d did not answer for query %s within %d ms and was restarted",
+                  worker.index, inputQuery.getQueryId(), deadlineMillis));
+        }
+        throw watchdog.skip(
+            Reason.WORKER_CRASHED,
+            String.format(
+                "Worker %d exited with code %d while checking query %s and was restarted",
+                worker.index, exitCode, inputQuery.getQueryId()));
+      }
+      if (response.getSkippedReason() == Reason.PARSE_TIMEOUT
+          || response.getSkippedReason() == Reason.ANALYSIS_TIMEOUT) {
+        // the thread of the abandoned ZetaSQL call would keep a core busy in the worker
+        process.destroyForcibly();
+        stop(worker);
+      }
+      return response;
+    }
+  }
+
+  private static void awaitReady(Worker worker) {
+    if (worker.ready) {
+      return;
+    }
+    String readyLine = null;
+    try {
+      readyLine = worker.responses.readLine();
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    }
+    if (readyLine == null) {
+      int exitCode = stop(worker);
+      throw new IllegalStateException(
+          "Worker " + worker.index + " exited with code " + exitCode + " while starting");
+    }
+    worker.ready = true;
+  }
+
+  private void start(Worker worker) {
+    try {
+      worker.process =
+          new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      worker.requests =
+          new BufferedWriter(
+              new OutputStreamWriter(worker.process.getOutputStream(), StandardCharsets.UTF_8));
+      worker.responses =
+          new BufferedReader(
+              new InputStreamReader(worker.process.getInputStream(), StandardCharsets.UTF_8));
+      worker.requests.write(configLine);
+      worker.requests.newLine();
+      worker.requests.flush();
+    } catch (IOException e) {
+      stop(worker);
+      throw new UncheckedIOException("Could not start worker " + worker.index, e);
+    }
+    startedCount.incrementAndGet();
+    logger.info("Started worker " + worker.index + " with pid " + worker.process.pid());
+  }
+
+  // Returns the exit code of the worker, -1 if it was not running or did not exit
+  private static int stop(Worker worker) {
+    Process process = worker.process;
+    worker.process = null;
+    worker.ready = false;
+    if (process == null) {
+      return -1;
+    }
+    try {
+      // a worker exits once its input is closed
+      worker.requests.close();
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    }
+    try {
+      if (!process.waitFor(STOP_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        process.waitFor(STOP_TIMEOUT_SECS, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+    }
+    return process.isAlive() ? -1 : process.exitValue();
+  }
+
+  public int size() {
+    return workers.length;
+  }
+
+  /** Workers started since the pool was created, including restarts. */
+  public long getStartedCount() {
+    return startedCount.get();
+  }
+
+  public String getStats() {
+    return String.format(
+        "worker processes: %d workers, %d restarts",
+        workers.length, getStartedCount() - workers.length);
+  }
+
+  @Override
+  public void close() {
+    for (Worker worker : workers) {
+      synchronized (worker) {
+        stop(worker);
+      }
+    }
+    deadlines.shutdownNow();
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.worker;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Messages exchanged with a worker process, one JSON object per line.
+ *
+ * <p>The first line sent to a worker is its {@link Config}, answered by an empty {@link Response}
+ * once the worker is ready. Every following line is a {@link Request}, answered by exactly one
+ * {@link Response} line on the standard output of the worker. Line breaks in queries are escaped
+ * by the JSON encoding, so a message never spans lines.
+ */
+public final class WorkerProtocol {
+
+  private static final ObjectMapper objectMapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private WorkerProtocol() {}
+
+  /** How the worker checks queries, the same for every query it receives. */
+  public static class Config {
+    private String processingProject;
+    private boolean useAnalyzer;
+    // null when the analyzer fetches table metadata from the BigQuery API
+    private String catalogSnapshotPath;
+    // null for every rule
+    private List<String> rules;
+    private List<String> excludedRules;
+    private long parseTimeoutMillis;
+    private long analysisTimeoutMillis;
+    private boolean requireParserFindings;
+
+    public String getProcessingProject() {
+      return processingProject;
+    }
+
+    public void setProcessingProject(String processingProject) {
+      this.processingProject = processingProject;
+    }
+
+    public boolean isUseAnalyzer() {
+      return useAnalyzer;
+    }
+
+    public void setUseAnalyzer(boolean useAnalyzer) {
+      this.useAnalyzer = useAnalyzer;
+    }
+
+    public String getCatalogSnapshotPath() {
+      return catalogSnapshotPath;
+    }
+
+    public void setCatalogSnapshotPath(String catalogSnapshotPath) {
+      this.catalogSnapshotPath = catalogSnapshotPath;
+    }
+
+    public List<String> getRules() {
+      return rules;
+    }
+
+    public void setRules(List<String> rules) {
+      this.rules = rules;
+    }
+
+    public List<String> getExcludedRules() {
+      return excludedRules;
+    }
+
+    public void setExcludedRules(List<String> excludedRules) {
+      this.excludedRules = excludedRules;
+    }
+
+    public long getParseTimeoutMillis() {
+      return parseTimeoutMillis;
+    }
+
+    public void setParseTimeoutMillis(long parseTimeoutMillis) {
+      this.parseTimeoutMillis = parseTimeoutMillis;
+    }
+
+    public long getAnalysisTimeoutMillis() {
+      return analysisTimeoutMillis;
+    }
+
+    public void setAnalysisTimeoutMillis(long analysisTimeoutMillis) {
+      this.analysisTimeoutMillis = analysisTimeoutMillis;
+    }
+
+    public boolean isRequireParserFindings() {
+      return requireParserFindings;
+    }
+
+    public void setRequireParserFindings(boolean requireParserFindings) {
+      this.requireParserFindings = requireParserFindings;
+    }
+  }
+
+  public static class Request {
+    private String queryId;
+    private String projectId;
+    private String query;
+    // whether the query meets the thresholds of the tier policy known before it is parsed
+    private boolean analyze;
+
+    public Request() {}
+
+    public Request(String queryId, String projectId, String query, boolean analyze) {
+      this.queryId = queryId;
+      this.projectId = projectId;
+      this.query = query;
+      this.analyze = analyze;
+    }
+
+    public String getQueryId() {
+      return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+      this.queryId = queryId;
+    }
+
+    public String getProjectId() {
+      return projectId;
+    }
+
+    public void setProjectId(String projectId) {
+      this.projectId = projectId;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    public void setQuery(String query) {
+      this.query = query;
+    }
+
+    public boolean isAnalyze() {
+      return analyze;
+    }
+
+    public void setAnalyze(boolean analyze) {
+      this.analyze = analyze;
+    }
+  }
+
+  /**
+   * A {@link Finding} with its location and message parameters, so it can still be relocated once
+   * received. Its line and column are computed again from the query.
+   */
+  public static class FindingMessage {
+    private String ruleId;
+    private int byteOffset = Finding.UNKNOWN;
+    private int statementIndex = Finding.UNKNOWN;
+    // null for findings without location, whose message is sent formatted
+    private String messageFormat;
+    private List<Object> parameters = new ArrayList<>();
+    private String message;
+
+    public static FindingMessage of(Finding finding) {
+      FindingMessage findingMessage = new FindingMessage();
+      findingMessage.ruleId = finding.getRuleId();
+      findingMessage.byteOffset = finding.getByteOffset();
+      findingMessage.statementIndex = finding.getStatementIndex();
+      findingMessage.messageFormat = finding.getMessageFormat();
+      for (Object parameter : finding.getParameters()) {
+        // anything else would not read back as the same type
+        findingMessage.parameters.add(
+            parameter instanceof Number || parameter instanceof Boolean
+                ? parameter
+                : String.valueOf(parameter));
+      }
+      if (finding.getMessageFormat() == null) {
+        findingMessage.message = finding.getMessage();
+      }
+      return findingMessage;
+    }
+
+    /** @param lineIndex index of the query the finding was found in */
+    public Finding toFinding(LineIndex lineIndex) {
+      if (messageFormat == null) {
+        return Finding.ofMessage(ruleId, message);
+      }
+      Finding finding =
+          new Finding(ruleId, lineIndex, byteOffset, messageFormat, parameters.toArray());
+      finding.setStatementIndex(statementIndex);
+      return finding;
+    }
+
+    public String getRuleId() {
+      return ruleId;
+    }
+
+    public void setRuleId(String ruleId) {
+      this.ruleId = ruleId;
+    }
+
+    public int getByteOffset() {
+      return byteOffset;
+    }
+
+    public void setByteOffset(int byteOffset) {
+      this.byteOffset = byteOffset;
+    }
+
+    public int getStatementIndex() {
+      return statementIndex;
+    }
+
+    public void setStatementIndex(int statementIndex) {
+      this.statementIndex = statementIndex;
+    }
+
+    public String getMessageFormat() {
+      return messageFormat;
+    }
+
+    public void setMessageFormat(String messageFormat) {
+      this.messageFormat = messageFormat;
+    }
+
+    public List<Object> getParameters() {
+      return parameters;
+    }
+
+    public void setParameters(List<Object> parameters) {
+      this.parameters = parameters;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    public void setMessage(String message) {
+      this.message = message;
+    }
+  }
+
+  /** An anti pattern found in a query, with its findings. */
+  public static class AntiPattern {
+    private String name;
+    private List<FindingMessage> findings = new ArrayList<>();
+
+    public static AntiPattern of(AntiPatternVisitor visitor) {
+      AntiPattern antiPattern = new AntiPattern();
+      antiPattern.name = visitor.getName();
+      for (Finding finding : visitor.getFindings()) {
+        antiPattern.findings.add(FindingMessage.of(finding));
+      }
+      return antiPattern;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public List<FindingMessage> getFindings() {
+      return findings;
+    }
+
+    public void setFindings(List<FindingMessage> findings) {
+      this.findings = findings;
+    }
+  }
+
+  /**
+   * Anti patterns found in a query. When the query was skipped or failed, holds the anti patterns
+   * found up to that point together with the reason or error.
+   */
+  public static class Response {
+    private List<AntiPattern> antiPatterns = new ArrayList<>();
+    // null when the query was skipped before its tier was known
+    private AnalysisTierPolicy.Tier analysisTier;
+    // null unless the query was skipped
+    private QuerySkippedException.Reason skippedReason;
+    private String skippedMessage;
+    // null unless checking the query failed
+    private String error;
+
+    public List<AntiPattern> getAntiPatterns() {
+      return antiPatterns;
+    }
+
+    public void setAntiPatterns(List<AntiPattern> antiPatterns) {
+      this.antiPatterns = antiPatterns;
+    }
+
+    public AnalysisTierPolicy.Tier getAnalysisTier() {
+      return analysisTier;
+    }
+
+    public void setAnalysisTier(AnalysisTierPolicy.Tier analysisTier) {
+      this.analysisTier = analysisTier;
+    }
+
+    public QuerySkippedException.Reason getSkippedReason() {
+      return skippedReason;
+    }
+
+    public void setSkippedReason(QuerySkippedException.Reason skippedReason) {
+      this.skippedReason = skippedReason;
+    }
+
+    public String getSkippedMessage() {
+      return skippedMessage;
+    }
+
+    public void setSkippedMessage(String skippedMessage) {
+      this.skippedMessage = skippedMessage;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public void setError(String error) {
+      this.error = error;
+    }
+  }
+
+  public static String write(Object message) throws IOException {
+    return objectMapper.writeValueAsString(message);
+  }
+
+  public static <T> T read(String line, Class<T> messageClass) throws IOException {
+    return objectMapper.readValue(line, messageClass);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class ParallelQueryRunnerTest {
+
+  private static List<InputQuery> buildQueries(int n) {
+    List<InputQuery> queries = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      queries.add(new InputQuery("SELECT " + i, "query_" + i));
+    }
+    return queries;
+  }
+
+  private static ParallelQueryRunner.QueryProcessor slowProcessor() {
+    Random random = new Random();
+    return inputQuery -> {
+      Thread.sleep(random.nextInt(3));
+      if (inputQuery.getQueryId().equals("query_7")) {
+        throw new IllegalStateException("failing query");
+      }
+      return new ArrayList<>();
+    };
+  }
+
+  @Test
+  public void preservesInputOrderTest() throws InterruptedException {
+    List<InputQuery> queries = buildQueries(200);
+    List<String> writtenIds = new ArrayList<>();
+
+    long read =
+        new ParallelQueryRunner(8, 16, true)
+            .run(
+                queries.iterator(),
+                ParallelQueryRunnerTest::slowProcessor,
+                (inputQuery, visitors) -> writtenIds.add(inputQuery.getQueryId()));
+
+    assertEquals(200, read);
+    List<String> expectedIds = new ArrayList<>();
+    queries.forEach(query -> expectedIds.add(query.getQueryId()));
+    assertEquals(expectedIds, writtenIds);
+  }
+
+  @Test
+  public void writesEveryQueryWithoutOrderTest() throws InterruptedException {
+    List<InputQuery> queries = buildQueries(200);
+    List<String> writtenIds = new ArrayList<>();
+
+    long read =
+        new ParallelQueryRunner(8, 16, false)
+            .run(
+                queries.iterator(),
+                ParallelQueryRunnerTest::slowProcessor,
+                (inputQuery, visitors) -> writtenIds.add(inputQuery.getQueryId()));
+
+    assertEquals(200, read);
+    assertEquals(200, new HashSet<>(writtenIds).size());
+  }
+
+  @Test
+  public void writesQueriesFailingWithErrorsTest() throws InterruptedException {
+    // more failing queries than in flight permits, a leaked permit would block the reader
+    List<InputQuery> queries = buildQueries(50);
+    List<String> writtenIds = new ArrayList<>();
+
+    long read =
+        new ParallelQueryRunner(2, 4, true)
+            .run(
+                queries.iterator(),
+                () ->
+                    inputQuery -> {
+                      if (inputQuery.getQueryId().hashCode() % 2 == 0) {
+                        throw new StackOverflowError();
+                      }
+                      return new ArrayList<>();
+                    },
+                (inputQuery, visitors) -> writtenIds.add(inputQuery.getQueryId()));
+
+    assertEquals(50, read);
+    assertEquals(50, writtenIds.size());
+  }
+
+  @Test
+  public void rethrowsInputFailureAfterWritingQueriesReadTest() throws InterruptedException {
+    Iterator<InputQuery> queries = buildQueries(10).iterator();
+    Iterator<InputQuery> failingQueries =
+        new Iterator<InputQuery>() {
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public InputQuery next() {
+            if (!queries.hasNext()) {
+              throw new IllegalStateException("input failure");
+            }
+            return queries.next();
+          }
+        };
+    List<String> writtenIds = new ArrayList<>();
+
+    try {
+      new ParallelQueryRunner(4, 8, true)
+          .run(
+              failingQueries,
+              ParallelQueryRunnerTest::slowProcessor,
+              (inputQuery, visitors) -> writtenIds.add(inputQuery.getQueryId()));
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("input failure", e.getMessage());
+    }
+    assertEquals(10, writtenIds.size());
+  }
+}
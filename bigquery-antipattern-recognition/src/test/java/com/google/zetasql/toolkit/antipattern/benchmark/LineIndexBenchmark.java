@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.benchmark;
+
+import com.google.zetasql.toolkit.antipattern.util.LegacyLineCounter;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares looking up the line of every finding of a large script by scanning the script on each
+ * lookup (the previous ZetaSQLStringParsingHelper.countLine) with a {@link LineIndex} built once,
+ * and measures looking up their columns, also on a script minified to a single line.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.google.zetasql.toolkit.antipattern.benchmark.LineIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LineIndexBenchmark {
+
+  @Param({"1048576"})
+  public int scriptBytes;
+
+  @Param({"10", "100", "500"})
+  public int findings;
+
+  @Param({"false", "true"})
+  public boolean singleLine;
+
+  private String script;
+  private int[] findingOffsets;
+
+  @Setup
+  public void setUp() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; builder.length() < scriptBytes; i++) {
+      builder
+          .append("SELECT col_")
+          .append(i)
+          .append(", 'caf\u00e9' AS name\nFROM dataset.table_")
+          .append(i)
+          .append("\nWHERE id > ")
+          .append(i)
+          .append(";\n");
+    }
+    script = singleLine ? builder.toString().replace('\n', ' ') : builder.toString();
+    int length = script.getBytes(StandardCharsets.UTF_8).length;
+    Random random = new Random(42);
+    findingOffsets = new int[findings];
+    for (int i = 0; i < findings; i++) {
+      findingOffsets[i] = random.nextInt(length);
+    }
+  }
+
+  @Benchmark
+  public void countLinePerFinding(Blackhole blackhole) {
+    for (int offset : findingOffsets) {
+      blackhole.consume(LegacyLineCounter.countLine(script, offset));
+    }
+  }
+
+  @Benchmark
+  public void sharedLineIndex(Blackhole blackhole) {
+    LineIndex lineIndex = new LineIndex(script);
+    for (int offset : findingOffsets) {
+      blackhole.consume(lineIndex.lineAt(offset));
+    }
+  }
+
+  @Benchmark
+  public void sharedLineIndexColumns(Blackhole blackhole) {
+    LineIndex lineIndex = new LineIndex(script);
+    for (int offset : findingOffsets) {
+      blackhole.consume(lineIndex.columnAt(offset));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(
+        args.length > 0 ? args : new String[] {LineIndexBenchmark.class.getSimpleName()});
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.benchmark;
+
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.Parser;
+import com.google.zetasql.parser.ASTNodes.ASTScript;
+import com.google.zetasql.parser.ParseTreeVisitor;
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares parsing every query once per parser visitor (the previous behaviour) with parsing it a
+ * single time and sharing the AST across all parser visitors.
+ *
+ * <p>Runs over the sample queries in samples/queries/input:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.google.zetasql.toolkit.antipattern.benchmark.ParseOnceBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ParseOnceBenchmark {
+
+  @Param({"../samples/queries/input"})
+  public String queriesDir;
+
+  private List<InputQuery> inputQueries;
+  private AntiPatternHelper antiPatternHelper;
+  private LanguageOptions languageOptions;
+
+  @Setup
+  public void setUp() throws IOException {
+    inputQueries = loadQueries(Paths.get(queriesDir));
+    antiPatternHelper = new AntiPatternHelper(null, false);
+    languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+    languageOptions.enableReservableKeyword("QUALIFY");
+  }
+
+  @Benchmark
+  public void parsePerVisitor(Blackhole blackhole) {
+    for (InputQuery inputQuery : inputQueries) {
+      for (AntiPatternVisitor visitor :
+          antiPatternHelper.getParserVisitorList(inputQuery.getQuery())) {
+        ASTScript parsedQuery = Parser.parseScript(inputQuery.getQuery(), languageOptions);
+        parsedQuery.accept((ParseTreeVisitor) visitor);
+        blackhole.consume(visitor.getResult());
+      }
+    }
+  }
+
+  @Benchmark
+  public void parseOnce(Blackhole blackhole) {
+    for (InputQuery inputQuery : inputQueries) {
+      List<AntiPatternVisitor> visitorsThatFoundAntiPatterns = new ArrayList<>();
+      antiPatternHelper.checkForAntiPatternsInQueryWithParserVisitors(
+          inputQuery, visitorsThatFoundAntiPatterns);
+      blackhole.consume(visitorsThatFoundAntiPatterns);
+    }
+  }
+
+  static List<InputQuery> loadQueries(Path dir) throws IOException {
+    List<InputQuery> queries = new ArrayList<>();
+    List<Path> files;
+    try (Stream<Path> paths = Files.list(dir)) {
+      files =
+          paths
+              .filter(path -> path.toString().endsWith(".sql"))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      queries.add(new InputQuery(Files.readString(file), file.toString()));
+    }
+    return queries;
+  }
+
+  public static void main(String[] args) throws Exception {
+    org.openjdk.jmh.Main.main(
+        args.length > 0 ? args : new String[] {ParseOnceBenchmark.class.getSimpleName()});
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentResultStoreTest {
+
+  private static final long TTL_MILLIS = 1000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static QueryResultCache.CachedResult result(String name, String optimizedQuery) {
+    List<AntiPatternVisitor> findings =
+        Arrays.asList(new RecordedAntiPattern(name, "result of " + name));
+    return new QueryResultCache.CachedResult(findings, optimizedQuery);
+  }
+
+  @Test
+  public void persistsResultsAcrossRunsTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      assertNull(store.get("key_1"));
+      store.put("key_1", result("SimpleSelectStar", "SELECT a FROM t"), false);
+      store.put("key_2", result("OrderByWithoutLimit", null), false);
+      assertEquals(1, store.getMissCount());
+    }
+
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      assertEquals(2, store.size());
+      QueryResultCache.CachedResult stored = store.get("key_1");
+      assertEquals("SimpleSelectStar", stored.getFindings().get(0).getName());
+      assertEquals("result of SimpleSelectStar", stored.getFindings().get(0).getResult());
+      assertEquals("SELECT a FROM t", stored.getOptimizedQuery());
+      assertNull(store.get("key_2").getOptimizedQuery());
+      assertNull(store.get("key_3"));
+    }
+  }
+
+  @Test
+  public void invalidatesResultsOfOtherRuleSetVersionTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      store.put("key_1", result("SimpleSelectStar", null), false);
+    }
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v2", TTL_MILLIS)) {
+      assertEquals(0, store.size());
+      assertNull(store.get("key_1"));
+    }
+  }
+
+  @Test
+  public void rebuildsMissingIndexAndGrowsTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    int results = 100_000;
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      for (int i = 0; i < results; i++) {
+        store.put("key_" + i, result("rule_" + i, null), false);
+      }
+    }
+    Files.delete(dir.resolve(PersistentResultStore.INDEX_FILE_NAME));
+
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      assertEquals(results, store.size());
+      assertEquals("rule_12345", store.get("key_12345").getFindings().get(0).getName());
+      assertEquals("rule_99999", store.get("key_99999").getFindings().get(0).getName());
+    }
+  }
+
+  private static PersistentResultStore openStore(Path dir, AtomicLong clock) throws IOException {
+    return new PersistentResultStore(dir, "v1", TTL_MILLIS, clock::get);
+  }
+
+  @Test
+  public void expiresAnalyzedResultsTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    AtomicLong clock = new AtomicLong(-500);
+    try (PersistentResultStore store = openStore(dir, clock)) {
+      store.put("parsed", result("SimpleSelectStar", null), false);
+      store.put("analyzed", result("MissingPartitioning", null), true);
+    }
+    clock.set(499);
+    try (PersistentResultStore store = openStore(dir, clock)) {
+      assertNotNull(store.get("analyzed"));
+    }
+    // the table metadata may have changed since
+    clock.set(500);
+    try (PersistentResultStore store = openStore(dir, clock)) {
+      assertNull(store.get("analyzed"));
+      assertNotNull(store.get("parsed"));
+    }
+  }
+
+  @Test
+  public void storesOnlyParsedResultsWithoutTtlTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", 0)) {
+      store.put("parsed", result("SimpleSelectStar", null), false);
+      store.put("analyzed", result("MissingPartitioning", null), true);
+      assertEquals(1, store.size());
+      assertNull(store.get("analyzed"));
+    }
+  }
+
+  @Test
+  public void replacesResultWithoutGrowingTest() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    Path indexFile = dir.resolve(PersistentResultStore.INDEX_FILE_NAME);
+    try (PersistentResultStore store = new PersistentResultStore(dir, "v1", TTL_MILLIS)) {
+      // the index grows past half full
+      for (int i = 0; i < (1 << 15); i++) {
+        store.put("key_" + i, result("rule_" + i, null), false);
+      }
+      long indexBytes = Files.size(indexFile);
+      store.put("key_0", result("rule_0_again", null), false);
+      assertEquals(indexBytes, Files.size(indexFile));
+      assertEquals("rule_0_again", store.get("key_0").getFindings().get(0).getName());
+      store.put("key_new", result("rule_new", null), false);
+      assertEquals(2 * indexBytes - 16, Files.size(indexFile));
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.Parser;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import java.util.List;
+import org.junit.Test;
+
+public class QueryFingerprinterTest {
+
+  private final QueryFingerprinter fingerprinter = new QueryFingerprinter();
+
+  @Test
+  public void ignoresLiteralValuesTest() {
+    String first =
+        "SELECT * FROM dataset.t WHERE dt = DATE '2024-01-01' AND id IN (10, 20) AND x > 1.5";
+    String second =
+        "SELECT * FROM dataset.t WHERE dt = DATE '2024-12-31' AND id IN (7, 99) AND x > 0.25";
+    assertEquals(fingerprinter.fingerprint(first), fingerprinter.fingerprint(second));
+    assertEquals(
+        "SELECT * FROM dataset.t WHERE dt = DATE ?str AND id IN (?int, ?int) AND x > ?float"
+            + "\u0000"
+            + "0,0,0,0,",
+        fingerprinter.normalize(first));
+  }
+
+  @Test
+  public void keepsStructureTest() {
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE id = 10"),
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE name = 'x'"));
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT a FROM dataset.t ORDER BY a LIMIT 10"),
+        fingerprinter.fingerprint("SELECT a FROM dataset.t ORDER BY a"));
+  }
+
+  @Test
+  public void keepsLiteralTypesTest() {
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE id = 10"),
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE id = '10'"));
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE x > 10"),
+        fingerprinter.fingerprint("SELECT a FROM dataset.t WHERE x > 1.5"));
+  }
+
+  @Test
+  public void relocatesOffsetsToQueryWithSameFingerprintTest() {
+    String first = "SELECT a FROM dataset.t WHERE id = 10 AND s = 'x' ORDER BY a";
+    String second = "SELECT a FROM dataset.t WHERE id = 12345 AND s = 'longer' ORDER BY a";
+    QueryFingerprinter.Fingerprint firstFingerprint =
+        fingerprinter.fingerprint(first, Parser.parseScript(first, languageOptions()));
+    QueryFingerprinter.Fingerprint secondFingerprint =
+        fingerprinter.fingerprint(second, Parser.parseScript(second, languageOptions()));
+    assertEquals(firstFingerprint.getValue(), secondFingerprint.getValue());
+
+    // before, after and inside the literals
+    assertEquals(7, secondFingerprint.relocate(7, firstFingerprint));
+    assertEquals(
+        second.indexOf("ORDER"),
+        secondFingerprint.relocate(first.indexOf("ORDER"), firstFingerprint));
+    assertEquals(
+        second.indexOf("'longer'"),
+        secondFingerprint.relocate(first.indexOf("'x'") + 1, firstFingerprint));
+  }
+
+  private static LanguageOptions languageOptions() {
+    LanguageOptions languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+    return languageOptions;
+  }
+
+  @Test
+  public void keepsLineLayoutTest() {
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT '''a\nb''' AS s,\n x FROM dataset.t"),
+        fingerprinter.fingerprint("SELECT '''ab''' AS s,\n x FROM dataset.t"));
+  }
+
+  @Test
+  public void keepsLiteralsReadByRulesTest() {
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT * FROM t WHERE REGEXP_CONTAINS(s, '.*a.*')"),
+        fingerprinter.fingerprint("SELECT * FROM t WHERE REGEXP_CONTAINS(s, '^a')"));
+    assertNotEquals(
+        fingerprinter.fingerprint("SELECT * FROM t WHERE rn = 1"),
+        fingerprinter.fingerprint("SELECT * FROM t WHERE rn = 2"));
+  }
+
+  @Test
+  public void aggregatesStatsPerFingerprintTest() {
+    FingerprintStats stats = new FingerprintStats();
+    stats.record("a", new InputQuery("SELECT 1", "job_1", 1.5f));
+    stats.record("a", new InputQuery("SELECT 2", "job_2", 2.5f));
+    stats.record("b", new InputQuery("SELECT 'x'", "job_3", 10f));
+
+    List<FingerprintStats.FingerprintGroup> groups = stats.getGroups();
+    assertEquals(2, groups.size());
+    assertEquals("b", groups.get(0).getFingerprint());
+    assertEquals("job_1", groups.get(1).getFirstQueryId());
+    assertEquals(2, groups.get(1).getOccurrences());
+    assertEquals(4.0, groups.get(1).getTotalSlotHours(), 0.0001);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class QueryResultCacheTest {
+
+  private static QueryResultCache.CachedResult result(String name) {
+    List<AntiPatternVisitor> findings =
+        Arrays.asList(new RecordedAntiPattern(name, "result of " + name));
+    return new QueryResultCache.CachedResult(findings, "SELECT 1");
+  }
+
+  @Test
+  public void duplicateQueriesShareKeyTest() {
+    InputQuery first = new InputQuery("SELECT * FROM t", "job_1", "project_a", "a@x.com", 1.5f);
+    InputQuery duplicate =
+        new InputQuery("SELECT * FROM t", "job_2", "project_b", "b@x.com", 3.0f);
+
+    assertEquals(
+        QueryResultCache.keyFor(first, false), QueryResultCache.keyFor(duplicate, false));
+    assertNotEquals(
+        QueryResultCache.keyFor(first, true), QueryResultCache.keyFor(duplicate, true));
+    assertNotEquals(
+        QueryResultCache.keyFor(first, false),
+        QueryResultCache.keyFor(new InputQuery("SELECT * FROM t2", "job_3"), false));
+    // runs with other settings keep their results apart
+    assertNotEquals(
+        QueryResultCache.keyFor("SELECT * FROM t", null, false, "rules=JoinOrder"),
+        QueryResultCache.keyFor("SELECT * FROM t", null, false, "rules=WhereOrder"));
+  }
+
+  @Test
+  public void replaysCachedResultTest() {
+    QueryResultCache cache = new QueryResultCache(10);
+    String key = QueryResultCache.keyFor(new InputQuery("SELECT 1", "job_1"), false);
+    assertNull(cache.get(key));
+    cache.put(key, result("SimpleSelectStar"));
+
+    QueryResultCache.CachedResult cachedResult = cache.get(key);
+    assertEquals("SimpleSelectStar", cachedResult.getFindings().get(0).getName());
+    assertEquals("result of SimpleSelectStar", cachedResult.getFindings().get(0).getResult());
+    assertEquals("SELECT 1", cachedResult.getOptimizedQuery());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedTest() {
+    QueryResultCache cache = new QueryResultCache(2);
+    cache.put("a", result("a"));
+    cache.put("b", result("b"));
+    cache.get("a");
+    cache.put("c", result("c"));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertEquals("a", cache.get("a").getFindings().get(0).getName());
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.checkpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.cmd.AntiPatternCommandParser;
+import com.google.zetasql.toolkit.antipattern.cmd.InputCursor;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.cmd.ResumableInput;
+import com.google.zetasql.toolkit.antipattern.output.OutputWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointManagerTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Writes query ids to a list, its state is the number of ids written. */
+  private static class ListOutputWriter extends OutputWriter {
+    private final List<String> written = new ArrayList<>();
+
+    @Override
+    public void writeRecForQuery(
+        InputQuery inputQuery,
+        List<AntiPatternVisitor> visitorsThatFoundPatterns,
+        AntiPatternCommandParser cmdParser) {
+      written.add(inputQuery.getQueryId());
+    }
+
+    @Override
+    public String commit() {
+      return String.valueOf(written.size());
+    }
+
+    @Override
+    public void resume(String committedState) {
+      int committed = Integer.parseInt(committedState);
+      written.subList(committed, written.size()).clear();
+    }
+  }
+
+  /** Reads the queries of a list, resumes at the position of the cursor. */
+  private static class ListInput implements Iterator<InputQuery>, ResumableInput {
+    private final List<InputQuery> queries;
+    private int position = 0;
+
+    private ListInput(List<InputQuery> queries) {
+      this.queries = queries;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return position < queries.size();
+    }
+
+    @Override
+    public InputQuery next() {
+      return queries.get(position++);
+    }
+
+    @Override
+    public InputCursor getCursor() {
+      return new InputCursor(position);
+    }
+
+    @Override
+    public void resume(InputCursor cursor) {
+      position = (int) cursor.getPosition();
+    }
+  }
+
+  private static Iterator<InputQuery> queries(int n) {
+    List<InputQuery> queries = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      queries.add(new InputQuery("SELECT " + i, "query_" + i));
+    }
+    return new ListInput(queries);
+  }
+
+  private static void process(
+      Iterator<InputQuery> input, int count, ListOutputWriter output, CheckpointManager manager) {
+    for (int i = 0; i < count && input.hasNext(); i++) {
+      InputQuery inputQuery = input.next();
+      output.writeRecForQuery(inputQuery, new ArrayList<>(), null);
+      manager.onQueryDone(inputQuery);
+    }
+  }
+
+  @Test
+  public void resumesWithoutDuplicateOutputTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("checkpoint.json").toString();
+    ListOutputWriter output = new ListOutputWriter();
+    // checkpoint after every query
+    CheckpointManager manager = new CheckpointManager(path, 0, output);
+    Iterator<InputQuery> input = manager.track(queries(10), null);
+    process(input, 4, output, manager);
+
+    // the queries written after the last checkpoint are dropped when resuming
+    CheckpointManager interrupted = new CheckpointManager(path, 3600, output);
+    Iterator<InputQuery> interruptedInput =
+        interrupted.track(queries(10), CheckpointManager.read(path));
+    process(interruptedInput, 3, output, interrupted);
+    assertEquals(7, output.written.size());
+
+    CheckpointManager resumed = new CheckpointManager(path, 3600, output);
+    Iterator<InputQuery> resumedInput = resumed.track(queries(10), CheckpointManager.read(path));
+    process(resumedInput, 10, output, resumed);
+    resumed.complete();
+
+    List<String> expected = new ArrayList<>();
+    queries(10).forEachRemaining(query -> expected.add(query.getQueryId()));
+    assertEquals(expected, output.written);
+    assertFalse(Files.exists(folder.getRoot().toPath().resolve("checkpoint.json")));
+    assertNull(CheckpointManager.read(path));
+  }
+
+  @Test
+  public void checkpointsOnlyContiguousPrefixTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("checkpoint.json").toString();
+    ListOutputWriter output = new ListOutputWriter();
+    CheckpointManager manager = new CheckpointManager(path, 0, output);
+    Iterator<InputQuery> input = manager.track(queries(3), null);
+    InputQuery first = input.next();
+    InputQuery second = input.next();
+    InputQuery third = input.next();
+
+    // finishing out of order, no checkpoint until the first query is done
+    manager.onQueryDone(second);
+    manager.onQueryDone(third);
+    assertEquals(0, manager.getCheckpointCount());
+    manager.onQueryDone(first);
+    assertEquals(1, manager.getCheckpointCount());
+    assertEquals(3, CheckpointManager.read(path).getInputCursor().getPosition());
+  }
+
+  @Test
+  public void checkpointsQueriesFinishedOutOfOrderTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("checkpoint.json").toString();
+    ListOutputWriter output = new ListOutputWriter();
+    CheckpointManager manager = new CheckpointManager(path, 0, output);
+    Iterator<InputQuery> input = manager.track(queries(5), null);
+    List<InputQuery> read = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      read.add(input.next());
+    }
+
+    // query_1 is still running when the run is interrupted
+    for (int i : new int[] {0, 2, 3}) {
+      output.writeRecForQuery(read.get(i), new ArrayList<>(), null);
+      manager.onQueryDone(read.get(i));
+    }
+    Checkpoint checkpoint = CheckpointManager.read(path);
+    assertEquals(1, checkpoint.getInputCursor().getPosition());
+    assertEquals(Arrays.asList(2L, 3L), checkpoint.getWrittenPositions());
+
+    CheckpointManager resumed = new CheckpointManager(path, 0, output);
+    Iterator<InputQuery> resumedInput = resumed.track(queries(5), checkpoint);
+    process(resumedInput, 5, output, resumed);
+
+    assertEquals(
+        Arrays.asList("query_0", "query_2", "query_3", "query_1", "query_4"), output.written);
+    assertEquals(5, CheckpointManager.read(path).getInputCursor().getPosition());
+  }
+
+  @Test
+  public void skipsWrittenQueriesWithoutSavingTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("checkpoint.json").toString();
+    ListOutputWriter output = new ListOutputWriter();
+    // query_0 and query_2 were written, query_1 was still running
+    Checkpoint checkpoint = new Checkpoint();
+    checkpoint.setInputCursor(new InputCursor(1));
+    checkpoint.setWrittenPositions(Arrays.asList(2L));
+    checkpoint.setOutputState("0");
+
+    // skipping query_2 while reading must not commit the output from the reading thread
+    CheckpointManager resumed = new CheckpointManager(path, 0, output);
+    Iterator<InputQuery> resumedInput = resumed.track(queries(4), checkpoint);
+    assertEquals("query_1", resumedInput.next().getQueryId());
+    assertEquals("query_3", resumedInput.next().getQueryId());
+    assertEquals(0, resumed.getCheckpointCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsResumingInputThatIsNotResumableTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("checkpoint.json").toString();
+    ListOutputWriter output = new ListOutputWriter();
+    CheckpointManager manager = new CheckpointManager(path, 0, output);
+    process(manager.track(queries(3), null), 2, output, manager);
+
+    List<InputQuery> queries = new ArrayList<>();
+    queries.add(new InputQuery("SELECT 0", "query_0"));
+    new CheckpointManager(path, 0, output)
+        .track(queries.iterator(), CheckpointManager.read(path));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FolderWalkerTest {
+
+  private static final List<String> FILES =
+      Arrays.asList(
+          "b.sql",
+          "a.sql",
+          "notes.md",
+          "models/staging/orders.sql",
+          "models/marts/customers.sql",
+          "target/compiled/orders.sql");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private List<String> walkLocal(InputPathFilter filter) throws IOException {
+    Path root = temporaryFolder.getRoot().toPath();
+    for (String file : FILES) {
+      Path path = root.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, "SELECT 1");
+    }
+    List<String> relativePaths = new ArrayList<>();
+    FolderWalker.walk(root.toString(), filter, null)
+        .forEachRemaining(
+            path -> relativePaths.add(root.toAbsolutePath().relativize(Path.of(path)).toString()));
+    return relativePaths;
+  }
+
+  private List<String> walkGCS(InputPathFilter filter) {
+    Storage storage = LocalStorageHelper.getOptions().getService();
+    for (String file : FILES) {
+      storage.create(
+          BlobInfo.newBuilder(BlobId.of("bucket", "repo/" + file)).build(), "SELECT 1".getBytes());
+    }
+    // placeholder of a directory, as created by the console
+    storage.create(BlobInfo.newBuilder(BlobId.of("bucket", "repo/models/")).build(), new byte[0]);
+    List<String> relativePaths = new ArrayList<>();
+    FolderWalker.walk("gs://bucket/repo", filter, new GCSHelper(storage))
+        .forEachRemaining(path -> relativePaths.add(path.substring("gs://bucket/repo/".length())));
+    return relativePaths;
+  }
+
+  @Test
+  public void walksLocalFolderRecursivelyInOrderTest() throws IOException {
+    assertEquals(
+        Arrays.asList(
+            "a.sql",
+            "b.sql",
+            "models/marts/customers.sql",
+            "models/staging/orders.sql",
+            "notes.md",
+            "target/compiled/orders.sql"),
+        walkLocal(new InputPathFilter(null, null)));
+  }
+
+  @Test
+  public void filtersLocalFolderWithGlobsTest() throws IOException {
+    assertEquals(
+        Arrays.asList("models/marts/customers.sql", "models/staging/orders.sql"),
+        walkLocal(
+            new InputPathFilter(
+                Collections.singletonList("models/**"), Collections.singletonList("*.md"))));
+    assertEquals(
+        Arrays.asList("a.sql", "b.sql", "models/staging/orders.sql"),
+        walkLocal(
+            new InputPathFilter(
+                Collections.singletonList("**.sql"), Arrays.asList("target", "**/marts"))));
+  }
+
+  @Test
+  public void walksGCSFolderWithGlobsTest() {
+    assertEquals(
+        Arrays.asList(
+            "a.sql",
+            "b.sql",
+            "models/marts/customers.sql",
+            "models/staging/orders.sql",
+            "notes.md",
+            "target/compiled/orders.sql"),
+        walkGCS(new InputPathFilter(null, null)));
+    assertEquals(
+        Arrays.asList("a.sql", "b.sql", "models/staging/orders.sql"),
+        walkGCS(
+            new InputPathFilter(
+                Collections.singletonList("**.sql"), Arrays.asList("target", "**/marts"))));
+  }
+}
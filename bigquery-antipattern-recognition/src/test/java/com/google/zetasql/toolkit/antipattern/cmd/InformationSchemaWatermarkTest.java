@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InformationSchemaWatermarkTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void missingFileReadsFullWindowTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("watermark.json").toString();
+    InformationSchemaWatermark watermark = InformationSchemaWatermark.read(path, 15);
+    assertFalse(watermark.hasWatermark());
+  }
+
+  @Test
+  public void resumesFromNewestJobWithOverlapTest() throws IOException {
+    String path = folder.getRoot().toPath().resolve("watermark.json").toString();
+    long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    InformationSchemaWatermark watermark = InformationSchemaWatermark.read(path, 15);
+    watermark.record("project:US.job_old", now - TimeUnit.HOURS.toMicros(1));
+    watermark.record("project:US.job_new", now);
+    watermark.record("project:US.job_recent", now - TimeUnit.MINUTES.toMicros(5));
+    watermark.write(path);
+
+    InformationSchemaWatermark resumed = InformationSchemaWatermark.read(path, 15);
+    assertTrue(resumed.hasWatermark());
+    assertEquals("project:US.job_new", resumed.getJobId());
+    assertEquals(now - TimeUnit.MINUTES.toMicros(15), resumed.getReadFromMicros());
+    // jobs in the overlap are skipped, older ones are not read again anyway
+    assertTrue(resumed.isRead("project:US.job_new"));
+    assertTrue(resumed.isRead("project:US.job_recent"));
+    assertFalse(resumed.isRead("project:US.job_old"));
+  }
+
+  @Test
+  public void readsStateFileOfCreationTimesTest() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("watermark.json");
+    Files.write(
+        path,
+        "{\"creationTimeMicros\":1000000000,\"jobId\":\"project:US.job\",\"recentJobs\":{}}"
+            .getBytes(StandardCharsets.UTF_8));
+
+    InformationSchemaWatermark watermark = InformationSchemaWatermark.read(path.toString(), 0);
+    assertTrue(watermark.hasWatermark());
+    assertEquals(1000000000L, watermark.getEndTimeMicros());
+  }
+}
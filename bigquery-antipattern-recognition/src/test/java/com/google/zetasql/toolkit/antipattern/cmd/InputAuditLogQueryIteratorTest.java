@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InputAuditLogQueryIteratorTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static String logEntry(
+      String jobId, String state, String type, String statementType, long slotMs, String query) {
+    return "{\"protoPayload\": {"
+        + "\"authenticationInfo\": {\"principalEmail\": \"user@example.com\"},"
+        + "\"metadata\": {"
+        + "\"@type\": \"type.googleapis.com/google.cloud.audit.BigQueryAuditMetadata\","
+        + "\"jobChange\": {\"before\": \"RUNNING\", \"after\": \""
+        + state
+        + "\", \"job\": {"
+        + "\"jobName\": \"projects/project/jobs/"
+        + jobId
+        + "\", \"jobConfig\": {\"type\": \""
+        + type
+        + "\", \"queryConfig\": {\"query\": \""
+        + query
+        + "\", \"statementType\": \""
+        + statementType
+        + "\", \"destinationTable\": \"projects/project/datasets/d/tables/t\"}},"
+        + "\"jobStats\": {\"totalSlotMs\": \""
+        + slotMs
+        + "\", \"queryStats\": {\"referencedTables\": [\"projects/p/datasets/d/tables/a\"]}}}}}},"
+        + " \"resource\": {\"type\": \"bigquery_project\","
+        + " \"labels\": {\"project_id\": \"project\", \"location\": \"us\"}}}\n";
+  }
+
+  private static String queryJob(String jobId, long slotMs) {
+    return logEntry(jobId, "DONE", "QUERY", "SELECT", slotMs, "SELECT " + slotMs);
+  }
+
+  private Path writeExport() throws IOException {
+    Path folder = temporaryFolder.getRoot().toPath().resolve("data_access");
+    Files.createDirectories(folder.resolve("2024/01/01"));
+    Files.createDirectories(folder.resolve("2024/01/02"));
+    Files.writeString(
+        folder.resolve("2024/01/01/00_S0.json"),
+        queryJob("job_1", 7_200_000)
+            + queryJob("job_2", 100)
+            + logEntry("job_3", "RUNNING", "QUERY", "SELECT", 9_000_000, "SELECT 3")
+            + logEntry("job_4", "DONE", "LOAD", "SELECT", 9_000_000, "SELECT 4")
+            + logEntry("job_5", "DONE", "QUERY", "SCRIPT", 9_000_000, "SELECT 5")
+            + logEntry(
+                "job_6",
+                "DONE",
+                "QUERY",
+                "SELECT",
+                9_000_000,
+                "SELECT * FROM INFORMATION_SCHEMA.JOBS")
+            // not a job change
+            + "{\"protoPayload\": {"
+            + "\"methodName\": \"google.cloud.bigquery.v2.TableService.GetTable\","
+            + " \"metadata\": {\"tableDataRead\": {}}}}\n",
+        StandardCharsets.UTF_8);
+    try (OutputStream stream =
+        new GZIPOutputStream(Files.newOutputStream(folder.resolve("2024/01/02/00_S0.json.gz")))) {
+      stream.write(
+          (queryJob("job_7", 3_600_000) + queryJob("job_8", 3_600_000) + queryJob("job_9", 50))
+              .getBytes(StandardCharsets.UTF_8));
+    }
+    Files.writeString(folder.resolve("README.txt"), "not an export");
+    return folder;
+  }
+
+  private static List<String> readJobIds(InputAuditLogQueryIterator iterator) {
+    List<String> jobIds = new ArrayList<>();
+    iterator.forEachRemaining(inputQuery -> jobIds.add(inputQuery.getQueryId()));
+    return jobIds;
+  }
+
+  private static InputAuditLogQueryIterator newIterator(
+      Path path, long slotMsMin, float topNPercent) {
+    return new InputAuditLogQueryIterator(
+        path.toString(),
+        new InputPathFilter(null, null, InputAuditLogQueryIterator.DEFAULT_INCLUDE_GLOB),
+        slotMsMin,
+        topNPercent,
+        null);
+  }
+
+  @Test
+  public void readsCompletedQueryJobsTest() throws IOException {
+    InputAuditLogQueryIterator iterator = newIterator(writeExport(), 0, 2);
+    InputQuery first = iterator.next();
+    assertEquals("project:US.job_1", first.getQueryId());
+    assertEquals("project", first.getProjectId());
+    assertEquals("user@example.com", first.getUserEmail());
+    assertEquals("SELECT 7200000", first.getQuery());
+    assertEquals(2.0, first.getSlotHours(), 0.0001);
+    assertEquals(
+        Arrays.asList(
+            "project:US.job_2", "project:US.job_7", "project:US.job_8", "project:US.job_9"),
+        readJobIds(iterator));
+  }
+
+  @Test
+  public void skipsEntriesWithInvalidSlotMsTest() throws IOException {
+    Path export = temporaryFolder.getRoot().toPath().resolve("invalid_slot_ms.json");
+    Files.writeString(
+        export,
+        queryJob("job_1", 1).replace("\"totalSlotMs\": \"1\"", "\"totalSlotMs\": \"n/a\"")
+            + queryJob("job_2", 2),
+        StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList("project:US.job_2"), readJobIds(newIterator(export, 0, 1)));
+  }
+
+  @Test
+  public void selectsTopPercentOfJobsTest() throws IOException {
+    Path export = writeExport();
+    // 5 jobs, PERCENT_RANK() of 0, 0.25, 0.25, 0.75 and 1, ties are kept together
+    assertEquals(Arrays.asList("project:US.job_1"), readJobIds(newIterator(export, 0, 0.25F)));
+    assertEquals(
+        Arrays.asList("project:US.job_1", "project:US.job_7", "project:US.job_8"),
+        readJobIds(newIterator(export, 0, 0.3F)));
+    // PERCENT_RANK() of 0, 0.5 and 0.5 once the jobs under the minimum slot ms are filtered out
+    assertEquals(
+        Arrays.asList("project:US.job_1", "project:US.job_7", "project:US.job_8"),
+        readJobIds(newIterator(export, 1000, 0.6F)));
+    assertEquals(0, readJobIds(newIterator(export, 0, 0)).size());
+  }
+
+  @Test
+  public void matchesPercentRankTest() {
+    for (long jobCount = 0; jobCount < 50; jobCount++) {
+      for (float topNPercent : new float[] {0, 0.01F, 0.1F, 0.25F, 0.5F, 0.99F, 1, 2}) {
+        long expected = 0;
+        for (long position = 1; position <= jobCount; position++) {
+          double percentRank = jobCount == 1 ? 0 : (position - 1) / (double) (jobCount - 1);
+          if (percentRank < Double.parseDouble(Float.toString(topNPercent))) {
+            expected++;
+          }
+        }
+        assertEquals(expected, InputAuditLogQueryIterator.selectedCount(jobCount, topNPercent));
+      }
+    }
+  }
+
+  @Test
+  public void resumesAfterQueriesTest() throws IOException {
+    InputAuditLogQueryIterator iterator = newIterator(writeExport(), 0, 2);
+    iterator.resume(new InputCursor(3));
+    assertEquals(Arrays.asList("project:US.job_8", "project:US.job_9"), readJobIds(iterator));
+    assertEquals(5, iterator.getCursor().getPosition());
+  }
+}
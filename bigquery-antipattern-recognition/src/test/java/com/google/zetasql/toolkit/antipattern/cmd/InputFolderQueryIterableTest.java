@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InputFolderQueryIterableTest {
+
+  private static final int FILE_COUNT = 100;
+
+  private Storage storage;
+  private List<String> filePaths;
+
+  @Before
+  public void setUp() {
+    storage = LocalStorageHelper.getOptions().getService();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      storage.create(
+          BlobInfo.newBuilder(BlobId.of("bucket", String.format("queries/q%03d.sql", i))).build(),
+          ("SELECT " + i).getBytes(StandardCharsets.UTF_8));
+    }
+    filePaths = new ArrayList<>();
+    FolderWalker.walk("gs://bucket/queries", new InputPathFilter(null, null), new GCSHelper(storage))
+        .forEachRemaining(filePaths::add);
+  }
+
+  // Fails the first reads of objects with a transient error
+  private static Storage failingFirstReads(Storage storage, int failures) {
+    return failingFirstReads(storage, new AtomicInteger(failures), 503);
+  }
+
+  private static Storage failingFirstReads(
+      Storage storage, AtomicInteger remainingFailures, int code) {
+    return (Storage)
+        Proxy.newProxyInstance(
+            Storage.class.getClassLoader(),
+            new Class<?>[] {Storage.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("get") && remainingFailures.getAndDecrement() > 0) {
+                throw new StorageException(code, "Failed with " + code);
+              }
+              try {
+                return method.invoke(storage, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
+  @Test
+  public void readsFilesAheadInOrderTest() {
+    InputFolderQueryIterable iterable =
+        new InputFolderQueryIterable(filePaths.iterator(), new GCSHelper(storage), 4, 1);
+    for (int i = 0; i < FILE_COUNT; i++) {
+      InputQuery inputQuery = iterable.next();
+      assertEquals(String.format("gs://bucket/queries/q%03d.sql", i), inputQuery.getQueryId());
+      assertEquals("SELECT " + i, inputQuery.getQuery());
+    }
+    assertFalse(iterable.hasNext());
+  }
+
+  @Test
+  public void retriesTransientErrorsTest() {
+    InputFolderQueryIterable iterable =
+        new InputFolderQueryIterable(
+            filePaths.iterator(), new GCSHelper(failingFirstReads(storage, 3)), 1, 1);
+    assertEquals("SELECT 0", iterable.next().getQuery());
+    assertEquals("SELECT 1", iterable.next().getQuery());
+  }
+
+  @Test
+  public void failsAfterLastAttemptTest() {
+    InputFolderQueryIterable iterable =
+        new InputFolderQueryIterable(
+            filePaths.subList(0, 1).iterator(),
+            new GCSHelper(failingFirstReads(storage, InputFolderQueryIterable.MAX_READ_ATTEMPTS)),
+            1,
+            1);
+    try {
+      iterable.next();
+      fail();
+    } catch (StorageException e) {
+      assertEquals(503, e.getCode());
+    }
+  }
+
+  @Test
+  public void doesNotRetryPermanentErrorsTest() {
+    AtomicInteger remainingFailures = new AtomicInteger(2);
+    InputFolderQueryIterable iterable =
+        new InputFolderQueryIterable(
+            filePaths.subList(0, 1).iterator(),
+            new GCSHelper(failingFirstReads(storage, remainingFailures, 403)),
+            1,
+            1);
+    try {
+      iterable.next();
+      fail();
+    } catch (StorageException e) {
+      assertEquals(403, e.getCode());
+    }
+    assertEquals(1, remainingFailures.get());
+  }
+
+  @Test
+  public void resumesFromCursorTest() {
+    InputFolderQueryIterable iterable =
+        new InputFolderQueryIterable(filePaths.iterator(), new GCSHelper(storage), 4, 1);
+    iterable.resume(new InputCursor(50));
+    assertEquals("SELECT 50", iterable.next().getQuery());
+    assertEquals(51, iterable.getCursor().getPosition());
+  }
+}
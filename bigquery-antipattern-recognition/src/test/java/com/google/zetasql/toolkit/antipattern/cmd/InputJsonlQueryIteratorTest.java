@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.google.zetasql.toolkit.antipattern.util.GCSHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InputJsonlQueryIteratorTest {
+
+  private static final String JSONL =
+      "{\"job_id\": \"job_1\", \"project_id\": \"project\", \"user_email\": \"a@example.com\","
+          + " \"total_slot_ms\": \"7200000\", \"labels\": [{\"key\": \"k\"}],"
+          + " \"query\": \"SELECT 1\"}\n"
+          + "{\"job_id\": \"job_2\", \"query\": null}\n"
+          + "\n"
+          + "{\"job_id\": \"job_3\", \"query\": \"SELECT\\n  3\", \"slot_hours\": 0.5}\n"
+          + "{\"query\": \"SELECT 4\", \"total_slot_ms\": null}\n";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private interface Compression {
+    OutputStream wrap(OutputStream stream) throws IOException;
+  }
+
+  private static byte[] compress(Compression compression) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream stream = compression.wrap(bytes)) {
+      stream.write(JSONL.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  private String writeFile(String name, byte[] content) throws IOException {
+    Path path = temporaryFolder.getRoot().toPath().resolve(name);
+    Files.write(path, content);
+    return path.toString();
+  }
+
+  private static void assertReadsAll(InputJsonlQueryIterator iterator, String path) {
+    InputQuery first = iterator.next();
+    assertEquals("job_1", first.getQueryId());
+    assertEquals("project", first.getProjectId());
+    assertEquals("a@example.com", first.getUserEmail());
+    assertEquals(2.0, first.getSlotHours(), 0.0001);
+    assertEquals("SELECT 1", first.getQuery());
+
+    InputQuery third = iterator.next();
+    assertEquals("job_3", third.getQueryId());
+    assertEquals("SELECT\n  3", third.getQuery());
+    assertEquals(0.5, third.getSlotHours(), 0.0001);
+    assertNull(third.getUserEmail());
+
+    InputQuery fourth = iterator.next();
+    assertEquals(path + ":4", fourth.getQueryId());
+    assertEquals(-1, fourth.getSlotHours(), 0.0001);
+    assertFalse(iterator.hasNext());
+    assertEquals(4, iterator.getCursor().getPosition());
+  }
+
+  @Test
+  public void readsPlainFileTest() throws IOException {
+    String path = writeFile("jobs.jsonl", JSONL.getBytes(StandardCharsets.UTF_8));
+    assertReadsAll(new InputJsonlQueryIterator(path, null), path);
+  }
+
+  @Test
+  public void readsCompressedFilesTest() throws IOException {
+    String gzipPath = writeFile("jobs.jsonl.gz", compress(GZIPOutputStream::new));
+    assertReadsAll(new InputJsonlQueryIterator(gzipPath, null), gzipPath);
+    String zstdPath = writeFile("jobs.jsonl.zst", compress(ZstdOutputStream::new));
+    assertReadsAll(new InputJsonlQueryIterator(zstdPath, null), zstdPath);
+  }
+
+  @Test
+  public void readsGCSFileTest() throws IOException {
+    Storage storage = LocalStorageHelper.getOptions().getService();
+    storage.create(
+        BlobInfo.newBuilder(BlobId.of("bucket", "exports/jobs.jsonl.gz")).build(),
+        compress(GZIPOutputStream::new));
+    String path = "gs://bucket/exports/jobs.jsonl.gz";
+    assertReadsAll(new InputJsonlQueryIterator(path, new GCSHelper(storage)), path);
+  }
+
+  @Test
+  public void resumesAfterRecordsTest() throws IOException {
+    String path = writeFile("jobs.jsonl", JSONL.getBytes(StandardCharsets.UTF_8));
+    InputJsonlQueryIterator iterator = new InputJsonlQueryIterator(path, null);
+    iterator.resume(new InputCursor(2));
+    assertEquals(2, iterator.getCursor().getPosition());
+    assertEquals("job_3", iterator.next().getQueryId());
+    assertEquals(3, iterator.getCursor().getPosition());
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InputMappedCsvQueryIteratorTest {
+
+  private static final String CSV =
+      "id,query\r\n"
+          + "q1,SELECT 1\r\n"
+          + "\r\n"
+          + "q2,\"SELECT a,\n  b\nFROM t\"\n"
+          + "q3,\"SELECT \"\"quoted\"\" FROM \u00e9t\u00e9\"\n"
+          + "q4,\"SELECT '\n,\n' AS line_breaks\"\n"
+          + "q5,SELECT 5";
+
+  private static final int CSV_BYTES = CSV.getBytes(StandardCharsets.UTF_8).length;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private String writeCsv() throws IOException {
+    Path csv = temporaryFolder.newFile("queries.csv").toPath();
+    Files.writeString(csv, CSV);
+    return csv.toString();
+  }
+
+  private static List<String> readAll(InputMappedCsvQueryIterator iterator) {
+    List<String> queries = new ArrayList<>();
+    while (iterator.hasNext()) {
+      InputQuery inputQuery = iterator.next();
+      queries.add(inputQuery.getQueryId() + ":" + inputQuery.getQuery());
+    }
+    return queries;
+  }
+
+  private static List<String> expected(int from) {
+    List<String> queries = new ArrayList<>();
+    queries.add("q1:SELECT 1");
+    queries.add("q2:SELECT a,\n  b\nFROM t");
+    queries.add("q3:SELECT \"quoted\" FROM \u00e9t\u00e9");
+    queries.add("q4:SELECT '\n,\n' AS line_breaks");
+    queries.add("q5:SELECT 5");
+    return queries.subList(from, queries.size());
+  }
+
+  @Test
+  public void readsQuotedMultiLineRecordsWithAnySplitSizeTest() throws IOException {
+    String csvPath = writeCsv();
+    // splits starting inside quoted fields, inside line breaks and inside multi byte characters
+    for (long splitBytes = 1; splitBytes <= CSV_BYTES + 1; splitBytes++) {
+      assertEquals(
+          "split of " + splitBytes + " bytes",
+          expected(0),
+          readAll(new InputMappedCsvQueryIterator(csvPath, 3, splitBytes)));
+    }
+  }
+
+  @Test
+  public void resumesAfterRecordsTest() throws IOException {
+    String csvPath = writeCsv();
+    for (long splitBytes = 1; splitBytes <= CSV_BYTES + 1; splitBytes++) {
+      InputMappedCsvQueryIterator iterator =
+          new InputMappedCsvQueryIterator(csvPath, 2, splitBytes);
+      iterator.resume(new InputCursor(3));
+      assertEquals("split of " + splitBytes + " bytes", expected(3), readAll(iterator));
+      assertEquals(5, iterator.getCursor().getPosition());
+    }
+  }
+
+  @Test
+  public void resumesAtCursorByteOffsetTest() throws IOException {
+    String csvPath = writeCsv();
+    for (long splitBytes = 1; splitBytes <= CSV_BYTES + 1; splitBytes++) {
+      for (int read = 1; read <= 5; read++) {
+        InputMappedCsvQueryIterator iterator =
+            new InputMappedCsvQueryIterator(csvPath, 2, splitBytes);
+        for (int i = 0; i < read; i++) {
+          iterator.next();
+        }
+        InputCursor cursor = iterator.getCursor();
+        // resumed with another split size, as after changing --read_threads
+        InputMappedCsvQueryIterator resumed =
+            new InputMappedCsvQueryIterator(csvPath, 2, CSV_BYTES + 2 - splitBytes);
+        resumed.resume(cursor);
+        String message = "split of " + splitBytes + " bytes, " + read + " read";
+        assertEquals(message, expected(read), readAll(resumed));
+        assertEquals(message, 5, resumed.getCursor().getPosition());
+      }
+    }
+  }
+
+  @Test
+  public void readsEmptyFileTest() throws IOException {
+    Path csv = temporaryFolder.newFile("empty.csv").toPath();
+    assertFalse(new InputMappedCsvQueryIterator(csv.toString(), 2).hasNext());
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.zetasql.AnalyzerOptions;
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.SimpleTable;
+import com.google.zetasql.toolkit.catalog.bigquery.BigQueryCatalog;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BigQueryCatalogPoolTest {
+
+  AnalyzerOptions analyzerOptions;
+  List<String> loadedTables;
+
+  @Before
+  public void setUp() {
+    LanguageOptions languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+    analyzerOptions = new AnalyzerOptions();
+    analyzerOptions.setLanguageOptions(languageOptions);
+    loadedTables = new ArrayList<>();
+  }
+
+  private BigQueryCatalogPool buildPool(int maxTables) {
+    return new BigQueryCatalogPool(
+        BigQueryCatalog::usingBigQueryAPI,
+        (projectId, tableReference) -> {
+          loadedTables.add(tableReference);
+          SimpleTable table = new SimpleTable(projectId + "." + tableReference);
+          table.setFullName(projectId + "." + tableReference);
+          return table;
+        },
+        maxTables);
+  }
+
+  @Test
+  public void addsOnlyNewTablesForSameProjectTest() {
+    BigQueryCatalogPool pool = buildPool(100);
+    pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1 JOIN dataset.t2 USING (id)",
+        analyzerOptions);
+    pool.getCatalogForQuery("project", "SELECT * FROM dataset.t2 JOIN dataset.t3 USING (id)",
+        analyzerOptions);
+
+    assertEquals(Arrays.asList("dataset.t1", "dataset.t2", "dataset.t3"), loadedTables);
+    assertEquals(1, pool.getProjectCount());
+    assertEquals(3, pool.getTableCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedProjectTest() {
+    BigQueryCatalogPool pool = buildPool(2);
+    pool.getCatalogForQuery("project1", "SELECT * FROM dataset.t1", analyzerOptions);
+    pool.getCatalogForQuery("project2", "SELECT * FROM dataset.t1", analyzerOptions);
+    pool.getCatalogForQuery("project3", "SELECT * FROM dataset.t1", analyzerOptions);
+
+    assertEquals(2, pool.getProjectCount());
+    assertEquals(1, pool.getEvictedProjectCount());
+
+    // project1 was evicted, its table has to be loaded again
+    pool.getCatalogForQuery("project1", "SELECT * FROM dataset.t1", analyzerOptions);
+    assertEquals(4, loadedTables.size());
+  }
+
+  @Test
+  public void sharesCatalogWithoutCopyForSameTablesTest() {
+    BigQueryCatalogPool pool = buildPool(100);
+    BigQueryCatalog first =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1", analyzerOptions);
+    BigQueryCatalog second =
+        pool.getCatalogForQuery(
+            "project", "SELECT id FROM dataset.t1 WHERE id > 1", analyzerOptions);
+
+    assertSame(first, second);
+  }
+
+  @Test
+  public void publishesExtendedCatalogWhenAddingTablesTest() {
+    BigQueryCatalogPool pool = buildPool(100);
+    BigQueryCatalog first =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1", analyzerOptions);
+    BigQueryCatalog extended =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t2", analyzerOptions);
+    BigQueryCatalog reused =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1, dataset.t2", analyzerOptions);
+
+    // the catalog handed out first is not modified while it may still be in use
+    assertNotSame(first, extended);
+    assertSame(extended, reused);
+  }
+
+  @Test
+  public void copiesCatalogForQueriesWithDdlTest() {
+    BigQueryCatalogPool pool = buildPool(100);
+    BigQueryCatalog shared =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1", analyzerOptions);
+    BigQueryCatalog copy =
+        pool.getCatalogForQuery(
+            "project",
+            "CREATE TEMP TABLE tmp AS SELECT * FROM dataset.t1; SELECT * FROM tmp",
+            analyzerOptions);
+
+    assertNotSame(shared, copy);
+  }
+
+  @Test
+  public void copiesCatalogOnceEnoughTablesArePendingTest() {
+    BigQueryCatalogPool pool = buildPool(100);
+    BigQueryCatalog shared =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1, dataset.t2", analyzerOptions);
+    // a single new table is fewer than the 2 tables of the catalog, it is not copied yet
+    BigQueryCatalog own =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t1, dataset.t3", analyzerOptions);
+    BigQueryCatalog stillShared =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t2", analyzerOptions);
+    BigQueryCatalog extended =
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t4", analyzerOptions);
+
+    assertNotSame(shared, own);
+    assertSame(shared, stillShared);
+    assertNotSame(shared, extended);
+    assertSame(
+        extended,
+        pool.getCatalogForQuery("project", "SELECT * FROM dataset.t3, dataset.t4", analyzerOptions));
+    assertEquals(4, pool.getTableCount());
+  }
+}
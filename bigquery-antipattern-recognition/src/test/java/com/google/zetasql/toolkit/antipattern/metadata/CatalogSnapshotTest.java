@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.zetasql.SimpleTable;
+import com.google.zetasql.StructType;
+import com.google.zetasql.Type;
+import com.google.zetasql.ZetaSQLType.TypeKind;
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+import com.google.zetasql.toolkit.antipattern.metadata.TableSnapshot.ColumnSnapshot;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CatalogSnapshotTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static CatalogSnapshot buildSnapshot() {
+    TableSnapshot table = new TableSnapshot("project", "dataset", "events");
+    table.setStandardTable(true);
+    table.setTimePartitioningType("DAY");
+    table.setClusteringFields(Arrays.asList("user_id", "event_type"));
+    table.setNumRows(BigInteger.valueOf(1000));
+    table.setNumBytes(2048L);
+    table.getColumns().add(new ColumnSnapshot("user_id", "INT64"));
+    table.getColumns().add(new ColumnSnapshot("event_type", "STRING"));
+    table.getColumns().add(
+        new ColumnSnapshot("params", "ARRAY<STRUCT<key STRING, value NUMERIC(10, 2)>>"));
+
+    CatalogSnapshot snapshot = new CatalogSnapshot();
+    snapshot.addTable(table);
+    return snapshot;
+  }
+
+  @Test
+  public void roundTripTest() throws IOException {
+    for (String fileName : Arrays.asList("snapshot.json", "snapshot.json.gz")) {
+      String path = temporaryFolder.getRoot().toPath().resolve(fileName).toString();
+      buildSnapshot().write(path);
+
+      TableMetadata table = CatalogSnapshot.read(path).fetchTable("project", "dataset.events");
+      assertEquals("project.dataset.events", table.getFullName());
+      assertTrue(table.isPartitioned());
+      assertEquals(Arrays.asList("user_id", "event_type"), table.getClusteringFields());
+      assertEquals(BigInteger.valueOf(1000), table.getNumRows());
+      assertEquals(Long.valueOf(2048L), table.getNumBytes());
+    }
+  }
+
+  @Test
+  public void findTableQualifiesReferencesTest() {
+    CatalogSnapshot snapshot = buildSnapshot();
+    assertEquals("events", snapshot.findTable("project", "dataset.events").getTableId());
+    assertEquals("events", snapshot.findTable(null, "project.dataset.events").getTableId());
+    assertEquals("events", snapshot.findTable("other", "`project.dataset.events`").getTableId());
+    assertNull(snapshot.findTable("other", "dataset.events"));
+    assertNull(snapshot.findTable("project", "events"));
+  }
+
+  @Test(expected = TableNotFoundInCatalog.class)
+  public void fetchMissingTableTest() {
+    buildSnapshot().fetchTable("project", "dataset.missing");
+  }
+
+  @Test
+  public void toSimpleTableTest() {
+    TableSnapshot table = buildSnapshot().findTable("project", "dataset.events");
+    SimpleTable simpleTable = CatalogSnapshot.toSimpleTable(table);
+    assertEquals("project.dataset.events", simpleTable.getFullName());
+    // columns plus the _PARTITIONTIME and _PARTITIONDATE pseudo columns
+    assertEquals(5, simpleTable.getColumnCount());
+    assertTrue(simpleTable.getColumn(3).isPseudoColumn());
+  }
+
+  @Test
+  public void parseTypeNamesTest() {
+    assertEquals(TypeKind.TYPE_INT64, BigQueryTypeNames.parse("INT64").getKind());
+    assertEquals(TypeKind.TYPE_DOUBLE, BigQueryTypeNames.parse("float64").getKind());
+    assertEquals(TypeKind.TYPE_STRING, BigQueryTypeNames.parse("STRING(10)").getKind());
+
+    Type arrayType = BigQueryTypeNames.parse("ARRAY<STRUCT<a INT64, `b c` ARRAY<DATE>>>");
+    assertTrue(arrayType.isArray());
+    StructType structType = arrayType.asArray().getElementType().asStruct();
+    assertEquals(2, structType.getFieldCount());
+    assertEquals("b c", structType.getField(1).getName());
+    assertTrue(structType.getField(1).getType().isArray());
+  }
+
+  @Test
+  public void parseInvalidTypeNamesTest() {
+    for (String typeName : Arrays.asList("ARRAY<INT64", "STRUCT<a>", "UNKNOWN", "INT64 INT64")) {
+      boolean failed = false;
+      try {
+        BigQueryTypeNames.parse(typeName);
+      } catch (IllegalArgumentException e) {
+        failed = true;
+      }
+      assertTrue(typeName, failed);
+    }
+    assertFalse(BigQueryTypeNames.parse("STRUCT<>").asStruct().getFieldCount() > 0);
+  }
+}
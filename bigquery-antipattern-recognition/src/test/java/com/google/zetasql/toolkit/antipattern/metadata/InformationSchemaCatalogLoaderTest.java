@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class InformationSchemaCatalogLoaderTest {
+
+  private static final FieldList SCHEMA =
+      FieldList.of(
+          Field.of("table_catalog", StandardSQLTypeName.STRING),
+          Field.of("table_schema", StandardSQLTypeName.STRING),
+          Field.of("table_name", StandardSQLTypeName.STRING),
+          Field.of("table_type", StandardSQLTypeName.STRING),
+          Field.of("column_name", StandardSQLTypeName.STRING),
+          Field.of("data_type", StandardSQLTypeName.STRING),
+          Field.of("is_partitioning_column", StandardSQLTypeName.STRING),
+          Field.of("clustering_ordinal_position", StandardSQLTypeName.INT64),
+          Field.of("total_rows", StandardSQLTypeName.INT64),
+          Field.of("total_logical_bytes", StandardSQLTypeName.INT64));
+
+  private static FieldValueList row(String table, String tableType, String column,
+      String dataType, String partitioning, String clusteringPosition, String totalRows) {
+    List<FieldValue> values = new ArrayList<>();
+    for (String value : Arrays.asList("project", "dataset", table, tableType, column, dataType,
+        partitioning, clusteringPosition, totalRows, totalRows == null ? null : "4096")) {
+      values.add(FieldValue.of(FieldValue.Attribute.PRIMITIVE, value));
+    }
+    return FieldValueList.of(values, SCHEMA);
+  }
+
+  @Test
+  public void mapsRowsToTablesTest() throws InterruptedException {
+    List<FieldValueList> rows = Arrays.asList(
+        row("orders", "BASE TABLE", "order_id", "INT64", "NO", "2", "100"),
+        row("orders", "BASE TABLE", "order_date", "DATE", "YES", null, "100"),
+        row("orders", "BASE TABLE", "customer_id", "STRING", "NO", "1", "100"),
+        row("logs", "BASE TABLE", "payload", "JSON", "NO", null, null),
+        row("logs", "BASE TABLE", "_PARTITIONTIME", "TIMESTAMP", "YES", null, null),
+        row("orders_view", "VIEW", "order_id", "INT64", "NO", null, null));
+    List<String> queries = new ArrayList<>();
+    InformationSchemaCatalogLoader loader =
+        new InformationSchemaCatalogLoader(query -> {
+          queries.add(query);
+          return rows;
+        }, "us");
+
+    CatalogSnapshot snapshot = new CatalogSnapshot();
+    loader.load(snapshot, Arrays.asList("project.dataset"));
+
+    assertEquals(1, queries.size());
+    assertEquals(3, snapshot.size());
+
+    TableMetadata orders = snapshot.fetchTable("project", "dataset.orders");
+    assertTrue(orders.isStandardTable());
+    assertTrue(orders.isPartitioned());
+    assertEquals(Arrays.asList("customer_id", "order_id"), orders.getClusteringFields());
+    assertEquals(BigInteger.valueOf(100), orders.getNumRows());
+    assertEquals(Long.valueOf(4096), orders.getNumBytes());
+
+    TableSnapshot logs = snapshot.findTable("project", "dataset.logs");
+    assertTrue(logs.isIngestionTimePartitioned());
+    assertEquals(1, logs.getColumns().size());
+    assertNull(logs.getNumRows());
+    assertFalse(logs.toTableMetadata().isClustered());
+
+    assertFalse(snapshot.fetchTable("project", "dataset.orders_view").isStandardTable());
+  }
+
+  @Test
+  public void buildsQueryPerScopeTest() {
+    InformationSchemaCatalogLoader loader =
+        new InformationSchemaCatalogLoader(query -> new ArrayList<>(), "eu");
+
+    String datasetQuery = loader.buildQuery("project.dataset");
+    assertTrue(datasetQuery.contains("FROM `project.dataset`.INFORMATION_SCHEMA.COLUMNS c"));
+    assertTrue(datasetQuery.contains("`project.region-eu`.INFORMATION_SCHEMA.TABLE_STORAGE s"));
+    assertTrue(datasetQuery.contains("AND s.table_schema = 'dataset'"));
+
+    String projectQuery = loader.buildQuery("example.com:project");
+    assertTrue(
+        projectQuery.contains("FROM `example.com:project.region-eu`.INFORMATION_SCHEMA.COLUMNS c"));
+    assertFalse(projectQuery.contains("AND s.table_schema"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidScopeTest() {
+    new InformationSchemaCatalogLoader(query -> new ArrayList<>(), "us")
+        .buildQuery("project`; DROP TABLE x");
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.zetasql.toolkit.antipattern.exceptions.TableNotFoundInCatalog;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableMetadataCacheTest {
+
+  private final ConcurrentHashMap<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+  private final AtomicLong nanos = new AtomicLong();
+  private TableMetadataProvider provider;
+
+  @Before
+  public void setUp() {
+    provider =
+        (projectId, tableReference) -> {
+          fetches.computeIfAbsent(tableReference, t -> new AtomicInteger()).incrementAndGet();
+          if (tableReference.startsWith("missing")) {
+            throw new TableNotFoundInCatalog(tableReference);
+          }
+          return new TableMetadata(
+              "project", "dataset", tableReference, true, false, null, BigInteger.ONE, 1L);
+        };
+  }
+
+  private TableMetadataCache buildCache(int maxEntries) {
+    return new TableMetadataCache(provider, maxEntries, 1000, 100, nanos::get);
+  }
+
+  private int fetchCount(String tableReference) {
+    AtomicInteger count = fetches.get(tableReference);
+    return count == null ? 0 : count.get();
+  }
+
+  @Test
+  public void cachesTablesUntilTtlTest() {
+    TableMetadataCache cache = buildCache(10);
+    TableMetadata first = cache.fetchTable(null, "t1");
+    assertSame(first, cache.fetchTable(null, "t1"));
+    assertEquals(1, fetchCount("t1"));
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+    cache.fetchTable(null, "t1");
+    assertEquals(2, fetchCount("t1"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void cachesNotFoundTablesTest() {
+    TableMetadataCache cache = buildCache(10);
+    for (int i = 0; i < 3; i++) {
+      try {
+        cache.fetchTable(null, "missing_table");
+        fail("expected TableNotFoundInCatalog");
+      } catch (TableNotFoundInCatalog e) {
+        // expected
+      }
+    }
+    assertEquals(1, fetchCount("missing_table"));
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(101));
+    try {
+      cache.fetchTable(null, "missing_table");
+    } catch (TableNotFoundInCatalog e) {
+      // expected
+    }
+    assertEquals(2, fetchCount("missing_table"));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedTest() {
+    TableMetadataCache cache = buildCache(2);
+    cache.fetchTable(null, "t1");
+    cache.fetchTable(null, "t2");
+    cache.fetchTable(null, "t1");
+    cache.fetchTable(null, "t3");
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    cache.fetchTable(null, "t1");
+    assertEquals(1, fetchCount("t1"));
+    cache.fetchTable(null, "t2");
+    assertEquals(2, fetchCount("t2"));
+  }
+
+  @Test
+  public void doesNotCacheErrorsTest() {
+    AtomicInteger attempts = new AtomicInteger();
+    TableMetadataCache cache =
+        new TableMetadataCache(
+            (projectId, tableReference) -> {
+              if (attempts.incrementAndGet() == 1) {
+                throw new NoClassDefFoundError("com/example/Missing");
+              }
+              return provider.fetchTable(projectId, tableReference);
+            },
+            10,
+            1000,
+            100,
+            nanos::get);
+    try {
+      cache.fetchTable(null, "t1");
+      fail("expected NoClassDefFoundError");
+    } catch (NoClassDefFoundError e) {
+      // expected
+    }
+    // the failed entry is gone, the next lookup fetches the table again instead of waiting
+    cache.fetchTable(null, "t1");
+    assertEquals(2, attempts.get());
+    assertEquals(0, cache.getCoalescedCount());
+  }
+
+  @Test
+  public void coalescesConcurrentLookupsTest() throws InterruptedException {
+    // System.nanoTime may be negative
+    nanos.set(-TimeUnit.HOURS.toNanos(1));
+    CountDownLatch fetchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFetch = new CountDownLatch(1);
+    AtomicInteger slowFetches = new AtomicInteger();
+    TableMetadataCache cache =
+        new TableMetadataCache(
+            (projectId, tableReference) -> {
+              slowFetches.incrementAndGet();
+              fetchStarted.countDown();
+              try {
+                releaseFetch.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return new TableMetadata(
+                  "project", "dataset", tableReference, true, false, null, BigInteger.ONE, 1L);
+            },
+            10,
+            1000,
+            100,
+            nanos::get);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread(() -> cache.fetchTable(null, "t1"));
+      threads.add(thread);
+      thread.start();
+      if (i == 0) {
+        fetchStarted.await();
+      }
+    }
+    while (cache.getCoalescedCount() < 7) {
+      Thread.sleep(1);
+    }
+    releaseFetch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1, slowFetches.get());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(7, cache.getCoalescedCount());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.zetasql.LanguageOptions;
+import com.google.zetasql.Parser;
+import com.google.zetasql.parser.ASTNodes.ASTScript;
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.util.AntiPatternHelper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FusedParseTreeVisitorTest {
+
+  LanguageOptions languageOptions;
+
+  @Before
+  public void setUp() {
+    languageOptions = new LanguageOptions();
+    languageOptions.enableMaximumLanguageFeatures();
+    languageOptions.setSupportsAllStatementKinds();
+  }
+
+  @Test
+  public void fusedTraversalMatchesStandaloneVisitorsTest() {
+    String query =
+        "CREATE TEMP TABLE tmp AS SELECT 1 AS col1;\n"
+            + "CREATE TABLE dataset.persistent AS SELECT 1 AS col1;\n"
+            + "WITH a AS (SELECT col1 FROM table1), b AS (SELECT col1 FROM a)\n"
+            + "SELECT * FROM a JOIN b USING (col1)\n"
+            + "WHERE col1 IN (SELECT col1 FROM table2)\n"
+            + "  AND col2 LIKE '%x%' AND col3 = 1\n"
+            + "  AND REGEXP_CONTAINS(col4, '.*abc.*')\n"
+            + "ORDER BY col1;\n"
+            + "SELECT * FROM (\n"
+            + "  SELECT col1, ROW_NUMBER() OVER (PARTITION BY col1 ORDER BY col2) AS rn FROM t\n"
+            + ") WHERE rn = 1;\n"
+            + "SELECT * FROM table3;\n"
+            + "DROP TABLE dataset.persistent;";
+    AntiPatternHelper antiPatternHelper = new AntiPatternHelper(null, false);
+    ASTScript parsedQuery = Parser.parseScript(query, languageOptions);
+
+    List<ParserRuleVisitor> fusedRules = new ArrayList<>();
+    for (AntiPatternVisitor visitor : antiPatternHelper.getParserVisitorList(query)) {
+      fusedRules.add((ParserRuleVisitor) visitor);
+    }
+    FusedParseTreeVisitor fusedVisitor = new FusedParseTreeVisitor(fusedRules);
+    parsedQuery.accept(fusedVisitor);
+
+    List<AntiPatternVisitor> standaloneRules = antiPatternHelper.getParserVisitorList(query);
+    for (int i = 0; i < standaloneRules.size(); i++) {
+      ParserRuleVisitor standaloneRule = (ParserRuleVisitor) standaloneRules.get(i);
+      parsedQuery.accept(standaloneRule);
+      ParserRuleVisitor fusedRule = fusedRules.get(i);
+      assertFalse(fusedVisitor.hasFailed(fusedRule));
+      assertEquals(standaloneRule.getName(), standaloneRule.getResult(), fusedRule.getResult());
+    }
+  }
+}
@@ -21,7 +21,10 @@ import static org.junit.Assert.assertEquals;
 import com.google.zetasql.LanguageOptions;
 import com.google.zetasql.Parser;
 import com.google.zetasql.parser.ASTNodes.ASTStatement;
+import com.google.zetasql.toolkit.antipattern.Finding;
 import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyCTEsEvalMultipleTimesVisitor;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -174,4 +177,27 @@ public class IdentifyCTEsEvalMultipleTimesTest {
     String recommendation = visitor.getResult();
     assertEquals(expected, recommendation);
   }
+
+  // Findings are structured and reading them does not report the same CTE again
+  @Test
+  public void findingsAreStableTest() {
+    String expected = "CTE with multiple references: alias a defined at line 2 is referenced 2 times.";
+    String query =
+        "WITH\n"
+            + "    a AS (SELECT * FROM `project.dataset.table1`)\n"
+            + "SELECT * FROM a JOIN a AS a2 USING (id);";
+
+    ASTStatement parsedQuery = Parser.parseStatement(query, languageOptions);
+    IdentifyCTEsEvalMultipleTimesVisitor visitor = new IdentifyCTEsEvalMultipleTimesVisitor(query);
+    parsedQuery.accept(visitor);
+    assertEquals(expected, visitor.getResult());
+    assertEquals(expected, visitor.getResult());
+
+    List<Finding> findings = visitor.getFindings();
+    assertEquals(1, findings.size());
+    assertEquals(IdentifyCTEsEvalMultipleTimesVisitor.NAME, findings.get(0).getRuleId());
+    assertEquals(2, findings.get(0).getLine());
+    assertEquals(5, findings.get(0).getColumn());
+    assertEquals(Arrays.asList("a", 2, 2), findings.get(0).getParameters());
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.zetasql.toolkit.antipattern.analyzer.visitors.joinorder.JoinOrderVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifyDynamicPredicateVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.IdentifySimpleSelectStarVisitor;
+import com.google.zetasql.toolkit.antipattern.parser.visitors.whereorder.IdentifyWhereOrderVisitor;
+import com.google.zetasql.toolkit.antipattern.rules.AntiPatternRule.Stage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class RuleRegistryTest {
+
+  @Test
+  public void loadsBuiltInRulesInOrderTest() {
+    RuleRegistry registry = RuleRegistry.load(null, null);
+
+    assertEquals(16, registry.getRuleNames().size());
+    assertEquals(10, registry.getRules(Stage.PARSER).size());
+    assertEquals(
+        IdentifySimpleSelectStarVisitor.NAME, registry.getRules(Stage.PARSER).get(0).getName());
+    assertEquals(JoinOrderVisitor.NAME, registry.getRules(Stage.ANALYZER).get(0).getName());
+    assertEquals(4, registry.getRules(Stage.CLUSTERING).size());
+  }
+
+  @Test
+  public void selectsIncludedRulesTest() {
+    RuleRegistry registry =
+        RuleRegistry.load(Arrays.asList("whereorder", " JoinOrder"), Collections.emptyList());
+
+    assertEquals(
+        Arrays.asList(IdentifyWhereOrderVisitor.NAME, JoinOrderVisitor.NAME),
+        registry.getRuleNames());
+    assertFalse(registry.hasRules(Stage.CLUSTERING));
+    assertTrue(registry.isSelected("WhereOrder"));
+    assertFalse(registry.isSelected(IdentifySimpleSelectStarVisitor.NAME));
+  }
+
+  @Test
+  public void excludesRulesTest() {
+    RuleRegistry registry =
+        RuleRegistry.load(null, Arrays.asList(IdentifySimpleSelectStarVisitor.NAME));
+
+    assertEquals(15, registry.getRuleNames().size());
+    assertFalse(registry.isSelected(IdentifySimpleSelectStarVisitor.NAME));
+  }
+
+  @Test
+  public void buildsVisitorsOnlyForSelectedRulesTest() {
+    RuleRegistry registry =
+        RuleRegistry.load(Collections.singletonList(IdentifyWhereOrderVisitor.NAME), null);
+    RuleContext context = new RuleContext("SELECT 1", null);
+
+    AntiPatternRule rule = registry.getRules(Stage.PARSER).get(0);
+    assertTrue(rule.newVisitor(context) instanceof IdentifyWhereOrderVisitor);
+    assertEquals(1, registry.getRules(Stage.PARSER).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownRuleTest() {
+    RuleRegistry.load(Collections.singletonList("NotARule"), null);
+  }
+
+  @Test
+  public void skipsRulesWithoutTriggerTokensTest() {
+    RuleRegistry registry = RuleRegistry.load(null, null);
+
+    List<String> candidateRules =
+        registry
+            .getCandidateRules(Stage.PARSER, "SELECT a FROM t -- ORDER BY a\nWHERE b = 'DROP'")
+            .stream()
+            .map(AntiPatternRule::getName)
+            .collect(Collectors.toList());
+    assertEquals(Collections.singletonList(IdentifyDynamicPredicateVisitor.NAME), candidateRules);
+    assertTrue(registry.getCandidateRules(Stage.PARSER, "SELECT 1").isEmpty());
+    assertEquals(
+        registry.getRules(Stage.ANALYZER), registry.getCandidateRules(Stage.ANALYZER, "SELECT 1"));
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.util.AnalysisTierPolicy.Tier;
+import org.junit.Test;
+
+public class AnalysisTierPolicyTest {
+
+  @Test
+  public void filtersOnSlotHoursTest() {
+    AnalysisTierPolicy policy = new AnalysisTierPolicy(1.5, 0, false);
+    assertTrue(policy.isEligible(new InputQuery("SELECT 1", "job_1", 2f)));
+    assertFalse(policy.isEligible(new InputQuery("SELECT 1", "job_2", 0.01f)));
+    // queries read from files have no slot hours
+    assertTrue(policy.isEligible(new InputQuery("SELECT 1", "query_1")));
+  }
+
+  @Test
+  public void filtersOnQueryBytesTest() {
+    AnalysisTierPolicy policy = new AnalysisTierPolicy(0, 12, false);
+    // the euro sign takes 3 bytes, 12 in total
+    assertTrue(policy.isEligible(new InputQuery("SELECT '\u20ac'", "query_1")));
+    assertFalse(policy.isEligible(new InputQuery("SELECT 'e'", "query_2")));
+  }
+
+  @Test
+  public void requiresParserFindingsTest() {
+    AnalysisTierPolicy policy = new AnalysisTierPolicy(0, 0, true);
+    assertEquals(Tier.ANALYZER, policy.tierFor(true, true));
+    assertEquals(Tier.PARSER, policy.tierFor(true, false));
+    assertEquals(Tier.PARSER, policy.tierFor(false, true));
+
+    assertEquals(Tier.ANALYZER, AnalysisTierPolicy.ALL.tierFor(true, false));
+    assertFalse(AnalysisTierPolicy.ALL.isEnabled());
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class KeywordMatcherTest {
+
+  private static Set<String> setOf(String... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  @Test
+  public void matchesWholeWordsCaseInsensitiveTest() {
+    KeywordMatcher matcher =
+        new KeywordMatcher(Arrays.asList("TEMP", "TEMPORARY", "REGEXP_CONTAINS", "IN"));
+
+    assertEquals(setOf("temp"), matcher.findKeywords("create Temp table t as select 1"));
+    assertEquals(setOf("temporary"), matcher.findKeywords("CREATE TEMPORARY TABLE t (a INT64)"));
+    assertEquals(
+        setOf("regexp_contains"),
+        matcher.findKeywords("SELECT * FROM t JOIN u USING (a) WHERE regexp_contains(b, 'x')"));
+    assertEquals(Collections.emptySet(), matcher.findKeywords("SELECT temp_col FROM inputs"));
+  }
+
+  @Test
+  public void matchesOverlappingKeywordsTest() {
+    KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("*", "**", "<>", ">"));
+
+    assertEquals(setOf("*", "**"), matcher.findKeywords("SELECT a ** 2"));
+    assertEquals(setOf("<>", ">"), matcher.findKeywords("WHERE a<>b"));
+  }
+
+  @Test
+  public void skipsCommentsAndStringsTest() {
+    KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("ROW_NUMBER", "RANK", "*"));
+
+    assertEquals(
+        Collections.emptySet(),
+        matcher.findKeywords(
+            "SELECT 'rank', \"row_number\" -- rank\n"
+                + "# row_number\n"
+                + "/* SELECT * */ FROM t WHERE a = '''\nrank\n''' AND b = 'it\\'s rank'"));
+    assertEquals(setOf("rank"), matcher.findKeywords("SELECT 'x' AS y, RANK() OVER () /* * */"));
+  }
+}
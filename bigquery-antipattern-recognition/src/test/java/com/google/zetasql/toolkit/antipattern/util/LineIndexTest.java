@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class LineIndexTest {
+
+  @Test
+  public void mapsByteOffsetsToLinesTest() {
+    String query = "SELECT a\nFROM t\n\nWHERE b = 1";
+    LineIndex lineIndex = new LineIndex(query);
+
+    assertEquals(4, lineIndex.getLineCount());
+    assertEquals(1, lineIndex.lineAt(0));
+    // the line break belongs to the line it ends
+    assertEquals(1, lineIndex.lineAt(8));
+    assertEquals(2, lineIndex.lineAt(9));
+    assertEquals(3, lineIndex.lineAt(16));
+    assertEquals(4, lineIndex.lineAt(17));
+    assertEquals(4, lineIndex.lineAt(1000));
+  }
+
+  @Test
+  public void countsMultiByteCharactersTest() {
+    // e acute takes 2 bytes, the euro sign 3 and the emoji 4 (2 chars)
+    String query = "SELECT '\u00e9\u20ac\ud83d\ude00'\nFROM t";
+    LineIndex lineIndex = new LineIndex(query);
+    int fromOffset = query.substring(0, query.indexOf("FROM")).getBytes(StandardCharsets.UTF_8).length;
+
+    assertEquals(1, lineIndex.lineAt(fromOffset - 1));
+    assertEquals(2, lineIndex.lineAt(fromOffset));
+    assertEquals(1, lineIndex.columnAt(fromOffset));
+    assertEquals(3, lineIndex.columnAt(fromOffset + 2));
+    // the closing quote follows 3 characters of 9 bytes
+    assertEquals(12, lineIndex.columnAt(8 + 9));
+  }
+
+  @Test
+  public void countsUtf8LengthTest() {
+    String[] queries = {"", "SELECT 1", "SELECT '\u00e9\u20ac\ud83d\ude00'\r\nFROM t"};
+    for (String query : queries) {
+      assertEquals(query.getBytes(StandardCharsets.UTF_8).length, LineIndex.utf8Length(query));
+    }
+  }
+
+  @Test
+  public void matchesLegacyCountLineTest() {
+    String[] queries = {
+      "WITH a AS (SELECT 1)\n,b AS (SELECT '\u00e9')\nSELECT * FROM a, b",
+      // 2 and 3 byte characters next to line breaks
+      "SELECT '\u00e9\n\u20ac'\n\u00e9\u20ac\nFROM t\n\u20ac",
+      // the carriage return of a Windows line break is not a line break of its own
+      "SELECT a\r\nFROM t\r\n\r\nWHERE b = '\u00e9'\r\n",
+      "\n\n",
+      ""
+    };
+    for (String query : queries) {
+      LineIndex lineIndex = new LineIndex(query);
+      int bytes = query.getBytes(StandardCharsets.UTF_8).length;
+      for (int offset = 0; offset <= bytes; offset++) {
+        assertEquals(
+            query + " at " + offset,
+            LegacyLineCounter.countLine(query, offset),
+            lineIndex.lineAt(offset));
+      }
+    }
+  }
+
+  @Test
+  public void countsColumnsOfLongLinesFromSamplesTest() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 3 * LineIndex.SAMPLE_INTERVAL_CHARS; i++) {
+      builder.append(i % 7 == 0 ? "\u00e9" : i % 11 == 0 ? "\ud83d\ude00" : "a");
+      if (i == LineIndex.SAMPLE_INTERVAL_CHARS + 5) {
+        builder.append('\n');
+      }
+    }
+    String query = builder.toString();
+    LineIndex lineIndex = new LineIndex(query);
+    int bytes = query.getBytes(StandardCharsets.UTF_8).length;
+    for (int offset = 0; offset <= bytes; offset++) {
+      assertEquals("at " + offset, walkColumn(query, offset), lineIndex.columnAt(offset));
+    }
+  }
+
+  // column counted in code points from the start of the line of the byte offset
+  private static int walkColumn(String query, int byteOffset) {
+    int column = 1;
+    int bytes = 0;
+    for (int i = 0; bytes < byteOffset && i < query.length(); ) {
+      int codePoint = query.codePointAt(i);
+      bytes += new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+      column = codePoint == '\n' ? 1 : column + 1;
+      i += Character.charCount(codePoint);
+    }
+    return column;
+  }
+}
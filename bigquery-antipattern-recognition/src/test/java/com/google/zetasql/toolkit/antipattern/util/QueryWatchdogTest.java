@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.zetasql.toolkit.antipattern.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException.Reason;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class QueryWatchdogTest {
+
+  private static final InputQuery QUERY = new InputQuery("SELECT '\u20ac'", "query_1");
+
+  @Test
+  public void skipsLargeQueriesTest() {
+    // the euro sign takes 3 bytes, 12 in total
+    new QueryWatchdog(12, 0, 0).checkQuerySize(QUERY);
+
+    QueryWatchdog watchdog = new QueryWatchdog(11, 0, 0);
+    try {
+      watchdog.checkQuerySize(QUERY);
+      fail();
+    } catch (QuerySkippedException e) {
+      assertEquals(Reason.QUERY_TOO_LARGE, e.getReason());
+    }
+    assertEquals(1, watchdog.getSkippedCount(Reason.QUERY_TOO_LARGE));
+  }
+
+  @Test
+  public void abandonsSlowParseTest() {
+    QueryWatchdog watchdog = new QueryWatchdog(0, 50, 0);
+    long start = System.nanoTime();
+    try {
+      watchdog.parse(
+          QUERY,
+          () -> {
+            Thread.sleep(10_000);
+            return "parsed";
+          });
+      fail();
+    } catch (QuerySkippedException e) {
+      assertEquals(Reason.PARSE_TIMEOUT, e.getReason());
+    }
+    assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    assertEquals(1, watchdog.getSkippedCount(Reason.PARSE_TIMEOUT));
+  }
+
+  @Test
+  public void boundsAbandonedThreadsTest() throws InterruptedException {
+    QueryWatchdog watchdog = new QueryWatchdog(0, 50, 0, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch returned = new CountDownLatch(1);
+    try {
+      watchdog.parse(
+          QUERY,
+          () -> {
+            // like a ZetaSQL call, ignores interrupts
+            while (true) {
+              try {
+                release.await();
+                returned.countDown();
+                return "parsed";
+              } catch (InterruptedException e) {
+                // keep waiting
+              }
+            }
+          });
+      fail();
+    } catch (QuerySkippedException e) {
+      assertEquals(1, watchdog.getAbandonedThreadCount());
+    }
+
+    try {
+      watchdog.parse(QUERY, () -> "parsed");
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("--worker_processes"));
+    }
+
+    release.countDown();
+    returned.await();
+    // the abandoned thread is counted until its task returns
+    for (int i = 0; i < 100 && watchdog.getAbandonedThreadCount() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals("parsed", watchdog.parse(QUERY, () -> "parsed"));
+  }
+
+  @Test
+  public void returnsResultsAndErrorsWithinLimitTest() {
+    QueryWatchdog watchdog = new QueryWatchdog(0, 10_000, 10_000);
+    assertEquals("analyzed", watchdog.analyze(QUERY, () -> "analyzed"));
+    try {
+      watchdog.parse(
+          QUERY,
+          () -> {
+            throw new IllegalArgumentException("Syntax error");
+          });
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Syntax error", e.getMessage());
+    }
+  }
+
+  @Test
+  public void runsOnCallingThreadWithoutLimitTest() {
+    Thread caller = Thread.currentThread();
+    assertEquals(caller, QueryWatchdog.UNLIMITED.parse(QUERY, Thread::currentThread));
+  }
+}
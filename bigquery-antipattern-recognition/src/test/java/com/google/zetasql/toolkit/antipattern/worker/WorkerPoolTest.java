@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.zetasql.toolkit.antipattern.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import com.google.zetasql.toolkit.antipattern.AntiPatternVisitor;
+import com.google.zetasql.toolkit.antipattern.Finding;
+import com.google.zetasql.toolkit.antipattern.cache.RecordedAntiPattern;
+import com.google.zetasql.toolkit.antipattern.cmd.InputQuery;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException;
+import com.google.zetasql.toolkit.antipattern.exceptions.QuerySkippedException.Reason;
+import com.google.zetasql.toolkit.antipattern.util.LineIndex;
+import com.google.zetasql.toolkit.antipattern.util.QueryWatchdog;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkerPoolTest {
+
+  /** Worker answering with its pid, without ZetaSQL. */
+  public static class FakeWorker {
+    public static void main(String[] args) throws Exception {
+      PrintStream responses = new PrintStream(System.out, true, "UTF-8");
+      BufferedReader requests =
+          new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      requests.readLine();
+      responses.println(WorkerProtocol.write(new WorkerProtocol.Response()));
+      String line;
+      while ((line = requests.readLine()) != null) {
+        WorkerProtocol.Request request = WorkerProtocol.read(line, WorkerProtocol.Request.class);
+        WorkerProtocol.Response response = new WorkerProtocol.Response();
+        response
+            .getAntiPatterns()
+            .add(
+                WorkerProtocol.AntiPattern.of(
+                    new RecordedAntiPattern(
+                        "Pid", String.valueOf(ProcessHandle.current().pid()))));
+        switch (request.getQuery()) {
+          case "crash":
+            System.exit(3);
+            break;
+          case "hang":
+            Thread.sleep(Long.MAX_VALUE);
+            break;
+          case "SELECT a\nFROM t":
+            Finding finding =
+                new Finding(
+                    "Located", new LineIndex(request.getQuery()), 9, "%s on line %d", "t", 2);
+            finding.setStatementIndex(0);
+            response
+                .getAntiPatterns()
+                .add(
+                    WorkerProtocol.AntiPattern.of(
+                        new RecordedAntiPattern("Located", Collections.singletonList(finding))));
+            break;
+          case "slow":
+            response.setSkippedReason(Reason.PARSE_TIMEOUT);
+            response.setSkippedMessage("Parsing took too long");
+            break;
+          default:
+        }
+        responses.println(WorkerProtocol.write(response));
+      }
+    }
+  }
+
+  private WorkerPool pool;
+  private final QueryWatchdog watchdog = new QueryWatchdog(0, 0, 0);
+  private final ConcurrentMap<String, Integer> visitorMetricsMap = new ConcurrentHashMap<>();
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  private WorkerPool startPool(int size, long parseTimeoutMillis) throws IOException {
+    WorkerProtocol.Config config = new WorkerProtocol.Config();
+    config.setParseTimeoutMillis(parseTimeoutMillis);
+    pool =
+        new WorkerPool(
+            WorkerPool.javaCommand(64, FakeWorker.class.getName()),
+            size,
+            config,
+            100,
+            watchdog,
+            visitorMetricsMap);
+    return pool;
+  }
+
+  private String check(String query, List<AntiPatternVisitor> visitors) {
+    pool.check(new InputQuery(query, "query_1"), false, visitors);
+    return visitors.get(visitors.size() - 1).getResult();
+  }
+
+  private String checkSkipped(String query, Reason expectedReason) {
+    List<AntiPatternVisitor> visitors = new ArrayList<>();
+    try {
+      pool.check(new InputQuery(query, "query_1"), false, visitors);
+      fail();
+    } catch (QuerySkippedException e) {
+      assertEquals(expectedReason, e.getReason());
+    }
+    return visitors.isEmpty() ? null : visitors.get(0).getResult();
+  }
+
+  @Test
+  public void dispatchesRoundRobinTest() throws IOException {
+    startPool(2, 0);
+    List<AntiPatternVisitor> visitors = new ArrayList<>();
+    String first = check("SELECT 1", visitors);
+    String second = check("SELECT 2", visitors);
+    assertNotEquals(first, second);
+    assertEquals(first, check("SELECT 3", visitors));
+    assertEquals(second, check("SELECT 4", visitors));
+    assertEquals(Integer.valueOf(4), visitorMetricsMap.get("Pid"));
+  }
+
+  @Test
+  public void restartsCrashedWorkerTest() throws IOException {
+    startPool(1, 0);
+    String before = check("SELECT 1", new ArrayList<>());
+    checkSkipped("crash", Reason.WORKER_CRASHED);
+
+    String after = check("SELECT 1", new ArrayList<>());
+    assertNotEquals(before, after);
+    assertEquals(2, pool.getStartedCount());
+    assertEquals(1, watchdog.getSkippedCount(Reason.WORKER_CRASHED));
+  }
+
+  @Test
+  public void killsWorkerPastDeadlineTest() throws IOException {
+    startPool(1, 50);
+    String before = check("SELECT 1", new ArrayList<>());
+    checkSkipped("hang", Reason.WORKER_TIMEOUT);
+
+    assertNotEquals(before, check("SELECT 1", new ArrayList<>()));
+    assertEquals(1, watchdog.getSkippedCount(Reason.WORKER_TIMEOUT));
+  }
+
+  @Test
+  public void restartsWorkerThatSkippedOnTimeoutTest() throws IOException {
+    startPool(1, 0);
+    // anti patterns found before the timeout are kept
+    String before = checkSkipped("slow", Reason.PARSE_TIMEOUT);
+
+    assertNotEquals(before, check("SELECT 1", new ArrayList<>()));
+    assertEquals(1, watchdog.getSkippedCount(Reason.PARSE_TIMEOUT));
+  }
+
+  @Test
+  public void keepsLocationsOfFindingsTest() throws IOException {
+    startPool(1, 0);
+    List<AntiPatternVisitor> visitors = new ArrayList<>();
+    assertEquals("t on line 2", check("SELECT a\nFROM t", visitors));
+
+    Finding finding = visitors.get(1).getFindings().get(0);
+    assertEquals(2, finding.getLine());
+    assertEquals(1, finding.getColumn());
+    assertEquals(0, finding.getStatementIndex());
+    assertEquals(Arrays.asList("t", 2), finding.getParameters());
+  }
+}